@@ -24,6 +24,7 @@ import ucar.ma2.StructureDataIterator;
 import ucar.ma2.StructureDataW;
 import ucar.ma2.StructureMembers;
 import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.VariableSimpleIF;
@@ -230,6 +231,7 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
       private class BufrPointFeatureCollection extends PointCollectionImpl {
         StationHelper stationsWanted;
         PointFeatureIterator.Filter filter;
+        CalendarDateRange dateRange;
 
         BufrPointFeatureCollection(LatLonRect boundingBox, CalendarDateRange dateRange) throws IOException {
           super("BufrPointFeatureCollection", bufrDateUnits, bufrAltUnits);
@@ -242,10 +244,18 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
           stationsWanted = getStationHelper().subset(boundingBox);
           if (dateRange != null)
             filter = new PointIteratorFiltered.SpaceAndTimeFilter(null, dateRange);
+          this.dateRange = dateRange;
         }
 
         @Override
         public PointFeatureIterator getPointFeatureIterator() throws IOException {
+          // let the iosp skip the messages outside the time range. Not the bounding box, since stations are
+          // matched by id, and mobile stations may be outside of it.
+          Object iosp = netcdfDataset.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+          if (dateRange != null && iosp instanceof BufrIosp) {
+            StructureDataIterator orgIter = ((BufrIosp) iosp).getStructureIterator(dateRange, null);
+            return new BufrRecordIterator(obs.getStructureIterator(orgIter), filter);
+          }
           return new BufrRecordIterator(obs.getStructureIterator(), filter);
         }
 
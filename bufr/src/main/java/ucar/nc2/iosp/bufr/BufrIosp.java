@@ -4,11 +4,14 @@
  */
 package ucar.nc2.iosp.bufr;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import org.jdom2.Element;
 import ucar.ma2.Array;
 import ucar.ma2.ArraySequence;
@@ -22,8 +25,12 @@ import ucar.nc2.Sequence;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
+import ucar.nc2.ft.point.bufr.StandardFields;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
+import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.util.CancelTask;
+import ucar.unidata.geoloc.LatLonRect;
 import ucar.unidata.io.RandomAccessFile;
 
 /** IOSP for BUFR data - using the preprocessor. */
@@ -48,12 +55,22 @@ public class BufrIosp extends AbstractIOServiceProvider {
   boolean isSingle;
   BufrConfig config;
   Element iospParam;
+  MessageIndex messageIndex; // null until the file has been read once, or if it has embedded tables
+
+  // messages may have a bulletin header before them
+  private static final List<FileSignature> signatures =
+      ImmutableList.of(FileSignature.within(FileSignature.HEADER_SIZE, new byte[] {'B', 'U', 'F', 'R'}));
 
   @Override
   public boolean isValidFile(ucar.unidata.io.RandomAccessFile raf) throws IOException {
     return MessageScanner.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
     super.open(raf, rootGroup.getNcfile(), cancelTask);
@@ -62,7 +79,13 @@ public class BufrIosp extends AbstractIOServiceProvider {
     // TODO We have a problem - we havent finished building but we need to read the first message to use as the
     // protoMessage.
     // TODO Possible only trouble when theres an EmbeddedTable?
-    protoMessage = scanner.getFirstDataMessage();
+    messageIndex = MessageIndex.readIndex(raf.getLocation());
+    MessageIndex.Entry firstDataEntry = useIndex() ? messageIndex.getFirstDataEntry() : null;
+    if (firstDataEntry != null) {
+      protoMessage = scanner.readMessage(firstDataEntry.getStart(), firstDataEntry.getHeaderLength());
+    } else {
+      protoMessage = scanner.getFirstDataMessage();
+    }
     if (protoMessage == null)
       throw new IOException("No data messages in the file= " + raf.getLocation());
     if (!protoMessage.isTablesComplete())
@@ -145,18 +168,42 @@ public class BufrIosp extends AbstractIOServiceProvider {
     return iospParam;
   }
 
+  /** The index of the messages in the file, or null if it hasn't been made yet. */
+  @Nullable
+  public MessageIndex getMessageIndex() {
+    return messageIndex;
+  }
+
+  // messages can be read from the index only if there are no embedded tables, which must be read first
+  private boolean useIndex() {
+    return messageIndex != null && !messageIndex.hasTables();
+  }
+
   int nelems = -1;
 
   @Override
   public Array readData(Variable v2, Section section) {
     findRootSequence();
-    return new ArraySequence(obsStructure.makeStructureMembers(), new SeqIter(), nelems);
+    return new ArraySequence(obsStructure.makeStructureMembers(), new SeqIter(null, null), nelems);
   }
 
   @Override
   public StructureDataIterator getStructureIterator(Structure s, int bufferSize) {
     findRootSequence();
-    return isSingle ? new SeqIterSingle() : new SeqIter();
+    return isSingle ? new SeqIterSingle() : new SeqIter(null, null);
+  }
+
+  /**
+   * Iterate over the obs that may be in the time range and lat/lon box. Once the file has a {@link MessageIndex},
+   * the messages that are known to have no obs in them are skipped without being read. The caller must still check
+   * each obs.
+   *
+   * @param dateRange the time range, or null for all times.
+   * @param bbox the lat/lon box, or null for everywhere.
+   */
+  public StructureDataIterator getStructureIterator(@Nullable CalendarDateRange dateRange, @Nullable LatLonRect bbox) {
+    findRootSequence();
+    return isSingle ? new SeqIterSingle() : new SeqIter(dateRange, bbox);
   }
 
   private void findRootSequence() {
@@ -164,10 +211,25 @@ public class BufrIosp extends AbstractIOServiceProvider {
   }
 
   private class SeqIter implements StructureDataIterator {
+    private final CalendarDateRange dateRange;
+    private final LatLonRect bbox;
+    private final boolean filtered;
     StructureDataIterator currIter;
     int recnum;
 
-    SeqIter() {
+    // reading from the index
+    private MessageIndex index;
+    private int protoSignature;
+    private int entryIdx;
+
+    // scanning the file, which makes the index
+    private List<MessageIndex.Entry> entries;
+    private StandardFields.StandardFieldsFromStructure extract;
+
+    SeqIter(@Nullable CalendarDateRange dateRange, @Nullable LatLonRect bbox) {
+      this.dateRange = dateRange;
+      this.bbox = bbox;
+      this.filtered = dateRange != null || bbox != null;
       reset();
     }
 
@@ -176,6 +238,13 @@ public class BufrIosp extends AbstractIOServiceProvider {
       recnum = 0;
       currIter = null;
       scanner.reset();
+      index = useIndex() ? messageIndex : null;
+      if (index != null) {
+        protoSignature = MessageIndex.signature(protoMessage);
+        entryIdx = 0;
+      } else {
+        entries = new ArrayList<>();
+      }
       return this;
     }
 
@@ -184,7 +253,8 @@ public class BufrIosp extends AbstractIOServiceProvider {
       if (currIter == null) {
         currIter = readNextMessage();
         if (currIter == null) {
-          nelems = recnum;
+          if (!filtered)
+            nelems = recnum;
           return false;
         }
       }
@@ -204,15 +274,37 @@ public class BufrIosp extends AbstractIOServiceProvider {
     }
 
     private StructureDataIterator readNextMessage() throws IOException {
-      if (!scanner.hasNext())
+      return (index != null) ? readNextIndexedMessage() : scanNextMessage();
+    }
+
+    private StructureDataIterator readNextIndexedMessage() throws IOException {
+      while (entryIdx < index.getEntries().size()) {
+        MessageIndex.Entry entry = index.getEntries().get(entryIdx++);
+        if (entry.isTable() || entry.getSignature() != protoSignature || !entry.intersects(dateRange, bbox))
+          continue;
+        Message m = scanner.readMessage(entry.getStart(), entry.getHeaderLength());
+        if (m == null || !protoMessage.equals(m))
+          continue;
+        return readMessage(m).getStructureDataIterator();
+      }
+      return null;
+    }
+
+    private StructureDataIterator scanNextMessage() throws IOException {
+      if (!scanner.hasNext()) {
+        finishIndex();
         return null;
+      }
       Message m = scanner.next();
       if (m == null) {
         log.warn("BUFR scanner hasNext() true but next() null!");
+        entries = null; // something is wrong with the file, dont make an index
         return null;
       }
-      if (m.containsBufrTable()) // data messages only
-        return readNextMessage();
+      if (m.containsBufrTable()) { // data messages only
+        addEntry(m, null);
+        return scanNextMessage();
+      }
 
       // mixed messages
       if (!protoMessage.equals(m)) {
@@ -223,13 +315,35 @@ public class BufrIosp extends AbstractIOServiceProvider {
               + "; skipping");
           messHash.add(m.hashCode());
         }
-        return readNextMessage();
+        addEntry(m, null);
+        return scanNextMessage();
       }
 
       ArrayStructure as = readMessage(m);
+      addEntry(m, as);
       return as.getStructureDataIterator();
     }
 
+    private void addEntry(Message m, @Nullable ArrayStructure as) {
+      if (entries == null)
+        return;
+      if (as != null && extract == null)
+        extract = new StandardFields.StandardFieldsFromStructure(protoMessage.ids.getCenterId(), obsStructure);
+      entries.add(MessageIndex.makeEntry(m, scanner.getHeaderLength(), as, extract));
+    }
+
+    // all the messages have been scanned, so the index is complete
+    private void finishIndex() {
+      if (entries == null || messageIndex != null)
+        return;
+      MessageIndex result = new MessageIndex(entries);
+      entries = null;
+      if (!result.hasTables()) {
+        result.writeIndex(raf.getLocation());
+      }
+      messageIndex = result;
+    }
+
     private ArrayStructure readMessage(Message m) throws IOException {
       ArrayStructure as;
       if (m.dds.isCompressed()) {
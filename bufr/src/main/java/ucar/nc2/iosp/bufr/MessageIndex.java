@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.ma2.ArrayStructure;
+import ucar.ma2.StructureData;
+import ucar.nc2.ft.point.bufr.BufrCdmIndexProto;
+import ucar.nc2.ft.point.bufr.StandardFields;
+import ucar.nc2.internal.util.DiskCache;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * An index of the messages in a BUFR file, kept next to it like the gbx9 index of a GRIB file.
+ * For each message it has where the message is, its descriptor signature, and the time range and lat/lon bounds of
+ * its obs. BufrIosp uses it to read the messages without scanning the file for them, and to skip the messages that a
+ * query can't want.
+ * <p>
+ * BufrIosp makes the index the first time it reads all the obs in the file. The index is kept in the
+ * {@link DiskCache}, as the file name plus ".bfx", and remade if the file changes.
+ */
+@Immutable
+public class MessageIndex {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MessageIndex.class);
+
+  public static final String BFX_IDX = ".bfx";
+  private static final int MAGIC = 0x42465831; // "BFX1"
+  private static final int VERSION = 2;
+
+  /** The descriptor signature of a message: messages with the same one have the same obs structure. */
+  public static int signature(Message m) {
+    int result = m.dds.getDataDescriptors().hashCode();
+    result = 31 * result + m.ids.getCenterId();
+    result = 31 * result + m.ids.getCategory();
+    return 31 * result + m.ids.getSubCategory();
+  }
+
+  /** One message in the file. */
+  @Immutable
+  public static class Entry {
+    private final long start;
+    private final int headerLength;
+    private final int length;
+    private final int signature;
+    private final boolean isTable;
+    private final int nobs;
+    private final long timeStart; // Long.MAX_VALUE if unknown
+    private final long timeEnd;
+    private final double latMin; // NaN if unknown
+    private final double latMax;
+    private final double lonMin;
+    private final double lonMax;
+
+    private Entry(long start, int headerLength, int length, int signature, boolean isTable, int nobs, long timeStart,
+        long timeEnd, double latMin, double latMax, double lonMin, double lonMax) {
+      this.start = start;
+      this.headerLength = headerLength;
+      this.length = length;
+      this.signature = signature;
+      this.isTable = isTable;
+      this.nobs = nobs;
+      this.timeStart = timeStart;
+      this.timeEnd = timeEnd;
+      this.latMin = latMin;
+      this.latMax = latMax;
+      this.lonMin = lonMin;
+      this.lonMax = lonMax;
+    }
+
+    /** The position of the message in the file. */
+    public long getStart() {
+      return start;
+    }
+
+    /** The length of the bulletin header just before the message. */
+    public int getHeaderLength() {
+      return headerLength;
+    }
+
+    /** The length of the message in bytes. */
+    public int getLength() {
+      return length;
+    }
+
+    public int getSignature() {
+      return signature;
+    }
+
+    /** True if the message holds BUFR tables instead of data. */
+    public boolean isTable() {
+      return isTable;
+    }
+
+    public int getNumberObs() {
+      return nobs;
+    }
+
+    /** True if the time range of the obs is known. */
+    public boolean hasTimeRange() {
+      return timeStart <= timeEnd;
+    }
+
+    @Nullable
+    public CalendarDateRange getTimeRange() {
+      return hasTimeRange() ? CalendarDateRange.of(CalendarDate.of(timeStart), CalendarDate.of(timeEnd)) : null;
+    }
+
+    /** True if the lat/lon bounds of the obs are known. */
+    public boolean hasBounds() {
+      return !Double.isNaN(latMin);
+    }
+
+    @Nullable
+    public LatLonRect getBounds() {
+      // not LatLonRect(lat0, lon0, lat1, lon1), which takes lonMin == lonMax to be all longitudes
+      return hasBounds() ? new LatLonRect(LatLonPoint.create(latMin, lonMin), latMax - latMin, lonMax - lonMin) : null;
+    }
+
+    /**
+     * Might the message have obs in the time range and lat/lon box? Only false if it is known not to.
+     *
+     * @param dateRange the time range, or null for all times.
+     * @param bbox the lat/lon box, or null for everywhere.
+     */
+    public boolean intersects(@Nullable CalendarDateRange dateRange, @Nullable LatLonRect bbox) {
+      if (dateRange != null && hasTimeRange()
+          && (timeEnd < dateRange.getStart().getMillis() || timeStart > dateRange.getEnd().getMillis())) {
+        return false;
+      }
+      if (bbox != null && hasBounds()) {
+        if (latMax < bbox.getLatMin() || latMin > bbox.getLatMax()) {
+          return false;
+        }
+        return bbox.isAllLongitude() || overlaps(bbox, 0) || overlaps(bbox, 360) || overlaps(bbox, -360);
+      }
+      return true;
+    }
+
+    private boolean overlaps(LatLonRect bbox, double shift) {
+      return lonMin + shift <= bbox.getLonMax() && bbox.getLonMin() <= lonMax + shift;
+    }
+
+    @Override
+    public String toString() {
+      return "Entry{start=" + start + ", headerLength=" + headerLength + ", length=" + length + ", signature="
+          + signature + ", isTable=" + isTable + ", nobs=" + nobs + ", timeRange=" + getTimeRange() + ", bounds="
+          + getBounds() + '}';
+    }
+  }
+
+  /**
+   * Make the Entry for a message.
+   *
+   * @param m the message.
+   * @param headerLength the length of the bulletin header before the message.
+   * @param obs the obs in the message, or null if they weren't read.
+   * @param extract finds the time, lat and lon of an obs, or null if they weren't read.
+   */
+  static Entry makeEntry(Message m, int headerLength, @Nullable ArrayStructure obs,
+      @Nullable StandardFields.StandardFieldsFromStructure extract) {
+    long timeStart = Long.MAX_VALUE;
+    long timeEnd = Long.MIN_VALUE;
+    double latMin = Double.NaN;
+    double latMax = Double.NaN;
+    double lonMin = Double.NaN;
+    double lonMax = Double.NaN;
+
+    if (obs != null && extract != null && obs.getSize() > 0) {
+      boolean hasTime = extract.hasField(BufrCdmIndexProto.FldType.year);
+      boolean hasLatLon =
+          extract.hasField(BufrCdmIndexProto.FldType.lat) && extract.hasField(BufrCdmIndexProto.FldType.lon);
+      latMin = lonMin = Double.MAX_VALUE;
+      latMax = lonMax = -Double.MAX_VALUE;
+
+      for (int i = 0; i < obs.getSize() && (hasTime || hasLatLon); i++) {
+        StructureData sdata = obs.getStructureData(i);
+        extract.extract(sdata);
+        if (hasTime) {
+          CalendarDate date = null;
+          try {
+            date = extract.makeCalendarDate();
+          } catch (RuntimeException e) {
+            // bad or missing date fields
+          }
+          if (date == null) {
+            hasTime = false; // the range of the others wouldn't be the range of all of them
+          } else {
+            timeStart = Math.min(timeStart, date.getMillis());
+            timeEnd = Math.max(timeEnd, date.getMillis());
+          }
+        }
+        if (hasLatLon) {
+          double lat = extract.getFieldValueD(BufrCdmIndexProto.FldType.lat);
+          double lon = extract.getFieldValueD(BufrCdmIndexProto.FldType.lon);
+          if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 360)) { // also catches NaN and missing values
+            hasLatLon = false;
+          } else {
+            latMin = Math.min(latMin, lat);
+            latMax = Math.max(latMax, lat);
+            lonMin = Math.min(lonMin, lon);
+            lonMax = Math.max(lonMax, lon);
+          }
+        }
+      }
+
+      if (!hasTime) {
+        timeStart = Long.MAX_VALUE;
+        timeEnd = Long.MIN_VALUE;
+      }
+      if (!hasLatLon) {
+        latMin = latMax = lonMin = lonMax = Double.NaN;
+      }
+    }
+
+    return new Entry(m.getStartPos(), headerLength, m.is.getBufrLength(), signature(m), m.containsBufrTable(),
+        m.getNumberDatasets(), timeStart, timeEnd, latMin, latMax, lonMin, lonMax);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  private final ImmutableList<Entry> entries;
+
+  MessageIndex(List<Entry> entries) {
+    this.entries = ImmutableList.copyOf(entries);
+  }
+
+  /** The messages, in the order they are in the file. */
+  public ImmutableList<Entry> getEntries() {
+    return entries;
+  }
+
+  /** True if the file has BUFR table messages, which must be read in order before the data messages. */
+  public boolean hasTables() {
+    return entries.stream().anyMatch(Entry::isTable);
+  }
+
+  /** The first message with obs, or null if there is none. */
+  @Nullable
+  public Entry getFirstDataEntry() {
+    return entries.stream().filter(e -> !e.isTable() && e.getNumberObs() > 0).findFirst().orElse(null);
+  }
+
+  /**
+   * Read the index of a BUFR file.
+   *
+   * @param location the BUFR file.
+   * @return the index, or null if there is none, or it was made for another version of the file.
+   */
+  @Nullable
+  public static MessageIndex readIndex(String location) {
+    File file = new File(location);
+    File indexFile = DiskCache.getFileStandardPolicy(location + BFX_IDX);
+    if (!file.exists() || !indexFile.exists()) {
+      return null;
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(indexFile))))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != file.length()
+          || in.readLong() != file.lastModified()) {
+        return null;
+      }
+      int n = in.readInt();
+      List<Entry> entries = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        entries.add(new Entry(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readBoolean(), in.readInt(),
+            in.readLong(), in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()));
+      }
+      return new MessageIndex(entries);
+
+    } catch (IOException e) {
+      log.warn("Failed to read index {}, will remake it", indexFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Write the index of a BUFR file.
+   *
+   * @param location the BUFR file.
+   * @return true if it was written.
+   */
+  public boolean writeIndex(String location) {
+    File file = new File(location);
+    File indexFile = DiskCache.getFileStandardPolicy(location + BFX_IDX);
+    // write to a temporary file then rename, so that others never see half an index
+    File tempFile = null;
+    try {
+      File dir = indexFile.getAbsoluteFile().getParentFile();
+      tempFile = Files.createTempFile(dir.toPath(), indexFile.getName(), ".tmp").toFile();
+      try (DataOutputStream out =
+          new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+          out.writeLong(e.start);
+          out.writeInt(e.headerLength);
+          out.writeInt(e.length);
+          out.writeInt(e.signature);
+          out.writeBoolean(e.isTable);
+          out.writeInt(e.nobs);
+          out.writeLong(e.timeStart);
+          out.writeLong(e.timeEnd);
+          out.writeDouble(e.latMin);
+          out.writeDouble(e.latMax);
+          out.writeDouble(e.lonMin);
+          out.writeDouble(e.lonMax);
+        }
+      }
+      Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return true;
+
+    } catch (IOException e) {
+      log.debug("Failed to write index {}", indexFile, e); // the index is only kept in memory
+      return false;
+
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile.toPath());
+        } catch (IOException e) {
+          log.debug("Failed to delete {}", tempFile, e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MessageIndex{" + entries.size() + " messages}";
+  }
+}
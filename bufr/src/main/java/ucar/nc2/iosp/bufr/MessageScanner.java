@@ -110,6 +110,32 @@ public class MessageScanner {
     return more;
   }
 
+  /**
+   * Read the message that starts at startPos, eg from a {@link MessageIndex}, without scanning for it.
+   * Embedded tables are only found when the messages are read in order with hasNext() and next().
+   *
+   * @param startPos where "BUFR" starts.
+   * @param headerLength the length of the bulletin header just before startPos, from {@link #getHeaderLength()}.
+   * @return the message, or null if its not a good one.
+   */
+  public Message readMessage(long startPos, int headerLength) throws IOException {
+    header = new byte[headerLength];
+    this.startPos = startPos - headerLength;
+    lastPos = startPos;
+    raf.seek(this.startPos);
+    int nRead = raf.read(header);
+    if (nRead != header.length) {
+      log.warn("Unable to read full BUFR header. Got " + nRead + " but expected " + header.length);
+      return null;
+    }
+    return next();
+  }
+
+  /** The length of the bulletin header before the last message found by hasNext() or readMessage(). */
+  public int getHeaderLength() {
+    return header == null ? 0 : header.length;
+  }
+
   public Message next() {
 
     try {
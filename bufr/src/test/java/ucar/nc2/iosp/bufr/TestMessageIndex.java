@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Structure;
+import ucar.nc2.ft.point.bufr.StandardFields;
+import ucar.nc2.internal.util.DiskCache;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.time.CalendarPeriod;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test {@link MessageIndex} */
+public class TestMessageIndex {
+  private static final String unitDir = "../bufr/src/test/data/";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static int countObs(BufrIosp iosp, CalendarDateRange dateRange, LatLonRect bbox) throws IOException {
+    int count = 0;
+    StructureDataIterator iter = iosp.getStructureIterator(dateRange, bbox);
+    while (iter.hasNext()) {
+      iter.next();
+      count++;
+    }
+    iter.close();
+    return count;
+  }
+
+  private static int countIndexedObs(MessageIndex index) {
+    return index.getEntries().stream().filter(e -> !e.isTable()).mapToInt(MessageIndex.Entry::getNumberObs).sum();
+  }
+
+  // the times of the obs, from reading every ob and extracting its own time
+  private static List<CalendarDate> readObTimes(NetcdfFile ncfile, StructureDataIterator iter) throws IOException {
+    BufrIosp iosp = (BufrIosp) ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+    StandardFields.StandardFieldsFromStructure extract = new StandardFields.StandardFieldsFromStructure(
+        iosp.protoMessage.ids.getCenterId(), (Structure) ncfile.findVariable(BufrIosp.obsRecordName));
+    List<CalendarDate> result = new ArrayList<>();
+    try {
+      while (iter.hasNext()) {
+        extract.extract(iter.next());
+        result.add(extract.makeCalendarDate());
+      }
+    } finally {
+      iter.close();
+    }
+    return result;
+  }
+
+  private static List<Integer> countObsPerMessage(String location) throws IOException {
+    List<Integer> result = new ArrayList<>();
+    try (RandomAccessFile raf = new RandomAccessFile(location, "r")) {
+      MessageScanner scanner = new MessageScanner(raf);
+      while (scanner.hasNext()) {
+        Message m = scanner.next();
+        if (m != null && !m.containsBufrTable()) {
+          result.add(m.getNumberDatasets());
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean contains(CalendarDateRange range, CalendarDate date) {
+    return !date.isBefore(range.getStart()) && !date.isAfter(range.getEnd());
+  }
+
+  // the number of obs in the messages with at least one ob in the range, from the full scan
+  private static int countObsInMessages(List<List<CalendarDate>> messageTimes, CalendarDateRange range) {
+    int count = 0;
+    for (List<CalendarDate> times : messageTimes) {
+      if (times.stream().anyMatch(date -> contains(range, date))) {
+        count += times.size();
+      }
+    }
+    return count;
+  }
+
+  // three copies of RadiosondeStationData.bufr, with the day of the ob changed to 13, 14 and 16
+  @Test
+  public void testMakeAndUseIndex() throws IOException {
+    File copy = tempFolder.newFile("RadiosondeStationDays.bufr");
+    Files.copy(new File(unitDir + "RadiosondeStationDays.bufr").toPath(), copy.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    String location = copy.getPath();
+
+    List<CalendarDate> allTimes;
+    List<Attribute> firstAtts;
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      firstAtts = ImmutableList.copyOf(ncfile.getRootGroup().attributes());
+      assertThat(ncfile.getRootGroup().findAttributeString("WMO_Header", null)).isEqualTo("IUKD07 DWSU 130600 COR");
+      BufrIosp iosp = (BufrIosp) ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+      assertThat(iosp.getMessageIndex()).isNull();
+      allTimes = readObTimes(ncfile, iosp.getStructureIterator(null, null));
+
+      // reading all the obs makes the index
+      MessageIndex index = iosp.getMessageIndex();
+      assertThat(index).isNotNull();
+      assertThat(index.hasTables()).isFalse();
+      assertThat(countIndexedObs(index)).isEqualTo(allTimes.size());
+    }
+    assertThat(DiskCache.getFileStandardPolicy(location + MessageIndex.BFX_IDX).exists()).isTrue();
+    int total = allTimes.size();
+    assertThat(total).isEqualTo(3);
+
+    // group the times of the full scan by message
+    List<List<CalendarDate>> messageTimes = new ArrayList<>();
+    int next = 0;
+    for (int n : countObsPerMessage(location)) {
+      messageTimes.add(allTimes.subList(next, next + n));
+      next += n;
+    }
+    assertThat(next).isEqualTo(total);
+    assertThat(messageTimes).hasSize(3);
+
+    MessageIndex index = MessageIndex.readIndex(location);
+    assertThat(index).isNotNull();
+    assertThat(countIndexedObs(index)).isEqualTo(total);
+    MessageIndex.Entry first = index.getFirstDataEntry();
+    assertThat(first).isNotNull();
+    assertThat(first.hasTimeRange()).isTrue();
+    assertThat(first.hasBounds()).isTrue();
+
+    // reopen, now the messages are read from the index
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      BufrIosp iosp = (BufrIosp) ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+      assertThat(iosp.getMessageIndex()).isNotNull();
+      assertThat(countObs(iosp, null, null)).isEqualTo(total);
+      // the prototype message read from the index has the same bulletin header
+      assertThat(ImmutableList.copyOf(ncfile.getRootGroup().attributes())).containsExactlyElementsIn(firstAtts);
+
+      // around the second ob only, the first two obs, between the second and third obs, and before all the obs
+      CalendarDate second = messageTimes.get(1).get(0);
+      CalendarDateRange[] ranges = {
+          CalendarDateRange.of(second.add(-1, CalendarPeriod.Field.Hour), second.add(1, CalendarPeriod.Field.Hour)),
+          CalendarDateRange.of(allTimes.get(0), second),
+          CalendarDateRange.of(second.add(1, CalendarPeriod.Field.Day), second.add(36, CalendarPeriod.Field.Hour)),
+          CalendarDateRange.of(second.add(-1000, CalendarPeriod.Field.Year),
+              second.add(-999, CalendarPeriod.Field.Year))};
+      int[] wantInRange = {1, 2, 0, 0};
+
+      for (int i = 0; i < ranges.length; i++) {
+        CalendarDateRange range = ranges[i];
+        long inRange = allTimes.stream().filter(date -> contains(range, date)).count();
+        assertThat(inRange).isEqualTo(wantInRange[i]);
+
+        // only the messages with obs in the range are read, and none of the obs in the range are missed
+        List<CalendarDate> times = readObTimes(ncfile, iosp.getStructureIterator(range, null));
+        assertThat(times).hasSize(countObsInMessages(messageTimes, range));
+        assertThat(times.stream().filter(date -> contains(range, date)).count()).isEqualTo(inRange);
+      }
+    }
+
+    // the index is remade if the file changes
+    assertThat(copy.setLastModified(copy.lastModified() - 60 * 1000)).isTrue();
+    assertThat(MessageIndex.readIndex(location)).isNull();
+  }
+
+  @Test
+  public void testIntersects() throws IOException {
+    File copy = tempFolder.newFile("RadiosondeStationData.bufr");
+    Files.copy(new File(unitDir + "RadiosondeStationData.bufr").toPath(), copy.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(copy.getPath())) {
+      BufrIosp iosp = (BufrIosp) ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+      countObs(iosp, null, null);
+      MessageIndex.Entry entry = iosp.getMessageIndex().getFirstDataEntry();
+      LatLonRect bounds = entry.getBounds();
+      assertThat(bounds).isNotNull();
+
+      assertThat(entry.intersects(null, null)).isTrue();
+      assertThat(entry.intersects(entry.getTimeRange(), bounds)).isTrue();
+
+      assertThat(bounds.isAllLongitude()).isFalse();
+      double centerLat = (bounds.getLatMin() + bounds.getLatMax()) / 2;
+      LatLonRect around = new LatLonRect(LatLonPoint.create(centerLat - 1, bounds.getCenterLon() - 1), 2, 2);
+      assertThat(entry.intersects(null, around)).isTrue();
+
+      // a box near a pole, away from the obs
+      LatLonRect elsewhere =
+          (bounds.getLatMin() > -80) ? new LatLonRect(-89, 0, -85, 10) : new LatLonRect(85, 0, 89, 10);
+      assertThat(entry.intersects(null, elsewhere)).isFalse();
+    }
+  }
+}
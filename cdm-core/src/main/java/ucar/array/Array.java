@@ -6,6 +6,12 @@ package ucar.array;
 
 import com.google.common.base.Objects;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 import javax.annotation.concurrent.Immutable;
 
 /** Superclass for implementations of multidimensional arrays. */
@@ -32,6 +38,65 @@ public abstract class Array<T> implements Iterable<T> {
    */
   public abstract T get(Index index);
 
+  /**
+   * Get the element indicated by the list of multidimensional indices as a double, without boxing. Same as
+   * get(index).doubleValue(), so unsigned types are not widened.
+   *
+   * @throws UnsupportedOperationException if the Array is not numeric.
+   */
+  public double getDouble(int... index) {
+    return storage().getDouble(indexFn.getLong(index));
+  }
+
+  /** Get the element indicated by Index as a double, without boxing. */
+  public double getDouble(Index index) {
+    return getDouble(index.getCurrentIndex());
+  }
+
+  /** Get the element indicated by the list of multidimensional indices as a float, without boxing. */
+  public float getFloat(int... index) {
+    return storage().getFloat(indexFn.getLong(index));
+  }
+
+  /** Get the element indicated by Index as a float, without boxing. */
+  public float getFloat(Index index) {
+    return getFloat(index.getCurrentIndex());
+  }
+
+  /**
+   * The elements in canonical order as doubles, without boxing.
+   *
+   * @throws UnsupportedOperationException on a terminal operation, if the Array is not numeric.
+   */
+  public DoubleStream doubleStream() {
+    Storage<T> storage = storage();
+    if (indexFn.isCanonicalOrder()) {
+      return LongStream.range(0, length()).mapToDouble(storage::getDouble);
+    }
+    Spliterator.OfLong elems = Spliterators.spliterator(indexFn.longIterator(), length(), Spliterator.ORDERED);
+    return StreamSupport.longStream(elems, false).mapToDouble(storage::getDouble);
+  }
+
+  /**
+   * Copy all the elements in canonical order to dest as doubles, without boxing.
+   *
+   * @param dest copy to here, must have room for length() elements starting at destPos.
+   * @param destPos starting position in dest.
+   * @throws UnsupportedOperationException if the Array is not numeric.
+   */
+  public void copyTo(double[] dest, int destPos) {
+    Storage<T> storage = storage();
+    if (indexFn.isCanonicalOrder()) {
+      storage.copyTo(0, dest, destPos, (int) length());
+    } else {
+      int destIndex = destPos;
+      PrimitiveIterator.OfLong iter = indexFn.longIterator();
+      while (iter.hasNext()) {
+        dest[destIndex++] = storage.getDouble(iter.nextLong());
+      }
+    }
+  }
+
   /** Get the first element of the Array */
   public T getScalar() {
     return this.get(this.getIndex());
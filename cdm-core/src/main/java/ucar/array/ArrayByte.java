@@ -9,6 +9,7 @@ import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Byte. */
@@ -48,7 +49,7 @@ final class ArrayByte extends Array<Byte> {
 
   @Override
   public Byte get(int... index) {
-    return storage.get(indexFn.get(index));
+    return storage.get(indexFn.getLong(index));
   }
 
   @Override
@@ -63,16 +64,16 @@ final class ArrayByte extends Array<Byte> {
     } else {
       byte[] ddest = (byte[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = storage.get(iter.nextLong());
       }
     }
   }
 
   /** Convert the Array into a ByteString. */
   ByteString getByteString() {
-    if (indexFn.isCanonicalOrder()) {
+    if (indexFn.isCanonicalOrder() && storage instanceof StorageS) {
       return ByteString.copyFrom(((StorageS) storage).storage);
     }
 
@@ -86,7 +87,7 @@ final class ArrayByte extends Array<Byte> {
 
   /** Convert the Array into a ByteBuffer. */
   ByteBuffer getByteBuffer() {
-    if (indexFn.isCanonicalOrder()) {
+    if (indexFn.isCanonicalOrder() && storage instanceof StorageS) {
       return ByteBuffer.wrap(((StorageS) storage).storage);
     }
     ByteBuffer result = ByteBuffer.allocate((int) this.length());
@@ -174,7 +175,7 @@ final class ArrayByte extends Array<Byte> {
 
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Byte> {
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -183,7 +184,7 @@ final class ArrayByte extends Array<Byte> {
 
     @Override
     public Byte next() {
-      return storage.get(iter.next());
+      return storage.get(iter.nextLong());
     }
   }
 
@@ -211,6 +212,24 @@ final class ArrayByte extends Array<Byte> {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int start = (int) srcPos;
+      for (int i = 0; i < length; i++) {
+        dest[destPos + i] = storage[start + i];
+      }
+    }
+
     @Override
     public Iterator<Byte> iterator() {
       return new StorageIter();
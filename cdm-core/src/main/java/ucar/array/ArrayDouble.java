@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.List;
 import javax.annotation.concurrent.Immutable;
 
@@ -49,7 +50,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
 
   @Override
   public Double get(int... index) {
-    return storageD.get(indexFn.get(index));
+    return storageD.get(indexFn.getLong(index));
   }
 
   @Override
@@ -64,9 +65,9 @@ final class ArrayDouble extends ucar.array.Array<Double> {
     } else {
       double[] ddest = (double[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storageD.get(iter.next());
+        ddest[destIndex++] = storageD.get(iter.nextLong());
       }
     }
   }
@@ -84,7 +85,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
 
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Double> {
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -93,7 +94,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
 
     @Override
     public Double next() {
-      return storageD.get(iter.next());
+      return storageD.get(iter.nextLong());
     }
   }
 
@@ -121,6 +122,21 @@ final class ArrayDouble extends ucar.array.Array<Double> {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return (float) storage[(int) elem];
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      System.arraycopy(storage, (int) srcPos, dest, destPos, length);
+    }
+
     @Override
     public Iterator<Double> iterator() {
       return new StorageDIter();
@@ -196,6 +212,39 @@ final class ArrayDouble extends ucar.array.Array<Double> {
       }
     }
 
+    @Override
+    public double getDouble(long elem) {
+      int search = Arrays.binarySearch(arrayEdge, elem);
+      int arrayIndex = (search < 0) ? -search - 2 : search;
+      return dataArrays.get(arrayIndex).getDouble(elem - arrayEdge[arrayIndex]);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      int search = Arrays.binarySearch(arrayEdge, elem);
+      int arrayIndex = (search < 0) ? -search - 2 : search;
+      return dataArrays.get(arrayIndex).getFloat(elem - arrayEdge[arrayIndex]);
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int needed = length;
+      int startDst = destPos;
+
+      int search = Arrays.binarySearch(arrayEdge, srcPos);
+      int startIndex = (search < 0) ? -search - 2 : search;
+      long startSrc = srcPos - arrayEdge[startIndex];
+
+      for (int index = startIndex; index < dataArrays.size() && needed > 0; index++) {
+        Storage<Double> storage = dataArrays.get(index);
+        int have = (int) Math.min(storage.length() - startSrc, needed);
+        storage.copyTo(startSrc, dest, startDst, have);
+        needed -= have;
+        startDst += have;
+        startSrc = 0;
+      }
+    }
+
     @Override
     public Iterator<Double> iterator() {
       return new StorageDMIter();
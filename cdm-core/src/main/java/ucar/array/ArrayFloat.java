@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.List;
 import javax.annotation.concurrent.Immutable;
 
@@ -50,7 +51,7 @@ final class ArrayFloat extends Array<Float> {
 
   @Override
   public Float get(int... index) {
-    return storageF.get(indexFn.get(index));
+    return storageF.get(indexFn.getLong(index));
   }
 
   @Override
@@ -65,9 +66,9 @@ final class ArrayFloat extends Array<Float> {
     } else {
       float[] ddest = (float[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storageF.get(iter.next());
+        ddest[destIndex++] = storageF.get(iter.nextLong());
       }
     }
   }
@@ -85,7 +86,7 @@ final class ArrayFloat extends Array<Float> {
 
   private class CanonicalIterator implements Iterator<Float> {
     // used when the data is not in canonical order
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -94,7 +95,7 @@ final class ArrayFloat extends Array<Float> {
 
     @Override
     public Float next() {
-      return storageF.get(iter.next());
+      return storageF.get(iter.nextLong());
     }
   }
 
@@ -121,6 +122,24 @@ final class ArrayFloat extends Array<Float> {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int start = (int) srcPos;
+      for (int i = 0; i < length; i++) {
+        dest[destPos + i] = storage[start + i];
+      }
+    }
+
     @Override
     public Iterator<Float> iterator() {
       return new StorageFIter();
@@ -194,6 +213,39 @@ final class ArrayFloat extends Array<Float> {
       }
     }
 
+    @Override
+    public double getDouble(long elem) {
+      int search = Arrays.binarySearch(arrayEdge, elem);
+      int arrayIndex = (search < 0) ? -search - 2 : search;
+      return dataArrays.get(arrayIndex).getDouble(elem - arrayEdge[arrayIndex]);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      int search = Arrays.binarySearch(arrayEdge, elem);
+      int arrayIndex = (search < 0) ? -search - 2 : search;
+      return dataArrays.get(arrayIndex).getFloat(elem - arrayEdge[arrayIndex]);
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int needed = length;
+      int startDst = destPos;
+
+      int search = Arrays.binarySearch(arrayEdge, srcPos);
+      int startIndex = (search < 0) ? -search - 2 : search;
+      long startSrc = srcPos - arrayEdge[startIndex];
+
+      for (int index = startIndex; index < dataArrays.size() && needed > 0; index++) {
+        Storage<Float> storage = dataArrays.get(index);
+        int have = (int) Math.min(storage.length() - startSrc, needed);
+        storage.copyTo(startSrc, dest, startDst, have);
+        needed -= have;
+        startDst += have;
+        startSrc = 0;
+      }
+    }
+
     @Override
     public Iterator<Float> iterator() {
       return new StorageFMIter();
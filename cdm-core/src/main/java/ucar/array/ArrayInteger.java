@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Integer. */
@@ -47,7 +48,7 @@ class ArrayInteger extends Array<Integer> {
 
   @Override
   public Integer get(int... index) {
-    return storage.get(indexFn.get(index));
+    return storage.get(indexFn.getLong(index));
   }
 
   @Override
@@ -62,9 +63,9 @@ class ArrayInteger extends Array<Integer> {
     } else {
       int[] ddest = (int[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = storage.get(iter.nextLong());
       }
     }
   }
@@ -82,7 +83,7 @@ class ArrayInteger extends Array<Integer> {
 
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Integer> {
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -91,7 +92,7 @@ class ArrayInteger extends Array<Integer> {
 
     @Override
     public Integer next() {
-      return storage.get(iter.next());
+      return storage.get(iter.nextLong());
     }
   }
 
@@ -119,6 +120,24 @@ class ArrayInteger extends Array<Integer> {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return (float) storage[(int) elem];
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int start = (int) srcPos;
+      for (int i = 0; i < length; i++) {
+        dest[destPos + i] = storage[start + i];
+      }
+    }
+
     @Override
     public Iterator<Integer> iterator() {
       return new StorageIter();
@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Long. */
@@ -45,7 +46,7 @@ final class ArrayLong extends Array<Long> {
 
   @Override
   public Long get(int... index) {
-    return storage.get(indexFn.get(index));
+    return storage.get(indexFn.getLong(index));
   }
 
   @Override
@@ -60,9 +61,9 @@ final class ArrayLong extends Array<Long> {
     } else {
       long[] ddest = (long[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = storage.get(iter.nextLong());
       }
     }
   }
@@ -80,7 +81,7 @@ final class ArrayLong extends Array<Long> {
 
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Long> {
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -89,7 +90,7 @@ final class ArrayLong extends Array<Long> {
 
     @Override
     public Long next() {
-      return storage.get(iter.next());
+      return storage.get(iter.nextLong());
     }
   }
 
@@ -117,6 +118,24 @@ final class ArrayLong extends Array<Long> {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return (float) storage[(int) elem];
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      int start = (int) srcPos;
+      for (int i = 0; i < length; i++) {
+        dest[destPos + i] = storage[start + i];
+      }
+    }
+
     @Override
     public Iterator<Long> iterator() {
       return new StorageIter();
@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Strings. */
@@ -45,7 +46,7 @@ final class ArrayString extends Array<String> {
 
   @Override
   public String get(int... index) {
-    return storage.get(indexFn.get(index));
+    return storage.get(indexFn.getLong(index));
   }
 
   @Override
@@ -60,9 +61,9 @@ final class ArrayString extends Array<String> {
     } else {
       String[] ddest = (String[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfLong iter = indexFn.longIterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = storage.get(iter.nextLong());
       }
     }
   }
@@ -80,7 +81,7 @@ final class ArrayString extends Array<String> {
 
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<String> {
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -89,7 +90,7 @@ final class ArrayString extends Array<String> {
 
     @Override
     public String next() {
-      return storage.get(iter.next());
+      return storage.get(iter.nextLong());
     }
   }
 
@@ -10,6 +10,7 @@ import com.google.protobuf.ByteString;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.PrimitiveIterator;
 
 /** Static helper classes for {@link Array} */
 public class Arrays {
@@ -248,6 +249,23 @@ public class Arrays {
     return all;
   }
 
+  /**
+   * Create Array using ByteBuffers as storage, without copying. These may be direct buffers off the heap, or memory
+   * mapped regions of a file, and there may be many of them, so the Array may have more than Integer.MAX_VALUE
+   * elements. Only for numeric and CHAR types.
+   *
+   * @param dataType data type of the data.
+   * @param shape multidimensional shape, must have the same total length as the buffers.
+   * @param buffers the data is from position to limit of each buffer, which must already have the byte order of the
+   *        data. Each buffer except the last must hold the same number of elements.
+   */
+  public static <T> Array<T> factoryBB(ArrayType dataType, int[] shape, List<ByteBuffer> buffers) {
+    Storage<T> storage = (Storage<T>) StorageBB.create(dataType, buffers);
+    Preconditions.checkArgument(storage.length() == computeSize(shape), "buffers have %s elements, shape has %s",
+        storage.length(), computeSize(shape));
+    return factory(dataType, shape, storage);
+  }
+
   // The only advantage over copying AFAICT is that it can handle arrays > 2G. as long as its broken up into
   // multiple arrays < 2G.
 
@@ -448,11 +466,8 @@ public class Arrays {
       case ENUM1:
       case UBYTE:
       case BYTE: {
-        Array<Byte> bdata = (Array<Byte>) data;
         byte[] parray = new byte[(int) data.length()];
-        for (byte val : bdata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case CHAR: {
@@ -466,46 +481,31 @@ public class Arrays {
       case ENUM2:
       case USHORT:
       case SHORT: {
-        Array<Short> sdata = (Array<Short>) data;
         short[] parray = new short[(int) data.length()];
-        for (short val : sdata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case ENUM4:
       case UINT:
       case INT: {
-        Array<Integer> idata = (Array<Integer>) data;
         int[] parray = new int[(int) data.length()];
-        for (int val : idata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case ULONG:
       case LONG: {
-        Array<Long> ldata = (Array<Long>) data;
         long[] parray = new long[(int) data.length()];
-        for (long val : ldata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case FLOAT: {
-        Array<Float> fdata = (Array<Float>) data;
         float[] parray = new float[(int) data.length()];
-        for (float val : fdata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case DOUBLE: {
-        Array<Double> ddata = (Array<Double>) data;
         double[] parray = new double[(int) data.length()];
-        for (double val : ddata) {
-          parray[idx++] = val;
-        }
+        data.arraycopy(0, parray, 0, parray.length);
         return parray;
       }
       case STRING: {
@@ -526,13 +526,8 @@ public class Arrays {
     if (array instanceof ArrayDouble) {
       return (Array<Double>) array;
     }
-    Array<Number> conv = (Array<Number>) array;
-    int n = (int) array.length();
-    double[] storage = new double[n];
-    int count = 0;
-    for (Number val : conv) {
-      storage[count++] = val.doubleValue();
-    }
+    double[] storage = new double[(int) array.length()];
+    array.copyTo(storage, 0);
     return factory(ArrayType.DOUBLE, array.getShape(), storage);
   }
 
@@ -542,9 +537,11 @@ public class Arrays {
     boolean hasEval = (eval != null && eval.hasMissing());
     double max = -Double.MAX_VALUE;
     double min = Double.MAX_VALUE;
-    if (a instanceof ArrayDouble) {
-      ArrayDouble ad = (ArrayDouble) a;
-      for (double val : ad) {
+    Storage<? extends Number> storage = a.storage();
+    if (a.indexFn.isCanonicalOrder()) {
+      long n = a.length();
+      for (long elem = 0; elem < n; elem++) {
+        double val = storage.getDouble(elem);
         if (hasEval && eval.isMissing(val)) {
           continue;
         }
@@ -554,8 +551,9 @@ public class Arrays {
           min = val;
       }
     } else {
-      for (Number number : a) {
-        double val = number.doubleValue();
+      PrimitiveIterator.OfLong iter = a.indexFn.longIterator();
+      while (iter.hasNext()) {
+        double val = storage.getDouble(iter.nextLong());
         if (hasEval && eval.isMissing(val)) {
           continue;
         }
@@ -237,6 +237,10 @@ public class ArraysConvert {
     if (from.isVlen()) {
       return convertVlen(from);
     }
+    if (from.getArrayType().isNumeric()) {
+      Object primArray = Arrays.copyPrimitiveArray(from);
+      return ucar.ma2.Array.factory(from.getArrayType().getDataType(), from.getShape(), primArray);
+    }
 
     ucar.ma2.Array values = ucar.ma2.Array.factory(from.getArrayType().getDataType(), from.getShape());
     int count = 0;
@@ -5,9 +5,11 @@
 package ucar.array;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import javax.annotation.concurrent.Immutable;
 
@@ -21,12 +23,22 @@ public final class IndexFn implements Iterable<Integer> {
    * @param index list of indices, one for each dimension. For vlen, the last is ignored.
    */
   public int get(int... index) {
+    return Math.toIntExact(getLong(index));
+  }
+
+  /**
+   * Get the 1-d index indicated by the list of multidimensional indices, which may be larger than Integer.MAX_VALUE
+   * when the storage is.
+   *
+   * @param index list of indices, one for each dimension. For vlen, the last is ignored.
+   */
+  public long getLong(int... index) {
     // scalar case
     if (this.rank == 0 && index.length == 1 && index[0] == 0) {
       return 0;
     }
     Preconditions.checkArgument(this.rank == index.length);
-    int value = offset;
+    long value = offset;
     for (int ii = 0; ii < rank; ii++) {
       if (index[ii] < 0 || index[ii] >= shape[ii]) {
         throw new IllegalArgumentException(String.format("IndexFn.get(%s) not inside of shape '%s'",
@@ -68,10 +80,20 @@ public final class IndexFn implements Iterable<Integer> {
   }
 
   public Iterator<Integer> iterator() {
-    return new Odometer();
+    return Iterators.transform(new Odometer(), Math::toIntExact);
   }
 
   public Iterator<Integer> iterator(int start, long length) {
+    return Iterators.transform(new Odometer(start, length), Math::toIntExact);
+  }
+
+  /** Same as iterator(), without boxing the element indices, which may be larger than Integer.MAX_VALUE. */
+  PrimitiveIterator.OfLong longIterator() {
+    return new Odometer();
+  }
+
+  /** Same as iterator(start, length), without boxing the element indices. */
+  PrimitiveIterator.OfLong longIterator(int start, long length) {
     return new Odometer(start, length);
   }
 
@@ -193,7 +215,7 @@ public final class IndexFn implements Iterable<Integer> {
     // allocate
     IndexFn.Builder newindex = builder(rank);
     newindex.offset = offset;
-    int[] newstride = new int[rank];
+    long[] newstride = new long[rank];
 
     // calc shape, size, and index transformations
     // calc strides into original (backing) store
@@ -246,7 +268,7 @@ public final class IndexFn implements Iterable<Integer> {
 
     IndexFn.Builder newindex = builder(rank - 1);
     newindex.offset = offset;
-    int[] newstride = new int[rank - 1];
+    long[] newstride = new long[rank - 1];
 
     int count = 0;
     for (int ii = 0; ii < rank; ii++) {
@@ -302,11 +324,11 @@ public final class IndexFn implements Iterable<Integer> {
 
   ////////////////////////////////////////////////////////////////////////////////////////////
   private final int[] shape;
-  private final int[] stride;
+  private final long[] stride;
   private final int rank;
 
   private final long length; // total number of elements
-  private final int offset; // element = offset + stride[0]*current[0] + ...
+  private final long offset; // element = offset + stride[0]*current[0] + ...
   private final boolean canonicalOrder; // can use fast iterator if in canonical order
 
   private IndexFn(Builder builder) {
@@ -317,11 +339,11 @@ public final class IndexFn implements Iterable<Integer> {
     System.arraycopy(builder.shape, 0, this.shape, 0, rank);
 
     if (builder.stride == null) {
-      stride = new int[rank];
+      stride = new long[rank];
       length = computeStrides(shape);
     } else {
       Preconditions.checkArgument(builder.stride.length == rank);
-      this.stride = new int[rank];
+      this.stride = new long[rank];
       System.arraycopy(builder.stride, 0, this.stride, 0, rank);
       this.length = Arrays.computeSize(shape);
     }
@@ -336,7 +358,7 @@ public final class IndexFn implements Iterable<Integer> {
       int thisDim = shape[ii];
       if (thisDim < 0)
         continue; // ignore vlen
-      this.stride[ii] = (int) product;
+      this.stride[ii] = product;
       product *= thisDim;
     }
     return product;
@@ -364,8 +386,8 @@ public final class IndexFn implements Iterable<Integer> {
 
   public static class Builder {
     int[] shape;
-    int[] stride;
-    int offset = 0;
+    long[] stride;
+    long offset = 0;
     boolean canonicalOrder = true;
 
     Builder(int rank) {
@@ -379,13 +401,13 @@ public final class IndexFn implements Iterable<Integer> {
     }
 
     /** Dimension strides (not Section strides) */
-    Builder setStride(int[] stride) {
-      this.stride = new int[stride.length];
+    Builder setStride(long[] stride) {
+      this.stride = new long[stride.length];
       System.arraycopy(stride, 0, this.stride, 0, stride.length);
       return this;
     }
 
-    Builder setOffset(int offset) {
+    Builder setOffset(long offset) {
       this.offset = offset;
       return this;
     }
@@ -410,35 +432,52 @@ public final class IndexFn implements Iterable<Integer> {
     return odometer;
   }
 
-  private class Odometer implements Iterator<Integer> {
+  private class Odometer implements PrimitiveIterator.OfLong {
     private final long nelems;
     private final int[] current;
-    private int count = 0;
-    private int nextIndex;
+    private long count = 0;
+    private long nextIndex;
 
     private Odometer() {
       nelems = length; // all elements
       current = new int[rank]; // starts at 0
-      nextIndex = get(current);
+      nextIndex = getLong(current);
     }
 
     private Odometer(int startElement, long nelems) {
       this.nelems = nelems; // this many elements
       current = odometer(startElement); // starts here
-      nextIndex = get(current);
+      nextIndex = getLong(current);
     }
 
     public boolean hasNext() {
       return count++ < nelems;
     }
 
-    public Integer next() {
-      int result = nextIndex;
+    public long nextLong() {
+      long result = nextIndex;
       nextIndex = incr();
       return result;
     }
 
-    private int incr() {
+    // Update the 1-d index by the strides, instead of recomputing it from current.
+    private long incr() {
+      if (isVlen()) {
+        return incrVlen();
+      }
+      long result = nextIndex;
+      for (int digit = rank - 1; digit >= 0; digit--) {
+        current[digit]++;
+        result += stride[digit];
+        if (current[digit] < shape[digit])
+          return result; // normal exit
+        current[digit] = 0; // else, carry
+        result -= shape[digit] * stride[digit];
+      }
+      return result;
+    }
+
+    private long incrVlen() {
       int digit = rank - 1;
       while (digit >= 0) {
         if (shape[digit] < 0) { // do not increment vlen
@@ -451,7 +490,7 @@ public final class IndexFn implements Iterable<Integer> {
         current[digit] = 0; // else, carry
         digit--;
       }
-      return get(current);
+      return getLong(current);
     }
   }
 
@@ -23,4 +23,44 @@ public interface Storage<T> extends Iterable<T> {
    * @param length copy these number of elements.
    */
   void arraycopy(int srcPos, Object dest, int destPos, long length);
+
+  /**
+   * Get the ith element as a double, the same as get(elem).doubleValue(), without boxing.
+   * 
+   * @throws UnsupportedOperationException if the elements are not numbers.
+   */
+  default double getDouble(long elem) {
+    T value = get(elem);
+    if (!(value instanceof Number)) {
+      throw new UnsupportedOperationException("Not a number: " + value);
+    }
+    return ((Number) value).doubleValue();
+  }
+
+  /**
+   * Get the ith element as a float, the same as get(elem).floatValue(), without boxing.
+   * 
+   * @throws UnsupportedOperationException if the elements are not numbers.
+   */
+  default float getFloat(long elem) {
+    T value = get(elem);
+    if (!(value instanceof Number)) {
+      throw new UnsupportedOperationException("Not a number: " + value);
+    }
+    return ((Number) value).floatValue();
+  }
+
+  /**
+   * Copy a portion to a double array, converting each element as getDouble() does.
+   *
+   * @param srcPos starting pos in this source.
+   * @param dest destination array.
+   * @param destPos starting pos in destination.
+   * @param length copy these number of elements.
+   */
+  default void copyTo(long srcPos, double[] dest, int destPos, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[destPos + i] = getDouble(srcPos + i);
+    }
+  }
 }
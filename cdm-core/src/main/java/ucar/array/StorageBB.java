@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import com.google.common.base.Preconditions;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Storage in ByteBuffers, which may be direct buffers off the heap, or memory mapped regions of a file. There may be
+ * many buffers, so the length is not limited to Integer.MAX_VALUE. Each buffer, except the last, holds the same number
+ * of elements, so finding an element is a division, not a search.
+ */
+abstract class StorageBB<T> implements Storage<T> {
+
+  /**
+   * Make the Storage for a numeric or char data type.
+   *
+   * @param dataType the type of the data.
+   * @param buffers the data is from position to limit of each buffer, which must already have the byte order of the
+   *        data. The buffers are not copied, and must not be changed while the Storage is in use.
+   */
+  static Storage<?> create(ArrayType dataType, List<ByteBuffer> buffers) {
+    switch (dataType) {
+      case BOOLEAN:
+      case BYTE:
+      case CHAR:
+      case ENUM1:
+      case UBYTE:
+        return new StorageBytes(buffers.stream().map(ByteBuffer::slice).toArray(ByteBuffer[]::new));
+      case SHORT:
+      case ENUM2:
+      case USHORT:
+        return new StorageShorts(buffers.stream().map(ByteBuffer::asShortBuffer).toArray(ShortBuffer[]::new));
+      case INT:
+      case ENUM4:
+      case UINT:
+        return new StorageInts(buffers.stream().map(ByteBuffer::asIntBuffer).toArray(IntBuffer[]::new));
+      case LONG:
+      case ULONG:
+        return new StorageLongs(buffers.stream().map(ByteBuffer::asLongBuffer).toArray(LongBuffer[]::new));
+      case FLOAT:
+        return new StorageFloats(buffers.stream().map(ByteBuffer::asFloatBuffer).toArray(FloatBuffer[]::new));
+      case DOUBLE:
+        return new StorageDoubles(buffers.stream().map(ByteBuffer::asDoubleBuffer).toArray(DoubleBuffer[]::new));
+      default:
+        throw new IllegalArgumentException("Cant store " + dataType + " in ByteBuffers");
+    }
+  }
+
+  final int segmentLength; // number of elements in each buffer except the last
+  private final long totalLength;
+
+  StorageBB(Buffer[] views) {
+    Preconditions.checkArgument(views.length > 0, "no buffers");
+    this.segmentLength = views[0].remaining();
+    long total = 0;
+    for (int i = 0; i < views.length; i++) {
+      int n = views[i].remaining();
+      boolean last = (i == views.length - 1);
+      Preconditions.checkArgument(last ? n <= segmentLength : n == segmentLength,
+          "buffer %s has %s elements, expected %s", i, n, segmentLength);
+      total += n;
+    }
+    this.totalLength = total;
+  }
+
+  @Override
+  public long length() {
+    return totalLength;
+  }
+
+  int segment(long elem) {
+    return (int) (elem / segmentLength);
+  }
+
+  int position(long elem) {
+    return (int) (elem % segmentLength);
+  }
+
+  interface SegmentCopy {
+    void copy(int segment, int position, int destPos, int length);
+  }
+
+  /** Split a copy of length elements starting at srcPos into one copy for each buffer it spans. */
+  void copySegments(long srcPos, int destPos, long length, SegmentCopy copy) {
+    long pos = srcPos;
+    int done = 0;
+    while (done < length) {
+      int position = position(pos);
+      int n = (int) Math.min(length - done, segmentLength - position);
+      copy.copy(segment(pos), position, destPos + done, n);
+      done += n;
+      pos += n;
+    }
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private long count = 0;
+
+      @Override
+      public boolean hasNext() {
+        return count < totalLength;
+      }
+
+      @Override
+      public T next() {
+        return get(count++);
+      }
+    };
+  }
+
+  static final class StorageBytes extends StorageBB<Byte> {
+    private final ByteBuffer[] views;
+
+    private StorageBytes(ByteBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    private byte getByte(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public Byte get(long elem) {
+      return getByte(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return getByte(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return getByte(elem);
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      byte[] bdest = (byte[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        ByteBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(bdest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        ByteBuffer view = views[segment];
+        for (int i = 0; i < n; i++) {
+          dest[start + i] = view.get(position + i);
+        }
+      });
+    }
+  }
+
+  static final class StorageShorts extends StorageBB<Short> {
+    private final ShortBuffer[] views;
+
+    private StorageShorts(ShortBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    private short getShort(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public Short get(long elem) {
+      return getShort(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return getShort(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return getShort(elem);
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      short[] sdest = (short[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        ShortBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(sdest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        ShortBuffer view = views[segment];
+        for (int i = 0; i < n; i++) {
+          dest[start + i] = view.get(position + i);
+        }
+      });
+    }
+  }
+
+  static final class StorageInts extends StorageBB<Integer> {
+    private final IntBuffer[] views;
+
+    private StorageInts(IntBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    private int getInt(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public Integer get(long elem) {
+      return getInt(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return getInt(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return getInt(elem);
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      int[] idest = (int[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        IntBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(idest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        IntBuffer view = views[segment];
+        for (int i = 0; i < n; i++) {
+          dest[start + i] = view.get(position + i);
+        }
+      });
+    }
+  }
+
+  static final class StorageLongs extends StorageBB<Long> {
+    private final LongBuffer[] views;
+
+    private StorageLongs(LongBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    private long getLong(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public Long get(long elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      long[] ldest = (long[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        LongBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(ldest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        LongBuffer view = views[segment];
+        for (int i = 0; i < n; i++) {
+          dest[start + i] = view.get(position + i);
+        }
+      });
+    }
+  }
+
+  static final class StorageFloats extends StorageBB<Float> {
+    private final FloatBuffer[] views;
+
+    private StorageFloats(FloatBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    @Override
+    public Float get(long elem) {
+      return getFloat(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return getFloat(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      float[] fdest = (float[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        FloatBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(fdest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        FloatBuffer view = views[segment];
+        for (int i = 0; i < n; i++) {
+          dest[start + i] = view.get(position + i);
+        }
+      });
+    }
+  }
+
+  static final class StorageDoubles extends StorageBB<Double> {
+    private final DoubleBuffer[] views;
+
+    private StorageDoubles(DoubleBuffer[] views) {
+      super(views);
+      this.views = views;
+    }
+
+    @Override
+    public Double get(long elem) {
+      return getDouble(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return views[segment(elem)].get(position(elem));
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return (float) getDouble(elem);
+    }
+
+    @Override
+    public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+      double[] ddest = (double[]) dest;
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        DoubleBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(ddest, start, n);
+      });
+    }
+
+    @Override
+    public void copyTo(long srcPos, double[] dest, int destPos, int length) {
+      copySegments(srcPos, destPos, length, (segment, position, start, n) -> {
+        DoubleBuffer view = views[segment].duplicate();
+        view.position(position);
+        view.get(dest, start, n);
+      });
+    }
+  }
+}
@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.List;
 import javax.annotation.concurrent.Immutable;
 
@@ -76,7 +77,7 @@ public final class StructureDataArray extends Array<StructureData> {
   @Override
   public StructureData get(int... index) {
     Preconditions.checkArgument(this.rank == index.length);
-    return storage.get(indexFn.get(index));
+    return storage.get(indexFn.getLong(index));
   }
 
   @Override
@@ -96,7 +97,7 @@ public final class StructureDataArray extends Array<StructureData> {
 
   private class CanonicalIterator implements Iterator<StructureData> {
     // used when the data is not in canonical order
-    private final Iterator<Integer> iter = indexFn.iterator();
+    private final PrimitiveIterator.OfLong iter = indexFn.longIterator();
 
     @Override
     public boolean hasNext() {
@@ -105,7 +106,7 @@ public final class StructureDataArray extends Array<StructureData> {
 
     @Override
     public StructureData next() {
-      return storage.get(iter.next());
+      return storage.get(iter.nextLong());
     }
   }
 
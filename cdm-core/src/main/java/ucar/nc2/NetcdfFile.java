@@ -27,9 +27,12 @@ import ucar.nc2.internal.iosp.netcdf3.N3iosp;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.DebugFlags;
 import ucar.nc2.internal.util.EscapeStrings;
 import ucar.nc2.util.Indent;
+import ucar.nc2.util.Instrumentation;
+import ucar.nc2.util.Instruments;
 import ucar.nc2.internal.cache.FileCacheIF;
 import ucar.nc2.internal.cache.FileCacheable;
 import ucar.nc2.write.NcmlWriter;
@@ -516,7 +519,16 @@ public class NetcdfFile implements FileCacheable, Closeable {
     if (iosp == null) {
       throw new IOException("iosp is null, perhaps file has been closed. Trying to read variable " + v.getFullName());
     }
-    return iosp.readData(v, ranges);
+    if (!Instruments.isEnabled()) {
+      return iosp.readData(v, ranges);
+    }
+    Instrumentation inst = Instruments.get();
+    long start = System.nanoTime();
+    try (Instrumentation.Span span = inst.startSpan("NetcdfFile.read", location + " " + v.getFullName())) {
+      return iosp.readData(v, ranges);
+    } finally {
+      inst.iospRead(iosp.getFileTypeId(), location, v.getFullName(), System.nanoTime() - start);
+    }
   }
 
   /**
@@ -529,7 +541,34 @@ public class NetcdfFile implements FileCacheable, Closeable {
     if (iosp == null) {
       throw new IOException("iosp is null, perhaps file has been closed. Trying to read variable " + v.getFullName());
     }
-    return iosp.readArrayData(v, ranges);
+    return readIospArrayData(v, ranges, null);
+  }
+
+  /**
+   * Do not call this directly, use Variable.readArray(Section, CancelTask) !!
+   * Ranges must be filled (no nulls). The cancelTask only applies to this read.
+   */
+  @Nullable
+  protected ucar.array.Array<?> readArrayData(Variable v, ucar.array.Section ranges, @Nullable CancelTask cancelTask)
+      throws IOException, ucar.array.InvalidRangeException {
+    if (cancelTask == null || iosp == null) { // subclasses without an iosp override readArrayData(v, ranges)
+      return readArrayData(v, ranges);
+    }
+    return readIospArrayData(v, ranges, cancelTask);
+  }
+
+  private ucar.array.Array<?> readIospArrayData(Variable v, ucar.array.Section ranges, @Nullable CancelTask cancelTask)
+      throws IOException, ucar.array.InvalidRangeException {
+    if (!Instruments.isEnabled()) {
+      return iosp.readArrayData(v, ranges, cancelTask);
+    }
+    Instrumentation inst = Instruments.get();
+    long start = System.nanoTime();
+    try (Instrumentation.Span span = inst.startSpan("NetcdfFile.read", location + " " + v.getFullName())) {
+      return iosp.readArrayData(v, ranges, cancelTask);
+    } finally {
+      inst.iospRead(iosp.getFileTypeId(), location, v.getFullName(), System.nanoTime() - start);
+    }
   }
 
   /**
@@ -5,6 +5,8 @@
 package ucar.nc2;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -19,22 +21,24 @@ import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ServiceLoader;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nullable;
-import ucar.nc2.internal.iosp.netcdf3.N3header;
 import ucar.nc2.internal.iosp.netcdf3.N3iosp;
 import ucar.nc2.internal.util.StringLocker;
 import ucar.nc2.internal.util.URLnaming;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.internal.util.DiskCache;
 import ucar.nc2.internal.util.EscapeStrings;
 import ucar.nc2.util.IO;
+import ucar.unidata.io.CompressedRandomAccessFile;
 import ucar.unidata.io.UncompressInputStream;
 import ucar.unidata.io.bzip2.CBZip2InputStream;
 import ucar.unidata.io.spi.RandomAccessFileProvider;
@@ -56,6 +60,11 @@ public class NetcdfFiles {
   private static final List<String> possibleCompressedSuffixes = Arrays.asList("Z", "zip", "gzip", "gz", "bz2");
   private static final boolean loadWarnings = false;
   private static final boolean userLoadsFirst;
+  private static final IOServiceProvider n3Provider = new N3iosp();
+  // found by the ServiceLoader, for each thread context class loader. The IOSPs refer to their class loader, so the
+  // values are soft, otherwise the weak keys would never be collected.
+  private static final Cache<ClassLoader, List<IOServiceProvider>> loadedProviders =
+      CacheBuilder.newBuilder().weakKeys().softValues().build();
 
   // load core service providers
   static {
@@ -393,6 +402,16 @@ public class NetcdfFiles {
         uriString = StringUtil2.unescape(uriString.substring(5)); // 11/10/2010 from erussell@ngs.org
       }
 
+      if (looksCompressed(uriString) && CompressedRandomAccessFile.isEnabled()
+          && CompressedRandomAccessFile.canOpen(uriString) && new File(uriString).exists()) {
+        try {
+          return CompressedRandomAccessFile.open(uriString, buffer_size);
+        } catch (Exception e) {
+          log.warn("Failed to open {} as a seekable compressed file, err= {}; will uncompress it.", uriString,
+              e.getMessage());
+        }
+      }
+
       String uncompressedFileName = null;
       if (looksCompressed(uriString)) {
         try {
@@ -696,50 +715,100 @@ public class NetcdfFiles {
     return ncfile;
   }
 
+  /**
+   * Find the IOSP that can read the file. The IOSPs are asked in order: registered, then netCDF-3, then the ones found
+   * by the ServiceLoader. First only the ones whose FileSignature matches the start of the file are asked, along with
+   * registered ones that have no signatures, so that user IOSPs still come first. If none of them can read it, the
+   * others are asked, in the same order.
+   */
   @Nullable
   private static IOServiceProvider getIosp(ucar.unidata.io.RandomAccessFile raf) throws IOException {
     if (NetcdfFile.debugSPI)
       log.info("NetcdfFile try to open = {}", raf.getLocation());
 
-    // Registered providers override defaults.
-    for (IOServiceProvider registeredSpi : registeredProviders) {
-      if (NetcdfFile.debugSPI)
-        log.info(" try iosp = {}", registeredSpi.getClass().getName());
-
-      if (registeredSpi.isValidFile(raf)) {
-        // need a new instance for thread safety
-        Class<?> c = registeredSpi.getClass();
-        try {
-          return (IOServiceProvider) c.newInstance();
-        } catch (InstantiationException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-        } catch (IllegalAccessException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
+    List<IOServiceProvider> registered = new ArrayList<>(registeredProviders);
+    List<IOServiceProvider> providers = new ArrayList<>(registered);
+    providers.add(n3Provider);
+    providers.addAll(getLoadedProviders());
+
+    byte[] header = new byte[FileSignature.HEADER_SIZE];
+    int headerLength = readHeader(raf, header);
+
+    boolean[] tried = new boolean[providers.size()];
+    for (int i = 0; i < providers.size(); i++) {
+      IOServiceProvider spi = providers.get(i);
+      List<FileSignature> signatures = spi.getFileSignatures();
+      boolean userFirst = signatures.isEmpty() && i < registered.size();
+      if (userFirst || signatures.stream().anyMatch(sig -> sig.matches(header, headerLength))) {
+        tried[i] = true;
+        if (isValidFile(spi, raf)) {
+          return newInstance(spi);
         }
       }
     }
 
-    if (N3header.isValidFile(raf)) {
-      return new N3iosp();
-
-    } else {
-      // look for dynamically loaded IOSPs
-      for (IOServiceProvider loadedSpi : ServiceLoader.load(IOServiceProvider.class)) {
-        if (loadedSpi.isValidFile(raf)) {
-          Class<?> c = loadedSpi.getClass();
-          try {
-            return (IOServiceProvider) c.newInstance();
-          } catch (InstantiationException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-          } catch (IllegalAccessException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
-          }
-        }
+    // no signature matched, or the IOSPs they matched could not read it
+    for (int i = 0; i < providers.size(); i++) {
+      IOServiceProvider spi = providers.get(i);
+      if (!tried[i] && isValidFile(spi, raf)) {
+        return newInstance(spi);
       }
     }
     return null;
   }
 
+  private static boolean isValidFile(IOServiceProvider spi, ucar.unidata.io.RandomAccessFile raf) throws IOException {
+    if (NetcdfFile.debugSPI)
+      log.info(" try iosp = {}", spi.getClass().getName());
+    return spi.isValidFile(raf);
+  }
+
+  // need a new instance for thread safety
+  private static IOServiceProvider newInstance(IOServiceProvider spi) throws IOException {
+    Class<?> c = spi.getClass();
+    try {
+      return (IOServiceProvider) c.newInstance();
+    } catch (InstantiationException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
+    } catch (IllegalAccessException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
+    }
+  }
+
+  // the first HEADER_SIZE bytes of the file, or all of it if shorter
+  private static int readHeader(ucar.unidata.io.RandomAccessFile raf, byte[] header) throws IOException {
+    raf.seek(0);
+    int n = 0;
+    while (n < header.length) {
+      int got = raf.readBytes(header, n, header.length - n);
+      if (got <= 0) {
+        break;
+      }
+      n += got;
+    }
+    return n;
+  }
+
+  // the ServiceLoader reads the jar manifests each time, so its IOSPs are only looked for once for each class loader.
+  // Like ServiceLoader.load(Class), this uses the thread context class loader, which may differ between threads,
+  // eg between web applications.
+  private static List<IOServiceProvider> getLoadedProviders() {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null) {
+      loader = ClassLoader.getSystemClassLoader();
+    }
+    List<IOServiceProvider> result = loadedProviders.getIfPresent(loader);
+    if (result == null) {
+      List<IOServiceProvider> found = new ArrayList<>();
+      for (IOServiceProvider loadedSpi : ServiceLoader.load(IOServiceProvider.class, loader)) {
+        found.add(loadedSpi);
+      }
+      result = Collections.unmodifiableList(found);
+      loadedProviders.put(loader, result);
+    }
+    return result;
+  }
+
   public static NetcdfFile build(IOServiceProvider spi, ucar.unidata.io.RandomAccessFile raf, String location,
       ucar.nc2.util.CancelTask cancelTask) throws IOException {
 
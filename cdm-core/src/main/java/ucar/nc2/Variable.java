@@ -821,6 +821,26 @@ public class Variable implements VariableSimpleIF, ProxyReader {
     return proxyReader.proxyReadArray(this, section, null);
   }
 
+  /**
+   * Read a section of the data, like {@link #readArray(ucar.array.Section)}, allowing the read to be cancelled.
+   * The cancelTask only applies to this read, and only IOSPs that check for it stop early, eg HDF5 when decoding
+   * chunks in parallel. A cancelled read throws an IOException.
+   *
+   * @param section The section of data to read, may be null for all data.
+   * @param cancelTask cancels this read, may be null.
+   */
+  public ucar.array.Array<?> readArray(@Nullable ucar.array.Section section, @Nullable CancelTask cancelTask)
+      throws java.io.IOException, ucar.array.InvalidRangeException {
+    if (cancelTask == null || cache.getData() != null) {
+      return readArray(section);
+    }
+    if (isCaching()) { // read and cache entire array
+      cache.setCachedData(proxyReader.proxyReadArray(this, cancelTask));
+      return readArray(section);
+    }
+    return proxyReader.proxyReadArray(this, ucar.array.Section.fill(section, getShape()), cancelTask);
+  }
+
   /** @deprecated do not use */
   @Deprecated
   protected Array _readScalarData() throws IOException {
@@ -862,7 +882,7 @@ public class Variable implements VariableSimpleIF, ProxyReader {
     }
 
     try {
-      return ncfile.readArrayData(this, getSection());
+      return ncfile.readArrayData(this, getSection(), cancelTask);
     } catch (ucar.array.InvalidRangeException e) {
       e.printStackTrace();
       throw new IOException(e.getMessage()); // cant happen haha
@@ -888,7 +908,7 @@ public class Variable implements VariableSimpleIF, ProxyReader {
     if (isMemberOfStructure()) {
       throw new UnsupportedOperationException("Cannot directly read section of Member Variable=" + getFullName());
     }
-    return ncfile.readArrayData(this, section);
+    return ncfile.readArrayData(this, section, cancelTask);
   }
 
   ////////////////////////////////////////////////////////////////////////
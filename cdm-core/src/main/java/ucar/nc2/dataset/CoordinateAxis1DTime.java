@@ -98,7 +98,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
 
     // make the coordinates
     int ncoords = (int) org.getSize();
-    List<CalendarDate> result = new ArrayList<>(ncoords);
+    double[] values = new double[ncoords];
     Array data = org.read();
 
     int count = 0;
@@ -107,9 +107,9 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
       double val = ii.getDoubleNext();
       if (Double.isNaN(val))
         continue; // WTF ??
-      result.add(helper.makeCalendarDateFromOffset(val));
-      count++;
+      values[count++] = val;
     }
+    CalendarDateArray result = helper.makeCalendarDates((count == ncoords) ? values : Arrays.copyOf(values, count));
 
     // if we encountered NaNs, shorten it up
     ArrayList<Dimension> dims = new ArrayList<>(org.getDimensions());
@@ -145,13 +145,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
   @Override
   public CoordinateAxis1DTime section(Range r) throws InvalidRangeException {
     CoordinateAxis1DTime s = (CoordinateAxis1DTime) super.section(r);
-    List<CalendarDate> cdates = getCalendarDates();
-
-    List<CalendarDate> cdateSection = new ArrayList<>(cdates.size());
-    for (int idx : r)
-      cdateSection.add(cdates.get(idx));
-
-    s.cdates = cdateSection;
+    s.cdates = cdates.subset(r);
     return s;
   }
 
@@ -162,7 +156,6 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return the ith CalendarDate
    */
   public CalendarDate getCalendarDate(int idx) {
-    List<CalendarDate> cdates = getCalendarDates(); // in case we want to lazily evaluate
     return cdates.get(idx);
   }
 
@@ -172,9 +165,8 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return calendar date range
    */
   public CalendarDateRange getCalendarDateRange() {
-    List<CalendarDate> cd = getCalendarDates();
-    int last = cd.size();
-    return (last > 0) ? CalendarDateRange.of(cd.get(0), cd.get(last - 1)) : null;
+    int last = cdates.size();
+    return (last > 0) ? CalendarDateRange.of(cdates.get(0), cdates.get(last - 1)) : null;
   }
 
   /**
@@ -208,14 +200,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @throws UnsupportedOperationException is no time axis or isDate() false
    */
   public int findTimeIndexFromCalendarDate(CalendarDate d) {
-    List<CalendarDate> cdates = getCalendarDates(); // LOOK linear search, switch to binary
-    int index = 0;
-    while (index < cdates.size()) {
-      if (d.compareTo(cdates.get(index)) < 0)
-        break;
-      index++;
-    }
-    return Math.max(0, index - 1);
+    return cdates.findIndex(d);
   }
 
   /**
@@ -225,20 +210,23 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return true if equals a coordinate
    */
   public boolean hasCalendarDate(CalendarDate date) {
-    List<CalendarDate> cdates = getCalendarDates();
-    for (CalendarDate cd : cdates) { // LOOK linear search, switch to binary
-      if (date.equals(cd))
-        return true;
-    }
-    return false;
+    return cdates.contains(date);
   }
 
   /**
    * Get the list of datetimes in this coordinate as CalendarDate objects.
+   * The CalendarDates are made as they are asked for.
    *
    * @return list of CalendarDates.
    */
   public List<CalendarDate> getCalendarDates() {
+    return cdates.asList();
+  }
+
+  /**
+   * Get the datetimes in this coordinate, without making CalendarDate objects.
+   */
+  public CalendarDateArray getCalendarDateArray() {
     return cdates;
   }
 
@@ -260,7 +248,11 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
   protected void readValues() {
     // if DataType is not numeric, handle special
     if (!this.dataType.isNumeric()) {
-      this.coords = cdates.stream().mapToDouble(cdate -> (double) cdate.getDifferenceInMsecs(cdates.get(0))).toArray();
+      double[] values = new double[cdates.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = cdates.getMillis(i) - cdates.getMillis(0);
+      }
+      this.coords = values;
       // make sure we don't try to read from the orgVar again
       this.wasRead = true;
     } else {
@@ -279,7 +271,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
   ////////////////////////////////////////////////////////////////////////
 
   // TODO move to builder
-  private List<CalendarDate> makeTimesFromChar(VariableDS org, Formatter errMessages) throws IOException {
+  private CalendarDateArray makeTimesFromChar(VariableDS org, Formatter errMessages) throws IOException {
     int ncoords = (int) org.getSize();
     int rank = org.getRank();
     int strlen = org.getShape(rank - 1);
@@ -298,10 +290,10 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
       result.add(cd);
     }
     setCachedData(ucar.array.Arrays.factory(ArrayType.STRING, new int[] {ncoords}, dateStrings));
-    return result;
+    return CalendarDateArray.of(result);
   }
 
-  private List<CalendarDate> makeTimesFromStrings(VariableDS org, Formatter errMessages) throws IOException {
+  private CalendarDateArray makeTimesFromStrings(VariableDS org, Formatter errMessages) throws IOException {
     int ncoords = (int) org.getSize();
     List<CalendarDate> result = new ArrayList<>(ncoords);
 
@@ -313,7 +305,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
       result.add(cd);
     }
 
-    return result;
+    return CalendarDateArray.of(result);
   }
 
   private CalendarDate makeCalendarDateFromStringCoord(String coordValue, VariableDS org, Formatter errMessages) {
@@ -338,17 +330,15 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    */
   @Deprecated
   public java.util.Date[] getTimeDates() {
-    List<CalendarDate> cdates = getCalendarDates();
     Date[] timeDates = new Date[cdates.size()];
-    int index = 0;
-    for (CalendarDate cd : cdates)
-      timeDates[index++] = cd.toDate();
+    for (int index = 0; index < timeDates.length; index++)
+      timeDates[index] = new Date(cdates.getMillis(index));
     return timeDates;
   }
 
   ////////////////////////////////////////////////////////////////////////////////////////////
   private final CoordinateAxisTimeHelper helper;
-  private List<CalendarDate> cdates;
+  private CalendarDateArray cdates;
 
   protected CoordinateAxis1DTime(Builder<?> builder, Group parentGroup) {
     super(builder, parentGroup);
@@ -397,7 +387,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
   public static abstract class Builder<T extends Builder<T>> extends CoordinateAxis1D.Builder<T> {
     private boolean built;
     private CoordinateAxisTimeHelper helper;
-    private List<CalendarDate> cdates;
+    private CalendarDateArray cdates;
 
     protected abstract T self();
 
@@ -407,6 +397,11 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
     }
 
     public T setCalendarDates(List<CalendarDate> cdates) {
+      this.cdates = CalendarDateArray.of(cdates);
+      return self();
+    }
+
+    public T setCalendarDates(CalendarDateArray cdates) {
       this.cdates = cdates;
       return self();
     }
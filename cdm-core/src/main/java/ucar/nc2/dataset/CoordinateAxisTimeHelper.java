@@ -7,6 +7,7 @@ package ucar.nc2.dataset;
 
 import ucar.nc2.time.Calendar;
 import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateArray;
 import ucar.nc2.time.CalendarDateFormatter;
 import ucar.nc2.time.CalendarDateUnit;
 
@@ -33,6 +34,10 @@ public class CoordinateAxisTimeHelper {
     return dateUnit.makeCalendarDate(offset);
   }
 
+  public CalendarDateArray makeCalendarDates(double[] offsets) {
+    return CalendarDateArray.of(dateUnit, offsets);
+  }
+
   public CalendarDate makeCalendarDateFromOffset(String offset) {
     return CalendarDateFormatter.isoStringToCalendarDate(calendar, offset);
   }
@@ -5,12 +5,14 @@
 package ucar.nc2.dataset;
 
 import java.util.Set;
+import java.util.function.DoublePredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.*;
 import ucar.nc2.*;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.dataset.NetcdfDataset.Enhance;
+import ucar.nc2.internal.dataset.EnhanceKernels;
 import ucar.nc2.iosp.NetcdfFormatUtils;
 import ucar.nc2.util.Misc;
 import javax.annotation.Nonnull;
@@ -580,16 +582,17 @@ public class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsig
       applyScaleOffset = false;
     }
 
-    DataType outType = origDataType;
-    if (convertUnsigned) {
-      outType = getUnsignedConversionType();
-    }
-    if (applyScaleOffset) {
-      outType = getScaledOffsetType();
-    }
+    DataType outType = getConvertedType(convertUnsigned, applyScaleOffset);
 
     if (outType != DataType.FLOAT && outType != DataType.DOUBLE) {
       convertMissing = false;
+    } else {
+      // the common case, done in a single pass over the primitive arrays
+      Object src = in.get1DJavaArray(in.getDataType());
+      Object dest = (outType == DataType.FLOAT) ? new float[(int) in.getSize()] : new double[(int) in.getSize()];
+      if (convert(src, dest, convertUnsigned, applyScaleOffset, convertMissing)) {
+        return Array.factory(outType, in.getShape(), dest);
+      }
     }
 
     Array out = Array.factory(outType, in.getShape());
@@ -614,4 +617,46 @@ public class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsig
 
     return out;
   }
+
+  /**
+   * The data type of the result of converting the data of this variable.
+   *
+   * @param convertUnsigned if the data is unsigned, widen it.
+   * @param applyScaleOffset if there is a scale or offset, apply it.
+   */
+  public DataType getConvertedType(boolean convertUnsigned, boolean applyScaleOffset) {
+    DataType outType = origDataType;
+    if (convertUnsigned && getSignedness() == Signedness.UNSIGNED) {
+      outType = getUnsignedConversionType();
+    }
+    if (applyScaleOffset && hasScaleOffset()) {
+      outType = getScaledOffsetType();
+    }
+    return outType;
+  }
+
+  /**
+   * Convert a primitive array of data in a single pass, into a destination supplied by the caller, which may be reused
+   * from one read to the next. This is only done when the converted type is FLOAT or DOUBLE.
+   *
+   * @param src the data as a 1D primitive array: byte[], short[], int[], float[] or double[].
+   * @param dest a float[] or double[] at least as long as src, depending on getConvertedType().
+   * @param convertUnsigned if the data is unsigned, widen it.
+   * @param applyScaleOffset if there is a scale or offset, apply it.
+   * @param convertMissing set missing values to NaN.
+   * @return false if this conversion cannot be done this way, and nothing was done: use convert(Array, ...).
+   */
+  public boolean convert(Object src, Object dest, boolean convertUnsigned, boolean applyScaleOffset,
+      boolean convertMissing) {
+    DataType outType = getConvertedType(convertUnsigned, applyScaleOffset);
+    boolean destOk = (outType == DataType.FLOAT && dest instanceof float[])
+        || (outType == DataType.DOUBLE && dest instanceof double[]);
+    if (!destOk) {
+      return false;
+    }
+    boolean unsigned = convertUnsigned && getSignedness() == Signedness.UNSIGNED;
+    boolean scaleOffset = applyScaleOffset && hasScaleOffset();
+    DoublePredicate missing = (convertMissing && hasMissing()) ? this::isMissing : null;
+    return EnhanceKernels.convert(src, unsigned, scaleOffset, scale, offset, missing, dest);
+  }
 }
@@ -25,6 +25,7 @@ import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.internal.cache.FileCache;
 import ucar.nc2.internal.cache.FileCacheIF;
+import ucar.nc2.internal.cache.FileCacheStriped;
 import ucar.nc2.internal.cache.FileFactory;
 
 /**
@@ -40,7 +41,7 @@ public class NetcdfDatasets {
   ////////////////////////////////////////////////////////////////////////////////////
   // NetcdfFile caching
 
-  private static ucar.nc2.internal.cache.FileCache netcdfFileCache;
+  private static FileCacheIF netcdfFileCache;
   private static final ucar.nc2.internal.cache.FileFactory defaultNetcdfFileFactory = new StandardFileFactory();
 
   // no state, so a singleton is ok
@@ -78,6 +79,16 @@ public class NetcdfDatasets {
     netcdfFileCache = new FileCache("NetcdfFileCache ", minElementsInMemory, maxElementsInMemory, hardLimit, period);
   }
 
+  /**
+   * Use this file cache, for example a {@link ucar.nc2.internal.cache.FileCacheStriped} for many concurrent users.
+   * Any previous cache is disabled. When application terminates, call NetcdfDataset.shutdown().
+   */
+  public static synchronized void setNetcdfFileCache(FileCacheIF fileCache) {
+    if (null != netcdfFileCache)
+      netcdfFileCache.disable();
+    netcdfFileCache = fileCache;
+  }
+
   public static synchronized void disableNetcdfFileCache() {
     if (null != netcdfFileCache)
       netcdfFileCache.disable();
@@ -91,6 +102,7 @@ public class NetcdfDatasets {
   public static synchronized void shutdown() {
     disableNetcdfFileCache();
     FileCache.shutdown();
+    FileCacheStriped.shutdown();
   }
 
   /**
@@ -483,7 +495,7 @@ public class NetcdfDatasets {
    * @param iospMessage send to iosp.sendIospMessage() if not null
    * @return NetcdfFile or throw an Exception.
    */
-  private static NetcdfFile openOrAcquireFile(FileCache cache, FileFactory factory, Object hashKey, DatasetUrl durl,
+  private static NetcdfFile openOrAcquireFile(FileCacheIF cache, FileFactory factory, Object hashKey, DatasetUrl durl,
       int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object iospMessage) throws IOException {
 
     if (factory == null)
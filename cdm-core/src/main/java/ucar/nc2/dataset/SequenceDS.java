@@ -32,6 +32,15 @@ public class SequenceDS extends Sequence implements StructureEnhanced {
     return new StructureDataIteratorEnhanced(this, orgSeq.getStructureIterator(bufferSize));
   }
 
+  /**
+   * Enhance an iterator over the original sequence, eg one that the IOSP has restricted to part of the data.
+   *
+   * @param orgIter iterates over the data of getOriginalVariable().
+   */
+  public StructureDataIterator getStructureIterator(StructureDataIterator orgIter) {
+    return new StructureDataIteratorEnhanced(this, orgIter);
+  }
+
   /** An iterator over all the data in the sequence, enhanced if needed. */
   @Override
   public Iterator<StructureData> iterator() {
@@ -9,6 +9,7 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.*;
+import ucar.nc2.internal.grid.LatLon2DCache;
 
 import javax.annotation.concurrent.Immutable;
 import java.util.*;
@@ -300,7 +301,7 @@ public class HorizCoordSys {
   public LatLonPoint getLatLon(int yindex, int xindex) {
     if (isProjection) {
       double x = xAxis.getCoordMidpoint(xindex);
-      double y = yAxis.getCoordMidpoint(xindex);
+      double y = yAxis.getCoordMidpoint(yindex);
       Projection proj = transform.getProjection();
       return proj.projToLatLon(x, y);
     } else {
@@ -310,6 +311,20 @@ public class HorizCoordSys {
     }
   }
 
+  /**
+   * Get the lat/lon of every point of a projection grid, from the shared {@link LatLon2DCache}.
+   *
+   * @throws IllegalStateException if this is not a projection.
+   */
+  public LatLon2DCache.LatLonField getLatLonField() {
+    if (!isProjection) {
+      throw new IllegalStateException("HorizCoordSys is not a projection");
+    }
+    double[] xcoords = (double[]) xAxis.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
+    double[] ycoords = (double[]) yAxis.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
+    return LatLon2DCache.getLatLon(transform.getProjection(), xcoords, ycoords);
+  }
+
   // here's where to deal with crossing seam
   private Optional<CoverageCoordAxis> subsetLon(LatLonRect llbb, int stride, Formatter errLog) {
     double wantMin = LatLonPoints.lonNormalFrom(llbb.getLonMin(), lonAxis.getStartValue());
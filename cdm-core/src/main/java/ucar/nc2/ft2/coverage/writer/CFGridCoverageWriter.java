@@ -5,7 +5,12 @@
 package ucar.nc2.ft2.coverage.writer;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Formatter;
 import java.util.HashMap;
@@ -13,9 +18,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
+import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Attribute;
@@ -37,12 +47,11 @@ import ucar.nc2.ft2.coverage.CoverageTransform;
 import ucar.nc2.ft2.coverage.GeoReferencedArray;
 import ucar.nc2.ft2.coverage.HorizCoordSys;
 import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.internal.grid.LatLon2DCache;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.write.NetcdfFormatWriter;
-import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonRect;
 import ucar.unidata.geoloc.Projection;
-import ucar.unidata.geoloc.ProjectionPoint;
 import ucar.unidata.geoloc.projection.LatLonProjection;
 
 /**
@@ -58,6 +67,11 @@ public class CFGridCoverageWriter {
   private static final String BOUNDS = "_bounds";
   private static final String BOUNDS_DIM = "bounds_dim"; // dimension of length 2, can be used by any bounds coordinate
 
+  // outer axes that can be subset to a single coordinate with SubsetParams, for streaming
+  private static final ImmutableSet<AxisType> SLAB_AXIS_TYPES =
+      ImmutableSet.of(AxisType.RunTime, AxisType.Time, AxisType.Ensemble, AxisType.GeoZ, AxisType.Pressure,
+          AxisType.Height);
+
   /** A value class holding information about the write() */
   public static class Result {
     private final long sizeToBeWritten;
@@ -108,11 +122,39 @@ public class CFGridCoverageWriter {
   public static Result write(CoverageCollection gdsOrg, List<String> gridNames, SubsetParams subset,
       boolean tryToAddLatLon2D, NetcdfFormatWriter.Builder writer, long maxBytes)
       throws IOException, InvalidRangeException {
+    return write(gdsOrg, gridNames, subset, tryToAddLatLon2D, writer, maxBytes, false);
+  }
+
+  /**
+   * Write a netcdf/CF file from a CoverageDataset, optionally streaming the data.
+   * When streaming, the data of each coverage is read and written one horizontal slab at a time, and the next slab is
+   * read while the current one is written. Memory use is then two slabs, not the whole subset, so large subsets
+   * can be written with maxBytes = 0. A coverage whose outer axes are not all independent runtime, time, ensemble or
+   * vertical axes is still read whole.
+   *
+   * @param gdsOrg the CoverageDataset
+   * @param gridNames the list of coverage names to be written, or null for all
+   * @param subset defines the requested subset, or null to include everything in gdsOrg
+   * @param tryToAddLatLon2D add 2D lat/lon coordinates, if possible
+   * @param writer this does the actual writing, must not be null
+   * @param maxBytes if > 0, only create the file if sizeToBeWritten < maxBytes.
+   * @param streaming read and write the data one horizontal slab at a time.
+   * @return the result of the write.
+   */
+  public static Result write(CoverageCollection gdsOrg, List<String> gridNames, SubsetParams subset,
+      boolean tryToAddLatLon2D, NetcdfFormatWriter.Builder writer, long maxBytes, boolean streaming)
+      throws IOException, InvalidRangeException {
     Preconditions.checkNotNull(writer);
-    CFGridCoverageWriter writer2 = new CFGridCoverageWriter();
+    CFGridCoverageWriter writer2 = new CFGridCoverageWriter(streaming);
     return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, writer, maxBytes);
   }
 
+  private final boolean streaming;
+
+  private CFGridCoverageWriter(boolean streaming) {
+    this.streaming = streaming;
+  }
+
   private Result writeFile(CoverageCollection gdsOrg, List<String> gridNames, SubsetParams subsetParams,
       boolean tryToAddLatLon2D, NetcdfFormatWriter.Builder writer, long maxBytes)
       throws IOException, InvalidRangeException {
@@ -434,56 +476,158 @@ public class CFGridCoverageWriter {
 
   private void writeCoverageData(CoverageCollection gdsOrg, SubsetParams subsetParams, CoverageCollection subsetDataset,
       NetcdfFormatWriter writer) throws IOException, InvalidRangeException {
-    for (Coverage coverage : subsetDataset.getCoverages()) {
-      // we need to call readData on the original
-      Coverage coverageOrg = gdsOrg.findCoverage(coverage.getName());
-      GeoReferencedArray array = coverageOrg.readData(subsetParams);
-
-      // test conform to whatever axis.getCoordsAsArray() returns
-      checkConformance(coverage, array, gdsOrg.getName());
-
-      Variable v = writer.findVariable(coverage.getName());
-      if (show)
-        System.out.printf("CFGridCoverageWriter write coverage %s%n", v.getNameAndDimensions());
-      writer.write(v, array.getData());
-    }
-  }
+    // reads the next slab of a streamed coverage while this one is written, its thread is only started when used
+    ExecutorService reader = streaming ? Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("CFGridCoverageWriter-%d").setDaemon(true).build()) : null;
+    try {
+      for (Coverage coverage : subsetDataset.getCoverages()) {
+        // we need to call readData on the original
+        Coverage coverageOrg = gdsOrg.findCoverage(coverage.getName());
+        Variable v = writer.findVariable(coverage.getName());
+
+        List<CoverageCoordAxis1D> slabAxes = streaming ? findSlabAxes(coverage) : null;
+        if (slabAxes != null) {
+          if (show)
+            System.out.printf("CFGridCoverageWriter stream coverage %s%n", v.getNameAndDimensions());
+          writeSlabs(reader, coverageOrg, subsetParams, slabAxes, v, writer);
+          continue;
+        }
 
-  private void writeLatLon2D(CoverageCollection subsetDataset, NetcdfFormatWriter writer)
-      throws IOException, InvalidRangeException {
-    HorizCoordSys horizCoordSys = subsetDataset.getHorizCoordSys();
-    CoverageCoordAxis1D xAxis = horizCoordSys.getXAxis();
-    CoverageCoordAxis1D yAxis = horizCoordSys.getYAxis();
+        GeoReferencedArray array = coverageOrg.readData(subsetParams);
 
-    Projection proj = horizCoordSys.getTransform().getProjection();
+        // test conform to whatever axis.getCoordsAsArray() returns
+        checkConformance(coverage, array, gdsOrg.getName());
 
-    double[] xData = (double[]) xAxis.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
-    double[] yData = (double[]) yAxis.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
+        if (show)
+          System.out.printf("CFGridCoverageWriter write coverage %s%n", v.getNameAndDimensions());
+        writer.write(v, array.getData());
+      }
+    } finally {
+      if (reader != null)
+        reader.shutdownNow(); // stops a slab read left behind by a failure
+    }
+  }
 
-    int numX = xData.length;
-    int numY = yData.length;
+  // The independent axes before the horizontal ones, if the coverage can be read one coordinate of each at a time.
+  // A coordinate of a discontiguous interval axis, eg time intervals (0,6), (0,12), (6,12), can not be selected by a
+  // single value, so those coverages are read whole.
+  @Nullable
+  private static List<CoverageCoordAxis1D> findSlabAxes(Coverage coverage) {
+    List<CoverageCoordAxis1D> result = new ArrayList<>();
+    int nhoriz = 0;
+    for (CoverageCoordAxis axis : coverage.getCoordSys().getAxes()) {
+      switch (axis.getDependenceType()) {
+        case scalar:
+        case dependent:
+          continue; // not a dimension of the variable
+        case independent:
+          break;
+        default:
+          return null;
+      }
+      if (axis.getAxisType().isHoriz()) {
+        nhoriz++;
+        continue;
+      }
+      if (nhoriz > 0 || !(axis instanceof CoverageCoordAxis1D) || !SLAB_AXIS_TYPES.contains(axis.getAxisType())
+          || axis.getSpacing() == CoverageCoordAxis.Spacing.discontiguousInterval) {
+        return null;
+      }
+      result.add((CoverageCoordAxis1D) axis);
+    }
+    return (nhoriz == 2 && !result.isEmpty()) ? result : null;
+  }
 
-    double[] latData = new double[numX * numY];
-    double[] lonData = new double[numX * numY];
+  // Read and write one horizontal slab at a time, reading the next slab on another thread while this one is written.
+  private void writeSlabs(ExecutorService reader, Coverage coverageOrg, SubsetParams subsetParams,
+      List<CoverageCoordAxis1D> slabAxes, Variable v, NetcdfFormatWriter writer)
+      throws IOException, InvalidRangeException {
+    int nslabAxes = slabAxes.size();
+    int[] shape = v.getShape();
+    int[] slabShape = shape.clone();
+    Arrays.fill(slabShape, 0, nslabAxes, 1);
+    int nslabs = (int) Index.computeSize(Arrays.copyOf(shape, nslabAxes));
+
+    int[] origin = new int[shape.length];
+    int[] first = origin.clone();
+    Future<Array> next = reader.submit(() -> readSlab(coverageOrg, subsetParams, slabAxes, first, slabShape));
+    for (int slab = 0; slab < nslabs; slab++) {
+      Array data = waitFor(next);
+      int[] nextOrigin = origin.clone();
+      if (slab < nslabs - 1) {
+        for (int i = nslabAxes - 1; i >= 0; i--) { // odometer over the slab axes
+          if (++nextOrigin[i] < shape[i])
+            break;
+          nextOrigin[i] = 0;
+        }
+        next = reader.submit(() -> readSlab(coverageOrg, subsetParams, slabAxes, nextOrigin, slabShape));
+      }
+      writer.write(v, origin, data);
+      origin = nextOrigin;
+    }
+  }
 
-    // create the data
-    for (int i = 0; i < numY; i++) {
-      for (int j = 0; j < numX; j++) {
-        ProjectionPoint projPoint = ProjectionPoint.create(xData[j], yData[i]);
-        LatLonPoint latlonPoint = proj.projToLatLon(projPoint);
-        latData[i * numX + j] = latlonPoint.getLatitude();
-        lonData[i * numX + j] = latlonPoint.getLongitude();
+  // Read the slab at origin, by subsetting each slab axis to the coordinate at its index.
+  private static Array readSlab(Coverage coverageOrg, SubsetParams subsetParams, List<CoverageCoordAxis1D> slabAxes,
+      int[] origin, int[] slabShape) throws IOException, InvalidRangeException {
+    SubsetParams params = new SubsetParams();
+    for (Map.Entry<String, Object> entry : subsetParams.getEntries()) {
+      params.set(entry.getKey(), entry.getValue());
+    }
+    for (int i = 0; i < slabAxes.size(); i++) {
+      CoverageCoordAxis1D axis = slabAxes.get(i);
+      double coord = axis.getCoordMidpoint(origin[i]);
+      switch (axis.getAxisType()) {
+        case RunTime:
+          params.set(SubsetParams.runtime, axis.makeDate(coord));
+          break;
+        case Time:
+          params.set(SubsetParams.timePresent, false);
+          params.set(SubsetParams.time, axis.makeDate(coord));
+          break;
+        case Ensemble:
+          params.set(SubsetParams.ensCoord, coord);
+          break;
+        default: // vertical
+          params.set(SubsetParams.vertCoord, coord);
       }
     }
 
+    Array data = coverageOrg.readData(params).getData();
+    if (data.getSize() != Index.computeSize(slabShape)) {
+      throw new IllegalStateException(String.format("CFGridCoverageWriter slab %s of %s has %d values, expected %s",
+          Arrays.toString(origin), coverageOrg.getName(), data.getSize(), Arrays.toString(slabShape)));
+    }
+    return data.reshape(slabShape);
+  }
+
+  private static Array waitFor(Future<Array> future) throws IOException, InvalidRangeException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading coverage data");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfInstanceOf(e.getCause(), InvalidRangeException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void writeLatLon2D(CoverageCollection subsetDataset, NetcdfFormatWriter writer)
+      throws IOException, InvalidRangeException {
+    LatLon2DCache.LatLonField field = subsetDataset.getHorizCoordSys().getLatLonField();
+    int[] shape = new int[] {field.getNy(), field.getNx()};
+
     Variable latVar = writer.findVariable("lat");
     assert latVar != null : "We should have added lat var in addLatLon2D().";
-    Array latDataArray = Array.factory(DataType.DOUBLE, new int[] {numY, numX}, latData);
+    Array latDataArray = Array.factory(DataType.DOUBLE, shape, field.getLat());
     writer.write(latVar, latDataArray);
 
     Variable lonVar = writer.findVariable("lon");
     assert lonVar != null : "We should have added lon var in addLatLon2D().";
-    Array lonDataArray = Array.factory(DataType.DOUBLE, new int[] {numY, numX}, lonData);
+    Array lonDataArray = Array.factory(DataType.DOUBLE, shape, field.getLon());
     writer.write(lonVar, lonDataArray);
   }
 
@@ -11,7 +11,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.array.InvalidRangeException;
 import ucar.array.Range;
-import ucar.array.RangeIterator;
 import ucar.nc2.constants.AxisType;
 import ucar.nc2.dataset.VariableDS;
 import ucar.nc2.internal.grid.GridAxis1DHelper;
@@ -32,8 +31,24 @@ import java.util.*;
 public class GridAxis1DTime extends GridAxis1D {
   private static final Logger logger = LoggerFactory.getLogger(GridAxis1DTime.class);
 
-  /** Get the list of coordinates as CalendarDates. */
+  /**
+   * Get the list of coordinates as CalendarDates. This makes all of them on the first call and keeps them, use
+   * getCalendarDate(int) when possible.
+   */
   public ImmutableList<CalendarDate> getCalendarDates() {
+    // Double-check idiom for lazy initialization of instance fields. See Effective Java 2nd Ed, p. 283.
+    if (cdateList == null) {
+      synchronized (this) {
+        if (cdateList == null) {
+          cdateList = ImmutableList.copyOf(cdates.asList());
+        }
+      }
+    }
+    return cdateList;
+  }
+
+  /** Get the coordinates as a CalendarDateArray, without making CalendarDates. */
+  public CalendarDateArray getCalendarDateArray() {
     return cdates;
   }
 
@@ -74,24 +89,12 @@ public class GridAxis1DTime extends GridAxis1D {
    * @return corresponding time index on the time coordinate axis
    */
   public int findTimeIndexFromCalendarDate(CalendarDate d) {
-    List<CalendarDate> cdates = getCalendarDates(); // LOOK linear search, switch to binary
-    int index = 0;
-    while (index < cdates.size()) {
-      if (d.compareTo(cdates.get(index)) < 0)
-        break;
-      index++;
-    }
-    return Math.max(0, index - 1);
+    return cdates.findIndex(d);
   }
 
   /** See if the given CalendarDate appears as a coordinate */
   public boolean hasCalendarDate(CalendarDate date) {
-    List<CalendarDate> cdates = getCalendarDates();
-    for (CalendarDate cd : cdates) { // LOOK linear search, switch to binary
-      if (date.equals(cd))
-        return true;
-    }
-    return false;
+    return cdates.contains(date);
   }
 
   /** Get the bounds of the ith coordinate as a CalendarDate[2]. */
@@ -307,7 +310,8 @@ public class GridAxis1DTime extends GridAxis1D {
 
   ////////////////////////////////////////////////////////////////////////////////////////////
   private final TimeHelper timeHelper;
-  private final ImmutableList<CalendarDate> cdates;
+  private final CalendarDateArray cdates;
+  private volatile ImmutableList<CalendarDate> cdateList; // made from cdates when first asked for
 
   protected GridAxis1DTime(Builder<?> builder) {
     super(builder);
@@ -318,30 +322,18 @@ public class GridAxis1DTime extends GridAxis1D {
     }
 
     if (range != null && builder.cdates != null) {
-      this.cdates = subsetDatesByRange(builder.cdates, range);
+      this.cdates = CalendarDateArray.of(builder.cdates).subset(range);
       Preconditions.checkArgument(cdates.size() == this.getNcoords());
     } else if (builder.cdates != null) {
-      this.cdates = ImmutableList.copyOf(builder.cdates);
+      this.cdates = CalendarDateArray.of(builder.cdates);
       Preconditions.checkArgument(cdates.size() == this.getNcoords());
     } else {
-      this.cdates = makeCalendarDateFromValues();
-    }
-  }
-
-  private ImmutableList<CalendarDate> makeCalendarDateFromValues() {
-    ArrayList<CalendarDate> result = new ArrayList<>(getNcoords());
-    for (double val : getCoordsAsArray()) {
-      result.add(timeHelper.makeCalendarDateFromOffset(val));
-    }
-    return ImmutableList.copyOf(result);
-  }
-
-  private ImmutableList<CalendarDate> subsetDatesByRange(List<CalendarDate> dates, RangeIterator range) {
-    ImmutableList.Builder<CalendarDate> builder = ImmutableList.builder();
-    for (int index : range) {
-      builder.add(dates.get(index));
+      double[] midpoints = new double[getNcoords()];
+      for (int i = 0; i < midpoints.length; i++) {
+        midpoints[i] = getCoordMidpoint(i);
+      }
+      this.cdates = timeHelper.makeCalendarDates(midpoints);
     }
-    return builder.build();
   }
 
   public Builder<?> toBuilder() {
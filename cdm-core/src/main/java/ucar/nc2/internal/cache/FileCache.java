@@ -8,6 +8,7 @@ import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateFormatter;
 import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Instruments;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
@@ -257,9 +258,13 @@ public class FileCache implements FileCacheIF {
       hits.incrementAndGet();
       if (t != null)
         t.hit++;
+      if (Instruments.isEnabled())
+        Instruments.get().cacheAccess(name, true);
       return ncfile;
     }
     miss.incrementAndGet();
+    if (Instruments.isEnabled())
+      Instruments.get().cacheAccess(name, false);
     if (t != null)
       t.miss++;
 
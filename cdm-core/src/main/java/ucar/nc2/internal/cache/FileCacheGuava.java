@@ -11,6 +11,7 @@ import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Instruments;
 import java.util.Formatter;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -62,9 +63,16 @@ public class FileCacheGuava implements FileCacheIF {
     if (null == hashKey)
       throw new IllegalArgumentException();
 
+    boolean[] opened = new boolean[1];
     try {
       // If the key wasn't in the "easy to compute" group, we need to use the factory.
-      return cache.get((String) hashKey, () -> factory.open(durl, buffer_size, cancelTask, spiObject));
+      FileCacheable result = cache.get((String) hashKey, () -> {
+        opened[0] = true;
+        return factory.open(durl, buffer_size, cancelTask, spiObject);
+      });
+      if (Instruments.isEnabled())
+        Instruments.get().cacheAccess(name, !opened[0]);
+      return result;
     } catch (ExecutionException e) {
       throw new RuntimeException(e.getCause());
     }
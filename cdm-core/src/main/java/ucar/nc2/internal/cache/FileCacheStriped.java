@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.cache;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Instruments;
+
+/**
+ * A FileCacheIF with the same semantics as {@link FileCache}, for many concurrent users.
+ * <ol>
+ * <li>The files of a key are found in a ConcurrentHashMap, whose bins are the only locks, held just to add or remove a
+ * file.
+ * <li>A file is locked for its user with a compare and set; acquiring a cached file never waits for another key.
+ * <li>release() is a lookup and a few writes, it never takes a lock.
+ * <li>Eviction is done by one thread at a time, the others dont wait for it. Going over the soft limit starts it in a
+ * background thread, going over the hard limit does it in the calling thread. It closes the least recently used
+ * unlocked files without sorting all of them, or locking the cache.
+ * </ol>
+ * As with FileCache, a file that is acquired and has changed on disk is closed and reopened, FileCacheable.release()
+ * is called when a file goes back into the cache and FileCacheable.reacquire() when it is taken out again.
+ */
+@ThreadSafe
+public class FileCacheStriped implements FileCacheIF {
+  private static final org.slf4j.Logger cacheLog = org.slf4j.LoggerFactory.getLogger("cacheLogger");
+
+  private static ScheduledExecutorService executor; // shared by all caches, created when first needed
+
+  private static synchronized ScheduledExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("FileCacheStriped-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
+
+  /**
+   * Shut down the background thread shared by all FileCacheStriped, for a clean process shutdown. Called by
+   * NetcdfDatasets.shutdown(). The periodic cleanups of the caches stop, until a cache is enabled again.
+   */
+  public static synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+      cacheLog.info("FileCacheStriped.shutdown called");
+    }
+    executor = null;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////////
+  private final String name;
+  private final int minElements, softLimit, hardLimit;
+  private final long period; // msecs
+
+  private final AtomicBoolean disabled = new AtomicBoolean(false);
+  private final AtomicBoolean cleaning = new AtomicBoolean(false); // a cleanup is running or scheduled
+  private ScheduledFuture<?> scour; // the periodic cleanup, null if none; guarded by this
+
+  // all files of a key, locked or not. may have multiple copies of the same file opened
+  private final ConcurrentHashMap<Object, ConcurrentLinkedQueue<CacheFile>> cache = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<FileCacheable, CacheFile> files = new ConcurrentHashMap<>();
+  private final AtomicInteger nfiles = new AtomicInteger(); // files.size() is not constant time
+
+  // stats
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder miss = new LongAdder();
+  private final AtomicInteger cleanups = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param name of file cache
+   * @param minElementsInMemory keep this number in the cache
+   * @param softLimit trigger a cleanup in a background thread if it goes over this number.
+   * @param hardLimit if > 0, never allow more than this many elements. This causes a cleanup to be done in the calling
+   *        thread.
+   * @param period if > 0, do periodic cleanups every this number of seconds.
+   */
+  public FileCacheStriped(String name, int minElementsInMemory, int softLimit, int hardLimit, int period) {
+    this.name = name;
+    this.minElements = minElementsInMemory;
+    this.softLimit = softLimit;
+    this.hardLimit = hardLimit;
+    this.period = (long) 1000 * period;
+    startScour();
+  }
+
+  // The task only holds the cache weakly, and cancels itself once the cache is garbage collected.
+  // shutdown() cancels the task without clearing scour, so a done task is restarted too.
+  private synchronized void startScour() {
+    if (period <= 0 || isScouring())
+      return;
+    WeakReference<FileCacheStriped> ref = new WeakReference<>(this);
+    AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+    scour = getExecutor().scheduleAtFixedRate(() -> {
+      FileCacheStriped fileCache = ref.get();
+      if (fileCache == null) {
+        self.get().cancel(false);
+      } else if (!fileCache.disabled.get() && fileCache.cleaning.compareAndSet(false, true)) {
+        fileCache.cleanup(fileCache.softLimit);
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+    self.set(scour);
+  }
+
+  private synchronized void stopScour() {
+    if (scour != null) {
+      scour.cancel(false);
+      scour = null;
+    }
+  }
+
+  // for testing
+  synchronized boolean isScouring() {
+    return scour != null && !scour.isDone();
+  }
+
+  @Override
+  public void enable() {
+    disabled.set(false);
+    startScour();
+  }
+
+  /** Disable the cache, force release all files, and stop the periodic cleanups. */
+  @Override
+  public void disable() {
+    disabled.set(true);
+    stopScour();
+    clearCache(true);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, DatasetUrl durl) throws IOException {
+    return acquire(factory, durl.getTrueurl(), durl, -1, null, null);
+  }
+
+  /**
+   * Acquire a FileCacheable from the cache, and lock it so no one else can use it.
+   * If not already in cache, open it with the FileFactory, and put in cache.
+   * Call FileCacheable.close when done, and the file is then released instead of closed.
+   *
+   * @param factory use this factory to open the file if not in the cache; may not be null
+   * @param hashKey unique key for this file. If null, the location will be used
+   * @param location file location, may also used as the cache name, will be passed to the FileFactory
+   * @param buffer_size RandomAccessFile buffer size, if <= 0, use default size
+   * @param cancelTask user can cancel, ok to be null.
+   * @param spiObject passed to the factory if object needs to be recreated
+   * @return FileCacheable corresponding to location.
+   */
+  @Override
+  public FileCacheable acquire(FileFactory factory, Object hashKey, DatasetUrl location, int buffer_size,
+      CancelTask cancelTask, Object spiObject) throws IOException {
+    if (null == hashKey)
+      hashKey = location.getTrueurl();
+    if (null == hashKey)
+      throw new IllegalArgumentException();
+
+    FileCacheable ncfile = acquireCacheOnly(hashKey);
+    if (ncfile != null) {
+      hits.increment();
+      if (Instruments.isEnabled())
+        Instruments.get().cacheAccess(name, true);
+      return ncfile;
+    }
+    miss.increment();
+    if (Instruments.isEnabled())
+      Instruments.get().cacheAccess(name, false);
+
+    ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " acquire " + hashKey + " " + ncfile.getLocation());
+
+    // user may have canceled
+    if ((cancelTask != null) && (cancelTask.isCancel())) {
+      ncfile.close();
+      return null;
+    }
+
+    if (disabled.get())
+      return ncfile;
+
+    CacheFile file = new CacheFile(hashKey, ncfile); // locked
+    files.put(ncfile, file);
+    cache.compute(hashKey, (key, list) -> {
+      if (list == null)
+        list = new ConcurrentLinkedQueue<>();
+      list.add(file);
+      return list;
+    });
+    int count = nfiles.incrementAndGet();
+
+    if ((hardLimit > 0) && (count > hardLimit)) {
+      if (cleaning.compareAndSet(false, true))
+        cleanup(hardLimit);
+    } else if ((softLimit > 0) && (count > softLimit)) {
+      if (cleaning.compareAndSet(false, true))
+        getExecutor().schedule(() -> cleanup(softLimit), 100, TimeUnit.MILLISECONDS); // as FileCache does
+    }
+    return ncfile;
+  }
+
+  // find an unlocked file in the cache and lock it, or return null.
+  private FileCacheable acquireCacheOnly(Object hashKey) {
+    if (disabled.get())
+      return null;
+
+    ConcurrentLinkedQueue<CacheFile> list = cache.get(hashKey);
+    if (list == null)
+      return null;
+
+    for (CacheFile want : list) {
+      if (!want.isLocked.compareAndSet(false, true))
+        continue;
+      FileCacheable ncfile = want.ncfile;
+      if (ncfile == null) // removed while we were looking
+        continue;
+
+      if (ncfile.getLastModified() != want.lastModified) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + ": acquire from cache " + hashKey + " " + ncfile.getLocation()
+              + " was changed; discard");
+        remove(want);
+        continue;
+      }
+
+      try {
+        ncfile.reacquire(); // rehydrate
+        return ncfile;
+      } catch (IOException ioe) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + " acquire from cache " + hashKey + " " + ncfile.getLocation()
+              + " failed: " + ioe.getMessage());
+        remove(want);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Release the file. This unlocks it and updates its lastAccessed date. Never blocks.
+   *
+   * @param ncfile release this file.
+   * @return true if file was in cache, false if it was not
+   */
+  @Override
+  public boolean release(FileCacheable ncfile) throws IOException {
+    if (ncfile == null)
+      return false;
+
+    if (disabled.get()) {
+      ncfile.setFileCache(null); // prevent infinite loops
+      ncfile.close();
+      return false;
+    }
+
+    CacheFile file = files.get(ncfile);
+    if (file == null)
+      return false;
+
+    if (!file.isLocked.get())
+      cacheLog.warn("FileCacheStriped " + name + " release " + ncfile.getLocation() + " not locked");
+    file.lastAccessed = System.currentTimeMillis();
+    file.countAccessed.incrementAndGet();
+    try {
+      ncfile.release();
+      file.isLocked.set(false);
+    } catch (IOException ioe) {
+      cacheLog.error("FileCacheStriped {} release failed on {} - will try to remove from cache. Failure due to:", name,
+          ncfile.getLocation(), ioe);
+      remove(file);
+    }
+    return true;
+  }
+
+  /** Remove all instances of the object from the cache, and close them. */
+  @Override
+  public void eject(Object hashKey) {
+    if (disabled.get())
+      return;
+
+    ConcurrentLinkedQueue<CacheFile> list = cache.remove(hashKey);
+    if (list == null)
+      return;
+    for (CacheFile file : list) {
+      file.isLocked.set(true);
+      close(file);
+    }
+  }
+
+  /**
+   * Remove all cache entries.
+   *
+   * @param force if true, remove them even if they are currently locked.
+   */
+  @Override
+  public void clearCache(boolean force) {
+    List<CacheFile> deleteList = new ArrayList<>();
+    for (CacheFile file : files.values()) {
+      if (file.isLocked.compareAndSet(false, true)) {
+        deleteList.add(file);
+      } else if (force) {
+        cacheLog.warn("FileCacheStriped " + name + " force close locked file= " + file);
+        deleteList.add(file);
+      }
+    }
+    deleteList.forEach(this::remove);
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " clearCache force= " + force + " deleted= " + deleteList.size()
+          + " left=" + nfiles.get());
+  }
+
+  /**
+   * Close the least recently used unlocked files, to bring the cache down to minElements. Must only be called by the
+   * thread that set cleaning to true. Only the oldest files are kept while looking, instead of sorting all of them.
+   */
+  private void cleanup(int maxElements) {
+    try {
+      int size = nfiles.get();
+      if (size <= minElements)
+        return;
+      cleanups.incrementAndGet();
+
+      int need2delete = size - minElements;
+      PriorityQueue<CacheFileSorter> oldest = new PriorityQueue<>(need2delete + 1, Comparator.reverseOrder());
+      for (CacheFile file : files.values()) {
+        if (file.isLocked.get())
+          continue;
+        oldest.add(new CacheFileSorter(file));
+        if (oldest.size() > need2delete)
+          oldest.poll(); // drop the newest
+      }
+
+      int count = 0;
+      for (CacheFileSorter sorter : oldest) {
+        if (sorter.file.isLocked.compareAndSet(false, true)) { // lock it so it isnt used anywhere else
+          remove(sorter.file);
+          count++;
+        }
+      }
+      if (size - count > maxElements)
+        cacheLog.warn("FileCacheStriped " + name + " cleanup couldnt remove enough to keep under the maximum= "
+            + maxElements + " due to locked files; currently at = " + (size - count));
+      if (cacheLog.isDebugEnabled())
+        cacheLog.debug("FileCacheStriped {} cleanup had={} removed={}", name, size, count);
+
+    } finally {
+      cleaning.set(false);
+    }
+  }
+
+  // file must be locked by the caller
+  private void remove(CacheFile file) {
+    cache.computeIfPresent(file.hashKey, (key, list) -> {
+      list.remove(file);
+      return list.isEmpty() ? null : list;
+    });
+    close(file);
+  }
+
+  // file must be locked by the caller, and no longer findable by its key
+  private void close(CacheFile file) {
+    FileCacheable ncfile = file.ncfile;
+    if (ncfile == null || files.remove(ncfile) == null)
+      return; // already closed
+    nfiles.decrementAndGet();
+    file.ncfile = null; // help the gc
+    try {
+      ncfile.setFileCache(null); // unhook the caching
+      ncfile.close();
+    } catch (IOException e) {
+      cacheLog.error("FileCacheStriped " + name + " close failed on " + ncfile.getLocation(), e);
+    }
+  }
+
+  // debugging
+
+  @Override
+  public void resetTracking() {}
+
+  @Override
+  public void showTracking(Formatter format) {}
+
+  @Override
+  public void showCache(Formatter format) {
+    format.format("%nFileCacheStriped %s (min=%d softLimit=%d hardLimit=%d scour=%d secs):%n", name, minElements,
+        softLimit, hardLimit, period / 1000);
+    format.format(" isLocked  accesses lastAccess                   location %n");
+    for (CacheFile file : getSortedFiles()) {
+      FileCacheable ncfile = file.ncfile;
+      format.format("%8s %9d %s == %s %n", file.isLocked, file.countAccessed.get(),
+          CalendarDateFormatter.toDateTimeStringISO(file.lastAccessed), ncfile == null ? "null" : ncfile.getLocation());
+    }
+    showStats(format);
+  }
+
+  @Override
+  public List<String> showCache() {
+    List<String> result = new ArrayList<>();
+    for (CacheFile file : getSortedFiles()) {
+      result.add(file.toString());
+    }
+    return result;
+  }
+
+  // oldest first
+  private List<CacheFile> getSortedFiles() {
+    List<CacheFileSorter> sorters = new ArrayList<>();
+    for (CacheFile file : files.values()) {
+      sorters.add(new CacheFileSorter(file));
+    }
+    Collections.sort(sorters);
+    List<CacheFile> result = new ArrayList<>(sorters.size());
+    sorters.forEach(s -> result.add(s.file));
+    return result;
+  }
+
+  @Override
+  public void showStats(Formatter format) {
+    format.format("  hits= %d miss= %d nfiles= %d elems= %d cleanups= %d%n", hits.sum(), miss.sum(), nfiles.get(),
+        cache.size(), cleanups.get());
+  }
+
+  // for testing
+  int getNumberOfFiles() {
+    return nfiles.get();
+  }
+
+  private class CacheFile {
+    final Object hashKey;
+    volatile FileCacheable ncfile; // actually final, but we null it out for gc
+    final AtomicBoolean isLocked = new AtomicBoolean(true);
+    final AtomicInteger countAccessed = new AtomicInteger();
+    final long lastModified;
+    volatile long lastAccessed;
+
+    private CacheFile(Object hashKey, FileCacheable ncfile) {
+      this.hashKey = hashKey;
+      this.ncfile = ncfile;
+      this.lastModified = ncfile.getLastModified();
+      this.lastAccessed = System.currentTimeMillis();
+      ncfile.setFileCache(FileCacheStriped.this);
+    }
+
+    @Override
+    public String toString() {
+      FileCacheable nc = ncfile;
+      String loc = nc == null ? "ncfile is null" : nc.getLocation();
+      return isLocked + " " + countAccessed + " " + CalendarDateFormatter.toDateTimeStringISO(lastAccessed) + "   "
+          + loc;
+    }
+  }
+
+  // freeze lastAccessed for sorting, it may change while we look
+  private static class CacheFileSorter implements Comparable<CacheFileSorter> {
+    private final CacheFile file;
+    private final long lastAccessed;
+
+    CacheFileSorter(CacheFile file) {
+      this.file = file;
+      this.lastAccessed = file.lastAccessed;
+    }
+
+    @Override
+    public int compareTo(CacheFileSorter o) {
+      return Long.compare(lastAccessed, o.lastAccessed);
+    }
+  }
+}
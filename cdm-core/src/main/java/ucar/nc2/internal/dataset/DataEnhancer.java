@@ -7,6 +7,7 @@ package ucar.nc2.internal.dataset;
 import java.util.Set;
 
 import ucar.array.ArrayType;
+import ucar.array.Arrays;
 import ucar.array.ArraysConvert;
 import ucar.ma2.DataType;
 import ucar.ma2.IndexIterator;
@@ -58,8 +59,32 @@ public class DataEnhancer {
     return result;
   }
 
-  // TODO
   public ucar.array.Array<?> convertArray(ucar.array.Array<?> data, Set<Enhance> enhancements) {
+    boolean convertEnums = enhancements.contains(Enhance.ConvertEnums)
+        && (dataType.isEnum() || (orgDataType != null && orgDataType.isEnum()));
+    if (!convertEnums && !variableDS.isVariableLength() && data.getArrayType().isNumeric()) {
+      // the common case, packed numbers: convert in a single pass without going through ucar.ma2
+      boolean convertUnsigned = enhancements.contains(Enhance.ConvertUnsigned);
+      boolean applyScaleOffset = enhancements.contains(Enhance.ApplyScaleOffset);
+      boolean convertMissing = enhancements.contains(Enhance.ConvertMissing);
+      boolean unsigned = convertUnsigned && scaleMissingUnsignedProxy.getSignedness() == DataType.Signedness.UNSIGNED;
+      boolean scaleOffset = applyScaleOffset && scaleMissingUnsignedProxy.hasScaleOffset();
+      boolean missing = convertMissing && scaleMissingUnsignedProxy.hasMissing();
+      DataType outType = scaleMissingUnsignedProxy.getConvertedType(convertUnsigned, applyScaleOffset);
+      if (!unsigned && !scaleOffset && !missing && data.getArrayType() == outType.getArrayType()) {
+        return data; // Nothing to do!
+      }
+      if (outType == DataType.FLOAT || outType == DataType.DOUBLE) {
+        int n = (int) data.length();
+        Object dest = (outType == DataType.FLOAT) ? new float[n] : new double[n];
+        if (scaleMissingUnsignedProxy.convert(Arrays.copyPrimitiveArray(data), dest, convertUnsigned,
+            applyScaleOffset, convertMissing)) {
+          return Arrays.factory(outType.getArrayType(), data.getShape(), dest);
+        }
+      }
+    }
+
+    // TODO
     ucar.ma2.Array ma2 = ArraysConvert.convertFromArray(data);
     return ArraysConvert.convertToArray(convert(ma2, enhancements));
   }
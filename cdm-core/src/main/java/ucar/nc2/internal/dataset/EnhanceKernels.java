@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.dataset;
+
+import java.util.function.DoublePredicate;
+import javax.annotation.Nullable;
+
+/**
+ * Single pass conversion of packed data: unsigned widening, scale/offset and missing data masking together,
+ * from a primitive array into a caller supplied float[] or double[]. Each value is widened to double, unsigned if
+ * asked, then becomes scale * value + offset if asked, then NaN if isMissing says so, then is stored.
+ * This is the same as EnhanceScaleMissingUnsignedImpl.convert() does one boxed value at a time.
+ *
+ * The loops have no allocation and no calls except to isMissing, so without missing data the JIT can vectorize them.
+ * The source may be byte[], short[], int[], float[] or double[]; long[] is not done, since unsigned longs dont
+ * widen exactly to a double.
+ */
+public class EnhanceKernels {
+
+  private EnhanceKernels() {}
+
+  /**
+   * Convert src into dest, which must be at least as long.
+   *
+   * @param src byte[], short[], int[], float[] or double[].
+   * @param unsigned treat integral values as unsigned.
+   * @param scaleOffset apply scale and offset.
+   * @param scale multiply by this.
+   * @param offset then add this.
+   * @param isMissing if not null, values for which this is true become NaN.
+   * @param dest float[] or double[].
+   * @return false if there is no kernel for these array types, in which case nothing was done.
+   */
+  public static boolean convert(Object src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, Object dest) {
+    if (dest instanceof float[]) {
+      float[] fdest = (float[]) dest;
+      if (src instanceof byte[]) {
+        convert((byte[]) src, unsigned, scaleOffset, scale, offset, isMissing, fdest);
+      } else if (src instanceof short[]) {
+        convert((short[]) src, unsigned, scaleOffset, scale, offset, isMissing, fdest);
+      } else if (src instanceof int[]) {
+        convert((int[]) src, unsigned, scaleOffset, scale, offset, isMissing, fdest);
+      } else if (src instanceof float[]) {
+        convert((float[]) src, scaleOffset, scale, offset, isMissing, fdest);
+      } else if (src instanceof double[]) {
+        convert((double[]) src, scaleOffset, scale, offset, isMissing, fdest);
+      } else {
+        return false;
+      }
+      return true;
+    }
+
+    if (dest instanceof double[]) {
+      double[] ddest = (double[]) dest;
+      if (src instanceof byte[]) {
+        convert((byte[]) src, unsigned, scaleOffset, scale, offset, isMissing, ddest);
+      } else if (src instanceof short[]) {
+        convert((short[]) src, unsigned, scaleOffset, scale, offset, isMissing, ddest);
+      } else if (src instanceof int[]) {
+        convert((int[]) src, unsigned, scaleOffset, scale, offset, isMissing, ddest);
+      } else if (src instanceof float[]) {
+        convert((float[]) src, scaleOffset, scale, offset, isMissing, ddest);
+      } else if (src instanceof double[]) {
+        convert((double[]) src, scaleOffset, scale, offset, isMissing, ddest);
+      } else {
+        return false;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  // The branches on scaleOffset and isMissing dont change inside the loops, so the JIT moves them outside.
+  // The unsigned widening is done with a mask, so it needs no branch at all.
+
+  public static void convert(byte[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, float[] dest) {
+    int mask = unsigned ? 0xff : -1;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = (float) val;
+    }
+  }
+
+  public static void convert(byte[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, double[] dest) {
+    int mask = unsigned ? 0xff : -1;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = val;
+    }
+  }
+
+  public static void convert(short[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, float[] dest) {
+    int mask = unsigned ? 0xffff : -1;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = (float) val;
+    }
+  }
+
+  public static void convert(short[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, double[] dest) {
+    int mask = unsigned ? 0xffff : -1;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = val;
+    }
+  }
+
+  public static void convert(int[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, float[] dest) {
+    long mask = unsigned ? 0xffffffffL : -1L;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = (float) val;
+    }
+  }
+
+  public static void convert(int[] src, boolean unsigned, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, double[] dest) {
+    long mask = unsigned ? 0xffffffffL : -1L;
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i] & mask;
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = val;
+    }
+  }
+
+  public static void convert(float[] src, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, float[] dest) {
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i];
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = (float) val;
+    }
+  }
+
+  public static void convert(float[] src, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, double[] dest) {
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i];
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = val;
+    }
+  }
+
+  public static void convert(double[] src, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, float[] dest) {
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i];
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = (float) val;
+    }
+  }
+
+  public static void convert(double[] src, boolean scaleOffset, double scale, double offset,
+      @Nullable DoublePredicate isMissing, double[] dest) {
+    for (int i = 0; i < src.length; i++) {
+      double val = src[i];
+      if (scaleOffset) {
+        val = scale * val + offset;
+      }
+      if (isMissing != null && isMissing.test(val)) {
+        val = Double.NaN;
+      }
+      dest[i] = val;
+    }
+  }
+}
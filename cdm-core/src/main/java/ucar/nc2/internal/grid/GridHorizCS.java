@@ -149,10 +149,30 @@ public class GridHorizCS implements GridHorizCoordinateSystem {
    */
   public LatLonPoint getLatLon(int xindex, int yindex) {
     double x = xaxis.getCoordMidpoint(xindex);
-    double y = yaxis.getCoordMidpoint(xindex);
+    double y = yaxis.getCoordMidpoint(yindex);
     return isLatLon() ? LatLonPoint.create(y, x) : getLatLon(x, y);
   }
 
+  /**
+   * Get the lat/lon of every point of a projection grid, from the shared {@link LatLon2DCache}.
+   *
+   * @throws IllegalStateException if this is a lat/lon grid.
+   */
+  public LatLon2DCache.LatLonField getLatLonField() {
+    if (isLatLon() || xaxis == null || yaxis == null) {
+      throw new IllegalStateException("GridHorizCS is not a projection");
+    }
+    double[] xcoords = new double[xaxis.getNcoords()];
+    for (int i = 0; i < xcoords.length; i++) {
+      xcoords[i] = xaxis.getCoordMidpoint(i);
+    }
+    double[] ycoords = new double[yaxis.getNcoords()];
+    for (int i = 0; i < ycoords.length; i++) {
+      ycoords[i] = yaxis.getCoordMidpoint(i);
+    }
+    return LatLon2DCache.getLatLon(getProjection(), xcoords, ycoords);
+  }
+
   private LatLonPoint getLatLon(double xcoord, double ycoord) {
     Projection dataProjection = getProjection();
     return dataProjection.projToLatLon(ProjectionPoint.create(xcoord, ycoord));
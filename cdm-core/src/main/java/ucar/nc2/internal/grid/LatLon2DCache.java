@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.grid;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import javax.annotation.concurrent.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.Projection;
+import ucar.unidata.util.Parameter;
+
+/**
+ * Process-wide cache of the lat/lon of every point of a projection grid with 1D x and y axes, so that writing or
+ * rendering many subsets of the same grid does not project every point again. A field is identified by the projection
+ * class and parameters and by the x and y coordinates. The cache is bounded by the total size of the fields in bytes,
+ * least recently used fields are evicted first. A field that is missing is computed once, even when asked for by
+ * several threads, in blocks of rows in parallel.
+ *
+ * The size limit is set with the "ucar.nc2.grid.latLonCache.maxBytes" system property or {@link #setMaxBytes}.
+ * A size of 0 disables the cache.
+ */
+public class LatLon2DCache {
+  private static final Logger logger = LoggerFactory.getLogger(LatLon2DCache.class);
+
+  private static final String MAXBYTES_PROPERTY = "ucar.nc2.grid.latLonCache.maxBytes";
+  private static final long DEFAULT_MAXBYTES = 64 * 1024 * 1024;
+  private static final int POINTS_PER_BLOCK = 16 * 1024; // smaller fields are done by the calling thread
+
+  private static long maxBytes;
+  private static Cache<Key, LatLonField> cache; // null if disabled
+
+  static {
+    setMaxBytes(getDefaultMaxBytes());
+  }
+
+  private LatLon2DCache() {}
+
+  private static long getDefaultMaxBytes() {
+    String prop = System.getProperty(MAXBYTES_PROPERTY);
+    if (prop != null) {
+      try {
+        long size = Long.parseLong(prop);
+        if (size >= 0) {
+          return size;
+        }
+        logger.warn(String.format("-D%s must be >= 0", MAXBYTES_PROPERTY));
+      } catch (NumberFormatException nfe) {
+        logger.warn(String.format("-D%s is not an integer", MAXBYTES_PROPERTY));
+      }
+    }
+    return DEFAULT_MAXBYTES;
+  }
+
+  /**
+   * Set the maximum total size of the cached fields, 0 to disable the cache.
+   * The cache is emptied and its statistics reset.
+   */
+  public static synchronized void setMaxBytes(long max) {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+    maxBytes = max;
+    cache = (max <= 0) ? null
+        : CacheBuilder.newBuilder().maximumWeight(max).weigher((Key key, LatLonField field) -> field.getSizeBytes())
+            .recordStats().build();
+  }
+
+  public static synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  private static synchronized Cache<Key, LatLonField> getCache() {
+    return cache;
+  }
+
+  /**
+   * Get the lat/lon of every point of the grid xcoords x ycoords, computing it if its not in the cache.
+   * The coordinate arrays must not be modified afterwards.
+   *
+   * @param proj the projection of the grid.
+   * @param xcoords the x coordinates of the grid, in the units of the projection.
+   * @param ycoords the y coordinates of the grid, in the units of the projection.
+   */
+  public static LatLonField getLatLon(Projection proj, double[] xcoords, double[] ycoords) {
+    Cache<Key, LatLonField> c = getCache();
+    if (c == null) {
+      return compute(proj, xcoords, ycoords);
+    }
+    try {
+      return c.get(new Key(proj, xcoords, ycoords), () -> compute(proj, xcoords, ycoords));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Compute the lat/lon of every point of the grid, in blocks of rows in parallel. Does not use the cache. */
+  public static LatLonField compute(Projection proj, double[] xcoords, double[] ycoords) {
+    int nx = xcoords.length;
+    int ny = ycoords.length;
+    double[] lat = new double[nx * ny];
+    double[] lon = new double[nx * ny];
+
+    int rowsPerBlock = Math.max(1, POINTS_PER_BLOCK / Math.max(1, nx));
+    int nblocks = (ny + rowsPerBlock - 1) / rowsPerBlock;
+    IntStream blocks = IntStream.range(0, nblocks);
+    if (nblocks > 1) {
+      blocks = blocks.parallel();
+    }
+    blocks.forEach(block -> {
+      int endRow = Math.min(ny, (block + 1) * rowsPerBlock);
+      for (int row = block * rowsPerBlock; row < endRow; row++) {
+        proj.projToLatLon(xcoords, 0, 1, ycoords, row, 0, lat, lon, row * nx, nx);
+      }
+    });
+    return new LatLonField(nx, ny, lat, lon);
+  }
+
+  /** Remove all fields. */
+  public static void clear() {
+    Cache<Key, LatLonField> c = getCache();
+    if (c != null) {
+      c.invalidateAll();
+    }
+  }
+
+  public static long getHitCount() {
+    return getStats().hitCount();
+  }
+
+  public static long getMissCount() {
+    return getStats().missCount();
+  }
+
+  /** Number of fields in the cache. */
+  public static long size() {
+    Cache<Key, LatLonField> c = getCache();
+    return (c == null) ? 0 : c.size();
+  }
+
+  private static CacheStats getStats() {
+    Cache<Key, LatLonField> c = getCache();
+    return (c == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : c.stats();
+  }
+
+  public static void showStats(Formatter f) {
+    CacheStats stats = getStats();
+    f.format("LatLon2DCache maxBytes=%d size=%d hits=%d misses=%d evictions=%d%n", getMaxBytes(), size(),
+        stats.hitCount(), stats.missCount(), stats.evictionCount());
+  }
+
+  /** The lat/lon of every point of a grid, in row major order (y, x). The arrays are shared, dont modify them. */
+  @Immutable
+  public static class LatLonField {
+    private final int nx, ny;
+    private final double[] lat, lon;
+
+    private LatLonField(int nx, int ny, double[] lat, double[] lon) {
+      this.nx = nx;
+      this.ny = ny;
+      this.lat = lat;
+      this.lon = lon;
+    }
+
+    public int getNx() {
+      return nx;
+    }
+
+    public int getNy() {
+      return ny;
+    }
+
+    /** The latitudes, lat[yindex * nx + xindex]. Must not be modified. */
+    public double[] getLat() {
+      return lat;
+    }
+
+    /** The longitudes, lon[yindex * nx + xindex]. Must not be modified. */
+    public double[] getLon() {
+      return lon;
+    }
+
+    public LatLonPoint getLatLon(int yindex, int xindex) {
+      int idx = yindex * nx + xindex;
+      return LatLonPoint.create(lat[idx], lon[idx]);
+    }
+
+    private int getSizeBytes() {
+      return (int) Math.min(Integer.MAX_VALUE, 16L * lat.length);
+    }
+  }
+
+  /** Identifies a field: the projection class and parameters, and the x and y coordinates. */
+  private static class Key {
+    private final Class<?> projClass;
+    private final List<Parameter> params;
+    private final double[] xcoords;
+    private final double[] ycoords;
+    private final int hashCode;
+
+    Key(Projection proj, double[] xcoords, double[] ycoords) {
+      this.projClass = proj.getClass();
+      this.params = proj.getProjectionParameters();
+      this.xcoords = xcoords;
+      this.ycoords = ycoords;
+      this.hashCode = 31 * (31 * (31 * projClass.hashCode() + params.hashCode()) + Arrays.hashCode(xcoords))
+          + Arrays.hashCode(ycoords);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return hashCode == other.hashCode && projClass.equals(other.projClass) && params.equals(other.params)
+          && Arrays.equals(xcoords, other.xcoords) && Arrays.equals(ycoords, other.ycoords);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
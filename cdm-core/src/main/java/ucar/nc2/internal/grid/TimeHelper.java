@@ -96,6 +96,11 @@ public class TimeHelper {
     return dateUnit.makeCalendarDate(offset);
   }
 
+  /** Convert all the offsets at once, without making a CalendarDate for each. */
+  public CalendarDateArray makeCalendarDates(double[] offsets) {
+    return CalendarDateArray.of(dateUnit, offsets);
+  }
+
   public CalendarDate makeCalendarDateFromOffset(String offset) {
     return CalendarDateFormatter.isoStringToCalendarDate(dateUnit.getCalendar(), offset);
   }
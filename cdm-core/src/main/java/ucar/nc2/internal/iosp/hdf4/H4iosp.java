@@ -4,6 +4,7 @@
  */
 package ucar.nc2.internal.iosp.hdf4;
 
+import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -28,6 +29,7 @@ import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutBB;
@@ -48,11 +50,22 @@ public class H4iosp extends AbstractIOServiceProvider {
   private H4header header;
   private Charset valueCharset;
 
+  // the header is at 0, 512, 1024, 2048...
+  private static final byte[] magic = {(byte) 0x0e, (byte) 0x03, (byte) 0x13, (byte) 0x01};
+  private static final List<FileSignature> signatures = ImmutableList.of(FileSignature.at(0, magic),
+      FileSignature.at(512, magic), FileSignature.at(1024, magic), FileSignature.at(2048, magic),
+      FileSignature.at(4096, magic));
+
   @Override
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
     return H4header.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     if (header != null && header.isEos()) {
@@ -16,7 +16,8 @@ import java.util.List;
 /**
  * // Level 1A2
  *
- * These are used for symbols, not data i think. Version 1 is H5header.GroupBTree.
+ * These are used for symbols, and for the chunk index of datasets written with the HDF5 1.10 file format (record
+ * types 10 and 11). Version 1 is H5header.GroupBTree.
  *
  * Version 2 B-trees are "traditional" B-trees, with one major difference. Instead of just using a simple pointer
  * (or address in the file) to a child of an internal node, the pointer to the child node contains two additional
@@ -38,6 +39,9 @@ public class BTree2 {
   public final byte btreeType;
   private final int nodeSize; // size in bytes of btree nodes
   private final short recordSize; // size in bytes of btree records
+  private final int nChunkDims; // only for chunk records, type 10 and 11
+  private int maxNrecSize; // size in bytes of the number of records in a child node
+  private int[] cumMaxNrecSize; // size in bytes of the total number of records below a child node, by depth
 
   private final String owner;
   private final H5header h5;
@@ -46,9 +50,22 @@ public class BTree2 {
   public List<Entry2> entryList = new ArrayList<>();
 
   public BTree2(H5header h5, String owner, long address) throws IOException {
+    this(h5, owner, address, 0);
+  }
+
+  /**
+   * Read a version 2 B-tree.
+   *
+   * @param h5 the file header
+   * @param owner name of the owner, for messages
+   * @param address address of the B-tree header
+   * @param nChunkDims the rank of the dataset, only needed for the chunk index record types 10 and 11
+   */
+  public BTree2(H5header h5, String owner, long address, int nChunkDims) throws IOException {
     this.h5 = h5;
     this.raf = h5.getRandomAccessFile();
     this.owner = owner;
+    this.nChunkDims = nChunkDims;
 
     raf.seek(h5.getFileOffset(address));
 
@@ -78,6 +95,7 @@ public class BTree2 {
           rootNodeAddress);
     }
 
+    calcNodeInfo(treeDepth);
     if (treeDepth > 0) {
       InternalNode node = new InternalNode(rootNodeAddress, numRecordsRootNode, recordSize, treeDepth);
       node.recurse();
@@ -87,6 +105,25 @@ public class BTree2 {
     }
   }
 
+  // The size of the record counts in the internal nodes depends on the maximum number of records a node can hold,
+  // see H5B2__hdr_init() in the HDF5 library. Nodes have a 10 byte prefix: signature, version, type and checksum.
+  private void calcNodeInfo(int treeDepth) {
+    long maxNrec = (nodeSize - 10) / recordSize;
+    long cumMaxNrec = maxNrec;
+    maxNrecSize = limitEncodedSize(maxNrec);
+    cumMaxNrecSize = new int[treeDepth + 1];
+    for (int depth = 1; depth <= treeDepth; depth++) {
+      int pointerSize = h5.getSizeOffsets() + maxNrecSize + ((depth > 1) ? cumMaxNrecSize[depth - 1] : 0);
+      maxNrec = (nodeSize - (10 + pointerSize)) / (recordSize + pointerSize);
+      cumMaxNrec = (maxNrec + 1) * cumMaxNrec + maxNrec;
+      cumMaxNrecSize[depth] = limitEncodedSize(cumMaxNrec);
+    }
+  }
+
+  private static int limitEncodedSize(long n) {
+    return (63 - Long.numberOfLeadingZeros(Math.max(n, 1))) / 8 + 1;
+  }
+
   BTree2.Record1 getEntry1(int hugeObjectID) {
     for (Entry2 entry : entryList) {
       BTree2.Record1 record1 = (BTree2.Record1) entry.record;
@@ -135,14 +172,12 @@ public class BTree2 {
       }
       entries[nrecords] = new Entry2();
 
-      int maxNumRecords = nodeSize / recordSize; // LOOK ?? guessing
-      int maxNumRecordsPlusDesc = nodeSize / recordSize; // LOOK ?? guessing
       for (int i = 0; i < nrecords + 1; i++) {
         Entry2 e = entries[i];
         e.childAddress = h5.readOffset();
-        e.nrecords = h5.readVariableSizeUnsigned(1); // readVariableSizeMax(maxNumRecords);
+        e.nrecords = h5.readVariableSizeUnsigned(maxNrecSize);
         if (depth > 1)
-          e.totNrecords = h5.readVariableSizeUnsigned(2); // readVariableSizeMax(maxNumRecordsPlusDesc);
+          e.totNrecords = h5.readVariableSizeUnsigned(cumMaxNrecSize[depth - 1]);
 
         if (debugBtree2)
           debugOut.println(" BTree2 entry childAddress=" + e.childAddress + " nrecords=" + e.nrecords + " totNrecords="
@@ -229,6 +264,10 @@ public class BTree2 {
         return new Record8();
       case 9:
         return new Record9();
+      case 10:
+        return new Record10();
+      case 11:
+        return new Record11();
       default:
         throw new IllegalStateException();
     }
@@ -372,4 +411,33 @@ public class BTree2 {
     }
   }
 
+  // Chunk records, for datasets with a version 2 B-tree chunk index. The scaled offsets are in units of chunks.
+  public class Record10 {
+    long address;
+    long[] scaledOffset;
+
+    Record10() throws IOException {
+      address = h5.readOffset();
+      scaledOffset = new long[nChunkDims];
+      for (int i = 0; i < nChunkDims; i++)
+        scaledOffset[i] = raf.readLong();
+    }
+  }
+
+  public class Record11 {
+    long address, chunkSize;
+    int filterMask;
+    long[] scaledOffset;
+
+    Record11() throws IOException {
+      address = h5.readOffset();
+      // the chunk size is stored in as many bytes as are left over
+      chunkSize = h5.readVariableSizeUnsigned(recordSize - h5.getSizeOffsets() - 4 - 8 * nChunkDims);
+      filterMask = raf.readInt();
+      scaledOffset = new long[nChunkDims];
+      for (int i = 0; i < nChunkDims; i++)
+        scaledOffset[i] = raf.readLong();
+    }
+  }
+
 } // BTree2
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Pure java decoder for Blosc version 1 buffers, as written by the HDF5 Blosc filter (id 32001).
+ * Supports the blosclz, lz4, zlib and zstd internal codecs, with byte or bit shuffling.
+ */
+final class BloscDecompressor {
+  private static final int HEADER_SIZE = 16;
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+  private static final int BLOSCLZ_MAX_DISTANCE = 8191;
+
+  private static final int FLAG_SHUFFLE = 0x1;
+  private static final int FLAG_MEMCPYED = 0x2;
+  private static final int FLAG_BITSHUFFLE = 0x4;
+  private static final int FLAG_DONT_SPLIT = 0x10;
+
+  private static final int CODEC_BLOSCLZ = 0;
+  private static final int CODEC_LZ4 = 1;
+  private static final int CODEC_SNAPPY = 2;
+  private static final int CODEC_ZLIB = 3;
+  private static final int CODEC_ZSTD = 4;
+
+  private final ZstdDecompressor zstd = new ZstdDecompressor();
+  private final Inflater inflater = new Inflater();
+  private byte[] scratch = new byte[0];
+
+  /** Decompress one Blosc buffer. Not thread safe, the scratch buffers are reused. */
+  byte[] decompress(byte[] src) throws IOException {
+    if (src.length < HEADER_SIZE) {
+      throw new IOException("Blosc: truncated header");
+    }
+    int version = src[0] & 0xff;
+    int flags = src[2] & 0xff;
+    int typesize = src[3] & 0xff;
+    int nbytes = readIntLE(src, 4);
+    int blocksize = readIntLE(src, 8);
+    if (nbytes < 0 || blocksize < 0 || typesize == 0) {
+      throw new IOException("Blosc: bad header nbytes=" + nbytes + " blocksize=" + blocksize);
+    }
+
+    byte[] dst = new byte[nbytes];
+    if (nbytes == 0) {
+      return dst;
+    }
+    if ((flags & FLAG_MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > src.length) {
+        throw new IOException("Blosc: truncated memcpyed buffer");
+      }
+      System.arraycopy(src, HEADER_SIZE, dst, 0, nbytes);
+      return dst;
+    }
+    if (blocksize == 0) {
+      throw new IOException("Blosc: zero blocksize");
+    }
+
+    int codec = (flags >>> 5) & 0x7;
+    boolean shuffle = (flags & FLAG_SHUFFLE) != 0 && typesize > 1;
+    boolean bitshuffle = (flags & FLAG_BITSHUFFLE) != 0;
+    boolean dontSplit = (flags & FLAG_DONT_SPLIT) != 0;
+
+    int nblocks = nbytes / blocksize;
+    int leftover = nbytes % blocksize;
+    if (leftover > 0) {
+      nblocks++;
+    }
+    if (HEADER_SIZE + 4L * nblocks > src.length) {
+      throw new IOException("Blosc: truncated block offsets");
+    }
+    if ((shuffle || bitshuffle) && scratch.length < blocksize) {
+      scratch = new byte[blocksize];
+    }
+
+    for (int j = 0; j < nblocks; j++) {
+      boolean isLeftover = (j == nblocks - 1) && (leftover > 0);
+      int bsize = isLeftover ? leftover : blocksize;
+      int start = readIntLE(src, HEADER_SIZE + 4 * j);
+      int dstPos = j * blocksize;
+
+      int nsplits = 1;
+      if (!dontSplit && typesize <= MAX_SPLITS && (blocksize / typesize) >= MIN_BUFFERSIZE && !isLeftover) {
+        nsplits = typesize;
+      }
+
+      byte[] out = (shuffle || bitshuffle) ? scratch : dst;
+      int outPos = (shuffle || bitshuffle) ? 0 : dstPos;
+      decodeBlock(src, start, codec, nsplits, bsize, out, outPos);
+
+      if (shuffle) {
+        unshuffle(typesize, bsize, scratch, dst, dstPos);
+      } else if (bitshuffle) {
+        bitunshuffle(typesize, bsize, scratch, dst, dstPos, version);
+      }
+    }
+    return dst;
+  }
+
+  private void decodeBlock(byte[] src, int pos, int codec, int nsplits, int bsize, byte[] out, int outPos)
+      throws IOException {
+    int neblock = bsize / nsplits;
+    for (int k = 0; k < nsplits; k++) {
+      if (pos < 0 || pos + 4 > src.length) {
+        throw new IOException("Blosc: truncated block");
+      }
+      int cbytes = readIntLE(src, pos);
+      pos += 4;
+      if (cbytes < 0 || pos + cbytes > src.length) {
+        throw new IOException("Blosc: truncated split");
+      }
+
+      if (cbytes == neblock) {
+        System.arraycopy(src, pos, out, outPos, neblock);
+      } else {
+        int n = decodeSplit(codec, src, pos, cbytes, out, outPos, neblock);
+        if (n != neblock) {
+          throw new IOException("Blosc: split decompressed to " + n + " bytes, expected " + neblock);
+        }
+      }
+      pos += cbytes;
+      outPos += neblock;
+    }
+  }
+
+  private int decodeSplit(int codec, byte[] src, int pos, int len, byte[] out, int outPos, int outLen)
+      throws IOException {
+    switch (codec) {
+      case CODEC_BLOSCLZ:
+        return decompressBlosclz(src, pos, len, out, outPos, outLen);
+      case CODEC_LZ4:
+        return Lz4Decompressor.decompressBlock(src, pos, len, out, outPos, outLen);
+      case CODEC_ZLIB:
+        inflater.reset();
+        inflater.setInput(src, pos, len);
+        try {
+          int n = 0;
+          while (n < outLen && !inflater.finished()) {
+            int count = inflater.inflate(out, outPos + n, outLen - n);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+              break;
+            }
+            n += count;
+          }
+          return n;
+        } catch (DataFormatException e) {
+          throw new IOException("Blosc: zlib " + e.getMessage(), e);
+        }
+      case CODEC_ZSTD:
+        byte[] result = zstd.decompress(src, pos, len, outLen);
+        if (result.length != outLen) {
+          return result.length;
+        }
+        System.arraycopy(result, 0, out, outPos, outLen);
+        return outLen;
+      case CODEC_SNAPPY:
+        throw new IOException("Blosc: snappy codec is not supported");
+      default:
+        throw new IOException("Blosc: unknown codec " + codec);
+    }
+  }
+
+  /**
+   * BloscLZ, a FastLZ level 1 derivative.
+   *
+   * @return number of bytes written to out.
+   */
+  static int decompressBlosclz(byte[] src, int srcPos, int srcLen, byte[] out, int outPos, int outLen)
+      throws IOException {
+    int ip = srcPos;
+    int ipEnd = srcPos + srcLen;
+    int op = outPos;
+    int opEnd = outPos + outLen;
+
+    try {
+      int ctrl = src[ip++] & 31;
+      boolean loop = true;
+      while (loop) {
+        if (ctrl >= 32) {
+          // match
+          int len = (ctrl >>> 5) - 1;
+          int ofs = (ctrl & 31) << 8;
+          int code;
+          if (len == 7 - 1) {
+            do {
+              code = src[ip++] & 0xff;
+              len += code;
+            } while (code == 255);
+          }
+          code = src[ip++] & 0xff;
+          int distance = ofs + code + 1;
+          if (code == 255 && ofs == (31 << 8)) { // match from 16-bit distance
+            ofs = (src[ip] & 0xff) << 8 | (src[ip + 1] & 0xff);
+            ip += 2;
+            distance = ofs + BLOSCLZ_MAX_DISTANCE + 1;
+          }
+          len += 3;
+
+          int from = op - distance;
+          if (from < outPos || op + len > opEnd) {
+            throw new IOException("BloscLZ: bad match");
+          }
+          if (ip < ipEnd) {
+            ctrl = src[ip++] & 0xff;
+          } else {
+            loop = false;
+          }
+          if (distance >= len) {
+            System.arraycopy(out, from, out, op, len);
+          } else {
+            for (int i = 0; i < len; i++) { // overlapping copy must go byte by byte
+              out[op + i] = out[from + i];
+            }
+          }
+          op += len;
+
+        } else {
+          // literal run
+          ctrl++;
+          if (op + ctrl > opEnd || ip + ctrl > ipEnd) {
+            throw new IOException("BloscLZ: literal run overflows buffer");
+          }
+          System.arraycopy(src, ip, out, op, ctrl);
+          ip += ctrl;
+          op += ctrl;
+          loop = ip < ipEnd;
+          if (loop) {
+            ctrl = src[ip++] & 0xff;
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("BloscLZ: corrupted input", e);
+    }
+    return op - outPos;
+  }
+
+  /** Undo the byte shuffle of one block. */
+  private static void unshuffle(int typesize, int bsize, byte[] src, byte[] dst, int dstPos) {
+    int neblock = bsize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int srcStart = j * neblock;
+      for (int i = 0; i < neblock; i++) {
+        dst[dstPos + i * typesize + j] = src[srcStart + i];
+      }
+    }
+    int done = neblock * typesize;
+    System.arraycopy(src, done, dst, dstPos + done, bsize - done);
+  }
+
+  /**
+   * Undo the bit shuffle of one block: bit k of byte j of element i was stored at bit (8 * j + k) * nelems + i.
+   * Only multiples of 8 elements are bit shuffled; format version 2 did not shuffle other blocks at all.
+   */
+  private static void bitunshuffle(int typesize, int bsize, byte[] src, byte[] dst, int dstPos, int version) {
+    int nelems = bsize / typesize;
+    if (version == 2 && nelems % 8 != 0) {
+      System.arraycopy(src, 0, dst, dstPos, bsize);
+      return;
+    }
+    nelems -= nelems % 8;
+    for (int i = 0; i < nelems; i++) {
+      for (int j = 0; j < typesize; j++) {
+        int value = 0;
+        for (int k = 0; k < 8; k++) {
+          int bitIndex = (8 * j + k) * nelems + i;
+          value |= ((src[bitIndex >>> 3] >>> (bitIndex & 7)) & 1) << k;
+        }
+        dst[dstPos + i * typesize + j] = (byte) value;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dst, dstPos + done, bsize - done);
+  }
+
+  private static int readIntLE(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * The chunk indexes of the HDF5 1.10 file format (Data Layout message version 4), which replace the version 1 B-tree
+ * used by {@link DataBTree}. Except for the version 2 B-tree, these find a chunk from its position in the chunk grid
+ * without searching.
+ *
+ * @see "https://portal.hdfgroup.org/display/HDF5/File+Format+Specification, Section IV.A.2.i, and III.G and III.H"
+ */
+abstract class ChunkIndex {
+  // Chunk Indexing Type in the Data Layout message
+  static final int SINGLE_CHUNK = 1;
+  static final int IMPLICIT = 2;
+  static final int FIXED_ARRAY = 3;
+  static final int EXTENSIBLE_ARRAY = 4;
+  static final int BTREE2 = 5;
+
+  private static final long UNDEFINED_ADDRESS = -1;
+
+  /**
+   * Make the chunk index of a version 4 Data Layout message.
+   *
+   * @param h5 the file header
+   * @param msl the Data Layout message, chunked
+   * @param dimLength the current dataset dimensions
+   * @param maxLength the maximum dataset dimensions, negative if unlimited
+   */
+  static ChunkIndex factory(H5header h5, H5objects.MessageLayout msl, int[] dimLength, int[] maxLength)
+      throws IOException {
+    switch (msl.chunkIndexType) {
+      case SINGLE_CHUNK:
+        return new SingleChunk(h5, msl, dimLength);
+      case IMPLICIT:
+        return new Implicit(h5, msl, dimLength, maxLength);
+      case FIXED_ARRAY:
+        return new FixedArray(h5, msl, dimLength, maxLength);
+      case EXTENSIBLE_ARRAY:
+        return new ExtensibleArray(h5, msl, dimLength, maxLength);
+      case BTREE2:
+        return new BTree2Index(h5, msl, dimLength);
+      default:
+        throw new IllegalStateException("Unknown chunk index type= " + msl.chunkIndexType);
+    }
+  }
+
+  /** Location of one stored chunk. */
+  static class Chunk {
+    final long filePos;
+    final int size;
+    final int filterMask;
+
+    Chunk(long filePos, int size, int filterMask) {
+      this.filePos = filePos;
+      this.size = size;
+      this.filterMask = filterMask;
+    }
+  }
+
+  final H5header h5;
+  final RandomAccessFile raf;
+  final long address; // of the index, or of the data for single chunk and implicit
+  final int[] dimLength; // dataset dimensions
+  final int[] chunkShape; // chunk dimensions, without the element size
+  final int chunkBytes; // size of an unfiltered chunk
+  private final boolean dontFilterPartialChunks;
+
+  ChunkIndex(H5header h5, H5objects.MessageLayout msl, int[] dimLength) {
+    this.h5 = h5;
+    this.raf = h5.getRandomAccessFile();
+    this.address = msl.dataAddress;
+    this.dimLength = dimLength;
+    this.chunkShape = new int[msl.chunkSize.length - 1];
+    System.arraycopy(msl.chunkSize, 0, chunkShape, 0, chunkShape.length);
+    long nbytes = 1;
+    for (int size : msl.chunkSize)
+      nbytes *= size;
+    this.chunkBytes = (int) nbytes;
+    this.dontFilterPartialChunks = (msl.flags & 1) != 0;
+  }
+
+  int getRank() {
+    return chunkShape.length;
+  }
+
+  /** Number of chunks along each dimension of the dataset. */
+  int[] getChunkCounts() {
+    int[] result = new int[chunkShape.length];
+    for (int i = 0; i < result.length; i++)
+      result[i] = (dimLength[i] + chunkShape[i] - 1) / chunkShape[i];
+    return result;
+  }
+
+  /**
+   * Find a chunk.
+   *
+   * @param scaled position of the chunk in the chunk grid, ie its offset divided by the chunk shape.
+   * @return the chunk, or null if it has not been written.
+   */
+  @Nullable
+  Chunk find(int[] scaled) throws IOException {
+    if (address == UNDEFINED_ADDRESS)
+      return null;
+    raf.order(RandomAccessFile.LITTLE_ENDIAN); // header information is in le byte order
+    Chunk chunk = read(scaled);
+    if (chunk != null && dontFilterPartialChunks && isPartialEdgeChunk(scaled))
+      return new Chunk(chunk.filePos, chunk.size, -1); // skip all filters
+    return chunk;
+  }
+
+  abstract Chunk read(int[] scaled) throws IOException;
+
+  private boolean isPartialEdgeChunk(int[] scaled) {
+    for (int i = 0; i < chunkShape.length; i++) {
+      if ((long) (scaled[i] + 1) * chunkShape[i] > dimLength[i])
+        return true;
+    }
+    return false;
+  }
+
+  // The HDF5 library numbers the chunks in row major order of the maximum dimensions. An unlimited dimension is
+  // moved to the front (H5VM_swizzle_coords), where its own size does not matter.
+  static long[] calcDownChunks(int[] chunkShape, int[] maxLength, int unlimitedDim) {
+    int rank = chunkShape.length;
+    long[] maxChunks = new long[rank];
+    for (int i = 0; i < rank; i++)
+      maxChunks[i] = (maxLength[i] < 0) ? 1 : (maxLength[i] + chunkShape[i] - 1) / chunkShape[i];
+    swizzle(maxChunks, unlimitedDim);
+    long[] down = new long[rank];
+    long acc = 1;
+    for (int i = rank - 1; i >= 0; i--) {
+      down[i] = acc;
+      acc *= maxChunks[i];
+    }
+    return down;
+  }
+
+  static long calcLinearIndex(int[] scaled, long[] down, int unlimitedDim) {
+    long[] coords = new long[scaled.length];
+    for (int i = 0; i < scaled.length; i++)
+      coords[i] = scaled[i];
+    swizzle(coords, unlimitedDim);
+    long result = 0;
+    for (int i = 0; i < coords.length; i++)
+      result += coords[i] * down[i];
+    return result;
+  }
+
+  private static void swizzle(long[] coords, int unlimitedDim) {
+    if (unlimitedDim > 0) {
+      long tmp = coords[unlimitedDim];
+      System.arraycopy(coords, 0, coords, 1, unlimitedDim);
+      coords[0] = tmp;
+    }
+  }
+
+  static boolean isUndefined(long address) {
+    return address == UNDEFINED_ADDRESS;
+  }
+
+  void checkSignature(String want) throws IOException {
+    byte[] sig = new byte[4];
+    raf.readFully(sig);
+    String magic = new String(sig, StandardCharsets.UTF_8);
+    if (!magic.equals(want))
+      throw new IllegalStateException(magic + " should equal " + want);
+  }
+
+  // A fixed or extensible array element: the chunk address, and for filtered chunks the size and filter mask.
+  // The size is stored in the bytes left over.
+  @Nullable
+  Chunk readElement(long pos, boolean filtered, int elementSize) throws IOException {
+    raf.seek(h5.getFileOffset(pos));
+    long chunkAddress = h5.readOffset();
+    if (isUndefined(chunkAddress))
+      return null;
+    if (!filtered)
+      return new Chunk(h5.getFileOffset(chunkAddress), chunkBytes, 0);
+    long size = h5.readVariableSizeUnsigned(elementSize - h5.getSizeOffsets() - 4);
+    int filterMask = raf.readInt();
+    return new Chunk(h5.getFileOffset(chunkAddress), (int) size, filterMask);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////
+  // The dataset has exactly one chunk, stored at the index address.
+  private static class SingleChunk extends ChunkIndex {
+    private final Chunk chunk;
+
+    SingleChunk(H5header h5, H5objects.MessageLayout msl, int[] dimLength) {
+      super(h5, msl, dimLength);
+      boolean filtered = (msl.flags & 2) != 0;
+      this.chunk = filtered ? new Chunk(h5.getFileOffset(address), (int) msl.filteredChunkSize, msl.filterMask)
+          : new Chunk(h5.getFileOffset(address), chunkBytes, 0);
+    }
+
+    @Override
+    Chunk read(int[] scaled) {
+      for (int s : scaled) {
+        if (s != 0)
+          return null;
+      }
+      return chunk;
+    }
+  }
+
+  // Unfiltered chunks allocated contiguously, in linear index order.
+  private static class Implicit extends ChunkIndex {
+    private final long[] down;
+
+    Implicit(H5header h5, H5objects.MessageLayout msl, int[] dimLength, int[] maxLength) {
+      super(h5, msl, dimLength);
+      this.down = calcDownChunks(chunkShape, maxLength, -1);
+    }
+
+    @Override
+    Chunk read(int[] scaled) {
+      long index = calcLinearIndex(scaled, down, -1);
+      return new Chunk(h5.getFileOffset(address) + index * chunkBytes, chunkBytes, 0);
+    }
+  }
+
+  // Fixed Array, for datasets with fixed maximum dimensions. The elements are in a single data block, which may be
+  // divided into pages.
+  private static class FixedArray extends ChunkIndex {
+    private static final int DATA_BLOCK_ELEMENTS = 4 + 1 + 1; // signature, version, client id, then header address
+
+    private final long[] down;
+    private final boolean filtered;
+    private final int elementSize;
+    private final int pageNelems;
+    private final long dataBlockAddress;
+    private final byte[] pageInit; // null if not paged
+    private final long firstPage;
+
+    FixedArray(H5header h5, H5objects.MessageLayout msl, int[] dimLength, int[] maxLength) throws IOException {
+      super(h5, msl, dimLength);
+      this.down = calcDownChunks(chunkShape, maxLength, -1);
+
+      raf.order(RandomAccessFile.LITTLE_ENDIAN);
+      raf.seek(h5.getFileOffset(address));
+      checkSignature("FAHD");
+      raf.readByte(); // version
+      filtered = raf.readByte() == 1; // client id
+      elementSize = raf.readByte();
+      int pageBits = raf.readByte();
+      long maxNelems = h5.readLength();
+      dataBlockAddress = h5.readOffset();
+
+      pageNelems = 1 << pageBits;
+      if (!isUndefined(dataBlockAddress) && maxNelems > pageNelems) {
+        long npages = (maxNelems + pageNelems - 1) / pageNelems;
+        raf.seek(h5.getFileOffset(dataBlockAddress));
+        checkSignature("FADB");
+        raf.skipBytes(2 + h5.getSizeOffsets()); // version, client id, header address
+        pageInit = new byte[(int) ((npages + 7) / 8)];
+        raf.readFully(pageInit);
+        firstPage = dataBlockAddress + DATA_BLOCK_ELEMENTS + h5.getSizeOffsets() + pageInit.length + 4;
+      } else {
+        pageInit = null;
+        firstPage = -1;
+      }
+    }
+
+    @Override
+    Chunk read(int[] scaled) throws IOException {
+      if (isUndefined(dataBlockAddress))
+        return null;
+      long index = calcLinearIndex(scaled, down, -1);
+      if (pageInit == null)
+        return readElement(dataBlockAddress + DATA_BLOCK_ELEMENTS + h5.getSizeOffsets() + index * elementSize,
+            filtered, elementSize);
+
+      long page = index / pageNelems;
+      if (!isBitSet(pageInit, page))
+        return null;
+      long pageSize = (long) pageNelems * elementSize + 4; // pages have a checksum
+      return readElement(firstPage + page * pageSize + (index % pageNelems) * elementSize, filtered, elementSize);
+    }
+  }
+
+  // bitmaps are most significant bit first
+  private static boolean isBitSet(byte[] bitmap, long bit) {
+    return (bitmap[(int) (bit / 8)] & (0x80 >>> (bit % 8))) != 0;
+  }
+
+  private static int log2(long n) {
+    return 63 - Long.numberOfLeadingZeros(n);
+  }
+
+  // Extensible Array, for datasets with one unlimited dimension. The elements are in the index block, then in data
+  // blocks of increasing size. The first data blocks are pointed to by the index block, the rest by secondary blocks.
+  private static class ExtensibleArray extends ChunkIndex {
+    private final int unlimitedDim;
+    private final long[] down;
+
+    private final boolean filtered;
+    private final int elementSize;
+    private final int indexBlockNelems;
+    private final int dataBlockMinNelems;
+    private final int pageNelems;
+    private final int blockOffsetSize;
+
+    // by secondary block number, see H5EA__hdr_init()
+    private final long[] sblockNdblocks, sblockDblockNelems, sblockStartIndex, sblockStartDblock;
+
+    private final long indexBlockAddress;
+    private long indexBlockElements; // address of the elements in the index block
+    private int iblockNsblocks; // number of secondary blocks whose data blocks are pointed to by the index block
+    private long[] iblockDblockAddress;
+    private long[] iblockSblockAddress;
+    private final Map<Integer, SecondaryBlock> sblocks = new HashMap<>();
+
+    ExtensibleArray(H5header h5, H5objects.MessageLayout msl, int[] dimLength, int[] maxLength) throws IOException {
+      super(h5, msl, dimLength);
+      int unlimited = 0;
+      for (int i = 0; i < maxLength.length; i++) {
+        if (maxLength[i] < 0) {
+          unlimited = i;
+          break;
+        }
+      }
+      this.unlimitedDim = unlimited;
+      this.down = calcDownChunks(chunkShape, maxLength, unlimitedDim);
+
+      raf.order(RandomAccessFile.LITTLE_ENDIAN);
+      raf.seek(h5.getFileOffset(address));
+      checkSignature("EAHD");
+      raf.readByte(); // version
+      filtered = raf.readByte() == 1; // client id
+      elementSize = raf.readByte();
+      int maxNelemsBits = raf.readByte();
+      indexBlockNelems = raf.readByte();
+      dataBlockMinNelems = raf.readByte();
+      int sblockMinDataPtrs = raf.readByte();
+      int maxDblockPageNelemsBits = raf.readByte();
+      for (int i = 0; i < 6; i++)
+        h5.readLength(); // statistics
+      indexBlockAddress = h5.readOffset();
+
+      pageNelems = 1 << maxDblockPageNelemsBits;
+      blockOffsetSize = (maxNelemsBits + 7) / 8;
+
+      int nsblocks = 1 + (maxNelemsBits - log2(dataBlockMinNelems));
+      sblockNdblocks = new long[nsblocks];
+      sblockDblockNelems = new long[nsblocks];
+      sblockStartIndex = new long[nsblocks];
+      sblockStartDblock = new long[nsblocks];
+      long startIndex = 0;
+      long startDblock = 0;
+      for (int i = 0; i < nsblocks; i++) {
+        sblockNdblocks[i] = 1L << (i / 2);
+        sblockDblockNelems[i] = (1L << ((i + 1) / 2)) * dataBlockMinNelems;
+        sblockStartIndex[i] = startIndex;
+        sblockStartDblock[i] = startDblock;
+        startIndex += sblockNdblocks[i] * sblockDblockNelems[i];
+        startDblock += sblockNdblocks[i];
+      }
+
+      if (!isUndefined(indexBlockAddress)) {
+        raf.seek(h5.getFileOffset(indexBlockAddress));
+        checkSignature("EAIB");
+        raf.skipBytes(2 + h5.getSizeOffsets()); // version, client id, header address
+        indexBlockElements = indexBlockAddress + 4 + 2 + h5.getSizeOffsets();
+        raf.skipBytes(indexBlockNelems * elementSize);
+
+        iblockNsblocks = 2 * log2(sblockMinDataPtrs);
+        iblockDblockAddress = new long[2 * (sblockMinDataPtrs - 1)];
+        for (int i = 0; i < iblockDblockAddress.length; i++)
+          iblockDblockAddress[i] = h5.readOffset();
+        iblockSblockAddress = new long[nsblocks - iblockNsblocks];
+        for (int i = 0; i < iblockSblockAddress.length; i++)
+          iblockSblockAddress[i] = h5.readOffset();
+      }
+    }
+
+    @Override
+    Chunk read(int[] scaled) throws IOException {
+      if (isUndefined(indexBlockAddress))
+        return null;
+      long index = calcLinearIndex(scaled, down, unlimitedDim);
+      if (index < indexBlockNelems)
+        return readElement(indexBlockElements + index * elementSize, filtered, elementSize);
+
+      long elem = index - indexBlockNelems;
+      int sblock = log2(elem / dataBlockMinNelems + 1);
+      if (sblock >= sblockNdblocks.length)
+        return null;
+      long dblockNelems = sblockDblockNelems[sblock];
+      long dblock = (elem - sblockStartIndex[sblock]) / dblockNelems;
+      long elemInDblock = (elem - sblockStartIndex[sblock]) % dblockNelems;
+
+      if (sblock < iblockNsblocks) {
+        long dblockAddress = iblockDblockAddress[(int) (sblockStartDblock[sblock] + dblock)];
+        return readFromDataBlock(dblockAddress, dblockNelems, elemInDblock, true);
+      }
+
+      SecondaryBlock sb = getSecondaryBlock(sblock);
+      if (sb == null)
+        return null;
+      long dblockAddress = sb.dblockAddress[(int) dblock];
+      boolean pageInitialized = true;
+      if (sb.pageInit != null) {
+        long npages = dblockNelems / pageNelems;
+        pageInitialized = isBitSet(sb.pageInit, dblock * npages + elemInDblock / pageNelems);
+      }
+      return readFromDataBlock(dblockAddress, dblockNelems, elemInDblock, pageInitialized);
+    }
+
+    @Nullable
+    private Chunk readFromDataBlock(long dblockAddress, long dblockNelems, long elem, boolean pageInitialized)
+        throws IOException {
+      if (isUndefined(dblockAddress) || !pageInitialized)
+        return null;
+      // signature, version, client id, header address, block offset
+      long prefix = 4 + 1 + 1 + h5.getSizeOffsets() + blockOffsetSize;
+      if (dblockNelems <= pageNelems)
+        return readElement(dblockAddress + prefix + elem * elementSize, filtered, elementSize);
+
+      // paged: the data block prefix has a checksum, then each page has its elements and a checksum
+      long pageSize = (long) pageNelems * elementSize + 4;
+      long pos = dblockAddress + prefix + 4 + (elem / pageNelems) * pageSize + (elem % pageNelems) * elementSize;
+      return readElement(pos, filtered, elementSize);
+    }
+
+    @Nullable
+    private synchronized SecondaryBlock getSecondaryBlock(int sblock) throws IOException {
+      SecondaryBlock sb = sblocks.get(sblock);
+      if (sb == null) {
+        long sblockAddress = iblockSblockAddress[sblock - iblockNsblocks];
+        if (isUndefined(sblockAddress))
+          return null;
+        sb = new SecondaryBlock(sblockAddress, sblock);
+        sblocks.put(sblock, sb);
+      }
+      return sb;
+    }
+
+    private class SecondaryBlock {
+      final byte[] pageInit; // null if the data blocks are not paged
+      final long[] dblockAddress;
+
+      SecondaryBlock(long address, int sblock) throws IOException {
+        raf.seek(h5.getFileOffset(address));
+        checkSignature("EASB");
+        raf.skipBytes(2 + h5.getSizeOffsets() + blockOffsetSize);
+        int ndblocks = (int) sblockNdblocks[sblock];
+        if (sblockDblockNelems[sblock] > pageNelems) {
+          // HDF5 allocates a byte aligned bitmap for each data block, but numbers the bits across all of them
+          long npages = sblockDblockNelems[sblock] / pageNelems;
+          pageInit = new byte[(int) (ndblocks * ((npages + 7) / 8))];
+          raf.readFully(pageInit);
+        } else {
+          pageInit = null;
+        }
+        dblockAddress = new long[ndblocks];
+        for (int i = 0; i < ndblocks; i++)
+          dblockAddress[i] = h5.readOffset();
+      }
+    }
+  }
+
+  // Version 2 B-tree with chunk records (type 10 unfiltered, 11 filtered). All records are read on first use.
+  private static class BTree2Index extends ChunkIndex {
+    private final int[] chunkCounts;
+    private Map<Long, Chunk> chunks;
+
+    BTree2Index(H5header h5, H5objects.MessageLayout msl, int[] dimLength) {
+      super(h5, msl, dimLength);
+      this.chunkCounts = getChunkCounts();
+    }
+
+    @Override
+    Chunk read(int[] scaled) throws IOException {
+      return getChunks().get(key(scaled));
+    }
+
+    private long key(int[] scaled) {
+      long result = 0;
+      for (int i = 0; i < scaled.length; i++)
+        result = result * chunkCounts[i] + scaled[i];
+      return result;
+    }
+
+    private synchronized Map<Long, Chunk> getChunks() throws IOException {
+      if (chunks == null) {
+        Map<Long, Chunk> result = new HashMap<>();
+        BTree2 btree = new BTree2(h5, "chunk index", address, getRank());
+        int[] scaled = new int[getRank()];
+        for (BTree2.Entry2 entry : btree.entryList) {
+          long[] scaledOffset;
+          Chunk chunk;
+          if (entry.record instanceof BTree2.Record11) {
+            BTree2.Record11 record = (BTree2.Record11) entry.record;
+            scaledOffset = record.scaledOffset;
+            chunk = new Chunk(h5.getFileOffset(record.address), (int) record.chunkSize, record.filterMask);
+          } else {
+            BTree2.Record10 record = (BTree2.Record10) entry.record;
+            scaledOffset = record.scaledOffset;
+            chunk = new Chunk(h5.getFileOffset(record.address), chunkBytes, 0);
+          }
+          boolean inside = true;
+          for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = (int) scaledOffset[i];
+            inside &= scaledOffset[i] < chunkCounts[i];
+          }
+          if (inside) // the dataset may have shrunk
+            result.put(key(scaled), chunk);
+        }
+        chunks = result;
+      }
+      return chunks;
+    }
+  }
+}
@@ -6,6 +6,7 @@
 package ucar.nc2.internal.iosp.hdf5;
 
 import java.util.Arrays;
+import ucar.ma2.Range;
 import ucar.ma2.Section;
 import ucar.nc2.iosp.LayoutTiled;
 import ucar.unidata.io.RandomAccessFile;
@@ -26,6 +27,8 @@ import java.util.List;
  * The pointers out of internal nodes point to sub-trees while the pointers out of leaf nodes point to symbol nodes and
  * raw data chunks. Aside from that difference, internal nodes and leaf nodes are identical.
  *
+ * Files written with the HDF5 1.10 format may use another chunk index instead of the B-tree, see {@link ChunkIndex}.
+ *
  * @see "http://www.hdfgroup.org/HDF5/doc/H5.format.html#Btrees"
  */
 public class DataBTree {
@@ -41,16 +44,28 @@ public class DataBTree {
   private final long rootNodeAddress;
   private final Tiling tiling;
   private final int ndimStorage, wantType;
+  private final ChunkIndex chunkIndex; // null if its a version 1 B-tree
 
   private Object owner;
 
   public DataBTree(H5header h5, long rootNodeAddress, int[] varShape, int[] storageSize, MemTracker memTracker) {
+    this(h5, rootNodeAddress, varShape, storageSize, memTracker, null);
+  }
+
+  /** Use one of the HDF5 1.10 chunk indexes instead of the B-tree. */
+  DataBTree(H5header h5, ChunkIndex chunkIndex, int[] varShape, int[] storageSize, MemTracker memTracker) {
+    this(h5, -1, varShape, storageSize, memTracker, chunkIndex);
+  }
+
+  private DataBTree(H5header h5, long rootNodeAddress, int[] varShape, int[] storageSize, MemTracker memTracker,
+      ChunkIndex chunkIndex) {
     this.h5 = h5;
     this.raf = h5.getRandomAccessFile();
     this.rootNodeAddress = rootNodeAddress;
     this.tiling = new Tiling(varShape, storageSize);
     this.ndimStorage = storageSize.length;
     this.memTracker = memTracker;
+    this.chunkIndex = chunkIndex;
 
     wantType = 1;
   }
@@ -73,7 +88,7 @@ public class DataBTree {
   // returns the actual data from the btree leaf (level 0) nodes.
   // used by H5tiledLayout, when there are no filters
   class DataChunkIteratorNoFilter implements LayoutTiled.DataChunkIterator {
-    private final Node root;
+    private final DataChunkIterator delegate;
     private final int nChunkDim;
 
     /**
@@ -85,17 +100,15 @@ public class DataBTree {
      */
     DataChunkIteratorNoFilter(Section want, int nChunkDim) throws IOException {
       this.nChunkDim = nChunkDim;
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
-      int[] wantOrigin = (want != null) ? want.getOrigin() : null;
-      root.first(wantOrigin);
+      this.delegate = new DataChunkIterator(want);
     }
 
     public boolean hasNext() {
-      return root.hasNext(); // && !node.greaterThan(wantOrigin);
+      return delegate.hasNext();
     }
 
     public LayoutTiled.DataChunk next() throws IOException {
-      DataChunk dc = root.next();
+      DataChunk dc = delegate.next();
       int[] offset = dc.offset;
       if (offset.length > nChunkDim) { // may have to eliminate last offset
         offset = new int[nChunkDim];
@@ -113,7 +126,7 @@ public class DataBTree {
   // used by H5tiledLayoutBB, when there are filters
   public class DataChunkIterator {
     private final Node root;
-    private final int[] wantOrigin;
+    private final ChunkIndexIterator indexIterator;
 
     /**
      * Constructor
@@ -122,20 +135,98 @@ public class DataBTree {
      * @throws IOException on error
      */
     DataChunkIterator(Section want) throws IOException {
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
-      wantOrigin = (want != null) ? want.getOrigin() : null;
-      root.first(wantOrigin);
+      if (chunkIndex != null) {
+        root = null;
+        indexIterator = new ChunkIndexIterator(want);
+      } else {
+        root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
+        int[] wantOrigin = (want != null) ? want.getOrigin() : null;
+        root.first(wantOrigin);
+        indexIterator = null;
+      }
     }
 
     public boolean hasNext() {
+      if (indexIterator != null)
+        return indexIterator.hasNext();
       return root.hasNext(); // && !node.greaterThan(wantOrigin);
     }
 
     public DataChunk next() throws IOException {
+      if (indexIterator != null)
+        return indexIterator.next();
       return root.next();
     }
   }
 
+  // Visits the chunks that intersect the wanted section in row major order, looking each one up in the chunk index.
+  // Chunks that were never written are skipped.
+  private class ChunkIndexIterator {
+    private final int[] first, last, scaled;
+    private DataChunk nextChunk;
+    private boolean done;
+
+    ChunkIndexIterator(Section want) throws IOException {
+      int rank = chunkIndex.getRank();
+      int[] chunkCounts = chunkIndex.getChunkCounts();
+      first = new int[rank];
+      last = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        last[i] = chunkCounts[i] - 1;
+        if (want != null && i < want.getRank()) {
+          Range r = want.getRange(i);
+          first[i] = Math.max(r.first() / chunkIndex.chunkShape[i], 0);
+          last[i] = Math.min(r.last() / chunkIndex.chunkShape[i], last[i]);
+        }
+        if (first[i] > last[i])
+          done = true;
+      }
+      scaled = first.clone();
+      if (!done)
+        advance(true);
+    }
+
+    boolean hasNext() {
+      return nextChunk != null;
+    }
+
+    DataChunk next() throws IOException {
+      DataChunk result = nextChunk;
+      advance(false);
+      return result;
+    }
+
+    private void advance(boolean includeCurrent) throws IOException {
+      nextChunk = null;
+      boolean useCurrent = includeCurrent;
+      while (!done) {
+        if (!useCurrent && !increment())
+          return;
+        useCurrent = false;
+        ChunkIndex.Chunk chunk = chunkIndex.find(scaled);
+        if (chunk != null) {
+          int[] offset = new int[ndimStorage]; // last one is for the element size, always 0
+          for (int i = 0; i < scaled.length; i++)
+            offset[i] = scaled[i] * chunkIndex.chunkShape[i];
+          nextChunk = new DataChunk(chunk.size, chunk.filterMask, offset, chunk.filePos);
+          return;
+        }
+      }
+    }
+
+    private boolean increment() {
+      for (int i = scaled.length - 1; i >= 0; i--) {
+        if (scaled[i] < last[i]) {
+          scaled[i]++;
+          return true;
+        }
+        scaled[i] = first[i];
+      }
+      done = true;
+      return false;
+    }
+  }
+
   // Btree nodes
   class Node {
     private final long address;
@@ -298,6 +389,15 @@ public class DataBTree {
     public final int[] offset; // offset index of this chunk, reletive to entire array
     public final long filePos; // filePos of a single raw data chunk, already shifted by the offset if needed
 
+    DataChunk(int size, int filterMask, int[] offset, long filePos) {
+      this.size = size;
+      this.filterMask = filterMask;
+      this.offset = offset;
+      this.filePos = filePos;
+      if (memTracker != null)
+        memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
+    }
+
     DataChunk(int ndim, boolean last) throws IOException {
       this.size = raf.readInt();
       this.filterMask = raf.readInt();
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+
+/**
+ * A Service Provider that undoes one HDF5 filter, as listed in a variable's Filter Pipeline message.
+ * Implementations are found with the ServiceLoader, see {@link FilterDecoders}. They must be thread safe.
+ *
+ * @see "https://portal.hdfgroup.org/display/support/Registered+Filter+Plugins"
+ */
+public interface FilterDecoder {
+
+  /** The registered HDF5 filter id. */
+  int getId();
+
+  /** The filter name, used in messages. */
+  String getName();
+
+  /**
+   * Undo the filter on the data of one chunk.
+   *
+   * @param data the filtered bytes. May be modified, or returned as the result.
+   * @param clientValues the filter's client data values from the Filter Pipeline message.
+   * @param expectedSize size of the unfiltered chunk in bytes, or -1 if unknown. This is only a hint, since other
+   *        filters may still have to be undone.
+   * @return the unfiltered bytes.
+   */
+  byte[] decode(byte[] data, int[] clientValues, int expectedSize) throws IOException;
+}
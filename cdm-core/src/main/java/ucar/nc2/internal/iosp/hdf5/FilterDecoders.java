@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+
+/**
+ * Registry of the {@link FilterDecoder}s used to read filtered HDF5 chunks.
+ * Decoders explicitly registered are tried first, then the built in ones, then ones loaded by the ServiceLoader.
+ * Built in: deflate (1), shuffle (2), fletcher32 (3), bzip2 (307), blosc (32001), lz4 (32004), zstd (32015).
+ */
+public class FilterDecoders {
+  public static final int DEFLATE = 1;
+  public static final int SHUFFLE = 2;
+  public static final int FLETCHER32 = 3;
+  public static final int SZIP = 4;
+  public static final int BZIP2 = 307;
+  public static final int BLOSC = 32001;
+  public static final int LZ4 = 32004;
+  public static final int ZSTD = 32015;
+
+  // Copied from ArrayList.
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private static final Map<Integer, FilterDecoder> registered = new ConcurrentHashMap<>();
+  private static final Map<Integer, FilterDecoder> builtin;
+  private static Map<Integer, FilterDecoder> loaded; // lazy, guarded by class
+
+  static {
+    ImmutableMap.Builder<Integer, FilterDecoder> builder = ImmutableMap.builder();
+    for (FilterDecoder decoder : new FilterDecoder[] {new Deflate(), new Shuffle(), new Fletcher32(), new Bzip2(),
+        new Blosc(), new Lz4(), new Zstd()}) {
+      builder.put(decoder.getId(), decoder);
+    }
+    builtin = builder.build();
+  }
+
+  private FilterDecoders() {}
+
+  /** Register a FilterDecoder, replacing any other decoder for the same filter id. */
+  public static void register(FilterDecoder decoder) {
+    registered.put(decoder.getId(), decoder);
+  }
+
+  /** Find the FilterDecoder for this filter id, or null if there is none. */
+  @Nullable
+  public static FilterDecoder find(int id) {
+    FilterDecoder decoder = registered.get(id);
+    if (decoder == null) {
+      decoder = builtin.get(id);
+    }
+    if (decoder == null) {
+      decoder = getLoaded().get(id);
+    }
+    return decoder;
+  }
+
+  // The ServiceLoader is only consulted once.
+  private static synchronized Map<Integer, FilterDecoder> getLoaded() {
+    if (loaded == null) {
+      Map<Integer, FilterDecoder> result = new HashMap<>();
+      for (FilterDecoder decoder : ServiceLoader.load(FilterDecoder.class)) {
+        result.putIfAbsent(decoder.getId(), decoder);
+      }
+      loaded = result;
+    }
+    return loaded;
+  }
+
+  // Per thread scratch space for undoing the shuffle in place. Only buffers up to the size of a typical chunk (the
+  // HDF5 library suggests at most 1 MiB) are kept, since every thread that reads HDF5, eg in a servlet pool, keeps one.
+  private static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+  private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[0]);
+
+  private static byte[] getScratch(int size) {
+    byte[] result = scratch.get();
+    if (result.length < size) {
+      result = new byte[size];
+      if (size <= MAX_SCRATCH_SIZE) {
+        scratch.set(result);
+      }
+    }
+    return result;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////
+
+  // Inflates straight into an array of the expected size, using pooled Inflaters.
+  private static class Deflate implements FilterDecoder {
+    private final ArrayBlockingQueue<Inflater> pool =
+        new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    public int getId() {
+      return DEFLATE;
+    }
+
+    public String getName() {
+      return "deflate";
+    }
+
+    public byte[] decode(byte[] compressed, int[] clientValues, int expectedSize) throws IOException {
+      Inflater inflater = pool.poll();
+      if (inflater == null) {
+        inflater = new Inflater();
+      }
+      boolean ok = false;
+      try {
+        byte[] result = inflate(inflater, compressed, expectedSize);
+        ok = true;
+        return result;
+      } catch (DataFormatException e) {
+        throw new IOException("deflate: " + e.getMessage(), e);
+      } finally {
+        // Inflaters hold native memory, so end the ones that are not reused
+        if (ok) {
+          inflater.reset();
+          if (!pool.offer(inflater)) {
+            inflater.end();
+          }
+        } else {
+          inflater.end();
+        }
+      }
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed, int expectedSize)
+        throws DataFormatException, IOException {
+      inflater.setInput(compressed);
+      int size = (expectedSize > 0) ? expectedSize : (int) Math.min(8L * compressed.length + 64, MAX_ARRAY_LEN);
+      byte[] out = new byte[size];
+      int n = 0;
+      while (!inflater.finished()) {
+        if (n == out.length) {
+          // the expected size may be exact, so make sure there is more before growing
+          byte[] probe = new byte[1];
+          if (inflater.inflate(probe) == 0) {
+            if (inflater.finished()) {
+              break;
+            }
+            checkStalled(inflater);
+            continue;
+          }
+          if (out.length == MAX_ARRAY_LEN) {
+            throw new IOException("deflate: chunk is larger than the maximum array size");
+          }
+          out = Arrays.copyOf(out, (int) Math.min(2L * out.length, MAX_ARRAY_LEN));
+          out[n++] = probe[0];
+          continue;
+        }
+        int count = inflater.inflate(out, n, out.length - n);
+        if (count == 0) {
+          checkStalled(inflater);
+        }
+        n += count;
+      }
+      return (n == out.length) ? out : Arrays.copyOf(out, n);
+    }
+
+    private static void checkStalled(Inflater inflater) throws IOException {
+      if (inflater.needsInput()) {
+        throw new EOFException("Unexpected end of ZLIB input stream");
+      }
+      if (inflater.needsDictionary()) {
+        throw new IOException("deflate: a preset dictionary is not supported");
+      }
+    }
+  }
+
+  // Undo the shuffle in place, ie the result is the data array
+  private static class Shuffle implements FilterDecoder {
+    public int getId() {
+      return SHUFFLE;
+    }
+
+    public String getName() {
+      return "shuffle";
+    }
+
+    public byte[] decode(byte[] data, int[] clientValues, int expectedSize) {
+      int n = clientValues[0];
+      if (n <= 1)
+        return data;
+
+      // any leftover bytes at the end were not shuffled
+      int m = data.length / n;
+      byte[] shuffled = getScratch(m * n);
+      System.arraycopy(data, 0, shuffled, 0, m * n);
+      for (int j = 0; j < n; j++) {
+        int start = j * m;
+        for (int i = 0; i < m; i++) {
+          data[i * n + j] = shuffled[start + i];
+        }
+      }
+      return data;
+    }
+  }
+
+  // just strip off the 4-byte fletcher32 checksum at the end
+  private static class Fletcher32 implements FilterDecoder {
+    public int getId() {
+      return FLETCHER32;
+    }
+
+    public String getName() {
+      return "fletcher32";
+    }
+
+    public byte[] decode(byte[] org, int[] clientValues, int expectedSize) {
+      byte[] result = new byte[org.length - 4];
+      System.arraycopy(org, 0, result, 0, result.length);
+      return result;
+    }
+  }
+
+  private static class Bzip2 implements FilterDecoder {
+    public int getId() {
+      return BZIP2;
+    }
+
+    public String getName() {
+      return "bzip2";
+    }
+
+    public byte[] decode(byte[] compressed, int[] clientValues, int expectedSize) throws IOException {
+      int len = expectedSize > 0 ? expectedSize : Math.min(20 * compressed.length, MAX_ARRAY_LEN);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(len);
+      try (CBZip2InputStream bzIn = new CBZip2InputStream(new ByteArrayInputStream(compressed), true)) {
+        int b;
+        while ((b = bzIn.read()) != -1) {
+          out.write(b);
+        }
+      } catch (BZip2ReadException e) {
+        throw new IOException("bzip2: " + e.getMessage(), e);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static class Blosc implements FilterDecoder {
+    private static final ThreadLocal<BloscDecompressor> decompressor =
+        ThreadLocal.withInitial(BloscDecompressor::new);
+
+    public int getId() {
+      return BLOSC;
+    }
+
+    public String getName() {
+      return "blosc";
+    }
+
+    public byte[] decode(byte[] compressed, int[] clientValues, int expectedSize) throws IOException {
+      return decompressor.get().decompress(compressed);
+    }
+  }
+
+  private static class Lz4 implements FilterDecoder {
+    public int getId() {
+      return LZ4;
+    }
+
+    public String getName() {
+      return "lz4";
+    }
+
+    public byte[] decode(byte[] compressed, int[] clientValues, int expectedSize) throws IOException {
+      return Lz4Decompressor.decompressHdf5(compressed);
+    }
+  }
+
+  private static class Zstd implements FilterDecoder {
+    private static final ThreadLocal<ZstdDecompressor> decompressor = ThreadLocal.withInitial(ZstdDecompressor::new);
+
+    public int getId() {
+      return ZSTD;
+    }
+
+    public String getName() {
+      return "zstd";
+    }
+
+    public byte[] decode(byte[] compressed, int[] clientValues, int expectedSize) throws IOException {
+      return decompressor.get().decompress(compressed, 0, compressed.length, expectedSize);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Arrays;
+import java.util.Formatter;
+import javax.annotation.Nullable;
+import ucar.nc2.util.Instruments;
+
+/**
+ * Process-wide cache of decoded (unfiltered) HDF5 chunks, so that repeated reads of the same chunk do not read and
+ * decompress it again. The cache is bounded by the total size of the chunks in bytes, least recently used chunks are
+ * evicted first. The chunks are kept when the file is closed, so that later opens of the same file share them. A chunk
+ * is found by the file location, length and last modified time, so the chunks of a file that has changed are not used,
+ * and are evicted in time.
+ *
+ * The size limit is set with the "unidata.h5iosp.chunkcache.maxbytes" system property or {@link #setMaxBytes}.
+ * A size of 0 disables the cache.
+ */
+public class H5chunkCache {
+  private static final String MAXBYTES_PROPERTY = "unidata.h5iosp.chunkcache.maxbytes";
+  private static final long DEFAULT_MAXBYTES = 32 * 1024 * 1024;
+
+  private static long maxBytes;
+  private static Cache<Key, byte[]> cache; // null if disabled
+
+  static {
+    setMaxBytes(getDefaultMaxBytes());
+  }
+
+  private H5chunkCache() {}
+
+  private static long getDefaultMaxBytes() {
+    String prop = System.getProperty(MAXBYTES_PROPERTY);
+    if (prop != null) {
+      try {
+        long size = Long.parseLong(prop);
+        if (size >= 0) {
+          return size;
+        }
+        H5iosp.log.warn(String.format("-D%s must be >= 0", MAXBYTES_PROPERTY));
+      } catch (NumberFormatException nfe) {
+        H5iosp.log.warn(String.format("-D%s is not an integer", MAXBYTES_PROPERTY));
+      }
+    }
+    return DEFAULT_MAXBYTES;
+  }
+
+  /**
+   * Set the maximum total size of the cached chunks, 0 to disable the cache.
+   * The cache is emptied and its statistics reset.
+   */
+  public static synchronized void setMaxBytes(long max) {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+    maxBytes = max;
+    cache = (max <= 0) ? null
+        : CacheBuilder.newBuilder().maximumWeight(max).weigher((Key key, byte[] data) -> data.length).recordStats()
+            .build();
+  }
+
+  public static synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  private static synchronized Cache<Key, byte[]> getCache() {
+    return cache;
+  }
+
+  public static boolean isEnabled() {
+    return getCache() != null;
+  }
+
+  /** Find a decoded chunk, or null if its not in the cache. The returned array must not be modified. */
+  @Nullable
+  static byte[] get(Key key) {
+    Cache<Key, byte[]> c = getCache();
+    if (c == null) {
+      return null;
+    }
+    byte[] result = c.getIfPresent(key);
+    if (Instruments.isEnabled()) {
+      Instruments.get().cacheAccess("H5chunkCache", result != null);
+    }
+    return result;
+  }
+
+  /** Add a decoded chunk. The array must not be modified afterwards. */
+  static void put(Key key, byte[] data) {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.put(key, data);
+    }
+  }
+
+  /** Remove all the chunks of this file. This looks at every chunk in the cache. */
+  public static void invalidate(String location) {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.asMap().keySet().removeIf(key -> key.location.equals(location));
+    }
+  }
+
+  /** Remove all chunks. */
+  public static void clear() {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.invalidateAll();
+    }
+  }
+
+  public static long getHitCount() {
+    return getStats().hitCount();
+  }
+
+  public static long getMissCount() {
+    return getStats().missCount();
+  }
+
+  public static long getEvictionCount() {
+    return getStats().evictionCount();
+  }
+
+  /** Number of chunks in the cache. */
+  public static long size() {
+    Cache<Key, byte[]> c = getCache();
+    return (c == null) ? 0 : c.size();
+  }
+
+  private static CacheStats getStats() {
+    Cache<Key, byte[]> c = getCache();
+    return (c == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : c.stats();
+  }
+
+  public static void showStats(Formatter f) {
+    CacheStats stats = getStats();
+    f.format("H5chunkCache maxBytes=%d size=%d hits=%d misses=%d evictions=%d%n", getMaxBytes(), size(),
+        stats.hitCount(), stats.missCount(), stats.evictionCount());
+  }
+
+  /** Identifies a chunk: the file location, length and last modified time, the variable, and the chunk offset. */
+  static class Key {
+    private final String location;
+    private final long fileLength;
+    private final long lastModified;
+    private final String varName;
+    private final int[] offset;
+    private final int hashCode;
+
+    Key(String location, long fileLength, long lastModified, String varName, int[] offset) {
+      this.location = location;
+      this.fileLength = fileLength;
+      this.lastModified = lastModified;
+      this.varName = varName;
+      this.offset = offset;
+      this.hashCode = 31 * (31 * location.hashCode() + varName.hashCode()) + Arrays.hashCode(offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return hashCode == other.hashCode && fileLength == other.fileLength && lastModified == other.lastModified
+          && Arrays.equals(offset, other.offset) && varName.equals(other.varName) && location.equals(other.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
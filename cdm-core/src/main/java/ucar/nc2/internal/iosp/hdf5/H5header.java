@@ -62,6 +62,7 @@ import ucar.nc2.internal.iosp.hdf5.H5objects.MessageDatatype;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageFillValue;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageFillValueOld;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageFilter;
+import ucar.nc2.internal.iosp.hdf5.H5objects.MessageLayout;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageType;
 import ucar.nc2.internal.iosp.hdf5.H5objects.StructureMember;
 import ucar.nc2.iosp.NetcdfFileFormat;
@@ -141,8 +142,6 @@ public class H5header implements HdfHeaderIF {
    * 3) all variables' dimensions have a dimension scale
    */
 
-  private static final int KNOWN_FILTERS = 3;
-
   private final RandomAccessFile raf;
   private final Group.Builder root;
   private final H5iosp h5iosp;
@@ -227,7 +226,7 @@ public class H5header implements HdfHeaderIF {
 
     if (versionSB < 2) {
       readSuperBlock1(superblockStart, versionSB);
-    } else if (versionSB == 2) {
+    } else if (versionSB <= 3) { // version 3 (HDF5 1.10) only adds file locking flags for SWMR
       readSuperBlock2(superblockStart);
     } else {
       throw new IOException("Unknown superblock version= " + versionSB);
@@ -1243,7 +1242,7 @@ public class H5header implements HdfHeaderIF {
     // deal with filters, cant do SZIP
     if (facade.dobj.mfp != null) {
       for (Filter f : facade.dobj.mfp.filters) {
-        if (f.id == 4) {
+        if (f.id == FilterDecoders.SZIP) {
           log.debug("SKIPPING variable with SZIP Filter= " + facade.dobj.mfp + " for variable " + facade.name);
           return null;
         }
@@ -1336,7 +1335,13 @@ public class H5header implements HdfHeaderIF {
 
     int[] shape = makeVariableShape(facade.dobj.mdt, facade.dobj.mds, facade.dimList);
     if (vinfo.isChunked) { // make the data btree, but entries are not read in
-      vinfo.btree = new DataBTree(this, dataAddress, shape, vinfo.storageSize, memTracker);
+      MessageLayout msl = facade.dobj.msl;
+      if (msl.chunkIndexType == 0) {
+        vinfo.btree = new DataBTree(this, dataAddress, shape, vinfo.storageSize, memTracker);
+      } else {
+        ChunkIndex chunkIndex = ChunkIndex.factory(this, msl, facade.dobj.mds.dimLength, facade.dobj.mds.maxLength);
+        vinfo.btree = new DataBTree(this, chunkIndex, shape, vinfo.storageSize, memTracker);
+      }
 
       if (vinfo.isChunked) { // add an attribute describing the chunk size
         List<Integer> chunksize = new ArrayList<>();
@@ -1379,7 +1384,7 @@ public class H5header implements HdfHeaderIF {
     vinfo.setOwner(vb);
     if ((vinfo.mfp != null) && warnings) {
       for (Filter f : vinfo.mfp.getFilters()) {
-        if (f.id > KNOWN_FILTERS) {
+        if (FilterDecoders.find(f.id) == null) {
           log.warn("  Variable " + facade.name + " has unknown Filter(s) = " + vinfo.mfp);
           break;
         }
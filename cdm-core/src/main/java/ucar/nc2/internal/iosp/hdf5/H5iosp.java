@@ -6,10 +6,12 @@ package ucar.nc2.internal.iosp.hdf5;
 
 import static ucar.nc2.NetcdfFile.IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructure;
@@ -26,6 +28,7 @@ import ucar.nc2.constants.CDM;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.internal.iosp.hdf4.HdfEos;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutBB;
@@ -71,11 +74,22 @@ public class H5iosp extends AbstractIOServiceProvider {
       H5tiledLayoutBB.debugFilter = debugFilter;
   }
 
+  // the superblock is at 0, 512, 1024, 2048...
+  private static final byte[] magic = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
+  private static final List<FileSignature> signatures = ImmutableList.of(FileSignature.at(0, magic),
+      FileSignature.at(512, magic), FileSignature.at(1024, magic), FileSignature.at(2048, magic),
+      FileSignature.at(4096, magic));
+
   @Override
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
     return H5header.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     if (isEos) {
@@ -96,6 +110,25 @@ public class H5iosp extends AbstractIOServiceProvider {
     useHdfEos = val;
   }
 
+  /**
+   * Iosp message to undo the filters (eg decompress) of up to maxThreads chunks at once when reading filtered
+   * variables. Send it with NetcdfFile.sendIospMessage(), or as the iospMessage of NetcdfFiles.open().
+   * A maxThreads of 1 decodes the chunks on the calling thread, which is the default.
+   * To cancel a read, pass a CancelTask to Variable.readArray(Section, CancelTask).
+   */
+  public static class ParallelChunkReads {
+    private final int maxThreads;
+
+    /** @param maxThreads maximum number of chunks to decode in parallel. */
+    public ParallelChunkReads(int maxThreads) {
+      this.maxThreads = Math.max(maxThreads, 1);
+    }
+
+    public int getMaxThreads() {
+      return maxThreads;
+    }
+  }
+
   @Override
   public String getFileTypeVersion() {
     // TODO this only works for files writtten by netcdf4 c library. what about plain hdf5?
@@ -108,6 +141,7 @@ public class H5iosp extends AbstractIOServiceProvider {
   boolean isEos;
   boolean includeOriginalAttributes;
   private Charset valueCharset;
+  ParallelChunkReads parallelChunkReads = new ParallelChunkReads(1);
 
   @Override
   public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
@@ -134,6 +168,10 @@ public class H5iosp extends AbstractIOServiceProvider {
     if (message instanceof Charset) {
       setValueCharset((Charset) message);
     }
+    if (message instanceof ParallelChunkReads) {
+      parallelChunkReads = (ParallelChunkReads) message;
+      return Boolean.TRUE;
+    }
     if (message.equals(IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT)) {
       if (!header.isNetcdf4()) {
         return null;
@@ -193,7 +231,8 @@ public class H5iosp extends AbstractIOServiceProvider {
         System.out.println("read variable filtered " + v2.getFullName() + " vinfo = " + vinfo);
       assert vinfo.isChunked;
       ByteOrder bo = vinfo.typeInfo.endian;
-      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo);
+      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo,
+          parallelChunkReads.getMaxThreads(), null);
       if (vinfo.typeInfo.isVString) {
         data = readFilteredStringData((LayoutBB) layout);
       } else {
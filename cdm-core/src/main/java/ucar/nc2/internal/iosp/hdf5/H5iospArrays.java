@@ -8,6 +8,7 @@ import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import javax.annotation.Nullable;
 
 import ucar.array.*;
 import ucar.ma2.DataType;
@@ -54,17 +55,23 @@ public class H5iospArrays extends H5iosp {
   @Override
   public ucar.array.Array<?> readArrayData(Variable v2, ucar.array.Section section)
       throws java.io.IOException, ucar.array.InvalidRangeException {
+    return readArrayData(v2, section, null);
+  }
+
+  @Override
+  public ucar.array.Array<?> readArrayData(Variable v2, ucar.array.Section section, @Nullable CancelTask cancelTask)
+      throws java.io.IOException, ucar.array.InvalidRangeException {
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
     Preconditions.checkNotNull(vinfo);
     if (debugRead) {
       System.out.printf("%s read %s%n", v2.getFullName(), section);
     }
-    return readArrayData(v2, vinfo.dataPos, section);
+    return readArrayData(v2, vinfo.dataPos, section, cancelTask);
   }
 
   // all the work is here, so it can be called recursively
-  private ucar.array.Array<?> readArrayData(Variable v2, long dataPos, ucar.array.Section wantSection)
-      throws IOException, ucar.array.InvalidRangeException {
+  private ucar.array.Array<?> readArrayData(Variable v2, long dataPos, ucar.array.Section wantSection,
+      @Nullable CancelTask cancelTask) throws IOException, ucar.array.InvalidRangeException {
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
     ArrayType dataType = v2.getArrayType();
     Object data;
@@ -85,7 +92,8 @@ public class H5iospArrays extends H5iosp {
         assert vinfo.isChunked;
         ByteOrder bo = vinfo.typeInfo.endian;
         Section oldSection = ArraysConvert.convertSection(wantSection);
-        layout = new H5tiledLayoutBB(v2, oldSection, raf, vinfo.mfp.getFilters(), bo);
+        layout = new H5tiledLayoutBB(v2, oldSection, raf, vinfo.mfp.getFilters(), bo,
+            parallelChunkReads.getMaxThreads(), cancelTask);
         if (vinfo.typeInfo.isVString) {
           data = readFilteredStringData((LayoutBB) layout);
         } else {
@@ -122,6 +130,16 @@ public class H5iospArrays extends H5iosp {
           // wantSection = wantSection.removeVlen(); // remove vlen dimension
         }
 
+        // large sections of contiguous numbers are mapped straight from the file
+        boolean isNumber = (vinfo.typeInfo.hdfType == 0 || vinfo.typeInfo.hdfType == 1);
+        if (!vinfo.isChunked && isNumber && dataType.getSize() == elemSize) {
+          ucar.array.Array<?> mapped =
+              IospArrayHelper.mapArrayData(raf, dataPos, dataType, endian, v2.getShape(), wantSection);
+          if (mapped != null) {
+            return mapped;
+          }
+        }
+
         Section oldSection = ArraysConvert.convertSection(wantSection);
         if (vinfo.isChunked) {
           layout = new H5tiledLayout((H5header.Vinfo) v2.getSPobject(), readDtype, oldSection);
@@ -1565,6 +1565,12 @@ public class H5objects {
     int[] chunkSize; // only for chunked, otherwise must use Dataspace
     int dataSize;
 
+    // version 4, chunked only
+    byte flags; // 1 = dont filter partial edge chunks, 2 = the single chunk is filtered
+    byte chunkIndexType; // 0 = version 1 B-tree (versions < 4), see ChunkIndex for the others
+    long filteredChunkSize; // single chunk index with a filter
+    int filterMask; // single chunk index with a filter
+
     public String toString() {
       StringBuilder sbuff = new StringBuilder();
       sbuff.append(" type= ").append(+type).append(" (");
@@ -1592,6 +1598,9 @@ public class H5objects {
         }
         sbuff.append(")");
       }
+      if (chunkIndexType != 0) {
+        sbuff.append(" chunkIndexType=").append(chunkIndexType).append(" flags=").append(flags);
+      }
 
       sbuff.append(" dataSize=").append(dataSize);
       sbuff.append(" dataAddress=").append(dataAddress);
@@ -1659,12 +1668,44 @@ public class H5objects {
           dataAddress = header.readOffset();
           contiguousSize = header.readLength();
 
-        } else if (type == 2) {
+        } else if (type == 2 && version == 3) {
           ndims = raf.readByte();
           dataAddress = header.readOffset();
           chunkSize = new int[ndims];
           for (int i = 0; i < ndims; i++)
             chunkSize[i] = raf.readInt();
+
+        } else if (type == 2) { // version 4 has a choice of chunk indexes
+          flags = raf.readByte();
+          ndims = raf.readByte();
+          int dimSizeLength = raf.readByte();
+          chunkSize = new int[ndims];
+          for (int i = 0; i < ndims; i++)
+            chunkSize[i] = (int) header.readVariableSizeUnsigned(dimSizeLength);
+
+          chunkIndexType = raf.readByte();
+          switch (chunkIndexType) {
+            case ChunkIndex.SINGLE_CHUNK:
+              if ((flags & 2) != 0) {
+                filteredChunkSize = header.readLength();
+                filterMask = raf.readInt();
+              }
+              break;
+            case ChunkIndex.IMPLICIT:
+              break;
+            case ChunkIndex.FIXED_ARRAY:
+              raf.skipBytes(1); // page bits, also in the fixed array header
+              break;
+            case ChunkIndex.EXTENSIBLE_ARRAY:
+              raf.skipBytes(5); // parameters, also in the extensible array header
+              break;
+            case ChunkIndex.BTREE2:
+              raf.skipBytes(6); // node size, split and merge percent, also in the B-tree header
+              break;
+            default:
+              throw new IllegalStateException("MessageLayout: unknown chunk index type= " + chunkIndexType);
+          }
+          dataAddress = header.readOffset();
         }
       }
 
@@ -1716,14 +1757,14 @@ public class H5objects {
   private static final String[] filterName = {"", "deflate", "shuffle", "fletcher32", "szip", "nbit", "scaleoffset"};
 
   class Filter {
-    short id; // 1=deflate, 2=shuffle, 3=fletcher32, 4=szip, 5=nbit, 6=scaleoffset
+    int id; // 1=deflate, 2=shuffle, 3=fletcher32, 4=szip, 5=nbit, 6=scaleoffset, see FilterDecoders
     short flags;
     String name;
     short nValues;
     int[] data;
 
     Filter(byte version) throws IOException {
-      this.id = raf.readShort();
+      this.id = Short.toUnsignedInt(raf.readShort()); // registered filter ids go up to 65535
       short nameSize = ((version > 1) && (id < 256)) ? 0 : raf.readShort(); // if the filter id < 256 then this field is
       // not stored
       this.flags = raf.readShort();
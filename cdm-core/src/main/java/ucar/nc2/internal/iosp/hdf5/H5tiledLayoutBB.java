@@ -5,13 +5,22 @@
 package ucar.nc2.internal.iosp.hdf5;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
@@ -19,14 +28,17 @@ import ucar.nc2.Variable;
 import ucar.nc2.internal.iosp.hdf5.H5objects.Filter;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
-import ucar.nc2.util.IO;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Instruments;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
 
 /**
  * Iterator to read/write subsets of an array.
  * This calculates byte offsets for HD5 chunked datasets.
  * Assumes that the data is stored in chunks, indexed by a Btree.
- * Used for filtered data
+ * Used for filtered data, the filters are undone by the {@link FilterDecoder}s found in {@link FilterDecoders},
+ * optionally on several threads.
  * Had to split from old H5tiledLayoutBB because need to use H5headerNew.Vinfo.
  * 
  * @author caron
@@ -34,9 +46,6 @@ import ucar.unidata.io.RandomAccessFile;
 public class H5tiledLayoutBB implements LayoutBB {
   static boolean debugFilter;
 
-  private static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  private static final String INFLATEBUFFERSIZE_PROPERTY = "unidata.h5iosp.inflate.buffersize";
   private static boolean debug;
 
   private final LayoutBBTiled delegate;
@@ -49,8 +58,24 @@ public class H5tiledLayoutBB implements LayoutBB {
   private final int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
   private final int elemSize; // last dimension of the StorageLayout message
   private final int nChunkDims;
+  private final int chunkBytes; // size of an unfiltered chunk, or -1 if too large
+  private final String location; // of the file, for the H5chunkCache
+  private final long fileLength; // for the H5chunkCache, so a changed file's chunks are not used
+  private final long lastModified; // for the H5chunkCache
+  private final String varName; // for the H5chunkCache
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
+  // number of chunks to gather into one RandomAccessFile.readRanges(), for files that prefer it
+  private static final int VECTORED_READ_CHUNKS = 16;
+
+  private static ExecutorService executor; // shared by all parallel reads, created when first needed
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder().setNameFormat("H5tiledLayoutBB-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
 
   /**
    * Constructor.
@@ -65,6 +90,23 @@ public class H5tiledLayoutBB implements LayoutBB {
    */
   public H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, Filter[] filters, ByteOrder byteOrder)
       throws InvalidRangeException, IOException {
+    this(v2, wantSection, raf, filters, byteOrder, 1, null);
+  }
+
+  /**
+   * Constructor that can undo the filters of several chunks at once.
+   *
+   * @param v2 Variable to index over; assumes that vinfo is the data object
+   * @param wantSection the wanted section of data, contains a List of Range objects. must be complete
+   * @param raf the RandomAccessFile
+   * @param filters set of filters that have been applied to the data
+   * @param maxThreads maximum number of chunks to decode in parallel, 1 to decode them on the calling thread
+   * @param cancelTask allow the read to be cancelled, may be null
+   * @throws InvalidRangeException if section invalid for this variable
+   * @throws IOException on io error
+   */
+  public H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, Filter[] filters, ByteOrder byteOrder,
+      int maxThreads, @Nullable CancelTask cancelTask) throws InvalidRangeException, IOException {
     wantSection = Section.fill(wantSection, v2.getShape());
 
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
@@ -75,6 +117,10 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.raf = raf;
     this.filters = filters;
     this.byteOrder = byteOrder;
+    this.location = raf.getLocation();
+    this.fileLength = H5chunkCache.isEnabled() ? raf.length() : -1;
+    this.lastModified = H5chunkCache.isEnabled() ? raf.getLastModified() : -1;
+    this.varName = v2.getFullName();
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, reletive
@@ -92,25 +138,21 @@ public class H5tiledLayoutBB implements LayoutBB {
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
 
+    // the size of an unfiltered chunk, a hint for the filters
+    long nbytes = 1;
+    for (int size : vinfo.storageSize)
+      nbytes *= size;
+    this.chunkBytes = (nbytes > 0 && nbytes < Integer.MAX_VALUE) ? (int) nbytes : -1;
+
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    // read several chunks at once if decoding in parallel, or if the file prefers that
+    int readAhead = Math.max(maxThreads, raf.prefersVectoredReads() ? VECTORED_READ_CHUNKS : 1);
+    LayoutBBTiled.DataChunkIterator dcIter =
+        (readAhead > 1) ? new ReadAheadDataChunkIterator(iter, readAhead, maxThreads, cancelTask)
+            : new DataChunkIterator(iter);
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
-    if (System.getProperty(INFLATEBUFFERSIZE_PROPERTY) != null) {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE_PROPERTY));
-        if (size <= 0)
-          H5iosp.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE_PROPERTY));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iosp.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE_PROPERTY));
-      }
-    }
-    if (debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n", INFLATEBUFFERSIZE_PROPERTY, this.inflatebuffersize);
-
     if (debug)
       System.out.println(" H5tiledLayout: " + this);
   }
@@ -161,6 +203,158 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
   }
 
+  // Reads ahead the chunks that intersect the wanted section, up to readAhead chunks, using a single
+  // RandomAccessFile.readRanges() for each batch. If maxThreads > 1, their filters are undone on the shared
+  // executor, otherwise on the calling thread. The file is only read on the calling thread. Chunks are returned
+  // in the same order as DataChunkIterator, so the result does not depend on thread timing.
+  private class ReadAheadDataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final DataBTree.DataChunkIterator delegate;
+    private final int readAhead;
+    private final int maxThreads;
+    private final CancelTask cancelTask;
+    private final ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+    private int inFlight; // number of pending chunks that have been started
+
+    ReadAheadDataChunkIterator(DataBTree.DataChunkIterator delegate, int readAhead, int maxThreads,
+        @Nullable CancelTask cancelTask) {
+      this.delegate = delegate;
+      this.readAhead = readAhead;
+      this.maxThreads = maxThreads;
+      this.cancelTask = cancelTask;
+    }
+
+    public boolean hasNext() {
+      return !pending.isEmpty() || delegate.hasNext();
+    }
+
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      if (inFlight <= readAhead / 2) {
+        fill();
+      }
+      if (pending.isEmpty()) // cancelled
+        return new PendingChunk(delegate.next());
+
+      PendingChunk result = pending.remove();
+      if (result.isStarted())
+        inFlight--;
+      return result;
+    }
+
+    // start the next readAhead chunks that are not in the H5chunkCache, reading them all at once
+    private void fill() throws IOException {
+      List<PendingChunk> toRead = new ArrayList<>();
+      while (inFlight < readAhead && delegate.hasNext() && !isCancelled()) {
+        PendingChunk chunk = new PendingChunk(delegate.next());
+        if (chunk.intersectsWant()) { // LayoutBBTiled skips the others without reading them
+          if (!chunk.findCached()) {
+            toRead.add(chunk);
+          }
+          inFlight++;
+        }
+        pending.add(chunk);
+      }
+      if (toRead.isEmpty())
+        return;
+
+      List<FileRange> ranges = new ArrayList<>(toRead.size());
+      for (PendingChunk chunk : toRead) {
+        ranges.add(chunk.getRawRange());
+      }
+      List<byte[]> raws;
+      try {
+        raws = raf.readRanges(ranges);
+      } catch (OutOfMemoryError e) {
+        throw toRead.get(0).outOfMemory(e);
+      }
+      for (int i = 0; i < toRead.size(); i++) {
+        toRead.get(i).start(raws.get(i));
+      }
+    }
+
+    private boolean isCancelled() {
+      return cancelTask != null && cancelTask.isCancel();
+    }
+
+    private class PendingChunk extends DataChunk {
+      private byte[] cached; // decoded
+      private byte[] raw; // when decoding on the calling thread
+      private Future<byte[]> future; // when decoding on the executor
+
+      PendingChunk(DataBTree.DataChunk delegate) {
+        super(delegate);
+      }
+
+      boolean intersectsWant() {
+        try {
+          return new Section(getOffset(), chunkSize).intersects(want);
+        } catch (InvalidRangeException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      boolean isStarted() {
+        return cached != null || raw != null || future != null;
+      }
+
+      boolean findCached() {
+        H5chunkCache.Key key = makeCacheKey();
+        cached = (key == null) ? null : H5chunkCache.get(key);
+        return cached != null;
+      }
+
+      void start(byte[] raw) {
+        if (maxThreads <= 1) {
+          this.raw = raw;
+          return;
+        }
+        H5chunkCache.Key key = makeCacheKey();
+        future = getExecutor().submit(() -> {
+          byte[] data = decode(raw);
+          if (key != null) {
+            H5chunkCache.put(key, data);
+          }
+          return data;
+        });
+      }
+
+      @Override
+      public ByteBuffer getByteBuffer() throws IOException {
+        if (isCancelled()) {
+          for (PendingChunk chunk : pending) {
+            if (chunk.future != null)
+              chunk.future.cancel(false);
+          }
+          throw new IOException("Read of " + varName + " was cancelled");
+        }
+        if (cached != null)
+          return wrap(cached);
+        if (raw != null) {
+          byte[] data = decode(raw);
+          raw = null;
+          H5chunkCache.Key key = makeCacheKey();
+          if (key != null) {
+            H5chunkCache.put(key, data);
+          }
+          return wrap(data);
+        }
+        if (future == null)
+          return super.getByteBuffer();
+
+        try {
+          return wrap(future.get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted reading " + varName);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          Throwables.throwIfInstanceOf(cause, IOException.class);
+          Throwables.throwIfUnchecked(cause);
+          throw new IOException(cause);
+        }
+      }
+    }
+  }
+
   private class DataChunk implements LayoutBBTiled.DataChunk {
     // Copied from ArrayList.
     private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
@@ -201,121 +395,93 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
+      H5chunkCache.Key key = makeCacheKey();
+      byte[] data = (key == null) ? null : H5chunkCache.get(key);
+      if (data == null) {
+        data = decode(readRaw());
+        if (key != null) {
+          H5chunkCache.put(key, data);
+        }
+      }
+      return wrap(data);
+    }
+
+    @Nullable
+    H5chunkCache.Key makeCacheKey() {
+      if (!H5chunkCache.isEnabled()) {
+        return null;
+      }
+      return new H5chunkCache.Key(location, fileLength, lastModified, varName, delegate.offset);
+    }
+
+    ByteBuffer wrap(byte[] data) {
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    // where the filtered data is in the file
+    FileRange getRawRange() {
+      return new FileRange(delegate.filePos, stripChecksum() ? delegate.size - 4 : delegate.size);
+    }
+
+    // read the filtered data. Not thread safe, this uses the RandomAccessFile.
+    byte[] readRaw() throws IOException {
       try {
-        // read the data
-        byte[] data = new byte[delegate.size];
+        byte[] data = new byte[getRawRange().getLength()];
         raf.seek(delegate.filePos);
         raf.readFully(data);
+        return data;
+      } catch (OutOfMemoryError e) {
+        throw outOfMemory(e);
+      }
+    }
 
-        // apply filters backwards
-        for (int i = filters.length - 1; i >= 0; i--) {
+    // undo the filters. Thread safe.
+    byte[] decode(byte[] data) throws IOException {
+      try {
+        // apply filters backwards, the checksum was already left off by readRaw()
+        int last = stripChecksum() ? filters.length - 2 : filters.length - 1;
+        for (int i = last; i >= 0; i--) {
           Filter f = filters[i];
           if (isBitSet(delegate.filterMask, i)) {
             if (debug)
               System.out.println("skip for chunk " + delegate);
             continue;
           }
-          if (f.id == 1) {
-            data = inflate(data);
-          } else if (f.id == 2) {
-            data = shuffle(data, f.data[0]);
-          } else if (f.id == 3) {
-            data = checkfletcher32(data);
-            /*
-             * } else if (f.id == 307) {
-             * data = unbzip2(data);
-             */
-          } else
-            throw new RuntimeException("Unknown filter type=" + f.id);
+          FilterDecoder decoder = FilterDecoders.find(f.id);
+          if (decoder == null)
+            throw new RuntimeException("Unknown filter type=" + f.id + " name=" + f.name);
+          int nin = data.length;
+          if (Instruments.isEnabled()) {
+            long start = System.nanoTime();
+            data = decoder.decode(data, f.data, chunkBytes);
+            Instruments.get().chunkDecoded(decoder.getName(), nin, data.length, System.nanoTime() - start);
+          } else {
+            data = decoder.decode(data, f.data, chunkBytes);
+          }
+          if (debug || debugFilter)
+            System.out.println(" " + decoder.getName() + " bytes in= " + nin + " bytes out= " + data.length);
         }
+        return data;
 
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
       } catch (OutOfMemoryError e) {
-        Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
-            + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
-        oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
-        throw oom;
+        throw outOfMemory(e);
       }
     }
 
-    /**
-     * inflate data
-     *
-     * @param compressed compressed data
-     * @return uncompressed data
-     * @throws IOException on I/O error
-     */
-    private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
-      java.util.zip.InflaterInputStream inflatestream =
-          new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize);
-      int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
-      IO.copyB(inflatestream, out, len);
-
-      byte[] uncomp = out.toByteArray();
-      if (debug || debugFilter)
-        System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
-      return uncomp;
-    }
-
-    /*
-     * private byte[] unbzip2(byte[] compressed) throws IOException {
-     * int max = 20 * compressed.length;
-     * byte[] buffer = new byte[max];
-     * ByteArrayOutputStream out = new ByteArrayOutputStream(20 * compressed.length);
-     * ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-     * try (org.itadaki.bzip2.BZip2InputStream bzIn = new org.itadaki.bzip2.BZip2InputStream(in, false)) {
-     * int bytesRead;
-     * int totRead = 0;
-     * while ((bytesRead = bzIn.read (buffer)) != -1) {
-     * out.write (buffer, 0, bytesRead) ; // LOOK unneeded copy
-     * totRead += bytesRead;
-     * }
-     * out.close();
-     * //System.out.printf("unbzip2=%d%n", totRead);
-     * } catch (Exception e) {
-     * e.printStackTrace();
-     * }
-     * 
-     * return out.toByteArray();
-     * }
-     */
-
-    // just strip off the 4-byte fletcher32 checksum at the end
-    private byte[] checkfletcher32(byte[] org) {
-      byte[] result = new byte[org.length - 4];
-      System.arraycopy(org, 0, result, 0, result.length);
-      if (debug)
-        System.out.println(" checkfletcher32 bytes in= " + org.length + " bytes out= " + result.length);
-      return result;
+    // The fletcher32 filter, when applied last, only appends a checksum to the chunk, which is not checked.
+    private boolean stripChecksum() {
+      int last = filters.length - 1;
+      return last >= 0 && filters[last].id == FilterDecoders.FLETCHER32 && !isBitSet(delegate.filterMask, last)
+          && delegate.size >= 4;
     }
 
-    private byte[] shuffle(byte[] data, int n) {
-      if (debug)
-        System.out.println(" shuffle bytes in= " + data.length + " n= " + n);
-
-      assert data.length % n == 0;
-      if (n <= 1)
-        return data;
-
-      int m = data.length / n;
-      int[] count = new int[n];
-      for (int k = 0; k < n; k++)
-        count[k] = k * m;
-
-      byte[] result = new byte[data.length];
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < n; j++) {
-          result[i * n + j] = data[i + count[j]];
-        }
-      }
-
-      return result;
+    Error outOfMemory(OutOfMemoryError e) {
+      Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
+          + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
+      oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
+      return oom;
     }
 
     boolean isBitSet(int val, int bitno) {
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+
+/** Pure java decoder for LZ4 blocks, and for the framing used by the HDF5 LZ4 filter (id 32004). */
+final class Lz4Decompressor {
+  private static final int MIN_MATCH = 4;
+
+  private Lz4Decompressor() {}
+
+  /**
+   * Decompress the HDF5 LZ4 filter format: an 8 byte big endian total size, a 4 byte big endian block size,
+   * then for each block a 4 byte big endian compressed size followed by the compressed block. A block whose
+   * compressed size equals its uncompressed size is stored as is.
+   */
+  static byte[] decompressHdf5(byte[] src) throws IOException {
+    if (src.length < 12) {
+      throw new IOException("LZ4: truncated HDF5 LZ4 header");
+    }
+    long totalSize = readLongBE(src, 0);
+    int blockSize = readIntBE(src, 8);
+    if (totalSize < 0 || totalSize > Integer.MAX_VALUE - 8 || blockSize <= 0) {
+      throw new IOException("LZ4: bad HDF5 LZ4 header total size=" + totalSize + " block size=" + blockSize);
+    }
+
+    byte[] dst = new byte[(int) totalSize];
+    int srcPos = 12;
+    int dstPos = 0;
+    while (dstPos < dst.length) {
+      int want = Math.min(blockSize, dst.length - dstPos);
+      if (srcPos + 4 > src.length) {
+        throw new IOException("LZ4: truncated block header");
+      }
+      int compressedSize = readIntBE(src, srcPos);
+      srcPos += 4;
+      if (compressedSize < 0 || srcPos + compressedSize > src.length) {
+        throw new IOException("LZ4: truncated block");
+      }
+      if (compressedSize == want) {
+        System.arraycopy(src, srcPos, dst, dstPos, want);
+      } else {
+        int n = decompressBlock(src, srcPos, compressedSize, dst, dstPos, want);
+        if (n != want) {
+          throw new IOException("LZ4: block decompressed to " + n + " bytes, expected " + want);
+        }
+      }
+      srcPos += compressedSize;
+      dstPos += want;
+    }
+    return dst;
+  }
+
+  /**
+   * Decompress one raw LZ4 block.
+   *
+   * @return number of bytes written to dst.
+   */
+  static int decompressBlock(byte[] src, int srcPos, int srcLen, byte[] dst, int dstPos, int dstLen)
+      throws IOException {
+    int ip = srcPos;
+    int ipEnd = srcPos + srcLen;
+    int op = dstPos;
+    int opEnd = dstPos + dstLen;
+
+    try {
+      while (ip < ipEnd) {
+        int token = src[ip++] & 0xff;
+
+        // literals
+        int literalLength = token >>> 4;
+        if (literalLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            literalLength += b;
+          } while (b == 255);
+        }
+        if (ip + literalLength > ipEnd || op + literalLength > opEnd) {
+          throw new IOException("LZ4: literal run overflows buffer");
+        }
+        System.arraycopy(src, ip, dst, op, literalLength);
+        ip += literalLength;
+        op += literalLength;
+        if (ip >= ipEnd) {
+          break; // the last sequence has only literals
+        }
+
+        // match
+        int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+        ip += 2;
+        int matchLength = token & 0xf;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += MIN_MATCH;
+
+        int from = op - offset;
+        if (offset == 0 || from < dstPos) {
+          throw new IOException("LZ4: bad match offset " + offset);
+        }
+        if (op + matchLength > opEnd) {
+          throw new IOException("LZ4: match overflows buffer");
+        }
+        if (offset >= matchLength) {
+          System.arraycopy(dst, from, dst, op, matchLength);
+        } else {
+          for (int i = 0; i < matchLength; i++) { // overlapping copy must go byte by byte
+            dst[op + i] = dst[from + i];
+          }
+        }
+        op += matchLength;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("LZ4: corrupted input", e);
+    }
+
+    return op - dstPos;
+  }
+
+  private static int readIntBE(byte[] src, int pos) {
+    return (src[pos] & 0xff) << 24 | (src[pos + 1] & 0xff) << 16 | (src[pos + 2] & 0xff) << 8 | (src[pos + 3] & 0xff);
+  }
+
+  private static long readLongBE(byte[] src, int pos) {
+    return ((long) readIntBE(src, pos) << 32) | (readIntBE(src, pos + 4) & 0xffffffffL);
+  }
+}
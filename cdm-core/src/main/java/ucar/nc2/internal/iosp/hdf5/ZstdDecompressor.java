@@ -0,0 +1,823 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure java decoder for the Zstandard format (RFC 8878).
+ * Decodes complete frames held in memory; dictionaries are not supported.
+ * Not thread safe: the decoding tables are reused between frames, use one instance per thread.
+ */
+final class ZstdDecompressor {
+  private static final int MAGIC = 0xFD2FB528;
+  private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+  private static final int MAX_BLOCK_SIZE = 128 * 1024;
+
+  private static final int BLOCK_RAW = 0;
+  private static final int BLOCK_RLE = 1;
+  private static final int BLOCK_COMPRESSED = 2;
+
+  private static final int LITERALS_RAW = 0;
+  private static final int LITERALS_RLE = 1;
+  private static final int LITERALS_COMPRESSED = 2;
+  private static final int LITERALS_TREELESS = 3;
+
+  private static final int MODE_PREDEFINED = 0;
+  private static final int MODE_RLE = 1;
+  private static final int MODE_FSE = 2;
+  private static final int MODE_REPEAT = 3;
+
+  private static final int HUF_MAX_BITS = 11;
+  private static final int LL_MAX_LOG = 9;
+  private static final int ML_MAX_LOG = 9;
+  private static final int OF_MAX_LOG = 8;
+
+  private static final int[] LL_BASE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 18, 20, 22, 24, 28,
+      32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536};
+  private static final int[] LL_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6,
+      7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+  private static final int[] ML_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23,
+      24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027,
+      2051, 4099, 8195, 16387, 32771, 65539};
+  private static final int[] ML_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  private static final short[] LL_DEFAULT_NORM = {4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2,
+      2, 2, 3, 2, 1, 1, 1, 1, 1, -1, -1, -1, -1};
+  private static final short[] ML_DEFAULT_NORM = {1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1};
+  private static final short[] OF_DEFAULT_NORM =
+      {1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1};
+
+  private static final FseTable LL_DEFAULT = FseTable.build(LL_DEFAULT_NORM, LL_DEFAULT_NORM.length - 1, 6);
+  private static final FseTable ML_DEFAULT = FseTable.build(ML_DEFAULT_NORM, ML_DEFAULT_NORM.length - 1, 6);
+  private static final FseTable OF_DEFAULT = FseTable.build(OF_DEFAULT_NORM, OF_DEFAULT_NORM.length - 1, 5);
+
+  // state carried between the blocks of a frame
+  private final int[] rep = new int[3];
+  private final byte[] hufSymbol = new byte[1 << HUF_MAX_BITS];
+  private final byte[] hufNbBits = new byte[1 << HUF_MAX_BITS];
+  private int hufMaxBits; // 0 means no table yet
+  private FseTable llTable, mlTable, ofTable;
+
+  private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+  private byte[] literalSrc;
+  private int literalPos, literalLimit;
+
+  // the output
+  private byte[] dst;
+  private int dstPos;
+
+  /**
+   * Decompress all frames in src[srcPos, srcPos + srcLen).
+   *
+   * @param expectedSize expected size of the decompressed data, or -1 if unknown.
+   * @return the decompressed data, exactly sized.
+   */
+  byte[] decompress(byte[] src, int srcPos, int srcLen, int expectedSize) throws IOException {
+    int limit = srcPos + srcLen;
+    dst = new byte[expectedSize > 0 ? expectedSize : Math.max(64, 4 * srcLen)];
+    dstPos = 0;
+    try {
+      int pos = srcPos;
+      while (pos < limit) {
+        pos = decodeFrame(src, pos, limit);
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Zstd: corrupted input", e);
+    }
+    byte[] result = (dstPos == dst.length) ? dst : Arrays.copyOf(dst, dstPos);
+    dst = null;
+    literalSrc = null;
+    return result;
+  }
+
+  private int decodeFrame(byte[] src, int pos, int limit) throws IOException {
+    checkAvailable(pos, 4, limit);
+    int magic = readIntLE(src, pos);
+    pos += 4;
+    if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+      checkAvailable(pos, 4, limit);
+      int size = readIntLE(src, pos);
+      checkAvailable(pos + 4, size, limit);
+      return pos + 4 + size;
+    }
+    if (magic != MAGIC) {
+      throw new IOException(String.format("Zstd: bad magic number %x", magic));
+    }
+
+    checkAvailable(pos, 1, limit);
+    int descriptor = src[pos++] & 0xff;
+    int fcsFlag = descriptor >>> 6;
+    boolean singleSegment = (descriptor & 0x20) != 0;
+    boolean hasChecksum = (descriptor & 0x04) != 0;
+    int dictIdFlag = descriptor & 0x03;
+    if ((descriptor & 0x08) != 0) {
+      throw new IOException("Zstd: reserved bit set in frame header");
+    }
+    if (!singleSegment) {
+      pos++; // window descriptor, not needed since the entire output is kept in memory
+    }
+    int dictIdSize = dictIdFlag == 3 ? 4 : dictIdFlag;
+    checkAvailable(pos, dictIdSize, limit);
+    long dictId = 0;
+    for (int i = 0; i < dictIdSize; i++) {
+      dictId |= (src[pos + i] & 0xffL) << (8 * i);
+    }
+    pos += dictIdSize;
+    if (dictId != 0) {
+      throw new IOException("Zstd: dictionaries are not supported");
+    }
+
+    int fcsSize = fcsFlag == 0 ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+    checkAvailable(pos, fcsSize, limit);
+    long contentSize = -1;
+    if (fcsSize > 0) {
+      contentSize = 0;
+      for (int i = 0; i < fcsSize; i++) {
+        contentSize |= (src[pos + i] & 0xffL) << (8 * i);
+      }
+      if (fcsSize == 2) {
+        contentSize += 256;
+      }
+      pos += fcsSize;
+    }
+    if (contentSize > 0) {
+      ensureCapacity(contentSize);
+    }
+
+    // reset the frame state
+    rep[0] = 1;
+    rep[1] = 4;
+    rep[2] = 8;
+    hufMaxBits = 0;
+    llTable = mlTable = ofTable = null;
+
+    boolean last = false;
+    while (!last) {
+      checkAvailable(pos, 3, limit);
+      int header = (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16;
+      pos += 3;
+      last = (header & 1) != 0;
+      int blockType = (header >>> 1) & 3;
+      int blockSize = header >>> 3;
+
+      switch (blockType) {
+        case BLOCK_RAW:
+          checkAvailable(pos, blockSize, limit);
+          ensureCapacity(blockSize);
+          System.arraycopy(src, pos, dst, dstPos, blockSize);
+          dstPos += blockSize;
+          pos += blockSize;
+          break;
+        case BLOCK_RLE:
+          checkAvailable(pos, 1, limit);
+          ensureCapacity(blockSize);
+          Arrays.fill(dst, dstPos, dstPos + blockSize, src[pos]);
+          dstPos += blockSize;
+          pos += 1;
+          break;
+        case BLOCK_COMPRESSED:
+          checkAvailable(pos, blockSize, limit);
+          decodeCompressedBlock(src, pos, pos + blockSize);
+          pos += blockSize;
+          break;
+        default:
+          throw new IOException("Zstd: reserved block type");
+      }
+    }
+
+    if (hasChecksum) {
+      checkAvailable(pos, 4, limit);
+      pos += 4; // XXH64 content checksum is not verified
+    }
+    return pos;
+  }
+
+  private void decodeCompressedBlock(byte[] src, int pos, int limit) throws IOException {
+    pos = decodeLiterals(src, pos, limit);
+    decodeSequences(src, pos, limit);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  // literals
+
+  private int decodeLiterals(byte[] src, int pos, int limit) throws IOException {
+    checkAvailable(pos, 1, limit);
+    int b0 = src[pos] & 0xff;
+    int type = b0 & 3;
+    int sizeFormat = (b0 >>> 2) & 3;
+
+    if (type == LITERALS_RAW || type == LITERALS_RLE) {
+      int regenSize;
+      switch (sizeFormat) {
+        case 0:
+        case 2:
+          regenSize = b0 >>> 3;
+          pos += 1;
+          break;
+        case 1:
+          checkAvailable(pos, 2, limit);
+          regenSize = (b0 >>> 4) + ((src[pos + 1] & 0xff) << 4);
+          pos += 2;
+          break;
+        default:
+          checkAvailable(pos, 3, limit);
+          regenSize = (b0 >>> 4) + ((src[pos + 1] & 0xff) << 4) + ((src[pos + 2] & 0xff) << 12);
+          pos += 3;
+          break;
+      }
+      if (regenSize > MAX_BLOCK_SIZE) {
+        throw new IOException("Zstd: literals section too large");
+      }
+
+      if (type == LITERALS_RAW) {
+        checkAvailable(pos, regenSize, limit);
+        literalSrc = src;
+        literalPos = pos;
+        literalLimit = pos + regenSize;
+        return pos + regenSize;
+      }
+      checkAvailable(pos, 1, limit);
+      Arrays.fill(literals, 0, regenSize, src[pos]);
+      literalSrc = literals;
+      literalPos = 0;
+      literalLimit = regenSize;
+      return pos + 1;
+    }
+
+    // compressed or treeless
+    int headerSize;
+    int sizeBits;
+    boolean fourStreams = sizeFormat != 0;
+    switch (sizeFormat) {
+      case 0:
+      case 1:
+        headerSize = 3;
+        sizeBits = 10;
+        break;
+      case 2:
+        headerSize = 4;
+        sizeBits = 14;
+        break;
+      default:
+        headerSize = 5;
+        sizeBits = 18;
+        break;
+    }
+    checkAvailable(pos, headerSize, limit);
+    long header = 0;
+    for (int i = 0; i < headerSize; i++) {
+      header |= (src[pos + i] & 0xffL) << (8 * i);
+    }
+    int mask = (1 << sizeBits) - 1;
+    int regenSize = (int) (header >>> 4) & mask;
+    int compressedSize = (int) (header >>> (4 + sizeBits)) & mask;
+    pos += headerSize;
+    checkAvailable(pos, compressedSize, limit);
+    if (regenSize > MAX_BLOCK_SIZE) {
+      throw new IOException("Zstd: literals section too large");
+    }
+
+    int streamStart = pos;
+    int streamEnd = pos + compressedSize;
+    if (type == LITERALS_COMPRESSED) {
+      streamStart = readHuffmanTable(src, pos, streamEnd);
+    } else if (hufMaxBits == 0) {
+      throw new IOException("Zstd: treeless literals without a previous Huffman table");
+    }
+
+    if (fourStreams) {
+      checkAvailable(streamStart, 6, streamEnd);
+      int size1 = readShortLE(src, streamStart);
+      int size2 = readShortLE(src, streamStart + 2);
+      int size3 = readShortLE(src, streamStart + 4);
+      int start1 = streamStart + 6;
+      int start2 = start1 + size1;
+      int start3 = start2 + size2;
+      int start4 = start3 + size3;
+      if (start4 > streamEnd) {
+        throw new IOException("Zstd: corrupted Huffman jump table");
+      }
+      int segment = (regenSize + 3) / 4;
+      if (3 * segment > regenSize) {
+        throw new IOException("Zstd: corrupted literals size");
+      }
+      decodeHuffmanStream(src, start1, start2, 0, segment);
+      decodeHuffmanStream(src, start2, start3, segment, 2 * segment);
+      decodeHuffmanStream(src, start3, start4, 2 * segment, 3 * segment);
+      decodeHuffmanStream(src, start4, streamEnd, 3 * segment, regenSize);
+    } else {
+      decodeHuffmanStream(src, streamStart, streamEnd, 0, regenSize);
+    }
+
+    literalSrc = literals;
+    literalPos = 0;
+    literalLimit = regenSize;
+    return streamEnd;
+  }
+
+  private int readHuffmanTable(byte[] src, int pos, int limit) throws IOException {
+    checkAvailable(pos, 1, limit);
+    int headerByte = src[pos++] & 0xff;
+    byte[] weights = new byte[256];
+    int nweights;
+
+    if (headerByte >= 128) {
+      // direct representation, 4 bits per weight
+      nweights = headerByte - 127;
+      int nbytes = (nweights + 1) / 2;
+      checkAvailable(pos, nbytes, limit);
+      for (int i = 0; i < nweights; i++) {
+        int b = src[pos + i / 2] & 0xff;
+        weights[i] = (byte) ((i % 2 == 0) ? (b >>> 4) : (b & 0xf));
+      }
+      pos += nbytes;
+
+    } else {
+      // FSE compressed weights, two interleaved states
+      int end = pos + headerByte;
+      checkAvailable(pos, headerByte, limit);
+      short[] norm = new short[256];
+      int[] maxSymbol = {255};
+      int[] tableLog = new int[1];
+      int start = readNormalizedCounts(src, pos, end, norm, maxSymbol, tableLog, 6);
+      FseTable table = FseTable.build(norm, maxSymbol[0], tableLog[0]);
+
+      BackwardBitReader bits = new BackwardBitReader(src, start, end);
+      int state1 = (int) bits.readBits(table.tableLog);
+      int state2 = (int) bits.readBits(table.tableLog);
+      nweights = 0;
+      while (true) {
+        if (nweights >= 255) {
+          throw new IOException("Zstd: too many Huffman weights");
+        }
+        weights[nweights++] = (byte) table.symbol[state1];
+        state1 = table.baseline[state1] + (int) bits.readBits(table.nbBits[state1]);
+        if (bits.isOverflow()) {
+          weights[nweights++] = (byte) table.symbol[state2];
+          break;
+        }
+        if (nweights >= 255) {
+          throw new IOException("Zstd: too many Huffman weights");
+        }
+        weights[nweights++] = (byte) table.symbol[state2];
+        state2 = table.baseline[state2] + (int) bits.readBits(table.nbBits[state2]);
+        if (bits.isOverflow()) {
+          weights[nweights++] = (byte) table.symbol[state1];
+          break;
+        }
+      }
+      pos = end;
+    }
+
+    // the last weight is implied by the others
+    int total = 0;
+    for (int i = 0; i < nweights; i++) {
+      int w = weights[i];
+      if (w > HUF_MAX_BITS) {
+        throw new IOException("Zstd: Huffman weight too large");
+      }
+      if (w > 0) {
+        total += 1 << (w - 1);
+      }
+    }
+    if (total == 0) {
+      throw new IOException("Zstd: empty Huffman table");
+    }
+    int maxBits = 32 - Integer.numberOfLeadingZeros(total);
+    int rest = (1 << maxBits) - total;
+    if (Integer.bitCount(rest) != 1 || maxBits > HUF_MAX_BITS) {
+      throw new IOException("Zstd: corrupted Huffman weights");
+    }
+    weights[nweights++] = (byte) (Integer.numberOfTrailingZeros(rest) + 1);
+
+    // fill the table in order of increasing weight, symbols in natural order within a weight
+    int tableSize = 1 << maxBits;
+    int idx = 0;
+    for (int w = 1; w <= maxBits; w++) {
+      int span = 1 << (w - 1);
+      byte nb = (byte) (maxBits + 1 - w);
+      for (int s = 0; s < nweights; s++) {
+        if (weights[s] == w) {
+          Arrays.fill(hufSymbol, idx, idx + span, (byte) s);
+          Arrays.fill(hufNbBits, idx, idx + span, nb);
+          idx += span;
+        }
+      }
+    }
+    if (idx != tableSize) {
+      throw new IOException("Zstd: corrupted Huffman table");
+    }
+    hufMaxBits = maxBits;
+    return pos;
+  }
+
+  private void decodeHuffmanStream(byte[] src, int start, int end, int out, int outLimit) throws IOException {
+    BackwardBitReader bits = new BackwardBitReader(src, start, end);
+    int maxBits = hufMaxBits;
+    for (int i = out; i < outLimit; i++) {
+      int idx = (int) bits.peekBits(maxBits);
+      literals[i] = hufSymbol[idx];
+      bits.skipBits(hufNbBits[idx]);
+    }
+    if (!bits.isFinished()) {
+      throw new IOException("Zstd: Huffman stream not fully consumed");
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  // sequences
+
+  private void decodeSequences(byte[] src, int pos, int limit) throws IOException {
+    checkAvailable(pos, 1, limit);
+    int nseq = src[pos++] & 0xff;
+    if (nseq >= 128) {
+      if (nseq == 255) {
+        checkAvailable(pos, 2, limit);
+        nseq = (src[pos] & 0xff) + ((src[pos + 1] & 0xff) << 8) + 0x7F00;
+        pos += 2;
+      } else {
+        checkAvailable(pos, 1, limit);
+        nseq = ((nseq - 128) << 8) + (src[pos] & 0xff);
+        pos += 1;
+      }
+    }
+
+    if (nseq == 0) {
+      copyLiterals(literalLimit - literalPos);
+      return;
+    }
+
+    checkAvailable(pos, 1, limit);
+    int modes = src[pos++] & 0xff;
+    if ((modes & 3) != 0) {
+      throw new IOException("Zstd: reserved bits set in sequences header");
+    }
+    int[] next = {pos};
+    llTable = readTable(src, next, limit, (modes >>> 6) & 3, llTable, LL_DEFAULT, 35, LL_MAX_LOG);
+    ofTable = readTable(src, next, limit, (modes >>> 4) & 3, ofTable, OF_DEFAULT, 31, OF_MAX_LOG);
+    mlTable = readTable(src, next, limit, (modes >>> 2) & 3, mlTable, ML_DEFAULT, 52, ML_MAX_LOG);
+    pos = next[0];
+
+    FseTable ll = llTable;
+    FseTable of = ofTable;
+    FseTable ml = mlTable;
+    BackwardBitReader bits = new BackwardBitReader(src, pos, limit);
+    int llState = (int) bits.readBits(ll.tableLog);
+    int ofState = (int) bits.readBits(of.tableLog);
+    int mlState = (int) bits.readBits(ml.tableLog);
+
+    for (int i = 0; i < nseq; i++) {
+      int ofCode = of.symbol[ofState];
+      int mlCode = ml.symbol[mlState];
+      int llCode = ll.symbol[llState];
+      if (ofCode > 31 || mlCode >= ML_BASE.length || llCode >= LL_BASE.length) {
+        throw new IOException("Zstd: corrupted sequence codes");
+      }
+
+      long offsetValue = (1L << ofCode) + bits.readBits(ofCode);
+      int matchLength = ML_BASE[mlCode] + (int) bits.readBits(ML_BITS[mlCode]);
+      int literalLength = LL_BASE[llCode] + (int) bits.readBits(LL_BITS[llCode]);
+
+      int offset;
+      if (offsetValue > 3) {
+        offset = (int) (offsetValue - 3);
+        rep[2] = rep[1];
+        rep[1] = rep[0];
+        rep[0] = offset;
+      } else {
+        int idx = (int) offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+        if (idx == 0) {
+          offset = rep[0];
+        } else {
+          offset = (idx == 3) ? rep[0] - 1 : rep[idx];
+          if (offset == 0) {
+            throw new IOException("Zstd: zero repeat offset");
+          }
+          if (idx != 1) {
+            rep[2] = rep[1];
+          }
+          rep[1] = rep[0];
+          rep[0] = offset;
+        }
+      }
+
+      if (i < nseq - 1) {
+        llState = ll.baseline[llState] + (int) bits.readBits(ll.nbBits[llState]);
+        mlState = ml.baseline[mlState] + (int) bits.readBits(ml.nbBits[mlState]);
+        ofState = of.baseline[ofState] + (int) bits.readBits(of.nbBits[ofState]);
+      }
+
+      if (literalLength > literalLimit - literalPos) {
+        throw new IOException("Zstd: literal length exceeds literals section");
+      }
+      copyLiterals(literalLength);
+      copyMatch(offset, matchLength);
+    }
+
+    if (!bits.isFinished()) {
+      throw new IOException("Zstd: sequence bitstream not fully consumed");
+    }
+    copyLiterals(literalLimit - literalPos);
+  }
+
+  private FseTable readTable(byte[] src, int[] pos, int limit, int mode, FseTable previous, FseTable predefined,
+      int maxSymbol, int maxLog) throws IOException {
+    switch (mode) {
+      case MODE_PREDEFINED:
+        return predefined;
+      case MODE_RLE:
+        checkAvailable(pos[0], 1, limit);
+        return FseTable.rle(src[pos[0]++] & 0xff);
+      case MODE_FSE:
+        short[] norm = new short[maxSymbol + 1];
+        int[] maxSymbolRead = {maxSymbol};
+        int[] tableLog = new int[1];
+        pos[0] = readNormalizedCounts(src, pos[0], limit, norm, maxSymbolRead, tableLog, maxLog);
+        return FseTable.build(norm, maxSymbolRead[0], tableLog[0]);
+      default:
+        if (previous == null) {
+          throw new IOException("Zstd: repeat mode without a previous table");
+        }
+        return previous;
+    }
+  }
+
+  private void copyLiterals(int n) {
+    ensureCapacity(n);
+    System.arraycopy(literalSrc, literalPos, dst, dstPos, n);
+    literalPos += n;
+    dstPos += n;
+  }
+
+  private void copyMatch(int offset, int length) throws IOException {
+    if (offset > dstPos) {
+      throw new IOException("Zstd: match offset beyond start of output");
+    }
+    ensureCapacity(length);
+    int from = dstPos - offset;
+    if (offset >= length) {
+      System.arraycopy(dst, from, dst, dstPos, length);
+    } else {
+      for (int i = 0; i < length; i++) { // overlapping copy must go byte by byte
+        dst[dstPos + i] = dst[from + i];
+      }
+    }
+    dstPos += length;
+  }
+
+  private void ensureCapacity(long n) {
+    long need = dstPos + n;
+    if (need > dst.length) {
+      if (need > Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("Zstd: decompressed data too large");
+      }
+      dst = Arrays.copyOf(dst, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(need, 2L * dst.length)));
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  // FSE
+
+  /**
+   * Read an FSE table description (normalized counts) from a forward bitstream.
+   *
+   * @return position of the first byte after the description.
+   */
+  private static int readNormalizedCounts(byte[] src, int pos, int limit, short[] norm, int[] maxSymbol,
+      int[] tableLogResult, int maxLog) throws IOException {
+    checkAvailable(pos, 1, limit);
+    long bitPos = 8L * pos;
+    int tableLog = (int) peekForward(src, bitPos, 4, limit) + 5;
+    bitPos += 4;
+    if (tableLog > maxLog) {
+      throw new IOException("Zstd: FSE table log too large");
+    }
+
+    int remaining = (1 << tableLog) + 1;
+    int threshold = 1 << tableLog;
+    int nbBits = tableLog + 1;
+    int symbol = 0;
+    boolean previousZero = false;
+    while (remaining > 1 && symbol <= maxSymbol[0]) {
+      if (previousZero) {
+        int n0 = symbol;
+        while (true) {
+          int flag = (int) peekForward(src, bitPos, 2, limit);
+          bitPos += 2;
+          n0 += flag;
+          if (flag != 3) {
+            break;
+          }
+        }
+        if (n0 > maxSymbol[0]) {
+          throw new IOException("Zstd: FSE zero run too long");
+        }
+        while (symbol < n0) {
+          norm[symbol++] = 0;
+        }
+        if (symbol > maxSymbol[0]) {
+          break;
+        }
+      }
+
+      int max = (2 * threshold - 1) - remaining;
+      int bits = (int) peekForward(src, bitPos, nbBits, limit);
+      int count;
+      if ((bits & (threshold - 1)) < max) {
+        count = bits & (threshold - 1);
+        bitPos += nbBits - 1;
+      } else {
+        count = bits & (2 * threshold - 1);
+        if (count >= threshold) {
+          count -= max;
+        }
+        bitPos += nbBits;
+      }
+      count--; // -1 is a special "less than 1" probability
+      remaining -= count < 0 ? -count : count;
+      norm[symbol++] = (short) count;
+      previousZero = count == 0;
+      while (remaining < threshold) {
+        nbBits--;
+        threshold >>= 1;
+      }
+    }
+    if (remaining != 1) {
+      throw new IOException("Zstd: corrupted FSE table description");
+    }
+    maxSymbol[0] = symbol - 1;
+    tableLogResult[0] = tableLog;
+    int end = (int) ((bitPos + 7) >>> 3);
+    if (end > limit) {
+      throw new IOException("Zstd: FSE table description overflows its section");
+    }
+    return end;
+  }
+
+  /** Read n bits from a little-endian forward bitstream, bits past limit read as zero. */
+  private static long peekForward(byte[] src, long bitPos, int n, int limit) {
+    int bytePos = (int) (bitPos >>> 3);
+    long value = 0;
+    for (int i = 0; i < 8 && bytePos + i < limit; i++) {
+      value |= (src[bytePos + i] & 0xffL) << (8 * i);
+    }
+    return (value >>> (bitPos & 7)) & ((1L << n) - 1);
+  }
+
+  static final class FseTable {
+    final int tableLog;
+    final int[] symbol;
+    final byte[] nbBits;
+    final int[] baseline;
+
+    private FseTable(int tableLog) {
+      int size = 1 << tableLog;
+      this.tableLog = tableLog;
+      this.symbol = new int[size];
+      this.nbBits = new byte[size];
+      this.baseline = new int[size];
+    }
+
+    static FseTable rle(int symbol) {
+      FseTable table = new FseTable(0);
+      table.symbol[0] = symbol;
+      return table;
+    }
+
+    static FseTable build(short[] norm, int maxSymbol, int tableLog) {
+      FseTable table = new FseTable(tableLog);
+      int size = 1 << tableLog;
+      int highThreshold = size - 1;
+      int[] symbolNext = new int[maxSymbol + 1];
+
+      // "less than 1" probabilities go at the end of the table
+      for (int s = 0; s <= maxSymbol; s++) {
+        if (norm[s] == -1) {
+          table.symbol[highThreshold--] = s;
+          symbolNext[s] = 1;
+        } else {
+          symbolNext[s] = norm[s];
+        }
+      }
+
+      // spread the other symbols
+      int mask = size - 1;
+      int step = (size >>> 1) + (size >>> 3) + 3;
+      int position = 0;
+      for (int s = 0; s <= maxSymbol; s++) {
+        for (int i = 0; i < norm[s]; i++) {
+          table.symbol[position] = s;
+          do {
+            position = (position + step) & mask;
+          } while (position > highThreshold);
+        }
+      }
+
+      for (int u = 0; u < size; u++) {
+        int s = table.symbol[u];
+        int nextState = symbolNext[s]++;
+        int nb = tableLog - (31 - Integer.numberOfLeadingZeros(nextState));
+        table.nbBits[u] = (byte) nb;
+        table.baseline[u] = (nextState << nb) - size;
+      }
+      return table;
+    }
+  }
+
+  /**
+   * Reads a zstd backward bitstream: written forward, read starting from the end.
+   * The final byte holds a 1 bit marking the end of the stream.
+   */
+  static final class BackwardBitReader {
+    private final byte[] src;
+    private final int start;
+    private final int limit;
+    private long bitPos; // number of unread bits, relative to start
+
+    BackwardBitReader(byte[] src, int start, int end) throws IOException {
+      if (end <= start) {
+        throw new IOException("Zstd: empty bitstream");
+      }
+      int last = src[end - 1] & 0xff;
+      if (last == 0) {
+        throw new IOException("Zstd: bitstream missing end marker");
+      }
+      this.src = src;
+      this.start = start;
+      this.limit = end;
+      this.bitPos = 8L * (end - 1 - start) + (31 - Integer.numberOfLeadingZeros(last));
+    }
+
+    long peekBits(int n) {
+      if (n == 0) {
+        return 0;
+      }
+      long from = bitPos - n;
+      if (from >= 0) {
+        return (readLong(start + (int) (from >>> 3)) >>> (from & 7)) & ((1L << n) - 1);
+      }
+      // past the beginning of the stream, read zeros
+      if (bitPos <= 0) {
+        return 0;
+      }
+      long value = readLong(start) & ((1L << bitPos) - 1);
+      return value << (n - bitPos);
+    }
+
+    void skipBits(int n) {
+      bitPos -= n;
+    }
+
+    long readBits(int n) {
+      long value = peekBits(n);
+      bitPos -= n;
+      return value;
+    }
+
+    boolean isOverflow() {
+      return bitPos < 0;
+    }
+
+    boolean isFinished() {
+      return bitPos == 0;
+    }
+
+    private long readLong(int pos) {
+      if (pos + 8 <= limit) {
+        return readLongLE(src, pos);
+      }
+      long value = 0;
+      for (int i = 0; pos + i < limit; i++) {
+        value |= (src[pos + i] & 0xffL) << (8 * i);
+      }
+      return value;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+
+  private static void checkAvailable(int pos, int n, int limit) throws IOException {
+    if (n < 0 || pos + n > limit) {
+      throw new IOException("Zstd: truncated input");
+    }
+  }
+
+  private static int readShortLE(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8;
+  }
+
+  private static int readIntLE(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+
+  private static long readLongLE(byte[] src, int pos) {
+    return (readIntLE(src, pos) & 0xffffffffL) | ((long) readIntLE(src, pos + 4) << 32);
+  }
+}
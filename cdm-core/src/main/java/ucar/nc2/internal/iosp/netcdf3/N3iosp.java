@@ -4,11 +4,14 @@ package ucar.nc2.internal.iosp.netcdf3;
 import static ucar.nc2.NetcdfFile.IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Optional;
 
 import ucar.array.ArrayType;
@@ -28,7 +31,9 @@ import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IOServiceProvider;
+import ucar.nc2.iosp.IospArrayHelper;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutRegular;
@@ -86,11 +91,19 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
   private final boolean debugRecord = false;
   private Charset valueCharset;
 
+  private static final List<FileSignature> signatures =
+      ImmutableList.of(FileSignature.at(0, N3header.MAGIC), FileSignature.at(0, N3header.MAGIC_LONG));
+
   @Override
   public boolean isValidFile(ucar.unidata.io.RandomAccessFile raf) throws IOException {
     return N3header.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getDetailInfo() {
     Formatter f = new Formatter();
@@ -230,6 +243,16 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
       return readStructureDataArray((Structure) v2, section);
     }
 
+    // large sections of non-record variables are mapped straight from the file
+    if (!v2.isUnlimited()) {
+      Vinfo vinfo = (Vinfo) v2.getSPobject();
+      ucar.array.Array<?> mapped = IospArrayHelper.mapArrayData(raf, vinfo.begin, v2.getArrayType(),
+          ByteOrder.BIG_ENDIAN, v2.getShape(), ucar.array.Section.fill(section, v2.getShape()));
+      if (mapped != null) {
+        return mapped;
+      }
+    }
+
     try {
       Section oldSection = ArraysConvert.convertSection(section);
       Object data = readDataObject(v2, oldSection);
@@ -254,6 +277,10 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
     // if (layout.getTotalNelems() == 0) {
     // return Array.factory(dataType, section.getShape());
     // }
+    // remote files read all the pieces at once, eg the records of a record variable
+    if (raf.prefersVectoredReads()) {
+      return IospHelper.readDataVectored(raf, layout, dataType, ByteOrder.BIG_ENDIAN);
+    }
     return IospHelper.readDataFill(raf, layout, dataType, null, null);
   }
 
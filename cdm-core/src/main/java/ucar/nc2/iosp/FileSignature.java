@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import com.google.common.base.Preconditions;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A magic number in the first bytes of a file, that the files read by an IOServiceProvider usually have.
+ * See {@link IOServiceProvider#getFileSignatures()}.
+ */
+@Immutable
+public final class FileSignature {
+  /** The number of bytes at the start of the file that signatures are matched against. */
+  public static final int HEADER_SIZE = 8 * 1024;
+
+  private final int offset;
+  private final int searchLength;
+  private final byte[] magic;
+
+  /** The magic number is at offset. */
+  public static FileSignature at(int offset, byte[] magic) {
+    return new FileSignature(offset, 1, magic);
+  }
+
+  /** The magic number, in ASCII, is at offset. */
+  public static FileSignature at(int offset, String magic) {
+    return at(offset, magic.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * The magic number starts anywhere in the first searchLength bytes, for formats that allow a preamble.
+   * Only the first {@link #HEADER_SIZE} bytes are looked at.
+   */
+  public static FileSignature within(int searchLength, byte[] magic) {
+    return new FileSignature(0, searchLength, magic);
+  }
+
+  private FileSignature(int offset, int searchLength, byte[] magic) {
+    Preconditions.checkArgument(offset >= 0, "offset must be >= 0");
+    Preconditions.checkArgument(searchLength > 0, "searchLength must be > 0");
+    Preconditions.checkArgument(magic.length > 0, "empty magic number");
+    Preconditions.checkArgument(offset + magic.length <= HEADER_SIZE, "magic number must be in the header");
+    this.offset = offset;
+    this.searchLength = searchLength;
+    this.magic = magic.clone();
+  }
+
+  /**
+   * Does the file header match this signature?
+   *
+   * @param header the first bytes of the file.
+   * @param length the number of bytes in header, less than its size if the file is shorter.
+   */
+  public boolean matches(byte[] header, int length) {
+    int last = Math.min(offset + searchLength, length - magic.length + 1);
+    for (int start = offset; start < last; start++) {
+      if (matchesAt(header, start)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean matchesAt(byte[] header, int start) {
+    for (int i = 0; i < magic.length; i++) {
+      if (header[start + i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "FileSignature{offset=" + offset + ", searchLength=" + searchLength + ", magic=" + Arrays.toString(magic)
+        + '}';
+  }
+}
@@ -7,7 +7,9 @@ package ucar.nc2.iosp;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 
 import ucar.ma2.Section;
@@ -34,7 +36,8 @@ import ucar.unidata.io.RandomAccessFile;
  * <ol>
  * <li>the file is opened as a ucar.unidata.io.RandomAccessFile;</li>
  * <li>the file is handed to the isValidFile() method of each registered
- * IOServiceProvider class (until one returns true, which means it can read the file).</li>
+ * IOServiceProvider class (until one returns true, which means it can read the file).
+ * The ones whose getFileSignatures() match the start of the file are tried first.</li>
  * <li>the open() method on the resulting IOServiceProvider class is handed the file.</li>
  */
 public interface IOServiceProvider extends Closeable {
@@ -49,6 +52,17 @@ public interface IOServiceProvider extends Closeable {
    */
   boolean isValidFile(RandomAccessFile raf) throws IOException;
 
+  /**
+   * The magic numbers at the start of the files of this IOServiceProvider, if it has any. When one matches a file,
+   * NetcdfFiles calls isValidFile() on this IOServiceProvider before the others, so that opening a file doesnt need
+   * to ask every IOServiceProvider. Files that match none are still handed to isValidFile(), so a signature doesnt
+   * need to cover every file that isValidFile() accepts.
+   * Default is none.
+   */
+  default List<FileSignature> getFileSignatures() {
+    return Collections.emptyList();
+  }
+
   /**
    * Read an existing RandomAccessFile, and populate rootGroup.
    * Note that you cannot reference the NetcdfFile within this routine, since it hasnt been created yet.
@@ -84,6 +98,20 @@ public interface IOServiceProvider extends Closeable {
   ucar.array.Array<?> readArrayData(Variable v2, ucar.array.Section section)
       throws java.io.IOException, ucar.array.InvalidRangeException;
 
+  /**
+   * Read data from a top level Variable, allowing this read to be cancelled. IOSPs that don't check for cancellation
+   * can rely on the default, which ignores the cancelTask.
+   *
+   * @param v2 a top-level Variable
+   * @param section the section of data to read, as in {@link #readArrayData(Variable, ucar.array.Section)}.
+   * @param cancelTask cancels this read only, may be null.
+   * @return the requested data in a memory-resident Array
+   */
+  default ucar.array.Array<?> readArrayData(Variable v2, ucar.array.Section section, @Nullable CancelTask cancelTask)
+      throws java.io.IOException, ucar.array.InvalidRangeException {
+    return readArrayData(v2, section);
+  }
+
   /**
    * Read data from a top level Variable and send data to a OutputStream.
    * Must be in big-endian order, following ncstream conventions.
@@ -4,6 +4,8 @@
  */
 package ucar.nc2.iosp;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ucar.array.ArrayType;
 import ucar.unidata.io.PositioningDataInputStream;
 import ucar.unidata.io.RandomAccessFile;
@@ -17,9 +19,13 @@ import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /** Helper methods for IOSP's for reading data. */
 public class IospArrayHelper {
+  private static final Logger log = LoggerFactory.getLogger(IospArrayHelper.class);
   private static final boolean showLayoutTypes = false;
 
   /**
@@ -389,6 +395,109 @@ public class IospArrayHelper {
     throw new IllegalStateException();
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  // memory mapping
+
+  /**
+   * Sections of at least this many bytes are memory mapped instead of read onto the heap. The default, -1, only maps
+   * sections of more than Integer.MAX_VALUE elements, which cannot be read onto the heap.
+   */
+  public static final String MAP_THRESHOLD_PROPERTY = "ucar.nc2.iosp.mapThresholdBytes";
+  private static final long DEFAULT_MAP_THRESHOLD = -1;
+  private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+  private static volatile long mapThreshold = getDefaultMapThreshold();
+
+  private static long getDefaultMapThreshold() {
+    String prop = System.getProperty(MAP_THRESHOLD_PROPERTY);
+    if (prop != null) {
+      try {
+        return Long.parseLong(prop);
+      } catch (NumberFormatException nfe) {
+        log.warn(String.format("-D%s is not an integer", MAP_THRESHOLD_PROPERTY));
+      }
+    }
+    return DEFAULT_MAP_THRESHOLD;
+  }
+
+  /**
+   * Set the size in bytes from which sections are memory mapped instead of read onto the heap, -1 to only map
+   * sections of more than Integer.MAX_VALUE elements, which is the default. A mapped Array outlives the file, so it
+   * fails if the file is truncated, and may keep the file locked on Windows.
+   */
+  public static void setMapThreshold(long nbytes) {
+    mapThreshold = nbytes;
+  }
+
+  public static long getMapThreshold() {
+    return mapThreshold;
+  }
+
+  /**
+   * Map a section of a variable stored contiguously in a local file, in canonical order, directly into an Array,
+   * without copying it. Only the span of the file that holds the section is mapped. The Array stays valid after the
+   * file is closed.
+   *
+   * @param raf read from here.
+   * @param dataPos start of the variable's data in the file.
+   * @param dataType the numeric or char type of the stored data.
+   * @param byteOrder byte order of the stored data.
+   * @param varShape the shape of the whole variable.
+   * @param section the wanted section, filled.
+   * @return the section as an Array, or null if it should be read the usual way, because it is smaller than
+   *         getMapThreshold() and has at most Integer.MAX_VALUE elements, the data type has no fixed size, or the
+   *         file cannot be mapped.
+   */
+  @Nullable
+  public static ucar.array.Array<?> mapArrayData(RandomAccessFile raf, long dataPos, ArrayType dataType,
+      ByteOrder byteOrder, int[] varShape, ucar.array.Section section)
+      throws IOException, ucar.array.InvalidRangeException {
+    if (!(dataType.isNumeric() || dataType == ArrayType.CHAR) || dataType.getSize() <= 0) {
+      return null;
+    }
+    int elemSize = dataType.getSize();
+    long threshold = mapThreshold;
+    long nelems = section.computeSize();
+    if (nelems <= Integer.MAX_VALUE && (threshold < 0 || nelems * elemSize < threshold)) {
+      return null;
+    }
+
+    // The span is the leading dimensions with a single index, then the rows of the next dimension that the section
+    // covers, each with all of the inner dimensions.
+    int rank = varShape.length;
+    int[] spanShape = varShape.clone();
+    ucar.array.Section.Builder spanSection = ucar.array.Section.builder();
+    long spanPos = dataPos;
+    for (int i = 0; i < rank; i++) {
+      ucar.array.Range r = section.getRange(i);
+      boolean isLast = (i == rank - 1) || r.length() > 1;
+      long rowBytes = ucar.array.Arrays.computeSize(java.util.Arrays.copyOfRange(varShape, i + 1, rank)) * elemSize;
+      spanPos += r.first() * rowBytes;
+      spanShape[i] = r.last() - r.first() + 1;
+      spanSection.appendRange(0, r.last() - r.first(), r.stride());
+      if (isLast) {
+        spanSection.appendRanges(section.getRanges().subList(i + 1, rank));
+        break;
+      }
+    }
+
+    long spanBytes = ucar.array.Arrays.computeSize(spanShape) * elemSize;
+    long segmentBytes = (MAX_SEGMENT_BYTES / elemSize) * elemSize;
+    List<ByteBuffer> buffers = new ArrayList<>();
+    for (long start = 0; start < spanBytes; start += segmentBytes) {
+      ByteBuffer bb = raf.map(spanPos + start, Math.min(segmentBytes, spanBytes - start));
+      if (bb == null) {
+        return null;
+      }
+      buffers.add(bb.order(byteOrder));
+    }
+    if (buffers.isEmpty()) {
+      return null;
+    }
+    ucar.array.Array<?> span = ucar.array.Arrays.factoryBB(dataType, spanShape, buffers);
+    return ucar.array.Arrays.section(span, spanSection.build());
+  }
+
   /**
    * Create 1D primitive array of the given size and type
    *
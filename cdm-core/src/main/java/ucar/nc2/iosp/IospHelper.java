@@ -7,6 +7,7 @@ package ucar.nc2.iosp;
 import java.nio.charset.StandardCharsets;
 
 import ucar.array.ArrayType;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.PositioningDataInputStream;
 import ucar.ma2.*;
@@ -57,6 +58,75 @@ public class IospHelper {
     return readData(raf, index, dataType, arr, byteOrder, convertChar);
   }
 
+  /**
+   * Read data subset from RandomAccessFile, create primitive array of size Layout.getTotalNelems.
+   * Same as readDataFill(raf, layout, dataType, null, byteOrder), except that all of the Layout's chunks are read
+   * with one {@link RandomAccessFile#readRanges}. Use this when {@link RandomAccessFile#prefersVectoredReads}.
+   *
+   * @param raf read from here.
+   * @param layout handles skipping around in the file.
+   * @param dataType dataType of the variable
+   * @param byteOrder byte order of the data in the file
+   * @return primitive array with data read in
+   * @throws java.io.IOException on read error
+   */
+  public static Object readDataVectored(RandomAccessFile raf, Layout layout, DataType dataType, ByteOrder byteOrder)
+      throws java.io.IOException {
+    if (dataType == DataType.STRING) {
+      return readDataFill(raf, layout, dataType, null, byteOrder);
+    }
+
+    int elemSize = layout.getElemSize();
+    long totalBytes = layout.getTotalNelems() * elemSize;
+    if (totalBytes > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Too large read: " + totalBytes + " bytes exceeds " + Integer.MAX_VALUE);
+
+    List<FileRange> ranges = new ArrayList<>();
+    List<Long> destPos = new ArrayList<>();
+    while (layout.hasNext()) {
+      Layout.Chunk chunk = layout.next();
+      ranges.add(new FileRange(chunk.getSrcPos(), chunk.getNelems() * elemSize));
+      destPos.add(chunk.getDestElem() * elemSize);
+    }
+    List<byte[]> data = raf.readRanges(ranges);
+    byte[] bytes = new byte[(int) totalBytes];
+    for (int i = 0; i < data.size(); i++) {
+      byte[] b = data.get(i);
+      System.arraycopy(b, 0, bytes, destPos.get(i).intValue(), b.length);
+    }
+
+    ByteBuffer bb = ByteBuffer.wrap(bytes).order(byteOrder);
+    int nelems = (int) layout.getTotalNelems();
+    Class<?> primitive = dataType.getPrimitiveClassType();
+    if (dataType == DataType.CHAR) {
+      return convertByteToChar(bytes);
+    } else if (primitive == byte.class || dataType == DataType.STRUCTURE) {
+      return bytes;
+    } else if (primitive == short.class) {
+      short[] pa = new short[nelems];
+      bb.asShortBuffer().get(pa);
+      return pa;
+    } else if (primitive == int.class) {
+      int[] pa = new int[nelems];
+      bb.asIntBuffer().get(pa);
+      return pa;
+    } else if (dataType == DataType.FLOAT) {
+      float[] pa = new float[nelems];
+      bb.asFloatBuffer().get(pa);
+      return pa;
+    } else if (dataType == DataType.DOUBLE) {
+      double[] pa = new double[nelems];
+      bb.asDoubleBuffer().get(pa);
+      return pa;
+    } else if (primitive == long.class) {
+      long[] pa = new long[nelems];
+      bb.asLongBuffer().get(pa);
+      return pa;
+    }
+
+    throw new IllegalStateException("unknown type= " + dataType);
+  }
+
   /**
    * Read data subset from RandomAccessFile, place in given primitive array.
    * Reading is controlled by the Layout object.
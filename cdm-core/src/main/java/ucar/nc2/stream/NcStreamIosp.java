@@ -5,6 +5,7 @@
 
 package ucar.nc2.stream;
 
+import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -29,6 +30,7 @@ import ucar.nc2.Group;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
@@ -41,6 +43,8 @@ public class NcStreamIosp extends AbstractIOServiceProvider {
   private static final Logger logger = LoggerFactory.getLogger(NcStreamIosp.class);
   private static final boolean debug = false;
 
+  private static final List<FileSignature> signatures = ImmutableList.of(FileSignature.at(0, NcStream.MAGIC_START));
+
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
     raf.seek(0);
     if (!readAndTest(raf, NcStream.MAGIC_START))
@@ -50,6 +54,11 @@ public class NcStreamIosp extends AbstractIOServiceProvider {
     return test(b, NcStream.MAGIC_HEADER) || test(b, NcStream.MAGIC_DATA); // immed followed by one of these
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   public String getFileTypeId() {
     return "ncstream";
   }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.time;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import javax.annotation.concurrent.Immutable;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+
+/**
+ * The dates of a time coordinate, kept as milliseconds since 1970-01-01T00:00:00Z in one Calendar.
+ * A CalendarDate is only made when one is asked for, so long time axes are cheap to make and to search.
+ * Searches are binary searches when the dates are sorted, and arithmetic when they are regularly spaced.
+ */
+@Immutable
+public class CalendarDateArray {
+
+  /**
+   * Convert coordinate values to dates, the same as calling {@link CalendarDateUnit#makeCalendarDate(double)} on
+   * each value.
+   *
+   * @param dateUnit the units of the values.
+   * @param values the coordinate values.
+   */
+  public static CalendarDateArray of(CalendarDateUnit dateUnit, double[] values) {
+    CalendarDate baseDate = dateUnit.getBaseCalendarDate();
+    Chronology chronology = baseDate.getDateTime().getChronology();
+    long base = baseDate.getMillis();
+    long[] millis = new long[values.length];
+
+    CalendarPeriod.Field field = dateUnit.getCalendarField();
+    if (dateUnit.isCalendarField()) {
+      for (int i = 0; i < values.length; i++) {
+        millis[i] = addCalendarField(chronology, base, (int) values[i], field);
+      }
+    } else {
+      double msecsPerUnit = msecsPerUnit(field);
+      for (int i = 0; i < values.length; i++) {
+        millis[i] = base + Math.round(values[i] * msecsPerUnit);
+      }
+    }
+    return new CalendarDateArray(dateUnit.getCalendar(), chronology, millis);
+  }
+
+  /** Make from a list of dates, which must all use the same Calendar. */
+  public static CalendarDateArray of(List<CalendarDate> dates) {
+    if (dates.isEmpty()) {
+      Calendar cal = Calendar.getDefault();
+      return new CalendarDateArray(cal, Calendar.getChronology(cal), new long[0]);
+    }
+    CalendarDate first = dates.get(0);
+    long[] millis = new long[dates.size()];
+    int count = 0;
+    for (CalendarDate date : dates) {
+      if (date.getCalendar() != first.getCalendar()) {
+        throw new IllegalArgumentException("Dates use different calendars: " + first + " and " + date);
+      }
+      millis[count++] = date.getMillis();
+    }
+    return new CalendarDateArray(first.getCalendar(), first.getDateTime().getChronology(), millis);
+  }
+
+  // the same arithmetic as CalendarDate.add(CalendarPeriod)
+  private static long addCalendarField(Chronology chronology, long instant, int value, CalendarPeriod.Field field) {
+    switch (field) {
+      case Millisec:
+        return chronology.millis().add(instant, value);
+      case Second:
+        return chronology.seconds().add(instant, value);
+      case Minute:
+        return chronology.minutes().add(instant, value);
+      case Hour:
+        return chronology.hours().add(instant, value);
+      case Day:
+        return chronology.days().add(instant, value);
+      case Month:
+        return chronology.months().add(instant, value);
+      case Year:
+        return chronology.years().add(instant, value);
+    }
+    throw new UnsupportedOperationException("period units = " + field);
+  }
+
+  // the same arithmetic as CalendarDate.add(double, CalendarPeriod.Field)
+  private static double msecsPerUnit(CalendarPeriod.Field field) {
+    switch (field) {
+      case Millisec:
+        return 1;
+      case Second:
+        return CalendarDate.MILLISECS_IN_SECOND;
+      case Minute:
+        return CalendarDate.MILLISECS_IN_MINUTE;
+      case Hour:
+        return CalendarDate.MILLISECS_IN_HOUR;
+      case Day:
+        return CalendarDate.MILLISECS_IN_DAY;
+      case Month:
+        return CalendarDate.MILLISECS_IN_MONTH;
+      case Year:
+        return CalendarDate.MILLISECS_IN_YEAR;
+    }
+    throw new UnsupportedOperationException("period units = " + field);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////
+  private final Calendar cal;
+  private final Chronology chronology;
+  private final long[] millis;
+  private final boolean isSorted;
+  private final long spacing; // 0 if not regular
+
+  private CalendarDateArray(Calendar cal, Chronology chronology, long[] millis) {
+    this.cal = cal;
+    this.chronology = chronology;
+    this.millis = millis;
+
+    boolean sorted = true;
+    boolean regular = millis.length > 1 && millis[1] > millis[0];
+    for (int i = 1; i < millis.length && sorted; i++) {
+      long diff = millis[i] - millis[i - 1];
+      sorted = diff >= 0;
+      regular &= diff == millis[1] - millis[0];
+    }
+    this.isSorted = sorted;
+    this.spacing = (sorted && regular) ? millis[1] - millis[0] : 0;
+  }
+
+  /** The number of dates. */
+  public int size() {
+    return millis.length;
+  }
+
+  public Calendar getCalendar() {
+    return cal;
+  }
+
+  /** The ith date, as milliseconds since 1970-01-01T00:00:00Z. */
+  public long getMillis(int index) {
+    return millis[index];
+  }
+
+  /** Make the ith date. */
+  public CalendarDate get(int index) {
+    return CalendarDate.of(cal, new DateTime(millis[index], chronology));
+  }
+
+  /** A view of the dates as a List, which makes each CalendarDate when it is asked for. */
+  public List<CalendarDate> asList() {
+    return new DateList();
+  }
+
+  /** True if the dates are in ascending order. */
+  public boolean isSorted() {
+    return isSorted;
+  }
+
+  /** True if there are at least two dates, ascending and equally spaced. */
+  public boolean isRegular() {
+    return spacing > 0;
+  }
+
+  /** The spacing in milliseconds if isRegular(), else 0. */
+  public long getSpacing() {
+    return spacing;
+  }
+
+  /**
+   * Find the index of the last date that is before or equal to the given one. This returns
+   * <ul>
+   * <li>i, if date(i) <= date < date(i+1).
+   * <li>0, if date < date(0)
+   * <li>n-1, if date >= date(n-1), where n is the number of dates
+   * </ul>
+   * If the dates are not sorted, this is the index before the first date that is after the given one.
+   */
+  public int findIndex(CalendarDate date) {
+    long want = date.getMillis();
+    int n = millis.length;
+    if (spacing > 0) {
+      long index = Math.floorDiv(want - millis[0], spacing);
+      return (int) Math.max(0, Math.min(index, n - 1));
+    }
+
+    int after; // the first index after want
+    if (isSorted) {
+      after = firstIndexAfter(want, false);
+    } else {
+      after = 0;
+      while (after < n && millis[after] <= want) {
+        after++;
+      }
+    }
+    return Math.max(0, after - 1);
+  }
+
+  /** Find the index of a date that equals the given one, or -1 if there is none. */
+  public int indexOf(CalendarDate date) {
+    if (date.getCalendar() != cal) {
+      return -1;
+    }
+    long want = date.getMillis();
+    if (isSorted) {
+      int index = firstIndexAfter(want, true);
+      return (index < millis.length && millis[index] == want) ? index : -1;
+    }
+    for (int i = 0; i < millis.length; i++) {
+      if (millis[i] == want) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** True if one of the dates equals the given one. */
+  public boolean contains(CalendarDate date) {
+    return indexOf(date) >= 0;
+  }
+
+  // binary search for the first date after want, or if orEqual, the first date not before it
+  private int firstIndexAfter(long want, boolean orEqual) {
+    int low = 0;
+    int high = millis.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (millis[mid] < want || (!orEqual && millis[mid] == want)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Make a new CalendarDateArray from the dates at the given indices. */
+  public CalendarDateArray subset(Iterable<Integer> indices) {
+    long[] result = new long[16];
+    int count = 0;
+    for (int index : indices) {
+      if (count == result.length) {
+        result = Arrays.copyOf(result, 2 * count);
+      }
+      result[count++] = millis[index];
+    }
+    return new CalendarDateArray(cal, chronology, Arrays.copyOf(result, count));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    CalendarDateArray that = (CalendarDateArray) o;
+    return cal == that.cal && Arrays.equals(millis, that.millis);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * cal.hashCode() + Arrays.hashCode(millis);
+  }
+
+  @Override
+  public String toString() {
+    return asList().toString();
+  }
+
+  private class DateList extends AbstractList<CalendarDate> implements RandomAccess {
+    @Override
+    public CalendarDate get(int index) {
+      return CalendarDateArray.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return millis.length;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+      return (o instanceof CalendarDate) ? CalendarDateArray.this.indexOf((CalendarDate) o) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) >= 0;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util;
+
+/**
+ * Receives measurements from the I/O and cache hot paths, for example to forward them to Micrometer or to record
+ * them as JFR events. All methods default to doing nothing, so an implementation overrides only what it needs.
+ * Methods are called from many threads at once and on the reading thread, so they must be thread safe and fast;
+ * aggregate (e.g. into counters or latency histograms) rather than block.
+ *
+ * An implementation is installed with {@link Instruments#set}, or found with the {@link java.util.ServiceLoader} by
+ * listing it in META-INF/services/ucar.nc2.util.Instrumentation. When none is installed, nothing is measured and the
+ * hot paths only pay for a volatile read.
+ */
+public interface Instrumentation {
+
+  /**
+   * A physical read from a RandomAccessFile, ie one that missed its buffer. Each one is a seek followed by a read.
+   * The ranges of a vectored read, channel transfers and mapped regions are reported too. For a mapped region, the
+   * pages are only read when used, so nanos is the time to map it.
+   *
+   * @param location the file location.
+   * @param pos the file position read from.
+   * @param nbytes the number of bytes read, -1 at end of file.
+   * @param nanos the time taken.
+   */
+  default void fileRead(String location, long pos, int nbytes, long nanos) {}
+
+  /**
+   * A read of the data of a Variable by an IOSP, through NetcdfFile.readData or readArrayData.
+   *
+   * @param iospId the IOSP's file type id, eg "HDF5" or "GRIB2".
+   * @param location the file location.
+   * @param varName the full name of the Variable.
+   * @param nanos the time taken, including any failure.
+   */
+  default void iospRead(String iospId, String location, String varName, long nanos) {}
+
+  /**
+   * A compressed chunk was decoded by a filter.
+   *
+   * @param filter the name of the filter, eg "deflate".
+   * @param nbytesIn the size of the encoded chunk.
+   * @param nbytesOut the size of the decoded chunk.
+   * @param nanos the time taken.
+   */
+  default void chunkDecoded(String filter, int nbytesIn, int nbytesOut, long nanos) {}
+
+  /**
+   * A lookup in one of the caches.
+   *
+   * @param cacheName the name of the cache, eg "NetcdfFileCache", "H5chunkCache" or "RemoteBlockCache".
+   * @param hit true if the object was found in the cache.
+   */
+  default void cacheAccess(String cacheName, boolean hit) {}
+
+  /**
+   * Start a span that lasts until the returned Span is closed. The span is closed on the thread that started it.
+   *
+   * @param name what is being done, eg "NetcdfFile.read".
+   * @param detail what its done on, eg the file location and variable name.
+   */
+  default Span startSpan(String name, String detail) {
+    return Span.NOOP;
+  }
+
+  /** A span of time, ended by close(). */
+  interface Span extends AutoCloseable {
+    Span NOOP = () -> {};
+
+    @Override
+    void close();
+  }
+}
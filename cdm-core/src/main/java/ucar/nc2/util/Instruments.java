@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the process-wide {@link Instrumentation}. At startup the first implementation found by the ServiceLoader is
+ * installed, if any. Callers on hot paths check {@link #isEnabled()} before taking any timings:
+ *
+ * <pre>
+ * if (Instruments.isEnabled()) {
+ *   long start = System.nanoTime();
+ *   ...
+ *   Instruments.get().fileRead(location, pos, n, System.nanoTime() - start);
+ * }
+ * </pre>
+ */
+public class Instruments {
+  private static final Logger logger = LoggerFactory.getLogger(Instruments.class);
+
+  /** Measures nothing. */
+  public static final Instrumentation NOOP = new Instrumentation() {};
+
+  private static volatile Instrumentation instrumentation = NOOP;
+
+  static {
+    Instrumentation loaded = loadService();
+    if (loaded != null) {
+      set(loaded);
+    }
+  }
+
+  private Instruments() {}
+
+  @Nullable
+  private static Instrumentation loadService() {
+    try {
+      Iterator<Instrumentation> iter = ServiceLoader.load(Instrumentation.class).iterator();
+      if (iter.hasNext()) {
+        Instrumentation result = iter.next();
+        logger.info("Using Instrumentation {}", result.getClass().getName());
+        return result;
+      }
+    } catch (ServiceConfigurationError e) {
+      logger.warn("Failed to load an Instrumentation", e);
+    }
+    return null;
+  }
+
+  /** The installed Instrumentation, {@link #NOOP} if none. */
+  public static Instrumentation get() {
+    return instrumentation;
+  }
+
+  /** Install an Instrumentation, or null to measure nothing. */
+  public static void set(@Nullable Instrumentation inst) {
+    instrumentation = (inst == null) ? NOOP : inst;
+  }
+
+  /** True if an Instrumentation other than {@link #NOOP} is installed. */
+  public static boolean isEnabled() {
+    return instrumentation != NOOP;
+  }
+}
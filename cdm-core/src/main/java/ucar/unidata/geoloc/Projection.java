@@ -39,6 +39,58 @@ public interface Projection {
   /** Convert projection coordinates to a LatLonPoint. */
   LatLonPoint projToLatLon(ProjectionPoint ppt);
 
+  /**
+   * Convert many lat, lon to projection coordinates, with the same results as latLonToProj(lat[i], lon[i]).
+   *
+   * @param lat the latitudes
+   * @param lon the longitudes, same length as lat
+   * @param x put the x coordinates here, at least as long as lat
+   * @param y put the y coordinates here, at least as long as lat
+   */
+  default void latLonToProj(double[] lat, double[] lon, double[] x, double[] y) {
+    latLonToProj(lat, 0, 1, lon, 0, 1, x, y, 0, lat.length);
+  }
+
+  /**
+   * Convert count lat, lon to projection coordinates. Point i is (lat[latStart + i * latStride],
+   * lon[lonStart + i * lonStride]), and goes to (x[start + i], y[start + i]). A stride of 0 uses the same value for
+   * all the points.
+   */
+  default void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      ProjectionPoint ppt = latLonToProj(lat[latStart + i * latStride], lon[lonStart + i * lonStride]);
+      x[start + i] = ppt.getX();
+      y[start + i] = ppt.getY();
+    }
+  }
+
+  /**
+   * Convert many projection x, y to lat, lon, with the same results as projToLatLon(x[i], y[i]).
+   *
+   * @param x the x coordinates
+   * @param y the y coordinates, same length as x
+   * @param lat put the latitudes here, at least as long as x
+   * @param lon put the longitudes here, at least as long as x
+   */
+  default void projToLatLon(double[] x, double[] y, double[] lat, double[] lon) {
+    projToLatLon(x, 0, 1, y, 0, 1, lat, lon, 0, x.length);
+  }
+
+  /**
+   * Convert count projection x, y to lat, lon. Point i is (x[xStart + i * xStride], y[yStart + i * yStride]), and
+   * goes to (lat[start + i], lon[start + i]). A stride of 0 uses the same value for all the points, so row j of a grid
+   * is projToLatLon(xcoords, 0, 1, ycoords, j, 0, lat, lon, j * nx, nx).
+   */
+  default void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      LatLonPoint latlon = projToLatLon(x[xStart + i * xStride], y[yStart + i * yStride]);
+      lat[start + i] = latlon.getLatitude();
+      lon[start + i] = latlon.getLongitude();
+    }
+  }
+
   /**
    * Does the line between these two points cross the projection "seam", which
    * is a discontinuity in the function latlon <-> projection plane
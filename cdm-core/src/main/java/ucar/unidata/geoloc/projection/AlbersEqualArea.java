@@ -348,5 +348,45 @@ public class AlbersEqualArea extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double fromLat = Math.toRadians(LatLonPoints.latNormal(lat[latStart + i * latStride]));
+      double fromLon = Math.toRadians(LatLonPoints.lonNormal(lon[lonStart + i * lonStride]));
+      double rho = computeRho(fromLat);
+      double theta = computeTheta(fromLon);
+
+      x[start + i] = rho * Math.sin(theta) + falseEasting;
+      y[start + i] = rho0 - rho * Math.cos(theta) + falseNorthing;
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    boolean negative = n < 0;
+    double rrho0 = negative ? -rho0 : rho0;
+    double twoN = 2 * n;
+    for (int i = 0; i < count; i++) {
+      double fromX = x[xStart + i * xStride] - falseEasting;
+      double fromY = y[yStart + i * yStride] - falseNorthing;
+      if (negative) {
+        fromX = -fromX;
+        fromY = -fromY;
+      }
+
+      double yd = rrho0 - fromY;
+      double rho = Math.sqrt(fromX * fromX + yd * yd);
+      double theta = Math.atan2(fromX, yd);
+      if (negative) {
+        rho = -rho;
+      }
+      double toLat = Math.toDegrees(Math.asin((C - Math.pow((rho * n / earth_radius), 2)) / twoN));
+      lat[start + i] = LatLonPoints.latNormal(toLat);
+      lon[start + i] = LatLonPoints.lonNormal(Math.toDegrees(theta / n + lon0));
+    }
+  }
+
 }
 
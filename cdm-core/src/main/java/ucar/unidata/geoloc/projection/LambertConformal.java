@@ -410,6 +410,55 @@ public class LambertConformal extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double fromLat = Math.toRadians(LatLonPoints.latNormal(lat[latStart + i * latStride]));
+      double fromLon = LatLonPoints.lonNormal(lon[lonStart + i * lonStride]);
+      double dlon = LatLonPoints.lonNormal(fromLon - lon0Degrees);
+      double theta = n * Math.toRadians(dlon);
+      double tn = Math.pow(Math.tan(PI_OVER_4 + fromLat / 2), n);
+      double r = earthRadiusTimesF / tn;
+      x[start + i] = r * Math.sin(theta) + falseEasting;
+      y[start + i] = rho - r * Math.cos(theta) + falseNorthing;
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    boolean negative = n < 0;
+    double rhop = negative ? -rho : rho;
+    double poleLat = negative ? -90.0 : 90.0;
+    double inverseN = 1 / n;
+    for (int i = 0; i < count; i++) {
+      double fromX = x[xStart + i * xStride] - falseEasting;
+      double fromY = y[yStart + i * yStride] - falseNorthing;
+      if (negative) {
+        fromX = -fromX;
+        fromY = -fromY;
+      }
+
+      double yd = (rhop - fromY);
+      double theta = Math.atan2(fromX, yd);
+      double r = Math.sqrt(fromX * fromX + yd * yd);
+      if (negative) {
+        r = -r;
+      }
+
+      double toLat;
+      if (Math.abs(r) < TOLERANCE) {
+        toLat = poleLat;
+      } else {
+        double rn = Math.pow(earthRadiusTimesF / r, inverseN);
+        toLat = Math.toDegrees(2.0 * Math.atan(rn) - Math.PI / 2);
+      }
+      lat[start + i] = LatLonPoints.latNormal(toLat);
+      lon[start + i] = LatLonPoints.lonNormal(Math.toDegrees(theta / n + lon0));
+    }
+  }
+
 }
 
 
@@ -242,5 +242,39 @@ public class Mercator extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double fromLat = LatLonPoints.latNormal(lat[latStart + i * latStride]);
+      double fromLon = LatLonPoints.lonNormal(lon[lonStart + i * lonStride]);
+      if ((Math.abs(90.0 - Math.abs(fromLat))) < TOLERANCE) { // infinite projection
+        x[start + i] = Double.POSITIVE_INFINITY;
+        y[start + i] = Double.POSITIVE_INFINITY;
+      } else {
+        x[start + i] = A * Math.toRadians(LatLonPoints.range180(fromLon - this.lon0)) + falseEasting;
+        y[start + i] = A * SpecialMathFunction.atanh(Math.sin(Math.toRadians(fromLat))) + falseNorthing;
+      }
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double fromX = x[xStart + i * xStride] - falseEasting;
+      lon[start + i] = LatLonPoints.lonNormal(Math.toDegrees(fromX / A) + lon0);
+
+      // the latitude only depends on y, so a row of a grid has just one
+      if (yStride == 0 && i > 0) {
+        lat[start + i] = lat[start];
+      } else {
+        double fromY = y[yStart + i * yStride] - falseNorthing;
+        double e = Math.exp(-fromY / A);
+        lat[start + i] = LatLonPoints.latNormal(Math.toDegrees(Math.PI / 2 - 2 * Math.atan(e))); // Snyder p 44
+      }
+    }
+  }
+
 }
 
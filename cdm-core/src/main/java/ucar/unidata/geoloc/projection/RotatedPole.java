@@ -185,6 +185,63 @@ public class RotatedPole extends AbstractProjection {
     return LatLonPoint.create(lat, lon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    double z00 = rotZ[0][0], z01 = rotZ[0][1], z10 = rotZ[1][0], z11 = rotZ[1][1];
+    double y00 = rotY[0][0], y02 = rotY[0][2], y20 = rotY[2][0], y22 = rotY[2][2];
+    for (int i = 0; i < count; i++) {
+      double latRad = Math.toRadians(LatLonPoints.latNormal(lat[latStart + i * latStride]));
+      double lonRad = Math.toRadians(LatLonPoints.lonNormal(lon[lonStart + i * lonStride]));
+
+      // as in latLonToProj(LatLonPoint), without the arrays
+      double cosLat = Math.cos(latRad);
+      double p0x = cosLat * Math.cos(lonRad);
+      double p0y = cosLat * Math.sin(lonRad);
+      double p0z = Math.sin(latRad);
+
+      double p1x = z00 * p0x + z01 * p0y;
+      double p1y = z10 * p0x + z11 * p0y;
+
+      double p2x = y00 * p1x + y02 * p0z;
+      double p2z = y20 * p1x + y22 * p0z;
+
+      x[start + i] = LatLonPoints.range180(Math.atan2(p1y, p2x) * DEG_PER_RAD);
+      y[start + i] = Math.asin(p2z) * DEG_PER_RAD;
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    double z00 = rotZ[0][0], z01 = rotZ[0][1], z10 = rotZ[1][0], z11 = rotZ[1][1];
+    double y00 = rotY[0][0], y02 = rotY[0][2], y20 = rotY[2][0], y22 = rotY[2][2];
+    for (int i = 0; i < count; i++) {
+      double lonR = LatLonPoints.range180(x[xStart + i * xStride]);
+      double latR = y[yStart + i * yStride];
+      if (Math.abs(latR) > 90.) {
+        throw new IllegalArgumentException("ProjectionPoint y must be in range [-90,90].");
+      }
+
+      // as in projToLatLon(ProjectionPoint), without the arrays
+      double lonRRad = Math.toRadians(lonR);
+      double latRRad = Math.toRadians(latR);
+      double cosLatR = Math.cos(latRRad);
+      double p0x = cosLatR * Math.cos(lonRRad);
+      double p0y = cosLatR * Math.sin(lonRRad);
+      double p0z = Math.sin(latRRad);
+
+      double p1x = y00 * p0x + y20 * p0z;
+      double p1z = y02 * p0x + y22 * p0z;
+
+      double p2x = z00 * p1x + z10 * p0y;
+      double p2y = z01 * p1x + z11 * p0y;
+
+      lat[start + i] = LatLonPoints.latNormal(Math.asin(p1z) * DEG_PER_RAD);
+      lon[start + i] = LatLonPoints.lonNormal(Math.atan2(p2y, p2x) * DEG_PER_RAD);
+    }
+  }
+
   public boolean crossSeam(ProjectionPoint pt1, ProjectionPoint pt2) {
     return Math.abs(pt1.getX() - pt2.getX()) > 270.0;
   }
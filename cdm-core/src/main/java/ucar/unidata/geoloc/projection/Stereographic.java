@@ -387,4 +387,62 @@ public class Stereographic extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    double twoScale = 2.0 * scale;
+    for (int i = 0; i < count; i++) {
+      double latr = Math.toRadians(LatLonPoints.latNormal(lat[latStart + i * latStride]));
+      double lonr = Math.toRadians(LatLonPoints.lonNormal(lon[lonStart + i * lonStride]));
+      // keep away from the singular point
+      if ((Math.abs(latr + latt) <= TOLERANCE)) {
+        latr = -latt * (1.0 - TOLERANCE);
+      }
+
+      double sdlon = Math.sin(lonr - lont);
+      double cdlon = Math.cos(lonr - lont);
+      double sinlat = Math.sin(latr);
+      double coslat = Math.cos(latr);
+
+      double k = twoScale / (1.0 + sinlatt * sinlat + coslatt * coslat * cdlon);
+      x[start + i] = k * coslat * sdlon + falseEasting;
+      y[start + i] = k * (coslatt * sinlat - sinlatt * coslat * cdlon) + falseNorthing;
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    double twoScale = 2.0 * scale;
+    boolean polarTangent = Math.abs(coslatt) < TOLERANCE;
+    for (int i = 0; i < count; i++) {
+      double fromX = x[xStart + i * xStride] - falseEasting;
+      double fromY = y[yStart + i * yStride] - falseNorthing;
+
+      double rho = Math.sqrt(fromX * fromX + fromY * fromY);
+      double c = 2.0 * Math.atan2(rho, twoScale);
+      double sinc = Math.sin(c);
+      double cosc = Math.cos(c);
+
+      double phi;
+      if (Math.abs(rho) < TOLERANCE) {
+        phi = latt;
+      } else {
+        phi = Math.asin(cosc * sinlatt + fromY * sinc * coslatt / rho);
+      }
+
+      double lam;
+      if ((Math.abs(fromX) < TOLERANCE) && (Math.abs(fromY) < TOLERANCE)) {
+        lam = lont;
+      } else if (polarTangent) {
+        lam = lont + Math.atan2(fromX, ((latt > 0) ? -fromY : fromY));
+      } else {
+        lam = lont + Math.atan2(fromX * sinc, rho * coslatt * cosc - fromY * sinc * sinlatt);
+      }
+
+      lat[start + i] = LatLonPoints.latNormal(Math.toDegrees(phi));
+      lon[start + i] = LatLonPoints.lonNormal(Math.toDegrees(lam));
+    }
+  }
+
 }
@@ -278,6 +278,36 @@ public class TransverseMercator extends AbstractProjection {
     return LatLonPoint.create(toLat, toLon);
   }
 
+  @Override
+  public void latLonToProj(double[] lat, int latStart, int latStride, double[] lon, int lonStart, int lonStride,
+      double[] x, double[] y, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double latr = Math.toRadians(LatLonPoints.latNormal(lat[latStart + i * latStride]));
+      double lonr = Math.toRadians(LatLonPoints.lonNormal(lon[lonStart + i * lonStride]));
+      double dlon = lonr - lon0;
+      double b = Math.cos(latr) * Math.sin(dlon);
+
+      if ((Math.abs(Math.abs(b) - 1.0)) < TOLERANCE) { // infinite projection
+        x[start + i] = Double.POSITIVE_INFINITY;
+        y[start + i] = Double.POSITIVE_INFINITY;
+      } else {
+        x[start + i] = scale * SpecialMathFunction.atanh(b) + falseEasting;
+        y[start + i] = scale * (Math.atan2(Math.tan(latr), Math.cos(dlon)) - lat0) + falseNorthing;
+      }
+    }
+  }
+
+  @Override
+  public void projToLatLon(double[] x, int xStart, int xStride, double[] y, int yStart, int yStride, double[] lat,
+      double[] lon, int start, int count) {
+    for (int i = 0; i < count; i++) {
+      double xs = (x[xStart + i * xStride] - falseEasting) / scale;
+      double d = (y[yStart + i * yStride] - falseNorthing) / scale + lat0;
+      lon[start + i] = LatLonPoints.lonNormal(Math.toDegrees(lon0 + Math.atan2(Math.sinh(xs), Math.cos(d))));
+      lat[start + i] = LatLonPoints.latNormal(Math.toDegrees(Math.asin(Math.sin(d) / Math.cosh(xs))));
+    }
+  }
+
   /**
    * Convert lat/lon coordinates to projection coordinates.
    *
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+
+/**
+ * Finds and decodes the blocks of a bzip2 file one at a time. The blocks of bzip2 are independent, but start at any
+ * bit, so they are found by looking for the 48 bit magic number that starts each one, as bzip2recover does. A block
+ * is decoded by giving CBZip2InputStream a stream made of just that block, shifted to a byte boundary.
+ */
+class BZip2Blocks {
+  private static final long BLOCK_MAGIC = 0x314159265359L;
+  private static final long END_MAGIC = 0x177245385090L;
+  private static final long MASK48 = (1L << 48) - 1;
+
+  private BZip2Blocks() {}
+
+  /**
+   * The bit positions of all the block and end of stream magic numbers in the file, in order. The end of stream ones
+   * are negated, -(pos + 1). The compressed data may contain the magic numbers by chance, so some may be wrong.
+   */
+  static long[] findMagic(java.io.RandomAccessFile file) throws IOException {
+    List<Long> result = new ArrayList<>();
+    byte[] buffer = new byte[1024 * 1024];
+    long reg = 0;
+    long nbits = 0;
+    file.seek(0);
+    int n;
+    while ((n = file.read(buffer)) > 0) {
+      for (int i = 0; i < n; i++) {
+        reg = (reg << 8) | (buffer[i] & 0xff);
+        nbits += 8;
+        if (nbits < 56) {
+          continue;
+        }
+        // the magic number can end at any of the last 8 bits, check the earliest first
+        for (int shift = 7; shift >= 0; shift--) {
+          long val = (reg >>> shift) & MASK48;
+          if (val == BLOCK_MAGIC) {
+            result.add(nbits - shift - 48);
+          } else if (val == END_MAGIC) {
+            result.add(-(nbits - shift - 48 + 1));
+          }
+        }
+      }
+    }
+    return result.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Decode one block.
+   *
+   * @param file the bzip2 file.
+   * @param startBit the position of the block magic number.
+   * @param endBit the position of the next block or end of stream magic number.
+   * @throws BZip2ReadException if this is not a good block.
+   */
+  static byte[] decode(java.io.RandomAccessFile file, long startBit, long endBit) throws IOException {
+    long firstByte = startBit >>> 3;
+    int nbytes = (int) (((endBit + 7) >>> 3) - firstByte) + 1;
+    byte[] src = new byte[nbytes];
+    file.seek(firstByte);
+    int got = 0;
+    int n;
+    while (got < nbytes && (n = file.read(src, got, nbytes - got)) > 0) {
+      got += n;
+    }
+    if (got < nbytes - 1) { // the last byte is only there to make shifting easy
+      throw new BZip2ReadException("Compressed Stream EOF");
+    }
+
+    int shift = (int) (startBit & 7);
+    long nbits = endBit - startBit;
+    if (nbits < 80) {
+      throw new BZip2ReadException("Bad Block Header");
+    }
+    int blockCrc = (int) getBits(src, shift + 48, 32);
+
+    // "h9" then the block, then the end of stream magic and the stream CRC, which for one block is the block CRC
+    int fullBytes = (int) (nbits >>> 3);
+    int remainder = (int) (nbits & 7);
+    byte[] stream = new byte[2 + fullBytes + 12];
+    stream[0] = 'h';
+    stream[1] = '9';
+    for (int i = 0; i < fullBytes; i++) {
+      stream[2 + i] = (byte) ((src[i] << shift) | ((src[i + 1] & 0xff) >>> (8 - shift)));
+    }
+    long pos = (2L + fullBytes) * 8;
+    pos = putBits(stream, pos, getBits(src, shift + fullBytes * 8L, remainder), remainder);
+    pos = putBits(stream, pos, END_MAGIC, 48);
+    putBits(stream, pos, blockCrc & 0xffffffffL, 32);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+    CBZip2InputStream bz = new CBZip2InputStream(new ByteArrayInputStream(stream));
+    int val;
+    while ((val = bz.read()) >= 0) {
+      out.write(val);
+    }
+    return out.toByteArray();
+  }
+
+  // n bits starting at bit pos, most significant bit first
+  private static long getBits(byte[] b, long pos, int n) {
+    long result = 0;
+    for (int i = 0; i < n; i++, pos++) {
+      result = (result << 1) | ((b[(int) (pos >>> 3)] >>> (7 - (pos & 7))) & 1);
+    }
+    return result;
+  }
+
+  private static long putBits(byte[] b, long pos, long val, int n) {
+    for (int i = n - 1; i >= 0; i--, pos++) {
+      if (((val >>> i) & 1) != 0) {
+        b[(int) (pos >>> 3)] |= (byte) (0x80 >>> (pos & 7));
+      }
+    }
+    return pos;
+  }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.internal.util.DiskCache;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+
+/**
+ * Reads a gzip or bzip2 compressed file as if it were uncompressed, without decompressing all of it.
+ * The first open of a file decompresses it once to make an index of checkpoints, places from which decompression can
+ * start: every megabyte or so for gzip, and every block for bzip2. A read then decompresses from the nearest
+ * checkpoint before it. The index is kept in the {@link DiskCache}, as the file name plus ".cidx", and remade if the
+ * file changes. A gzip checkpoint also needs the 32K of data before it. As in zlib's zran example, these windows are
+ * kept compressed in the index file, and only read from it when a read starts at that checkpoint.
+ *
+ * Whether NetcdfFiles opens .gz, .gzip and .bz2 files this way, instead of decompressing them into the DiskCache,
+ * is set with the "ucar.unidata.io.compressed.seekable" system property or {@link #setEnabled}. The default is false:
+ * making the index takes about 2.5 times as long as decompressing the file, and each read may decompress up to a
+ * megabyte, so this only pays when the uncompressed copy is unwanted, eg for large files read in small parts.
+ * The index must be kept in the DiskCache; if it can't be written there, open() fails, and NetcdfFiles decompresses
+ * the file into the DiskCache as before.
+ */
+public class CompressedRandomAccessFile extends RandomAccessFile {
+  private static final Logger logger = LoggerFactory.getLogger(CompressedRandomAccessFile.class);
+
+  private static final String ENABLED_PROPERTY = "ucar.unidata.io.compressed.seekable";
+  private static final String INDEX_SUFFIX = ".cidx";
+  private static final int INDEX_MAGIC = 0x43494458; // "CIDX"
+  private static final int INDEX_VERSION = 2;
+  private static final long GZIP_SPAN = 1024 * 1024; // uncompressed bytes between gzip checkpoints
+
+  private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "false"));
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Set whether NetcdfFiles opens compressed files with this class. */
+  public static void setEnabled(boolean b) {
+    enabled = b;
+  }
+
+  /** True if this class can open the file, going by its suffix: .gz, .gzip or .bz2. */
+  public static boolean canOpen(String location) {
+    return getType(location) != Type.none;
+  }
+
+  /**
+   * Open a compressed file, making its index if needed.
+   *
+   * @param location local file ending in .gz, .gzip or .bz2.
+   * @param bufferSize size of the read buffer, -1 for the default.
+   */
+  public static CompressedRandomAccessFile open(String location, int bufferSize) throws IOException {
+    Type type = getType(location);
+    if (type == Type.none) {
+      throw new IllegalArgumentException("Not a .gz, .gzip or .bz2 file: " + location);
+    }
+    java.io.RandomAccessFile compressed = new java.io.RandomAccessFile(location, "r");
+    try {
+      Index index = Index.get(location, type, compressed);
+      return new CompressedRandomAccessFile(location, bufferSize, type, compressed, index);
+    } catch (IOException | RuntimeException e) {
+      compressed.close();
+      throw e;
+    }
+  }
+
+  private enum Type {
+    none, gzip, bzip2
+  }
+
+  private static Type getType(String location) {
+    String lower = location.toLowerCase();
+    if (lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+      return Type.gzip;
+    }
+    if (lower.endsWith(".bz2")) {
+      return Type.bzip2;
+    }
+    return Type.none;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  private final Type type;
+  private final java.io.RandomAccessFile compressed;
+  private final Index index;
+
+  private DeflateDecoder decoder; // gzip: left after the last read, to continue sequential reads
+  private int blockIndex = -1; // bzip2: the last block decoded
+  private byte[] block;
+
+  private CompressedRandomAccessFile(String location, int bufferSize, Type type, java.io.RandomAccessFile compressed,
+      Index index) {
+    super(bufferSize < 0 ? defaultBufferSize : bufferSize);
+    this.location = location;
+    this.type = type;
+    this.compressed = compressed;
+    this.index = index;
+    if (debugLeaks) {
+      openFiles.add(location);
+    }
+  }
+
+  /** The length of the uncompressed file. */
+  @Override
+  public long length() {
+    return index.length;
+  }
+
+  /** The number of checkpoints in the index. */
+  public int getNumberOfCheckpoints() {
+    return index.outPos.length;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    compressed.close();
+    index.close();
+    super.close();
+  }
+
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos >= index.length) {
+      return -1;
+    }
+    len = (int) Math.min(len, index.length - pos);
+    return (type == Type.gzip) ? readGzip(pos, b, offset, len) : readBZip2(pos, b, offset, len);
+  }
+
+  private int readGzip(long pos, byte[] b, int offset, int len) throws IOException {
+    if (decoder == null || pos < decoder.getOutPosition() || pos - decoder.getOutPosition() > GZIP_SPAN) {
+      int i = index.find(pos);
+      decoder = DeflateDecoder.atBlock(compressed, index.bitPos[i], index.outPos[i], index.readWindow(i));
+    }
+    decoder.skip(pos - decoder.getOutPosition());
+    int n = 0;
+    while (n < len) {
+      int got = decoder.read(b, offset + n, len - n);
+      if (got < 0) {
+        break;
+      }
+      n += got;
+    }
+    return (n > 0) ? n : -1;
+  }
+
+  private int readBZip2(long pos, byte[] b, int offset, int len) throws IOException {
+    int n = 0;
+    while (n < len) {
+      int i = index.find(pos + n);
+      if (i != blockIndex) {
+        block = BZip2Blocks.decode(compressed, index.bitPos[i], index.bitEnd[i]);
+        blockIndex = i;
+      }
+      int start = (int) (pos + n - index.outPos[i]);
+      int count = Math.min(len - n, block.length - start);
+      if (count <= 0) {
+        break;
+      }
+      System.arraycopy(block, start, b, offset + n, count);
+      n += count;
+    }
+    return (n > 0) ? n : -1;
+  }
+
+  @Override
+  public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
+    byte[] buff = new byte[(int) Math.min(nbytes, 1024 * 1024)];
+    long done = 0;
+    while (done < nbytes) {
+      int got = read_(offset + done, buff, 0, (int) Math.min(nbytes - done, buff.length));
+      if (got <= 0) {
+        break;
+      }
+      ByteBuffer bb = ByteBuffer.wrap(buff, 0, got);
+      while (bb.hasRemaining()) {
+        dest.write(bb);
+      }
+      done += got;
+    }
+    return done;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * The checkpoints of a compressed file. The index file has a header, then for gzip the windows, each compressed on
+   * its own, then the table of checkpoints, and last the position of the table.
+   */
+  private static class Index implements Closeable {
+    private static final int HEADER_SIZE = 28;
+
+    final long length; // of the uncompressed file
+    final long[] outPos; // position of each checkpoint in the uncompressed file
+    final long[] bitPos; // position of each checkpoint in the compressed file, in bits
+    final long[] bitEnd; // bzip2: end of each block, in bits
+    final long[] windowPos; // gzip: position of each window in the index file, and of the end of the last one
+    private final java.io.RandomAccessFile windowFile; // gzip: the open index file
+
+    private Index(long length, long[] outPos, long[] bitPos, long[] bitEnd, long[] windowPos,
+        java.io.RandomAccessFile windowFile) {
+      this.length = length;
+      this.outPos = outPos;
+      this.bitPos = bitPos;
+      this.bitEnd = bitEnd;
+      this.windowPos = windowPos;
+      this.windowFile = windowFile;
+    }
+
+    /** The last checkpoint at or before pos. */
+    int find(long pos) {
+      int i = Arrays.binarySearch(outPos, pos);
+      return (i >= 0) ? i : Math.max(0, -i - 2);
+    }
+
+    /** gzip: the data before checkpoint i. */
+    byte[] readWindow(int i) throws IOException {
+      byte[] packed = new byte[(int) (windowPos[i + 1] - windowPos[i])];
+      windowFile.seek(windowPos[i]);
+      windowFile.readFully(packed);
+
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(packed);
+        byte[] window = new byte[DeflateDecoder.WINDOW_SIZE + 1];
+        int n = 0;
+        while (!inflater.finished() && n < window.length) {
+          int got = inflater.inflate(window, n, window.length - n);
+          if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          n += got;
+        }
+        if (!inflater.finished() || n > DeflateDecoder.WINDOW_SIZE) {
+          throw new IOException("Bad window " + i + " in index " + windowFile);
+        }
+        return Arrays.copyOf(window, n);
+      } catch (DataFormatException e) {
+        throw new IOException("Bad window " + i + " in index " + windowFile, e);
+      } finally {
+        inflater.end();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (windowFile != null) {
+        windowFile.close();
+      }
+    }
+
+    static Index get(String location, Type type, java.io.RandomAccessFile compressed) throws IOException {
+      File file = new File(location);
+      File indexFile = DiskCache.getFileStandardPolicy(location + INDEX_SUFFIX);
+      if (indexFile.exists()) {
+        try {
+          Index index = read(indexFile, type, file);
+          if (index != null) {
+            return index;
+          }
+        } catch (IOException e) {
+          logger.warn("Failed to read index {}, will remake it", indexFile, e);
+        }
+      }
+
+      // write to a temporary file then rename, so that others never see half an index.
+      // An index that can't be kept would be remade by every open, so then fail, and let NetcdfFiles decompress
+      // the file instead.
+      File dir = indexFile.getAbsoluteFile().getParentFile();
+      File tempFile = Files.createTempFile(dir.toPath(), indexFile.getName(), ".tmp").toFile();
+      try {
+        write(tempFile, type, file, compressed);
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+
+      Index index = read(indexFile, type, file);
+      if (index == null) {
+        throw new IOException("File changed while making its index: " + location);
+      }
+      return index;
+    }
+
+    private static void write(File indexFile, Type type, File file, java.io.RandomAccessFile compressed)
+        throws IOException {
+      CountingOutputStream counter =
+          new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+      try (DataOutputStream out = new DataOutputStream(counter)) {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(type.ordinal());
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+
+        Index index = (type == Type.gzip) ? makeGzip(compressed, counter) : makeBZip2(compressed);
+        long tablePos = counter.getCount();
+        out.writeLong(index.length);
+        out.writeInt(index.outPos.length);
+        for (int i = 0; i < index.outPos.length; i++) {
+          out.writeLong(index.outPos[i]);
+          out.writeLong(index.bitPos[i]);
+          if (index.bitEnd != null) {
+            out.writeLong(index.bitEnd[i]);
+          }
+          if (index.windowPos != null) {
+            out.writeLong(index.windowPos[i]);
+          }
+        }
+        if (index.windowPos != null) {
+          out.writeLong(index.windowPos[index.outPos.length]);
+        }
+        out.writeLong(tablePos);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(indexFile.toPath());
+        throw e;
+      }
+    }
+
+    // the windows are written to out as they are made, so only their positions are kept
+    private static Index makeGzip(java.io.RandomAccessFile compressed, CountingOutputStream out) throws IOException {
+      List<long[]> positions = new ArrayList<>();
+      Deflater deflater = new Deflater();
+      byte[] buffer = new byte[DeflateDecoder.WINDOW_SIZE];
+      try {
+        DeflateDecoder decoder = DeflateDecoder.atStart(compressed);
+        decoder.checkCrc();
+        decoder.setBlockListener(d -> {
+          if (positions.isEmpty() || d.getOutPosition() - positions.get(positions.size() - 1)[0] >= GZIP_SPAN) {
+            positions.add(new long[] {d.getOutPosition(), d.getBitPosition(), out.getCount()});
+            // each window is compressed on its own, so that it can be read without the others
+            deflater.reset();
+            deflater.setInput(d.getWindow());
+            deflater.finish();
+            while (!deflater.finished()) {
+              out.write(buffer, 0, deflater.deflate(buffer));
+            }
+          }
+        });
+        byte[] scratch = new byte[64 * 1024];
+        while (decoder.read(scratch, 0, scratch.length) >= 0) {
+          // just decoding
+        }
+
+        int n = positions.size();
+        long[] outPos = new long[n];
+        long[] bitPos = new long[n];
+        long[] windowPos = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+          outPos[i] = positions.get(i)[0];
+          bitPos[i] = positions.get(i)[1];
+          windowPos[i] = positions.get(i)[2];
+        }
+        windowPos[n] = out.getCount();
+        return new Index(decoder.getOutPosition(), outPos, bitPos, null, windowPos, null);
+      } finally {
+        deflater.end();
+      }
+    }
+
+    private static Index makeBZip2(java.io.RandomAccessFile compressed) throws IOException {
+      long[] magic = BZip2Blocks.findMagic(compressed);
+      List<long[]> blocks = new ArrayList<>(); // start bit, end bit, uncompressed size
+      int i = 0;
+      while (i < magic.length) {
+        if (magic[i] < 0) { // end of stream
+          i++;
+          continue;
+        }
+        // the next magic number ends the block, unless it was in the compressed data by chance
+        byte[] data = null;
+        int next = i + 1;
+        for (; next < magic.length && data == null; next++) {
+          try {
+            data = BZip2Blocks.decode(compressed, magic[i], position(magic[next]));
+          } catch (RuntimeException e) {
+            // CBZip2InputStream throws BZip2ReadException, or worse on bad data; try the next one
+          }
+        }
+        if (data == null) {
+          throw new BZip2ReadException("Bad bzip2 block at bit " + magic[i]);
+        }
+        if (data.length > 0) {
+          blocks.add(new long[] {magic[i], position(magic[next - 1]), data.length});
+        }
+        i = next - 1;
+      }
+
+      int n = blocks.size();
+      long[] outPos = new long[n];
+      long[] bitPos = new long[n];
+      long[] bitEnd = new long[n];
+      long length = 0;
+      for (int j = 0; j < n; j++) {
+        outPos[j] = length;
+        bitPos[j] = blocks.get(j)[0];
+        bitEnd[j] = blocks.get(j)[1];
+        length += blocks.get(j)[2];
+      }
+      return new Index(length, outPos, bitPos, bitEnd, null, null);
+    }
+
+    private static long position(long magic) {
+      return (magic < 0) ? -magic - 1 : magic;
+    }
+
+    // return null if the index is for another version of the file
+    @Nullable
+    private static Index read(File indexFile, Type type, File file) throws IOException {
+      java.io.RandomAccessFile raf = new java.io.RandomAccessFile(indexFile, "r");
+      try {
+        long size = raf.length();
+        if (size < HEADER_SIZE + 8 || raf.readInt() != INDEX_MAGIC || raf.readInt() != INDEX_VERSION
+            || raf.readInt() != type.ordinal() || raf.readLong() != file.length()
+            || raf.readLong() != file.lastModified()) {
+          raf.close();
+          return null;
+        }
+        raf.seek(size - 8);
+        long tablePos = raf.readLong();
+        if (tablePos < HEADER_SIZE || tablePos > size - 8) {
+          throw new IOException("Bad index " + indexFile);
+        }
+        byte[] table = new byte[(int) (size - 8 - tablePos)];
+        raf.seek(tablePos);
+        raf.readFully(table);
+        ByteBuffer bb = ByteBuffer.wrap(table);
+
+        long length = bb.getLong();
+        int n = bb.getInt();
+        // outPos, bitPos, and bitEnd or windowPos for each checkpoint
+        if (n < 0 || bb.remaining() != n * 24L + ((type == Type.gzip) ? 8 : 0)) {
+          throw new IOException("Bad index " + indexFile);
+        }
+        long[] outPos = new long[n];
+        long[] bitPos = new long[n];
+        long[] bitEnd = (type == Type.bzip2) ? new long[n] : null;
+        long[] windowPos = (type == Type.gzip) ? new long[n + 1] : null;
+        for (int i = 0; i < n; i++) {
+          outPos[i] = bb.getLong();
+          bitPos[i] = bb.getLong();
+          if (bitEnd != null) {
+            bitEnd[i] = bb.getLong();
+          }
+          if (windowPos != null) {
+            windowPos[i] = bb.getLong();
+          }
+        }
+        if (windowPos == null) {
+          raf.close();
+          return new Index(length, outPos, bitPos, bitEnd, null, null);
+        }
+        windowPos[n] = bb.getLong();
+        for (int i = 0; i < n; i++) {
+          if (windowPos[i] < HEADER_SIZE || windowPos[i] > windowPos[i + 1] || windowPos[i + 1] > tablePos) {
+            throw new IOException("Bad index " + indexFile);
+          }
+        }
+        return new Index(length, outPos, bitPos, null, windowPos, raf);
+      } catch (IOException | RuntimeException e) {
+        raf.close();
+        throw e;
+      }
+    }
+  }
+}
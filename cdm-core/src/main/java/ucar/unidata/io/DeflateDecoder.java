@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes gzip files (RFC 1952), including files of several members, and can start at the beginning of any deflate
+ * block given the 32K of data before it. java.util.zip.Inflater cannot start inside a stream, since deflate blocks
+ * don't begin on byte boundaries, so this is a plain Java decoder, based on zlib's puff.c.
+ * Not thread safe.
+ */
+class DeflateDecoder {
+  static final int WINDOW_SIZE = 32 * 1024;
+  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+  /** Called at the start of each deflate block, where decoding can be restarted later. */
+  interface BlockListener {
+    void blockStart(DeflateDecoder decoder) throws IOException;
+  }
+
+  private static final int BLOCK_START = 0, STORED = 1, CODES = 2, MEMBER_END = 3, DONE = 4;
+
+  private final BitInput in;
+  private final byte[] window = new byte[WINDOW_SIZE]; // the last 32K of output, circular
+  private long out; // position in the uncompressed file
+  private int history; // number of valid bytes in window, up to WINDOW_SIZE
+
+  private int state = BLOCK_START;
+  private boolean lastBlock;
+  private int storedRemaining;
+  private Huffman lencode, distcode;
+  private int copyLength, copyDistance;
+
+  private BlockListener listener;
+  private CRC32 crc; // check the CRC of each member, if not null
+  private long memberStart;
+
+  /** Decode a gzip file from the start. */
+  static DeflateDecoder atStart(java.io.RandomAccessFile file) throws IOException {
+    DeflateDecoder decoder = new DeflateDecoder(new BitInput(file, 0), 0, null);
+    if (!decoder.readHeader()) {
+      throw new ZipException("Not in GZIP format");
+    }
+    return decoder;
+  }
+
+  /**
+   * Restart decoding at the start of a deflate block.
+   *
+   * @param file the gzip file.
+   * @param bitPos the position of the block in the file, in bits.
+   * @param outPos the position of the block in the uncompressed file.
+   * @param window the uncompressed data before outPos, up to 32K, back to the start of the gzip member.
+   */
+  static DeflateDecoder atBlock(java.io.RandomAccessFile file, long bitPos, long outPos, byte[] window)
+      throws IOException {
+    return new DeflateDecoder(new BitInput(file, bitPos), outPos, window);
+  }
+
+  private DeflateDecoder(BitInput in, long outPos, byte[] start) {
+    this.in = in;
+    this.out = outPos;
+    this.memberStart = outPos;
+    if (start != null) {
+      // the window is circular, indexed by output position
+      for (int i = 0; i < start.length; i++) {
+        window[(int) (outPos - start.length + i) & WINDOW_MASK] = start[i];
+      }
+      history = start.length;
+    }
+  }
+
+  /** Be told of the start of each block from now on. */
+  void setBlockListener(BlockListener listener) {
+    this.listener = listener;
+  }
+
+  /** Check the CRC-32 of each gzip member. Only when decoding from the start of the file. */
+  void checkCrc() {
+    this.crc = new CRC32();
+  }
+
+  /** The position in the uncompressed file of the next byte to be decoded. */
+  long getOutPosition() {
+    return out;
+  }
+
+  /** The position in the file of the next bit to be read. At the start of a block, the position of the block. */
+  long getBitPosition() {
+    return in.getBitPosition();
+  }
+
+  /** The last 32K of output of this gzip member, or less if not yet that much. */
+  byte[] getWindow() {
+    byte[] result = new byte[history];
+    int start = (int) (out - history) & WINDOW_MASK;
+    int first = Math.min(history, WINDOW_SIZE - start);
+    System.arraycopy(window, start, result, 0, first);
+    System.arraycopy(window, 0, result, first, history - first);
+    return result;
+  }
+
+  /** Skip over n bytes of output. */
+  void skip(long n) throws IOException {
+    byte[] scratch = new byte[(int) Math.min(n, 64 * 1024)];
+    while (n > 0) {
+      int got = read(scratch, 0, (int) Math.min(n, scratch.length));
+      if (got < 0) {
+        throw new EOFException();
+      }
+      n -= got;
+    }
+  }
+
+  /**
+   * Decode up to len bytes.
+   *
+   * @return the number of bytes decoded, or -1 at the end of the file.
+   */
+  int read(byte[] b, int off, int len) throws IOException {
+    int n = 0;
+    while (n < len) {
+      if (copyLength > 0) {
+        int count = Math.min(copyLength, len - n);
+        for (int i = 0; i < count; i++) {
+          byte val = window[(int) (out - copyDistance) & WINDOW_MASK];
+          window[(int) out & WINDOW_MASK] = val;
+          out++;
+          b[off + n++] = val;
+        }
+        copyLength -= count;
+        continue;
+      }
+
+      switch (state) {
+        case BLOCK_START:
+          if (lastBlock) {
+            state = MEMBER_END;
+          } else {
+            if (listener != null) {
+              listener.blockStart(this);
+            }
+            readBlockHeader();
+          }
+          break;
+
+        case STORED: {
+          int count = Math.min(storedRemaining, len - n);
+          for (int i = 0; i < count; i++) {
+            byte val = (byte) in.bits(8);
+            put(val);
+            b[off + n++] = val;
+          }
+          storedRemaining -= count;
+          if (storedRemaining == 0) {
+            state = BLOCK_START;
+          }
+          break;
+        }
+
+        case CODES:
+          n = decodeCodes(b, off, n, len);
+          break;
+
+        case MEMBER_END:
+          // return what we have first, so that the CRC covers exactly this member
+          if (n > 0) {
+            updateCrc(b, off, n);
+            return n;
+          }
+          endMember();
+          break;
+
+        default: // DONE
+          updateCrc(b, off, n);
+          return (n > 0) ? n : -1;
+      }
+    }
+    updateCrc(b, off, n);
+    return n;
+  }
+
+  private void updateCrc(byte[] b, int off, int n) {
+    if (crc != null) {
+      crc.update(b, off, n);
+    }
+  }
+
+  private void put(byte val) {
+    window[(int) out & WINDOW_MASK] = val;
+    out++;
+    if (history < WINDOW_SIZE) {
+      history++;
+    }
+  }
+
+  // literals and lengths until the end of the block or len bytes
+  private int decodeCodes(byte[] b, int off, int n, int len) throws IOException {
+    while (n < len) {
+      int symbol = lencode.decode(in);
+      if (symbol < 256) {
+        put((byte) symbol);
+        b[off + n++] = (byte) symbol;
+      } else if (symbol == 256) {
+        state = BLOCK_START;
+        return n;
+      } else {
+        symbol -= 257;
+        if (symbol >= 29) {
+          throw new ZipException("invalid deflate length code");
+        }
+        int length = LENGTH_BASE[symbol] + in.bits(LENGTH_EXTRA[symbol]);
+        int dsymbol = distcode.decode(in);
+        if (dsymbol >= 30) {
+          throw new ZipException("invalid deflate distance code");
+        }
+        int distance = DIST_BASE[dsymbol] + in.bits(DIST_EXTRA[dsymbol]);
+        if (distance > history) {
+          throw new ZipException("invalid deflate distance, too far back");
+        }
+        copyDistance = distance;
+        copyLength = length;
+        history = Math.min(WINDOW_SIZE, history + length);
+        return n; // read() does the copy
+      }
+    }
+    return n;
+  }
+
+  private void readBlockHeader() throws IOException {
+    lastBlock = in.bits(1) == 1;
+    int type = in.bits(2);
+    switch (type) {
+      case 0:
+        in.alignToByte();
+        int length = in.bits(16);
+        int complement = in.bits(16);
+        if (length != (~complement & 0xffff)) {
+          throw new ZipException("invalid deflate stored block length");
+        }
+        storedRemaining = length;
+        state = (length > 0) ? STORED : BLOCK_START;
+        break;
+      case 1:
+        lencode = FIXED_LENCODE;
+        distcode = FIXED_DISTCODE;
+        state = CODES;
+        break;
+      case 2:
+        readDynamicTables();
+        state = CODES;
+        break;
+      default:
+        throw new ZipException("invalid deflate block type");
+    }
+  }
+
+  private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+  private void readDynamicTables() throws IOException {
+    int nlen = in.bits(5) + 257;
+    int ndist = in.bits(5) + 1;
+    int ncode = in.bits(4) + 4;
+    if (nlen > 286 || ndist > 30) {
+      throw new ZipException("invalid deflate code counts");
+    }
+
+    short[] lengths = new short[320];
+    for (int i = 0; i < ncode; i++) {
+      lengths[CODE_LENGTH_ORDER[i]] = (short) in.bits(3);
+    }
+    Huffman lencodes = new Huffman(lengths, 0, 19);
+
+    int index = 0;
+    while (index < nlen + ndist) {
+      int symbol = lencodes.decode(in);
+      if (symbol < 16) {
+        lengths[index++] = (short) symbol;
+      } else {
+        short value = 0;
+        int repeat;
+        if (symbol == 16) {
+          if (index == 0) {
+            throw new ZipException("invalid deflate repeat with no first length");
+          }
+          value = lengths[index - 1];
+          repeat = 3 + in.bits(2);
+        } else if (symbol == 17) {
+          repeat = 3 + in.bits(3);
+        } else {
+          repeat = 11 + in.bits(7);
+        }
+        if (index + repeat > nlen + ndist) {
+          throw new ZipException("invalid deflate too many lengths");
+        }
+        while (repeat-- > 0) {
+          lengths[index++] = value;
+        }
+      }
+    }
+    if (lengths[256] == 0) {
+      throw new ZipException("invalid deflate, no end of block code");
+    }
+
+    lencode = new Huffman(lengths, 0, nlen);
+    distcode = new Huffman(lengths, nlen, ndist);
+  }
+
+  // skip the gzip trailer, and the header of the next member if there is one
+  private void endMember() throws IOException {
+    in.alignToByte();
+    long storedCrc = in.bits(16) | ((long) in.bits(16) << 16);
+    long storedSize = in.bits(16) | ((long) in.bits(16) << 16);
+    if (crc != null) {
+      if (storedCrc != crc.getValue() || storedSize != ((out - memberStart) & 0xffffffffL)) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+      crc.reset();
+    }
+    memberStart = out;
+    history = 0;
+    lastBlock = false;
+    state = readHeader() ? BLOCK_START : DONE;
+  }
+
+  // return false if there is no member here
+  private boolean readHeader() throws IOException {
+    // anything else after a member is ignored, as GZIPInputStream does
+    if (!in.hasByte() || in.peek(8) != 0x1f) {
+      return false;
+    }
+    if (in.bits(8) != 0x1f || in.bits(8) != 0x8b || in.bits(8) != 8) {
+      throw new ZipException("Not in GZIP format");
+    }
+    int flags = in.bits(8);
+    in.skipBytes(6); // mtime, xfl, os
+    if ((flags & 4) != 0) { // FEXTRA
+      in.skipBytes(in.bits(16));
+    }
+    if ((flags & 8) != 0) { // FNAME
+      in.skipString();
+    }
+    if ((flags & 16) != 0) { // FCOMMENT
+      in.skipString();
+    }
+    if ((flags & 2) != 0) { // FHCRC
+      in.skipBytes(2);
+    }
+    return true;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+
+  private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59,
+      67, 83, 99, 115, 131, 163, 195, 227, 258};
+  private static final int[] LENGTH_EXTRA =
+      {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+  private static final int[] DIST_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769,
+      1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+  private static final int[] DIST_EXTRA =
+      {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+
+  private static final Huffman FIXED_LENCODE, FIXED_DISTCODE;
+
+  static {
+    short[] lengths = new short[288];
+    for (int i = 0; i < 288; i++) {
+      lengths[i] = (short) ((i < 144) ? 8 : (i < 256) ? 9 : (i < 280) ? 7 : 8);
+    }
+    short[] dlengths = new short[30];
+    Arrays.fill(dlengths, (short) 5);
+    try {
+      FIXED_LENCODE = new Huffman(lengths, 0, 288);
+      FIXED_DISTCODE = new Huffman(dlengths, 0, 30);
+    } catch (ZipException e) {
+      throw new IllegalStateException(e); // not possible
+    }
+  }
+
+  /** A canonical Huffman code, decoded with a table of the codes of up to FAST_BITS bits, else a bit at a time. */
+  private static class Huffman {
+    private static final int MAX_BITS = 15;
+    private static final int FAST_BITS = 9;
+
+    private final short[] count = new short[MAX_BITS + 1]; // number of codes of each length
+    private final short[] symbol; // symbols ordered by code
+    private final int[] fast = new int[1 << FAST_BITS]; // (symbol << 4) | length, indexed by the reversed code bits
+
+    Huffman(short[] lengths, int start, int n) throws ZipException {
+      symbol = new short[n];
+      for (int i = 0; i < n; i++) {
+        count[lengths[start + i]]++;
+      }
+      int left = 1;
+      for (int len = 1; len <= MAX_BITS; len++) {
+        left <<= 1;
+        left -= count[len];
+        if (left < 0) {
+          throw new ZipException("invalid deflate code, over subscribed");
+        }
+      }
+      // incomplete codes are allowed; a bad stream is found when decoding an unused code
+
+      short[] offs = new short[MAX_BITS + 1];
+      for (int len = 1; len < MAX_BITS; len++) {
+        offs[len + 1] = (short) (offs[len] + count[len]);
+      }
+      for (int i = 0; i < n; i++) {
+        if (lengths[start + i] != 0) {
+          symbol[offs[lengths[start + i]]++] = (short) i;
+        }
+      }
+
+      // the fast table, from the canonical codes
+      int code = 0;
+      int index = 0;
+      for (int len = 1; len <= FAST_BITS; len++) {
+        for (int i = 0; i < count[len]; i++) {
+          int reversed = Integer.reverse(code) >>> (32 - len);
+          for (int j = reversed; j < fast.length; j += 1 << len) {
+            fast[j] = (symbol[index] << 4) | len;
+          }
+          code++;
+          index++;
+        }
+        code <<= 1;
+      }
+    }
+
+    int decode(BitInput in) throws IOException {
+      int entry = fast[in.peek(FAST_BITS)];
+      int len = entry & 15;
+      if (len > 0 && len <= in.available()) {
+        in.drop(len);
+        return entry >>> 4;
+      }
+      return decodeSlow(in);
+    }
+
+    private int decodeSlow(BitInput in) throws IOException {
+      int code = 0, first = 0, index = 0;
+      for (int len = 1; len <= MAX_BITS; len++) {
+        code |= in.bits(1);
+        int n = count[len];
+        if (code - n < first) {
+          return symbol[index + (code - first)];
+        }
+        index += n;
+        first += n;
+        first <<= 1;
+        code <<= 1;
+      }
+      throw new ZipException("invalid deflate code");
+    }
+  }
+
+  /** Reads a file a bit at a time, least significant bit first. */
+  private static class BitInput {
+    private final java.io.RandomAccessFile file;
+    private final byte[] buffer = new byte[64 * 1024];
+    private long bufferStart; // file position of buffer[0]
+    private int bufferPos, bufferLen;
+    private long bitBuffer;
+    private int bitCount;
+
+    BitInput(java.io.RandomAccessFile file, long bitPos) throws IOException {
+      this.file = file;
+      this.bufferStart = bitPos >>> 3;
+      int skip = (int) (bitPos & 7);
+      if (skip > 0) {
+        bits(skip);
+      }
+    }
+
+    long getBitPosition() {
+      return (bufferStart + bufferPos) * 8 - bitCount;
+    }
+
+    int available() {
+      return bitCount;
+    }
+
+    // load as many bytes as fit into the bit buffer, return false at end of file
+    private boolean fill() throws IOException {
+      while (bitCount <= 56) {
+        if (bufferPos == bufferLen) {
+          bufferStart += bufferLen;
+          bufferPos = 0;
+          file.seek(bufferStart);
+          bufferLen = Math.max(0, file.read(buffer));
+          if (bufferLen == 0) {
+            return false;
+          }
+        }
+        bitBuffer |= (long) (buffer[bufferPos++] & 0xff) << bitCount;
+        bitCount += 8;
+      }
+      return true;
+    }
+
+    /** The next n bits, without using them, padded with zeroes at end of file. */
+    int peek(int n) throws IOException {
+      if (bitCount < n) {
+        fill();
+      }
+      return (int) (bitBuffer & ((1L << n) - 1));
+    }
+
+    void drop(int n) {
+      bitBuffer >>>= n;
+      bitCount -= n;
+    }
+
+    int bits(int n) throws IOException {
+      if (n == 0) {
+        return 0;
+      }
+      if (bitCount < n && !fill() && bitCount < n) {
+        throw new EOFException("Unexpected end of gzip file");
+      }
+      int result = (int) (bitBuffer & ((1L << n) - 1));
+      drop(n);
+      return result;
+    }
+
+    void alignToByte() {
+      drop(bitCount & 7);
+    }
+
+    boolean hasByte() throws IOException {
+      if (bitCount < 8) {
+        fill();
+      }
+      return bitCount >= 8;
+    }
+
+    // skip a zero terminated string
+    void skipString() throws IOException {
+      int val;
+      do {
+        val = bits(8);
+      } while (val != 0);
+    }
+
+    void skipBytes(int n) throws IOException {
+      for (int i = 0; i < n; i++) {
+        bits(8);
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+/** A range of bytes in a file, for {@link RandomAccessFile#readRanges}. */
+@Immutable
+public final class FileRange {
+  private final long pos;
+  private final int length;
+
+  /**
+   * @param pos start of the range in the file.
+   * @param length number of bytes.
+   */
+  public FileRange(long pos, int length) {
+    Preconditions.checkArgument(pos >= 0, "pos must be >= 0");
+    Preconditions.checkArgument(length >= 0, "length must be >= 0");
+    this.pos = pos;
+    this.length = length;
+  }
+
+  /** Start of the range in the file. */
+  public long getPos() {
+    return pos;
+  }
+
+  /** Number of bytes. */
+  public int getLength() {
+    return length;
+  }
+
+  /** Position just past the end of the range. */
+  public long getEnd() {
+    return pos + length;
+  }
+
+  /**
+   * Merge ranges that overlap or are separated by at most maxGap bytes, as long as the merged range is no longer
+   * than maxLength. Longer ranges are kept as they are.
+   *
+   * @return the merged ranges, sorted by position, not overlapping.
+   */
+  public static List<FileRange> coalesce(Collection<FileRange> ranges, int maxGap, int maxLength) {
+    List<FileRange> sorted = new ArrayList<>(ranges);
+    sorted.sort((r1, r2) -> Long.compare(r1.pos, r2.pos));
+
+    List<FileRange> result = new ArrayList<>();
+    long start = -1;
+    long end = -1;
+    for (FileRange range : sorted) {
+      if (start >= 0 && range.pos <= end + maxGap && Math.max(end, range.getEnd()) - start <= maxLength) {
+        end = Math.max(end, range.getEnd());
+        continue;
+      }
+      if (start >= 0 && range.pos < end) { // overlaps, but would be too long
+        end = Math.max(end, range.getEnd());
+        continue;
+      }
+      if (start >= 0) {
+        result.add(new FileRange(start, (int) (end - start)));
+      }
+      start = range.pos;
+      end = range.getEnd();
+    }
+    if (start >= 0) {
+      result.add(new FileRange(start, (int) (end - start)));
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (!(o instanceof FileRange))
+      return false;
+    FileRange other = (FileRange) o;
+    return pos == other.pos && length == other.length;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(pos) + length;
+  }
+
+  @Override
+  public String toString() {
+    return "FileRange{pos=" + pos + ", length=" + length + '}';
+  }
+}
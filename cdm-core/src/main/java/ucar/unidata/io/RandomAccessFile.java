@@ -10,14 +10,18 @@ import java.util.stream.Collectors;
 
 import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.util.CancelTask;
+import ucar.nc2.util.Instruments;
 import ucar.nc2.internal.cache.FileCache;
 import ucar.nc2.internal.cache.FileCacheIF;
 import ucar.nc2.internal.cache.FileCacheable;
 import ucar.nc2.internal.cache.FileFactory;
 import ucar.unidata.util.StringUtil2;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -492,7 +496,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     bufferStart = pos;
     filePosition = pos;
 
-    dataSize = read_(pos, buffer, 0, buffer.length);
+    dataSize = readMeasured(pos, buffer, 0, buffer.length);
 
     if (dataSize <= 0) {
       dataSize = 0;
@@ -661,7 +665,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
       // If the amount remaining is more than a buffer's length, read it
       // directly from the file.
       if (extraCopy > buffer.length) {
-        extraCopy = read_(filePosition, b, off + copyLength, len - copyLength);
+        extraCopy = readMeasured(filePosition, b, off + copyLength, len - copyLength);
 
         // ...or read a new buffer full, and copy as much as possible...
       } else {
@@ -702,6 +706,9 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     if (fileChannel == null)
       fileChannel = file.getChannel();
 
+    boolean measure = Instruments.isEnabled();
+    long start = measure ? System.nanoTime() : 0;
+    long pos = offset;
     long need = nbytes;
     while (need > 0) {
       long count = fileChannel.transferTo(offset, need, dest);
@@ -710,9 +717,63 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
       need -= count;
       offset += count;
     }
+    if (measure) {
+      reportRead(pos, nbytes - need, start);
+    }
     return nbytes - need;
   }
 
+  /**
+   * Map a region of the file into memory, read only, bypassing all user buffers. The buffer stays valid after the
+   * file is closed.
+   *
+   * @param offset the offset in the file where the region starts.
+   * @param nbytes the size of the region, at most Integer.MAX_VALUE.
+   * @return the mapped region, or null if the file cannot be mapped, because it is remote, in memory, open for writing,
+   *         or shorter than the region.
+   * @throws IOException if an I/O error occurs.
+   */
+  @Nullable
+  public MappedByteBuffer map(long offset, long nbytes) throws IOException {
+    if (file == null || !readonly || offset + nbytes > length()) {
+      return null;
+    }
+    if (fileChannel == null)
+      fileChannel = file.getChannel();
+    if (!Instruments.isEnabled()) {
+      return fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, nbytes);
+    }
+    // the pages are read later, when they are first used, so only the time to map is known
+    long start = System.nanoTime();
+    MappedByteBuffer result = fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, nbytes);
+    reportRead(offset, nbytes, start);
+    return result;
+  }
+
+
+  // call read_, reporting it to the Instrumentation if there is one
+  private int readMeasured(long pos, byte[] b, int offset, int len) throws IOException {
+    if (!Instruments.isEnabled()) {
+      return read_(pos, b, offset, len);
+    }
+    long start = System.nanoTime();
+    int n = read_(pos, b, offset, len);
+    Instruments.get().fileRead(location, pos, n, System.nanoTime() - start);
+    return n;
+  }
+
+  /**
+   * Report a physical read that does not go through read_, eg a vectored, mapped or channel read, to the
+   * Instrumentation. Only call this if Instruments.isEnabled().
+   *
+   * @param pos the file position read from.
+   * @param nbytes the number of bytes read.
+   * @param startNanos System.nanoTime() before the read.
+   */
+  protected void reportRead(long pos, long nbytes, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    Instruments.get().fileRead(location, pos, (int) Math.min(nbytes, Integer.MAX_VALUE), nanos);
+  }
 
   /**
    * Read directly from file, without going through the buffer.
@@ -821,6 +882,49 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     }
   }
 
+  /**
+   * Read several ranges of the file, each one fully into its own array.
+   * The ranges may be in any order, and may overlap. The file pointer is left unchanged.
+   * This reads the ranges one at a time; remote files merge nearby ranges and read them concurrently, see
+   * {@link #prefersVectoredReads}.
+   *
+   * @param ranges the ranges to read.
+   * @return the bytes of each range, in the same order as the ranges.
+   * @throws EOFException if a range extends past the end of the file.
+   * @throws IOException if an I/O error occurs.
+   */
+  public List<byte[]> readRanges(List<FileRange> ranges) throws IOException {
+    long savePos = getFilePointer();
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    try {
+      for (FileRange range : ranges) {
+        byte[] b = new byte[range.getLength()];
+        seek(range.getPos());
+        readFully(b);
+        result.add(b);
+      }
+    } finally {
+      seek(savePos);
+    }
+    return result;
+  }
+
+  /**
+   * Hint that these ranges will be read soon. Remote files fetch them ahead, the default does nothing.
+   *
+   * @param ranges the ranges that will be read.
+   * @throws IOException if an I/O error occurs.
+   */
+  public void prefetch(List<FileRange> ranges) throws IOException {}
+
+  /**
+   * If {@link #readRanges} and {@link #prefetch} are much faster than reading the ranges one at a time, so that
+   * callers should gather what they need into one call.
+   */
+  public boolean prefersVectoredReads() {
+    return false;
+  }
+
   /**
    * Skips exactly <code>n</code> bytes of input.
    * This method blocks until all the bytes are skipped, the end of
@@ -1235,7 +1339,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   public final int readIntUnbuffered(long pos) throws IOException {
     byte[] bb = new byte[4];
-    read_(pos, bb, 0, 4);
+    readMeasured(pos, bb, 0, 4);
     int ch1 = bb[0] & 0xff;
     int ch2 = bb[1] & 0xff;
     int ch3 = bb[2] & 0xff;
@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Formatter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.internal.util.DiskCache2;
+import ucar.nc2.util.Instruments;
+
+/**
+ * Process-wide cache of the blocks read by {@link RemoteRandomAccessFile}s, so that reopened files, and the several
+ * RandomAccessFiles open on the same remote object, share what has already been fetched.
+ * A block is identified by the location, the version of the remote object (its ETag or last modified date), the
+ * block size and the block number, so a changed object never sees the blocks of the old one.
+ *
+ * The cache is bounded by the total size of the blocks in bytes, set with the
+ * "ucar.unidata.io.remote.blockCache.maxBytes" system property or {@link #setMaxBytes}; 0 disables it.
+ * Blocks evicted from memory can be spilled to a {@link DiskCache2}, see {@link #setDiskCache}, which takes care of
+ * deleting old files.
+ * When a file is read sequentially, the next blocks may be fetched in the background, see
+ * {@link #setReadAheadBlocks}.
+ */
+public class RemoteBlockCache {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteBlockCache.class);
+
+  private static final String MAXBYTES_PROPERTY = "ucar.unidata.io.remote.blockCache.maxBytes";
+  private static final String READAHEAD_PROPERTY = "ucar.unidata.io.remote.readAheadBlocks";
+  private static final long DEFAULT_MAXBYTES = 64 * 1024 * 1024;
+  private static final int DEFAULT_READAHEAD = 0;
+  private static final String SPILL_DIR = "remoteBlocks";
+
+  private static long maxBytes;
+  private static Cache<Key, byte[]> cache; // null if disabled
+  private static DiskCache2 diskCache; // null if blocks are not spilled
+  private static int readAheadBlocks;
+  private static ExecutorService executor; // lazy
+
+  private static final AtomicLong diskHits = new AtomicLong();
+  private static final AtomicLong readAheads = new AtomicLong();
+
+  static {
+    setMaxBytes(getLongProperty(MAXBYTES_PROPERTY, DEFAULT_MAXBYTES));
+    setReadAheadBlocks((int) getLongProperty(READAHEAD_PROPERTY, DEFAULT_READAHEAD));
+  }
+
+  private RemoteBlockCache() {}
+
+  private static long getLongProperty(String name, long defaultValue) {
+    String prop = System.getProperty(name);
+    if (prop != null) {
+      try {
+        long value = Long.parseLong(prop);
+        if (value >= 0) {
+          return value;
+        }
+        logger.warn("-D{} must be >= 0", name);
+      } catch (NumberFormatException nfe) {
+        logger.warn("-D{} is not an integer", name);
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Set the maximum total size of the blocks held in memory, 0 to disable the cache.
+   * The cache is emptied and its statistics reset.
+   */
+  public static synchronized void setMaxBytes(long max) {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+    maxBytes = max;
+    cache = (max <= 0) ? null
+        : CacheBuilder.newBuilder().maximumWeight(max).weigher((Key key, byte[] data) -> data.length)
+            .removalListener(RemoteBlockCache::onRemoval).recordStats().build();
+  }
+
+  public static synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Spill the blocks evicted from memory into this DiskCache2, or null to not spill. */
+  public static synchronized void setDiskCache(@Nullable DiskCache2 disk) {
+    diskCache = disk;
+  }
+
+  @Nullable
+  public static synchronized DiskCache2 getDiskCache() {
+    return diskCache;
+  }
+
+  /**
+   * Set the number of blocks to fetch ahead of a sequential reader, 0 for no read-ahead, which is the default.
+   * The blocks are fetched on background threads with the reader's RemoteRandomAccessFile, which must allow
+   * concurrent remote reads.
+   */
+  public static synchronized void setReadAheadBlocks(int n) {
+    readAheadBlocks = Math.max(n, 0);
+  }
+
+  public static synchronized int getReadAheadBlocks() {
+    return readAheadBlocks;
+  }
+
+  @Nullable
+  private static synchronized Cache<Key, byte[]> getCache() {
+    return cache;
+  }
+
+  public static boolean isEnabled() {
+    return getCache() != null;
+  }
+
+  /**
+   * Get a block, from memory, from the disk cache, or else by calling the loader.
+   * Concurrent requests for the same block wait for a single load. The returned array must not be modified.
+   */
+  static byte[] get(Key key, Callable<byte[]> loader) throws IOException {
+    Cache<Key, byte[]> c = getCache();
+    if (c == null) {
+      return call(loader);
+    }
+    boolean[] loaded = new boolean[1];
+    try {
+      byte[] result = c.get(key, () -> {
+        loaded[0] = true;
+        byte[] block = readSpilled(key);
+        return (block != null) ? block : loader.call();
+      });
+      if (Instruments.isEnabled()) {
+        Instruments.get().cacheAccess("RemoteBlockCache", !loaded[0]);
+      }
+      return result;
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException("Error reading block " + key.blockNumber + " of " + key.location, e.getCause());
+    }
+  }
+
+  /** Find a block in memory, or null if its not there. The returned array must not be modified. */
+  @Nullable
+  static byte[] getIfPresent(Key key) {
+    Cache<Key, byte[]> c = getCache();
+    return (c == null) ? null : c.getIfPresent(key);
+  }
+
+  /** Add a block. The array must not be modified afterwards. */
+  static void put(Key key, byte[] block) {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.put(key, block);
+    }
+  }
+
+  private static byte[] call(Callable<byte[]> loader) throws IOException {
+    try {
+      return loader.call();
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Fetch a block in the background, if its not already cached. Failures are ignored, a real read will report any
+   * problem. The loader must fail once its file is closed.
+   */
+  static void readAhead(Key key, Callable<byte[]> loader) {
+    Cache<Key, byte[]> c = getCache();
+    if (c == null || c.getIfPresent(key) != null) {
+      return;
+    }
+    getExecutor().execute(() -> {
+      try {
+        get(key, loader);
+        readAheads.incrementAndGet();
+      } catch (Throwable t) {
+        logger.debug("Read ahead of block {} of {} failed", key.blockNumber, key.location, t);
+      }
+    });
+  }
+
+  /** Remove all the blocks of this file from memory. */
+  public static void invalidate(String location) {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.asMap().keySet().removeIf(key -> key.location.equals(location));
+    }
+  }
+
+  /** Remove all the blocks of this version of a file from memory. */
+  static void invalidate(String location, String version) {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.asMap().keySet().removeIf(key -> key.location.equals(location) && key.version.equals(version));
+    }
+  }
+
+  /** Remove all blocks from memory. */
+  public static void clear() {
+    Cache<Key, byte[]> c = getCache();
+    if (c != null) {
+      c.invalidateAll();
+    }
+  }
+
+  /** Number of blocks in memory. */
+  public static long size() {
+    Cache<Key, byte[]> c = getCache();
+    return (c == null) ? 0 : c.size();
+  }
+
+  public static long getHitCount() {
+    return getStats().hitCount();
+  }
+
+  public static long getMissCount() {
+    return getStats().missCount();
+  }
+
+  public static long getEvictionCount() {
+    return getStats().evictionCount();
+  }
+
+  /** Number of misses found in the disk cache. */
+  public static long getDiskHitCount() {
+    return diskHits.get();
+  }
+
+  /** Number of blocks fetched ahead of a reader. */
+  public static long getReadAheadCount() {
+    return readAheads.get();
+  }
+
+  private static CacheStats getStats() {
+    Cache<Key, byte[]> c = getCache();
+    return (c == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : c.stats();
+  }
+
+  public static void showStats(Formatter f) {
+    CacheStats stats = getStats();
+    f.format("RemoteBlockCache maxBytes=%d size=%d hits=%d misses=%d evictions=%d diskHits=%d readAheads=%d%n",
+        getMaxBytes(), size(), stats.hitCount(), stats.missCount(), stats.evictionCount(), getDiskHitCount(),
+        getReadAheadCount());
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      // read-ahead and spilling are best effort, so drop the work rather than queue it without bound
+      int nthreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+      executor = new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(256),
+          new ThreadFactoryBuilder().setNameFormat("RemoteBlockCache-%d").setDaemon(true).build(),
+          new ThreadPoolExecutor.DiscardPolicy());
+      ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+  // spill to disk
+
+  private static void onRemoval(RemovalNotification<Key, byte[]> notification) {
+    if (notification.getCause() != RemovalCause.SIZE || notification.getKey() == null
+        || notification.getValue() == null || !notification.getKey().spillable || getDiskCache() == null) {
+      return;
+    }
+    Key key = notification.getKey();
+    byte[] block = notification.getValue();
+    getExecutor().execute(() -> spill(key, block));
+  }
+
+  @Nullable
+  private static File getSpillFile(Key key) {
+    DiskCache2 disk = getDiskCache();
+    if (disk == null || !key.spillable) {
+      return null;
+    }
+    return new File(disk.getRootDirectory(), SPILL_DIR + "/" + key.getFileName());
+  }
+
+  private static void spill(Key key, byte[] block) {
+    File file = getSpillFile(key);
+    if (file == null || file.exists()) {
+      return;
+    }
+    try {
+      File dir = file.getParentFile();
+      if (!dir.exists() && !dir.mkdirs()) {
+        logger.warn("Cant create directory {}", dir);
+        return;
+      }
+      // write then rename, so a reader never sees a partial block
+      File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+      Files.write(tmp.toPath(), block);
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Failed to spill block {} of {} to {}", key.blockNumber, key.location, file, e);
+    }
+  }
+
+  @Nullable
+  private static byte[] readSpilled(Key key) {
+    File file = getSpillFile(key);
+    if (file == null || !file.exists()) {
+      return null;
+    }
+    try {
+      byte[] block = Files.readAllBytes(file.toPath());
+      diskHits.incrementAndGet();
+      return block;
+    } catch (IOException e) {
+      logger.debug("Failed to read spilled block {}", file, e);
+      return null;
+    }
+  }
+
+  /** Identifies a block: the file location and version, the block size and the block number. */
+  static class Key {
+    private final String location;
+    private final String version;
+    private final int blockSize;
+    private final long blockNumber;
+    private final boolean spillable;
+    private final int hashCode;
+
+    /**
+     * @param location the file location.
+     * @param version the ETag or last modified date of the remote object.
+     * @param spillable if the version really identifies the remote object, so its blocks may outlive the process.
+     */
+    Key(String location, String version, int blockSize, long blockNumber, boolean spillable) {
+      this.location = location;
+      this.version = version;
+      this.blockSize = blockSize;
+      this.blockNumber = blockNumber;
+      this.spillable = spillable;
+      this.hashCode = 31 * (31 * (31 * location.hashCode() + version.hashCode()) + blockSize)
+          + Long.hashCode(blockNumber);
+    }
+
+    // the location may not be a legal file name, so use a hash of it
+    String getFileName() {
+      String file = Hashing.sha256().hashString(location + '\n' + version, StandardCharsets.UTF_8).toString();
+      return file + "/" + blockSize + "-" + blockNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return hashCode == other.hashCode && blockNumber == other.blockNumber && blockSize == other.blockSize
+          && version.equals(other.version) && location.equals(other.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -4,36 +4,56 @@
  */
 package ucar.unidata.io;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
-import java.time.Duration;
-import java.util.concurrent.ExecutionException;
-import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ucar.nc2.util.Instruments;
 
-/** An abstract superclass for remote RandomAccessFile. */
+/**
+ * An abstract superclass for remote RandomAccessFile.
+ * Reads go through the process-wide {@link RemoteBlockCache}, which is shared by all remote files.
+ */
 // not immutable because RandomAccessFile is not immutable.
 public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAccessFile implements ReadableRemoteFile {
   private static final Logger logger = LoggerFactory.getLogger(RemoteRandomAccessFile.class);
 
-  // 10 MiB default maximum loading cache size
+  // 10 MiB default maximum read cache size; any size of at least 2 buffers enables the shared RemoteBlockCache
   protected static final long defaultMaxReadCacheSize = 10485760;
   // 256 KiB default remote file buffer size
   protected static final int defaultRemoteFileBufferSize = 262144;
   // default connection timeout in milliseconds (10 seconds)
   protected static final int defaultRemoteFileTimeout = 10 * 1000;
-  // default cache time to live in milliseconds
-  private static final long defaultReadCacheTimeToLive = 30 * 1000;
+  // readRanges() merges ranges this close together into one remote read, when not using the block cache
+  protected static final int defaultRemoteMergeGap = 64 * 1024;
+  // and limits merged reads to about this size, so that large reads can be done concurrently
+  protected static final int defaultRemoteMaxMergedRead = 8 * 1024 * 1024;
+  // distinguishes the files whose remote version is unknown
+  private static final AtomicLong instanceCounter = new AtomicLong();
 
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
-  private final LoadingCache<Long, byte[]> readCache;
+  private String blockVersion; // lazy
+  private boolean blockVersionShared;
+
+  // detect sequential reading, for read-ahead
+  private long lastBlockRead = -1;
+  private int sequentialReads;
+  // the read-ahead fetches in the background, which close() waits for; guarded by this
+  private int readAheadsRunning;
+  private boolean closed;
 
   protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) {
     super(bufferSize);
@@ -42,37 +62,80 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     file = null;
     location = url;
 
-    // Only enable cache if its maximum size is at least 2x the buffer size, both of which are configurable
-    // at runtime
+    // Only use the cache if the maximum size is at least 2x the buffer size, both of which are configurable
+    // at runtime. The blocks go into the shared RemoteBlockCache, which has its own size limit.
     int minimumCacheActivationSize = 2 * bufferSize;
     if (maxRemoteCacheSize >= minimumCacheActivationSize) {
       // have each cache block hold a 1 buffer sized chunk
       this.readCacheBlockSize = bufferSize;
-      // user set max cache size in bytes
-      // guava cache set as number of objects
-      // The question here is, how many readCacheBlockSize objects would there be in maxRemoteCacheSize bytes?
-      // total max cache size in bytes / size of one cache block, rounded up.
-      long numberOfCacheBlocks = (maxRemoteCacheSize / readCacheBlockSize) + 1;
-      this.readCache = initCache(numberOfCacheBlocks, Duration.ofMillis(defaultReadCacheTimeToLive));
       readCacheEnabled = true;
     } else {
       this.readCacheBlockSize = -1;
       readCacheEnabled = false;
-      readCache = null;
     }
   }
 
-  private LoadingCache<Long, byte[]> initCache(long maximumNumberOfCacheBlocks, java.time.Duration timeToLive) {
-    CacheBuilder<Object, Object> cb =
-        CacheBuilder.newBuilder().maximumSize(maximumNumberOfCacheBlocks).expireAfterWrite(timeToLive);
-    if (debugAccess) {
-      cb.recordStats();
+  /**
+   * Identifies the version of the remote object, such as its ETag or last modified date, or null if unknown.
+   * Other RandomAccessFiles only share the cached blocks of objects with a known version.
+   * Called after the subclass constructor has finished.
+   */
+  @Nullable
+  protected String getRemoteVersion() {
+    long lastModified = getLastModified();
+    return (lastModified > 0) ? "lastModified=" + lastModified : null;
+  }
+
+  private synchronized RemoteBlockCache.Key makeBlockKey(long cacheBlockNumber) {
+    if (blockVersion == null) {
+      String version = getRemoteVersion();
+      blockVersionShared = (version != null);
+      blockVersion = blockVersionShared ? version : "instance=" + instanceCounter.incrementAndGet();
+    }
+    return new RemoteBlockCache.Key(location, blockVersion, readCacheBlockSize, cacheBlockNumber, blockVersionShared);
+  }
+
+  private byte[] getCacheBlock(long cacheBlockNumber) throws IOException {
+    return RemoteBlockCache.get(makeBlockKey(cacheBlockNumber), () -> readRemoteCacheSizedChunk(cacheBlockNumber));
+  }
+
+  // If the reads are sequential, fetch the following blocks in the background
+  private void readAhead(long pos, int len) throws IOException {
+    int nblocks = RemoteBlockCache.getReadAheadBlocks();
+    if (nblocks == 0 || len <= 0) {
+      return;
+    }
+    long firstBlock = pos / readCacheBlockSize;
+    long lastBlock = (pos + len - 1) / readCacheBlockSize;
+    boolean sequential = (firstBlock == lastBlockRead || firstBlock == lastBlockRead + 1) && lastBlock > lastBlockRead;
+    sequentialReads = sequential ? sequentialReads + 1 : 0;
+    lastBlockRead = lastBlock;
+    if (sequentialReads < 2) {
+      return;
+    }
+    long nblocksInFile = (length() + readCacheBlockSize - 1) / readCacheBlockSize;
+    for (long block = lastBlock + 1; block <= lastBlock + nblocks && block < nblocksInFile; block++) {
+      long cacheBlockNumber = block;
+      RemoteBlockCache.readAhead(makeBlockKey(block), () -> readAheadBlock(cacheBlockNumber));
+    }
+  }
+
+  // Fetch a block on a read-ahead thread, unless the file has been closed.
+  private byte[] readAheadBlock(long cacheBlockNumber) throws IOException {
+    synchronized (this) {
+      if (closed) {
+        throw new IOException("Read ahead of closed file " + location);
+      }
+      readAheadsRunning++;
     }
-    return cb.build(new CacheLoader<Long, byte[]>() {
-      public byte[] load(@Nonnull Long key) throws IOException {
-        return readRemoteCacheSizedChunk(key);
+    try {
+      return readRemoteCacheSizedChunk(cacheBlockNumber);
+    } finally {
+      synchronized (this) {
+        readAheadsRunning--;
+        notifyAll();
       }
-    });
+    }
   }
 
   /**
@@ -92,7 +155,12 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
    */
   @Override
   protected int read_(long pos, byte[] buff, int offset, int len) throws IOException {
-    return readCacheEnabled ? readFromCache(pos, buff, offset, len) : readRemote(pos, buff, offset, len);
+    if (!readCacheEnabled || !RemoteBlockCache.isEnabled()) {
+      return readRemote(pos, buff, offset, len);
+    }
+    int n = readFromCache(pos, buff, offset, len);
+    readAhead(pos, n);
+    return n;
   }
 
   /**
@@ -112,7 +180,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     // Here, we compute the first and last cache block that we need to read from based on the desired position in the
     // file and the length of read.
     long firstCacheBlockNumber = pos / readCacheBlockSize;
-    long lastCacheBlockNumber = (pos + len) / readCacheBlockSize;
+    long lastCacheBlockNumber = (pos + len - 1) / readCacheBlockSize;
     int totalBytesRead = 0;
     int currentOffsetIntoBuffer = offset;
 
@@ -153,12 +221,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     long cacheBlockNumber = pos / readCacheBlockSize;
 
     // read in the cache block
-    byte[] src;
-    try {
-      src = readCache.get(cacheBlockNumber);
-    } catch (ExecutionException ee) {
-      throw new IOException("Error obtaining data from the remote data read cache.", ee);
-    }
+    byte[] src = getCacheBlock(cacheBlockNumber);
 
     // Careful - we are doing a partial read from the cache block. The pos in the file is some offset into the cache
     // block, so let's start by calculating the pos of the first block
@@ -211,12 +274,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   }
 
   private int readCacheBlockFull(long cacheBlockNumber, int positionInBuffer, byte[] buff) throws IOException {
-    byte[] src;
-    try {
-      src = readCache.get(cacheBlockNumber);
-    } catch (ExecutionException ee) {
-      throw new IOException("Error obtaining data from the remote data read cache.", ee);
-    }
+    byte[] src = getCacheBlock(cacheBlockNumber);
     System.arraycopy(src, 0, buff, positionInBuffer, readCacheBlockSize);
     return readCacheBlockSize;
   }
@@ -236,25 +294,200 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     return buffer;
   }
 
+  private boolean useBlockCache() {
+    return readCacheEnabled && RemoteBlockCache.isEnabled();
+  }
+
+  @Override
+  public boolean prefersVectoredReads() {
+    return true;
+  }
+
+  /**
+   * Read several ranges of the file. Ranges that are close together are merged, and the remote reads are done with
+   * {@link #readRemoteRanges}, which may do them concurrently. When the block cache is used, only the missing cache
+   * blocks are read, and they are added to the cache.
+   */
+  @Override
+  public List<byte[]> readRanges(List<FileRange> ranges) throws IOException {
+    long length = length();
+    for (FileRange range : ranges) {
+      if (range.getEnd() > length) {
+        throw new EOFException("Reading " + location + " at " + range.getPos() + " file length = " + length);
+      }
+    }
+
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    if (useBlockCache()) {
+      Map<Long, byte[]> blocks = fetchBlocks(ranges);
+      for (FileRange range : ranges) {
+        byte[] b = new byte[range.getLength()];
+        int done = 0;
+        while (done < b.length) {
+          long pos = range.getPos() + done;
+          long blockNumber = pos / readCacheBlockSize;
+          int offsetIntoBlock = (int) (pos - blockNumber * readCacheBlockSize);
+          byte[] block = blocks.get(blockNumber);
+          int n = Math.min(block.length - offsetIntoBlock, b.length - done);
+          System.arraycopy(block, offsetIntoBlock, b, done, n);
+          done += n;
+        }
+        result.add(b);
+      }
+
+    } else {
+      List<FileRange> merged = FileRange.coalesce(ranges, defaultRemoteMergeGap, defaultRemoteMaxMergedRead);
+      List<byte[]> data = readRemoteRanges(merged);
+      for (FileRange range : ranges) {
+        // find the merged range that holds this one
+        int index = 0;
+        int lo = 0;
+        int hi = merged.size() - 1;
+        while (lo <= hi) {
+          int mid = (lo + hi) >>> 1;
+          if (merged.get(mid).getPos() <= range.getPos()) {
+            index = mid;
+            lo = mid + 1;
+          } else {
+            hi = mid - 1;
+          }
+        }
+        byte[] b = new byte[range.getLength()];
+        System.arraycopy(data.get(index), (int) (range.getPos() - merged.get(index).getPos()), b, 0, b.length);
+        result.add(b);
+      }
+    }
+    return result;
+  }
+
+  /** Read the cache blocks of these ranges ahead, if the block cache is used. */
+  @Override
+  public void prefetch(List<FileRange> ranges) throws IOException {
+    if (useBlockCache()) {
+      fetchBlocks(ranges);
+    }
+  }
+
+  // Get the cache blocks that hold the ranges, reading the missing ones with as few remote reads as possible.
+  private Map<Long, byte[]> fetchBlocks(List<FileRange> ranges) throws IOException {
+    long length = length();
+    TreeSet<Long> needed = new TreeSet<>();
+    for (FileRange range : ranges) {
+      long end = Math.min(range.getEnd(), length);
+      for (long pos = range.getPos(); pos < end; pos += readCacheBlockSize - pos % readCacheBlockSize) {
+        needed.add(pos / readCacheBlockSize);
+      }
+    }
+
+    Map<Long, byte[]> result = new HashMap<>();
+    List<FileRange> missing = new ArrayList<>();
+    for (long blockNumber : needed) {
+      byte[] block = RemoteBlockCache.getIfPresent(makeBlockKey(blockNumber));
+      if (block != null) {
+        result.put(blockNumber, block);
+      } else {
+        long pos = blockNumber * readCacheBlockSize;
+        missing.add(new FileRange(pos, (int) Math.min(readCacheBlockSize, length - pos)));
+      }
+    }
+    if (missing.isEmpty()) {
+      return result;
+    }
+
+    // adjacent missing blocks are read together
+    int maxRead = Math.max(readCacheBlockSize, defaultRemoteMaxMergedRead / readCacheBlockSize * readCacheBlockSize);
+    List<FileRange> reads = FileRange.coalesce(missing, 0, maxRead);
+    List<byte[]> data = readRemoteRanges(reads);
+    for (int i = 0; i < reads.size(); i++) {
+      FileRange read = reads.get(i);
+      byte[] bytes = data.get(i);
+      for (int start = 0; start < bytes.length; start += readCacheBlockSize) {
+        long blockNumber = (read.getPos() + start) / readCacheBlockSize;
+        byte[] block = Arrays.copyOfRange(bytes, start, Math.min(start + readCacheBlockSize, bytes.length));
+        RemoteBlockCache.put(makeBlockKey(blockNumber), block);
+        result.put(blockNumber, block);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Read several ranges directly from the remote service, each one fully.
+   * This reads them one after the other, subclasses may read them concurrently.
+   *
+   * @param ranges the ranges to read, which do not overlap.
+   * @return the bytes of each range, in the same order as the ranges.
+   * @throws IOException on io error
+   */
+  protected List<byte[]> readRemoteRanges(List<FileRange> ranges) throws IOException {
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    for (FileRange range : ranges) {
+      result.add(readRemoteFully(range));
+    }
+    return result;
+  }
+
+  /** Read one range directly from the remote service, fully. Reported to the Instrumentation if there is one. */
+  protected byte[] readRemoteFully(FileRange range) throws IOException {
+    boolean measure = Instruments.isEnabled();
+    long start = measure ? System.nanoTime() : 0;
+    byte[] b = new byte[range.getLength()];
+    int done = 0;
+    while (done < b.length) {
+      int n = readRemote(range.getPos() + done, b, done, b.length - done);
+      if (n <= 0) {
+        throw new EOFException("Reading " + location + " at " + (range.getPos() + done));
+      }
+      done += n;
+    }
+    if (measure) {
+      reportRead(range.getPos(), b.length, start);
+    }
+    return b;
+  }
+
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
+    boolean measure = Instruments.isEnabled();
+    long start = measure ? System.nanoTime() : 0;
     int n = (int) nbytes;
     byte[] buff = new byte[n];
     int done = read_(offset, buff, 0, n);
+    if (measure) {
+      reportRead(offset, done, start);
+    }
     dest.write(ByteBuffer.wrap(buff));
     return done;
   }
 
   @Override
   public void close() throws IOException {
+    // no more read-ahead, and wait for the fetches still using the remote connection
+    synchronized (this) {
+      closed = true;
+      while (readAheadsRunning > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
     closeRemote();
     super.close();
-    // clean out the cache when closing the Remote Random Access File
-    if (readCache != null) {
-      readCache.invalidateAll();
-      if (debugAccess) {
-        logger.info(readCache.stats().toString());
-      }
+    // the blocks of an unknown version are useless to anyone else
+    String version;
+    synchronized (this) {
+      version = blockVersionShared ? null : blockVersion;
+    }
+    if (version != null) {
+      RemoteBlockCache.invalidate(location, version);
+    }
+    if (debugAccess) {
+      Formatter f = new Formatter();
+      RemoteBlockCache.showStats(f);
+      logger.info(f.toString());
     }
   }
 }
@@ -40,6 +40,7 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 
   private HTTPSession session;
   private long total_length;
+  private String version; // from the ETag or Last-Modified header, may be null
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, httpBufferSize, httpMaxCacheSize);
@@ -72,6 +73,9 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
         }
       }
 
+      this.version = method.getResponseHeaderValue("ETag").map(etag -> "ETag=" + etag)
+          .orElse(method.getResponseHeaderValue("Last-Modified").map(lm -> "Last-Modified=" + lm).orElse(null));
+
       try {
         this.total_length = method.getResponseHeaderValue("Content-Length").map(Long::parseLong)
             .orElseThrow(() -> new IOException("Server does not support Content-Length"));
@@ -220,6 +224,12 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
     return 0;
   }
 
+  /** The ETag or else the Last-Modified date sent by the server, so that cached blocks are shared between files. */
+  @Override
+  protected String getRemoteVersion() {
+    return version;
+  }
+
   /**
    * Hook into service provider interface for RandomAccessFileProvider.
    */
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Test the boxing free accessors of {@link Array} and {@link Storage}. */
+public class TestArrayPrimitiveAccess {
+  private static final int[] SHAPE = {2, 3, 4};
+
+  private static List<Array<?>> makeArrays() {
+    int n = 24;
+    byte[] bdata = new byte[n];
+    short[] sdata = new short[n];
+    int[] idata = new int[n];
+    long[] ldata = new long[n];
+    float[] fdata = new float[n];
+    double[] ddata = new double[n];
+    for (int i = 0; i < n; i++) {
+      bdata[i] = (byte) (i * 11 - 100); // some negative, some unsigned > 127
+      sdata[i] = (short) (i * 3001 - 30000);
+      idata[i] = i * 100003 - 1000000;
+      ldata[i] = i * 10000000019L - 100000000000L;
+      fdata[i] = i * 1.1f - 7;
+      ddata[i] = i * 1.01 - 11;
+    }
+    List<Array<?>> result = new ArrayList<>();
+    result.add(Arrays.factory(ArrayType.BYTE, SHAPE, bdata));
+    result.add(Arrays.factory(ArrayType.UBYTE, SHAPE, bdata));
+    result.add(Arrays.factory(ArrayType.SHORT, SHAPE, sdata));
+    result.add(Arrays.factory(ArrayType.USHORT, SHAPE, sdata));
+    result.add(Arrays.factory(ArrayType.INT, SHAPE, idata));
+    result.add(Arrays.factory(ArrayType.UINT, SHAPE, idata));
+    result.add(Arrays.factory(ArrayType.LONG, SHAPE, ldata));
+    result.add(Arrays.factory(ArrayType.FLOAT, SHAPE, fdata));
+    result.add(Arrays.factory(ArrayType.DOUBLE, SHAPE, ddata));
+    return result;
+  }
+
+  // canonical, flipped, permuted and sectioned views of the array
+  private static List<Array<?>> makeViews(Array<?> array) throws InvalidRangeException {
+    return ImmutableList.of(array, Arrays.flip(array, 1), Arrays.permute(array, new int[] {2, 0, 1}),
+        Arrays.section(array, new Section("1,0:2:2,1:3")));
+  }
+
+  private static void checkSame(Array<?> array) {
+    double[] copy = new double[(int) array.length() + 1];
+    array.copyTo(copy, 1);
+    double[] streamed = array.doubleStream().toArray();
+    assertThat(streamed).hasLength((int) array.length());
+
+    int count = 0;
+    Index index = array.getIndex();
+    for (Object val : array) {
+      double expected = ((Number) val).doubleValue();
+      assertThat(copy[count + 1]).isEqualTo(expected);
+      assertThat(streamed[count]).isEqualTo(expected);
+      count++;
+    }
+
+    int[] shape = array.getShape();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        for (int k = 0; k < shape[2]; k++) {
+          Number val = (Number) array.get(i, j, k);
+          assertThat(array.getDouble(i, j, k)).isEqualTo(val.doubleValue());
+          assertThat(array.getFloat(i, j, k)).isEqualTo(val.floatValue());
+          index.set(i, j, k);
+          assertThat(array.getDouble(index)).isEqualTo(val.doubleValue());
+          assertThat(array.getFloat(index)).isEqualTo(val.floatValue());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAccessors() throws InvalidRangeException {
+    for (Array<?> array : makeArrays()) {
+      for (Array<?> view : makeViews(array)) {
+        checkSame(view);
+      }
+    }
+  }
+
+  @Test
+  public void testStorage() {
+    for (Array<?> array : makeArrays()) {
+      Storage<?> storage = array.storage();
+      double[] copy = new double[10];
+      storage.copyTo(5, copy, 0, copy.length);
+      for (int i = 0; i < copy.length; i++) {
+        Number val = (Number) storage.get(5 + i);
+        assertThat(copy[i]).isEqualTo(val.doubleValue());
+        assertThat(storage.getDouble(5 + i)).isEqualTo(val.doubleValue());
+        assertThat(storage.getFloat(5 + i)).isEqualTo(val.floatValue());
+      }
+    }
+  }
+
+  @Test
+  public void testMultipleStorage() throws InvalidRangeException {
+    List<Array<?>> parts = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      parts.add(Arrays.makeArray(ArrayType.FLOAT, 8, i * 8, 0.5, 8));
+    }
+    Array<Float> combined = Arrays.factoryArrays(ArrayType.FLOAT, SHAPE, parts);
+    for (Array<?> view : makeViews(combined)) {
+      checkSame(view);
+    }
+
+    Storage<Float> storage = combined.storage();
+    double[] copy = new double[14];
+    storage.copyTo(5, copy, 0, copy.length); // spans all three parts
+    for (int i = 0; i < copy.length; i++) {
+      assertThat(copy[i]).isEqualTo(storage.get(5 + i).doubleValue());
+      assertThat(storage.getDouble(5 + i)).isEqualTo(storage.get(5 + i).doubleValue());
+    }
+  }
+
+  @Test
+  public void testNotNumeric() {
+    Array<String> array = Arrays.factory(ArrayType.STRING, new int[] {2}, new String[] {"a", "b"});
+    try {
+      array.getDouble(0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMinMax() throws InvalidRangeException {
+    IsMissingEvaluator eval = new IsMissingEvaluator() {
+      public boolean hasMissing() {
+        return true;
+      }
+
+      public boolean isMissing(double val) {
+        return val < 0;
+      }
+    };
+    for (Array<?> array : makeArrays()) {
+      for (Array<?> view : makeViews(array)) {
+        Array<Number> numbers = (Array<Number>) view;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (Number number : numbers) {
+          double val = number.doubleValue();
+          if (val >= 0) {
+            min = Math.min(min, val);
+            max = Math.max(max, val);
+          }
+        }
+        MinMax minmax = Arrays.getMinMaxSkipMissingData(numbers, eval);
+        assertThat(minmax.min()).isEqualTo(min);
+        assertThat(minmax.max()).isEqualTo(max);
+      }
+    }
+  }
+
+  @Test
+  public void testToDouble() throws InvalidRangeException {
+    for (Array<?> array : makeArrays()) {
+      for (Array<?> view : makeViews(array)) {
+        Array<Double> converted = Arrays.toDouble(view);
+        assertThat(converted.getShape()).isEqualTo(view.getShape());
+        assertThat((double[]) Arrays.copyPrimitiveArray(converted)).isEqualTo(view.doubleStream().toArray());
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/** Test {@link StorageBB} and {@link Arrays#factoryBB} */
+public class TestStorageBB {
+
+  // n floats in buffers of segmentLength floats
+  private static List<ByteBuffer> makeFloatBuffers(int n, int segmentLength, ByteOrder order) {
+    List<ByteBuffer> result = new ArrayList<>();
+    for (int start = 0; start < n; start += segmentLength) {
+      int len = Math.min(segmentLength, n - start);
+      ByteBuffer bb = ByteBuffer.allocateDirect(4 * len + 3).order(order);
+      bb.position(3); // data does not start at 0
+      bb = bb.slice().order(order);
+      for (int i = 0; i < len; i++) {
+        bb.putFloat(4 * i, start + i + 0.5f);
+      }
+      result.add(bb);
+    }
+    return result;
+  }
+
+  @Test
+  public void testFloats() throws InvalidRangeException {
+    int[] shape = {3, 5, 7};
+    float[] expected = new float[105];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i + 0.5f;
+    }
+    Array<Float> heap = Arrays.factory(ArrayType.FLOAT, shape, expected);
+
+    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      Array<Float> mapped = Arrays.factoryBB(ArrayType.FLOAT, shape, makeFloatBuffers(105, 11, order));
+      assertThat(mapped.length()).isEqualTo(105);
+      assertThat((float[]) Arrays.copyPrimitiveArray(mapped)).isEqualTo(expected);
+      assertThat(mapped.get(2, 4, 6)).isEqualTo(104.5f);
+      assertThat(mapped.getDouble(1, 2, 3)).isEqualTo(52.5);
+
+      Section section = new Section("1:2,0:4:2,3:6");
+      compare(Arrays.section(mapped, section), Arrays.section(heap, section));
+      compare(Arrays.flip(mapped, 2), Arrays.flip(heap, 2));
+      compare(Arrays.permute(mapped, new int[] {2, 1, 0}), Arrays.permute(heap, new int[] {2, 1, 0}));
+    }
+  }
+
+  private static void compare(Array<Float> mapped, Array<Float> heap) {
+    assertThat(mapped.getShape()).isEqualTo(heap.getShape());
+    assertThat((float[]) Arrays.copyPrimitiveArray(mapped)).isEqualTo(Arrays.copyPrimitiveArray(heap));
+    assertThat(mapped.doubleStream().toArray()).isEqualTo(heap.doubleStream().toArray());
+  }
+
+  @Test
+  public void testTypes() {
+    int n = 20;
+    ByteBuffer bb = ByteBuffer.allocateDirect(8 * n).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < n; i++) {
+      bb.putLong(8 * i, (i - 10) * 1000000007L);
+    }
+    checkType(ArrayType.BYTE, new int[] {8 * n}, bb);
+    checkType(ArrayType.UBYTE, new int[] {8 * n}, bb);
+    checkType(ArrayType.SHORT, new int[] {4 * n}, bb);
+    checkType(ArrayType.USHORT, new int[] {4 * n}, bb);
+    checkType(ArrayType.INT, new int[] {2 * n}, bb);
+    checkType(ArrayType.UINT, new int[] {2 * n}, bb);
+    checkType(ArrayType.LONG, new int[] {n}, bb);
+    checkType(ArrayType.DOUBLE, new int[] {n}, bb);
+  }
+
+  // compare with the same bytes on the heap
+  private static void checkType(ArrayType type, int[] shape, ByteBuffer bb) {
+    Array<?> mapped = Arrays.factoryBB(type, shape, Collections.singletonList(bb));
+    ByteBuffer copy = ByteBuffer.allocate(bb.capacity()).order(bb.order());
+    copy.put(bb.duplicate());
+    copy.flip();
+    Object parray;
+    switch (type.getSize()) {
+      case 1:
+        parray = copy.array();
+        break;
+      case 2:
+        parray = new short[shape[0]];
+        copy.asShortBuffer().get((short[]) parray);
+        break;
+      case 4:
+        parray = new int[shape[0]];
+        copy.asIntBuffer().get((int[]) parray);
+        break;
+      default:
+        if (type == ArrayType.DOUBLE) {
+          parray = new double[shape[0]];
+          copy.asDoubleBuffer().get((double[]) parray);
+        } else {
+          parray = new long[shape[0]];
+          copy.asLongBuffer().get((long[]) parray);
+        }
+    }
+    Array<?> heap = Arrays.factory(type, shape, parray);
+    assertThat(mapped.getArrayType()).isEqualTo(type);
+    assertThat(Arrays.copyPrimitiveArray(mapped)).isEqualTo(Arrays.copyPrimitiveArray(heap));
+    for (int i = 0; i < shape[0]; i++) {
+      assertThat(mapped.get(i)).isEqualTo(heap.get(i));
+      assertThat(mapped.getDouble(i)).isEqualTo(heap.getDouble(i));
+    }
+  }
+
+  // the same buffer many times makes a long Array without using much memory
+  private static Array<Byte> makeBigArray(int nsegments) {
+    int segmentLength = 1000 * 1000;
+    ByteBuffer bb = ByteBuffer.allocateDirect(segmentLength);
+    for (int i = 0; i < segmentLength; i++) {
+      bb.put(i, (byte) (i % 101));
+    }
+    int[] shape = {nsegments, 1000, 1000};
+    return Arrays.factoryBB(ArrayType.BYTE, shape, Collections.nCopies(nsegments, bb));
+  }
+
+  @Test
+  public void testMoreThan2G() throws InvalidRangeException {
+    int nsegments = 2200;
+    Array<Byte> big = makeBigArray(nsegments);
+    assertThat(big.length()).isEqualTo((long) nsegments * 1000 * 1000);
+    assertThat(big.length()).isGreaterThan((long) Integer.MAX_VALUE);
+
+    assertThat(big.get(2199, 999, 999)).isEqualTo((byte) (999999 % 101));
+    assertThat(big.get(2150, 3, 7)).isEqualTo((byte) (3007 % 101));
+    assertThat(big.getDouble(2150, 3, 7)).isEqualTo(3007 % 101);
+
+    // a section past Integer.MAX_VALUE
+    Array<Byte> section = Arrays.section(big, new Section("2150:2151,3,5:9"));
+    byte[] data = (byte[]) Arrays.copyPrimitiveArray(section);
+    assertThat(data).hasLength(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(data[i]).isEqualTo((byte) ((3005 + (i % 5)) % 101));
+    }
+  }
+
+  @Test
+  public void testIterateMoreThan2G() throws InvalidRangeException {
+    // a section, like IospArrayHelper.mapArrayData() returns, then flipped, still longer than Integer.MAX_VALUE
+    Array<Byte> big = makeBigArray(2150);
+    Array<Byte> flipped = Arrays.flip(Arrays.section(big, new Section("1:2149,:,:")), 0);
+    assertThat(flipped.length()).isEqualTo(2149L * 1000 * 1000);
+    assertThat(flipped.length()).isGreaterThan((long) Integer.MAX_VALUE);
+
+    long segmentSum = 0;
+    for (int i = 0; i < 1000 * 1000; i++) {
+      segmentSum += i % 101;
+    }
+    long count = 0;
+    long sum = 0;
+    for (byte b : flipped) {
+      count++;
+      sum += b;
+    }
+    assertThat(count).isEqualTo(flipped.length());
+    assertThat(sum).isEqualTo(2149 * segmentSum);
+  }
+
+  @Test
+  public void testBadBuffers() {
+    List<ByteBuffer> buffers = new ArrayList<>();
+    buffers.add(ByteBuffer.allocate(8));
+    buffers.add(ByteBuffer.allocate(16));
+    try {
+      Arrays.factoryBB(ArrayType.FLOAT, new int[] {6}, buffers);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected, the buffers must be the same length, except the last
+    }
+    try {
+      Arrays.factoryBB(ArrayType.FLOAT, new int[] {5}, makeFloatBuffers(6, 3, ByteOrder.BIG_ENDIAN));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected, shape does not match
+    }
+    try {
+      Arrays.factoryBB(ArrayType.STRING, new int[] {2}, buffers);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.unidata.util.test.category.Slow;
+
+/** Time the boxing free accessors of {@link Array} against iterating over the boxed values. */
+@Category(Slow.class)
+public class TimeArrayAccess {
+  private static final int N = 10 * 1000 * 1000;
+  private static final int NTIMES = 10;
+
+  private interface Task {
+    double run() throws Exception;
+  }
+
+  private static void time(String what, Task task) throws Exception {
+    double check = task.run(); // warm up
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int i = 0; i < NTIMES; i++) {
+      assertThat(task.run()).isEqualTo(check);
+    }
+    stopwatch.stop();
+    double rate = ((double) N * NTIMES) / stopwatch.elapsed(TimeUnit.MICROSECONDS);
+    System.out.printf("  %-40s took %s = %10.2f Mvalues/sec%n", what, stopwatch, rate);
+  }
+
+  private static Array<Float> makeArray() {
+    float[] data = new float[N];
+    for (int i = 0; i < N; i++) {
+      data[i] = (i % 1000) * 0.5f;
+    }
+    return Arrays.factory(ArrayType.FLOAT, new int[] {N / 1000, 1000}, data);
+  }
+
+  @Test
+  public void timeAccess() throws Exception {
+    Array<Float> array = makeArray();
+    Array<Float> flipped = Arrays.flip(array, 1);
+
+    for (Array<Float> a : new Array[] {array, flipped}) {
+      System.out.printf("%s%n", a == array ? "canonical order" : "flipped");
+      time("sum boxed iterator", () -> {
+        double sum = 0;
+        for (float val : a) {
+          sum += val;
+        }
+        return sum;
+      });
+      time("sum doubleStream", () -> a.doubleStream().reduce(0, Double::sum));
+      time("copy boxed iterator", () -> {
+        double[] dest = new double[N];
+        int count = 0;
+        for (float val : a) {
+          dest[count++] = val;
+        }
+        return dest[N - 1];
+      });
+      time("copyTo", () -> {
+        double[] dest = new double[N];
+        a.copyTo(dest, 0);
+        return dest[N - 1];
+      });
+      time("getMinMaxSkipMissingData", () -> Arrays.getMinMaxSkipMissingData(a, null).max());
+      time("convertFromArray", () -> ArraysConvert.convertFromArray(a).getDouble(N - 1));
+    }
+  }
+}
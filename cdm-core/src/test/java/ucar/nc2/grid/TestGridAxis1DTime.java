@@ -124,6 +124,13 @@ public class TestGridAxis1DTime {
       assertThat(axis1D.getCoordInterval(i)).isEqualTo(CoordInterval.create(10.0 * i - 5.0, 10.0 * i + 5.0));
     }
 
+    // the CalendarDates are made once
+    assertThat(axis1D.getCalendarDates()).hasSize(7);
+    assertThat(axis1D.getCalendarDates()).isSameInstanceAs(axis1D.getCalendarDates());
+    for (int i = 0; i < axis1D.getNcoords(); i++) {
+      assertThat(axis1D.getCalendarDates().get(i)).isEqualTo(axis1D.getCalendarDate(i));
+    }
+
     int count = 0;
     for (double val : axis1D.getCoordsAsArray()) {
       assertThat(val).isEqualTo(count * 10.0);
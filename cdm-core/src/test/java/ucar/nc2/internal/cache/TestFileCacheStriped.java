@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.util.CancelTask;
+
+/** Test {@link FileCacheStriped} keeps the semantics of FileCache, using files that dont touch the disk. */
+public class TestFileCacheStriped {
+
+  @Test
+  public void testReleaseAndReacquire() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    FakeFactory factory = new FakeFactory();
+
+    FakeFile file = acquire(cache, factory, "a");
+    assertThat(factory.opened.get()).isEqualTo(1);
+    assertThat(file.inUse.get()).isTrue();
+
+    // a second user gets a second copy, since the first is locked
+    FakeFile file2 = acquire(cache, factory, "a");
+    assertThat(file2).isNotSameInstanceAs(file);
+    assertThat(factory.opened.get()).isEqualTo(2);
+
+    file.close(); // released, not closed
+    assertThat(file.released.get()).isEqualTo(1);
+    assertThat(file.closed.get()).isFalse();
+
+    FakeFile again = acquire(cache, factory, "a");
+    assertThat(again).isSameInstanceAs(file);
+    assertThat(file.reacquired.get()).isEqualTo(1);
+    assertThat(factory.opened.get()).isEqualTo(2);
+    again.close();
+    file2.close();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(2);
+  }
+
+  @Test
+  public void testChangedFileIsReopened() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    FakeFactory factory = new FakeFactory();
+
+    FakeFile file = acquire(cache, factory, "a");
+    file.close();
+    file.lastModified = 42;
+
+    FakeFile reopened = acquire(cache, factory, "a");
+    assertThat(reopened).isNotSameInstanceAs(file);
+    assertThat(file.closed.get()).isTrue();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(1);
+    reopened.close();
+  }
+
+  @Test
+  public void testHardLimit() throws IOException, InterruptedException {
+    FileCacheStriped cache = new FileCacheStriped("test", 2, 100, 4, -1);
+    FakeFactory factory = new FakeFactory();
+
+    List<FakeFile> all = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      FakeFile file = acquire(cache, factory, "file" + i);
+      file.close();
+      all.add(file);
+      Thread.sleep(5); // so each has a different lastAccessed
+    }
+    FakeFile locked = acquire(cache, factory, "file4"); // goes over the hard limit
+    assertThat(cache.getNumberOfFiles()).isEqualTo(2);
+    assertThat(locked.closed.get()).isFalse();
+    // the least recently used are closed first
+    assertThat(all.get(0).closed.get()).isTrue();
+    assertThat(all.get(1).closed.get()).isTrue();
+    assertThat(all.get(2).closed.get()).isTrue();
+    assertThat(all.get(3).closed.get()).isFalse();
+    locked.close();
+  }
+
+  @Test
+  public void testEjectAndClear() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    FakeFactory factory = new FakeFactory();
+
+    FakeFile a = acquire(cache, factory, "a");
+    a.close();
+    FakeFile b = acquire(cache, factory, "b");
+    b.close();
+    FakeFile c = acquire(cache, factory, "c"); // stays locked
+
+    cache.eject("a");
+    assertThat(a.closed.get()).isTrue();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(2);
+
+    cache.clearCache(false);
+    assertThat(b.closed.get()).isTrue();
+    assertThat(c.closed.get()).isFalse();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(1);
+
+    cache.clearCache(true);
+    assertThat(c.closed.get()).isTrue();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(0);
+    assertThat(cache.showCache()).isEmpty();
+  }
+
+  @Test
+  public void testDisabled() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, -1);
+    FakeFactory factory = new FakeFactory();
+    FakeFile a = acquire(cache, factory, "a");
+    cache.disable();
+    assertThat(a.closed.get()).isTrue();
+
+    FakeFile b = acquire(cache, factory, "b");
+    b.close();
+    assertThat(b.closed.get()).isTrue();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(0);
+
+    cache.enable();
+    FakeFile c = acquire(cache, factory, "c");
+    c.close();
+    assertThat(c.closed.get()).isFalse();
+    assertThat(cache.getNumberOfFiles()).isEqualTo(1);
+  }
+
+  @Test
+  public void testPeriodicCleanupStops() {
+    FileCacheStriped cache = new FileCacheStriped("test", 5, 10, -1, 60);
+    assertThat(cache.isScouring()).isTrue();
+    cache.disable();
+    assertThat(cache.isScouring()).isFalse();
+    cache.enable();
+    assertThat(cache.isScouring()).isTrue();
+
+    FileCacheStriped.shutdown();
+    assertThat(cache.isScouring()).isFalse();
+    assertThat(new FileCacheStriped("test", 5, 10, -1, -1).isScouring()).isFalse();
+    cache.enable();
+    assertThat(cache.isScouring()).isTrue();
+    cache.disable();
+  }
+
+  static FakeFile acquire(FileCacheIF cache, FileFactory factory, String location) throws IOException {
+    FakeFile file = (FakeFile) cache.acquire(factory, DatasetUrl.create(null, location));
+    assertThat(file.inUse.compareAndSet(false, true)).isTrue();
+    return file;
+  }
+
+  static class FakeFactory implements FileFactory {
+    final AtomicInteger opened = new AtomicInteger();
+
+    @Override
+    public FileCacheable open(DatasetUrl location, int buffer_size, CancelTask cancelTask, Object iospMessage) {
+      opened.incrementAndGet();
+      return new FakeFile(location.getTrueurl());
+    }
+  }
+
+  /** Follows the FileCacheable contract, and checks that only one user has it at a time. */
+  static class FakeFile implements FileCacheable {
+    final String location;
+    final AtomicBoolean inUse = new AtomicBoolean();
+    final AtomicBoolean closed = new AtomicBoolean();
+    final AtomicInteger released = new AtomicInteger();
+    final AtomicInteger reacquired = new AtomicInteger();
+    volatile long lastModified = 1;
+    private FileCacheIF cache;
+
+    FakeFile(String location) {
+      this.location = location;
+    }
+
+    @Override
+    public String getLocation() {
+      return location;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      inUse.set(false);
+      if (cache != null) {
+        if (cache.release(this))
+          return;
+        cache = null;
+      }
+      closed.set(true);
+    }
+
+    @Override
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public synchronized void setFileCache(FileCacheIF fileCache) {
+      this.cache = fileCache;
+    }
+
+    @Override
+    public void release() {
+      released.incrementAndGet();
+    }
+
+    @Override
+    public void reacquire() {
+      reacquired.incrementAndGet();
+    }
+  }
+}
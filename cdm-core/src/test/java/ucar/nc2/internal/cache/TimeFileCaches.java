@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.nc2.internal.cache.TestFileCacheStriped.FakeFactory;
+import ucar.nc2.internal.cache.TestFileCacheStriped.FakeFile;
+import ucar.unidata.util.test.category.Slow;
+
+/**
+ * Stress FileCache, FileCacheGuava and FileCacheStriped with many threads acquiring and releasing files that dont
+ * touch the disk, so the time is all in the cache. Checks that no file is given to two users at once, or closed while
+ * in use (FileCacheGuava does neither, so isnt checked), and prints the throughput of each.
+ */
+@Category(Slow.class)
+public class TimeFileCaches {
+  private static final int NTHREADS = 200;
+  private static final int NFILES = 500; // more than the soft limit, so there are cleanups
+  private static final int NOPS = 2000; // per thread
+
+  @Test
+  public void timeFileCaches() throws Exception {
+    try {
+      for (int trial = 0; trial < 2; trial++) { // the first is a warm up
+        time("FileCache", new FileCache("FileCache", 100, 200, 400, -1), true);
+        time("FileCacheGuava", new FileCacheGuava("FileCacheGuava", 200), false);
+        time("FileCacheStriped", new FileCacheStriped("FileCacheStriped", 100, 200, 400, -1), true);
+      }
+    } finally {
+      FileCache.shutdown();
+    }
+  }
+
+  private void time(String name, FileCacheIF cache, boolean checkLocks) throws Exception {
+    FakeFactory factory = new FakeFactory();
+    AtomicInteger failures = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(NTHREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int t = 0; t < NTHREADS; t++) {
+        Random random = new Random(t);
+        futures.add(pool.submit(() -> {
+          for (int i = 0; i < NOPS; i++) {
+            // a few files are much more popular than the rest
+            int fileno = random.nextBoolean() ? random.nextInt(10) : random.nextInt(NFILES);
+            useFile(cache, factory, "file" + fileno, checkLocks, failures);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      stopwatch.stop();
+
+      long nops = (long) NTHREADS * NOPS;
+      System.out.printf("%-18s %d threads %d acquire/release in %d msecs = %d per msec, opened %d files%n", name,
+          NTHREADS, nops, stopwatch.elapsed(TimeUnit.MILLISECONDS),
+          nops / Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS)), factory.opened.get());
+      assertThat(failures.get()).isEqualTo(0);
+    } finally {
+      pool.shutdownNow();
+      cache.clearCache(true);
+    }
+  }
+
+  private static void useFile(FileCacheIF cache, FakeFactory factory, String location, boolean checkLocks,
+      AtomicInteger failures) throws IOException {
+    FakeFile file = (FakeFile) cache.acquire(factory, ucar.nc2.dataset.DatasetUrl.create(null, location));
+    if (checkLocks && (!file.inUse.compareAndSet(false, true) || file.closed.get())) {
+      failures.incrementAndGet();
+    }
+    file.close();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.dataset;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.function.DoublePredicate;
+import org.junit.Test;
+
+/** Test {@link EnhanceKernels} */
+public class TestEnhanceKernels {
+  private static final double scale = 0.5;
+  private static final double offset = 100.0;
+
+  @Test
+  public void testShortToFloat() {
+    short[] src = {0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE};
+    float[] signed = new float[src.length];
+    float[] unsigned = new float[src.length];
+    EnhanceKernels.convert(src, false, true, scale, offset, null, signed);
+    EnhanceKernels.convert(src, true, true, scale, offset, null, unsigned);
+
+    assertThat(signed).isEqualTo(new float[] {100.0f, 100.5f, 99.5f, (float) (scale * 32767 + offset),
+        (float) (scale * -32768 + offset)});
+    assertThat(unsigned).isEqualTo(new float[] {100.0f, 100.5f, (float) (scale * 65535 + offset),
+        (float) (scale * 32767 + offset), (float) (scale * 32768 + offset)});
+  }
+
+  @Test
+  public void testByteAndIntToDouble() {
+    byte[] bsrc = {0, -1, -106};
+    double[] bdest = new double[bsrc.length];
+    EnhanceKernels.convert(bsrc, true, false, scale, offset, null, bdest);
+    assertThat(bdest).isEqualTo(new double[] {0, 255, 150});
+
+    int[] isrc = {-1, 7};
+    double[] idest = new double[isrc.length];
+    EnhanceKernels.convert(isrc, true, true, scale, offset, null, idest);
+    assertThat(idest).isEqualTo(new double[] {scale * 4294967295.0 + offset, scale * 7 + offset});
+  }
+
+  @Test
+  public void testMissing() {
+    // the missing test is done on the unpacked value
+    DoublePredicate isMissing = val -> val == 100.0 || val > 1000;
+    float[] src = {0, 1, 2000};
+    float[] dest = new float[src.length];
+    assertThat(EnhanceKernels.convert((Object) src, false, true, scale, offset, isMissing, dest)).isTrue();
+    assertThat(Float.isNaN(dest[0])).isTrue();
+    assertThat(dest[1]).isEqualTo(100.5f);
+    assertThat(Float.isNaN(dest[2])).isTrue();
+
+    // without scale/offset, negative zero is kept
+    double[] dsrc = {-0.0, Double.NaN};
+    double[] ddest = new double[dsrc.length];
+    assertThat(EnhanceKernels.convert((Object) dsrc, false, false, scale, offset, null, ddest)).isTrue();
+    assertThat(Double.doubleToRawLongBits(ddest[0])).isEqualTo(Double.doubleToRawLongBits(-0.0));
+    assertThat(Double.isNaN(ddest[1])).isTrue();
+  }
+
+  @Test
+  public void testNotDone() {
+    double[] dest = {42};
+    assertThat(EnhanceKernels.convert(new long[] {1}, false, true, scale, offset, null, dest)).isFalse();
+    assertThat(EnhanceKernels.convert(new short[] {1}, false, true, scale, offset, null, new int[1])).isFalse();
+    assertThat(dest[0]).isEqualTo(42.0);
+  }
+}
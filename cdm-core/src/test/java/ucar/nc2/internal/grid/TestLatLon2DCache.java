@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.grid;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.Projection;
+import ucar.unidata.geoloc.projection.LambertConformal;
+
+/** Test {@link LatLon2DCache} */
+public class TestLatLon2DCache {
+
+  @After
+  public void restore() {
+    LatLon2DCache.setMaxBytes(64 * 1024 * 1024);
+  }
+
+  @Test
+  public void testSameAsPerPoint() {
+    Projection proj = new LambertConformal(38.5, -97.5, 38.5, 38.5);
+    // small enough to be done by the calling thread, and big enough to be done in blocks of rows
+    for (int[] shape : new int[][] {{7, 11}, {301, 203}}) {
+      double[] xcoords = coords(shape[1], -2000, 13);
+      double[] ycoords = coords(shape[0], -1500, 13);
+
+      LatLon2DCache.LatLonField field = LatLon2DCache.compute(proj, xcoords, ycoords);
+      assertThat(field.getNy()).isEqualTo(shape[0]);
+      assertThat(field.getNx()).isEqualTo(shape[1]);
+      for (int j = 0; j < ycoords.length; j++) {
+        for (int i = 0; i < xcoords.length; i++) {
+          LatLonPoint want = proj.projToLatLon(xcoords[i], ycoords[j]);
+          assertThat(field.getLat()[j * xcoords.length + i]).isEqualTo(want.getLatitude());
+          assertThat(field.getLon()[j * xcoords.length + i]).isEqualTo(want.getLongitude());
+          assertThat(field.getLatLon(j, i)).isEqualTo(want);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCache() {
+    LatLon2DCache.setMaxBytes(1024 * 1024);
+    double[] xcoords = coords(50, 0, 10);
+    double[] ycoords = coords(40, 0, 10);
+
+    LatLon2DCache.LatLonField field =
+        LatLon2DCache.getLatLon(new LambertConformal(38.5, -97.5, 38.5, 38.5), xcoords, ycoords);
+    assertThat(LatLon2DCache.getMissCount()).isEqualTo(1);
+
+    // equal projection and coordinates, but different objects
+    LatLon2DCache.LatLonField again =
+        LatLon2DCache.getLatLon(new LambertConformal(38.5, -97.5, 38.5, 38.5), xcoords.clone(), ycoords.clone());
+    assertThat(again).isSameInstanceAs(field);
+    assertThat(LatLon2DCache.getHitCount()).isEqualTo(1);
+
+    // different projection parameters
+    LatLon2DCache.LatLonField other =
+        LatLon2DCache.getLatLon(new LambertConformal(40.0, -97.5, 38.5, 38.5), xcoords, ycoords);
+    assertThat(other).isNotSameInstanceAs(field);
+
+    // different coordinates
+    other = LatLon2DCache.getLatLon(new LambertConformal(38.5, -97.5, 38.5, 38.5), xcoords, coords(40, 10, 10));
+    assertThat(other).isNotSameInstanceAs(field);
+    assertThat(LatLon2DCache.getMissCount()).isEqualTo(3);
+    assertThat(LatLon2DCache.size()).isEqualTo(3);
+
+    // too big for the cache, so it is evicted
+    LatLon2DCache.getLatLon(new LambertConformal(38.5, -97.5, 38.5, 38.5), coords(400, 0, 1), coords(400, 0, 1));
+    assertThat(LatLon2DCache.size()).isLessThan(4L);
+
+    LatLon2DCache.clear();
+    assertThat(LatLon2DCache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDisabled() {
+    LatLon2DCache.setMaxBytes(0);
+    double[] xcoords = coords(5, 0, 10);
+    double[] ycoords = coords(4, 0, 10);
+    Projection proj = new LambertConformal(38.5, -97.5, 38.5, 38.5);
+    LatLon2DCache.LatLonField field = LatLon2DCache.getLatLon(proj, xcoords, ycoords);
+    assertThat(LatLon2DCache.getLatLon(proj, xcoords, ycoords)).isNotSameInstanceAs(field);
+    assertThat(LatLon2DCache.size()).isEqualTo(0);
+  }
+
+  private static double[] coords(int n, double start, double incr) {
+    double[] result = new double[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = start + i * incr;
+    }
+    return result;
+  }
+}
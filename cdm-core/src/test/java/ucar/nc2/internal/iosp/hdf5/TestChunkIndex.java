@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.primitives.Ints;
+import java.io.IOException;
+import org.junit.Test;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/**
+ * Test {@link ChunkIndex}: the chunk numbering, which must match the HDF5 library, and reading each kind of index.
+ * The chunk_index_*.h5 files have superblock version 3 and the default index parameters of the HDF5 1.10 library.
+ * Each dataset has fill value -1 and some chunks that were never written; the others hold row * 100 + column.
+ */
+public class TestChunkIndex {
+  private static final String testDir = TestDir.cdmLocalTestDataDir + "hdf5/";
+
+  @Test
+  public void testFixedDimensions() {
+    // 3 x 4 chunks
+    long[] down = ChunkIndex.calcDownChunks(new int[] {10, 5}, new int[] {30, 17}, -1);
+    assertThat(down).isEqualTo(new long[] {4, 1});
+    assertThat(ChunkIndex.calcLinearIndex(new int[] {0, 0}, down, -1)).isEqualTo(0);
+    assertThat(ChunkIndex.calcLinearIndex(new int[] {0, 3}, down, -1)).isEqualTo(3);
+    assertThat(ChunkIndex.calcLinearIndex(new int[] {2, 1}, down, -1)).isEqualTo(9);
+  }
+
+  @Test
+  public void testUnlimitedFirst() {
+    long[] down = ChunkIndex.calcDownChunks(new int[] {1, 5}, new int[] {-1, 10}, 0);
+    assertThat(down).isEqualTo(new long[] {2, 1});
+    assertThat(ChunkIndex.calcLinearIndex(new int[] {3, 1}, down, 0)).isEqualTo(7);
+  }
+
+  @Test
+  public void testUnlimitedMoved() {
+    // the unlimited dimension is moved to the front, the others keep their order
+    long[] down = ChunkIndex.calcDownChunks(new int[] {2, 3, 4}, new int[] {4, -1, 8}, 1);
+    assertThat(down).isEqualTo(new long[] {4, 2, 1});
+    assertThat(ChunkIndex.calcLinearIndex(new int[] {1, 5, 1}, down, 1)).isEqualTo(5 * 4 + 1 * 2 + 1);
+  }
+
+  private static int[] readInts(NetcdfFile ncfile, String name) throws IOException {
+    Variable v = ncfile.findVariable(name);
+    assertThat(v).isNotNull();
+    return (int[]) v.read().get1DJavaArray(DataType.INT);
+  }
+
+  private static void checkGrid(int[] data, int nrows, int ncols, int[] missingRows, int[] missingCols) {
+    assertThat(data).hasLength(nrows * ncols);
+    for (int row = 0; row < nrows; row++) {
+      for (int col = 0; col < ncols; col++) {
+        boolean missing =
+            row >= missingRows[0] && row < missingRows[1] && col >= missingCols[0] && col < missingCols[1];
+        assertThat(data[row * ncols + col]).isEqualTo(missing ? -1 : row * 100 + col);
+      }
+    }
+  }
+
+  @Test
+  public void testFixedArray() throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(testDir + "chunk_index_farray.h5")) {
+      // 40 x 30 chunks of one value: 2 pages of 1024 chunks, the second never written
+      int[] data = readInts(ncfile, "paged");
+      assertThat(data).hasLength(40 * 30);
+      for (int i = 0; i < data.length; i++) {
+        boolean written = i < 34 * 30 && i % 7 != 3;
+        assertThat(data[i]).isEqualTo(written ? (i / 30) * 100 + i % 30 : -1);
+      }
+
+      // 7 x 10, deflated 3 x 4 chunks
+      checkGrid(readInts(ncfile, "deflated"), 7, 10, new int[] {3, 6}, new int[] {8, 10});
+    }
+  }
+
+  @Test
+  public void testExtensibleArray() throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(testDir + "chunk_index_earray.h5")) {
+      // chunks of one value, in the index block, in data blocks of the index block, and in paged data blocks of
+      // secondary block 13, which has 64 data blocks of 2 pages
+      int[] data = readInts(ncfile, "unlimited");
+      assertThat(data).hasLength(150000);
+      int[] written = {0, 2, 10, 300, 131060 + 3, 131060 + 5 * 2048 + 1024 + 7};
+      int count = 0;
+      for (int i = 0; i < data.length; i++) {
+        if (data[i] != -1) {
+          assertThat(data[i]).isEqualTo(i);
+          assertThat(Ints.asList(written)).contains(i);
+          count++;
+        }
+      }
+      assertThat(count).isEqualTo(written.length);
+
+      // 3 x 20 with the second dimension unlimited, deflated 2 x 4 chunks
+      checkGrid(readInts(ncfile, "deflated"), 3, 20, new int[] {0, 2}, new int[] {12, 16});
+    }
+  }
+
+  @Test
+  public void testBTree2() throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(testDir + "chunk_index_btree2.h5")) {
+      // 6 x 8 with two unlimited dimensions, 2 x 3 chunks
+      checkGrid(readInts(ncfile, "plain"), 6, 8, new int[] {2, 4}, new int[] {3, 6});
+      checkGrid(readInts(ncfile, "deflated"), 6, 8, new int[] {4, 6}, new int[] {0, 3});
+    }
+  }
+}
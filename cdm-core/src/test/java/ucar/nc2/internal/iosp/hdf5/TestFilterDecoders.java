@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.Deflater;
+import org.junit.Test;
+import ucar.unidata.util.test.TestDir;
+
+/**
+ * Test {@link FilterDecoders}. The encoded test vectors hold 300 little endian ints, i % 50, and were made with
+ * the reference zstd, lz4, c-blosc and bzip2 libraries. The files in hdf5/zstd are 256 KB chunks compressed by
+ * ZSTD_compress from libzstd 1.5.4 at levels 3 and 19, the call the HDF5 zstd filter makes for each chunk.
+ */
+public class TestFilterDecoders {
+  private static final String ZSTD_HEX =
+      "28b52ffd60b003ad0200624c120c10b8de0cfcff776655155b0a4307fd73cf3be77c73cd33c7fc72cb2ba77c72c92387"
+          + "fc71c71b677c71c51347fc70c30b277c70c10307fcbbf7eedcb76bcf8efdbaf5ead4a74b8f3e0200e197a602e300a4";
+  private static final String LZ4_HEX =
+      "00000000000004b000000200000000d4f0b6000000000100000002000000030000000400000005000000060000000700"
+          + "000008000000090000000a0000000b0000000c0000000d0000000e0000000f0000001000000011000000120000001300"
+          + "00001400000015000000160000001700000018000000190000001a0000001b0000001c0000001d0000001e0000001f00"
+          + "0000200000002100000022000000230000002400000025000000260000002700000028000000290000002a0000002b00"
+          + "00002c0000002d0000002e0000002f0000003000000031c5000fc800ff2050001b000000000000d3f1481c0000001d00"
+          + "00001e0000001f0000002000000021000000220000002300000024000000250000002600000027000000280000002900"
+          + "00002a0000002b0000002c0000002d0000002e0000002f000000300000003100000200ff5d0100000002000000030000"
+          + "000400000005000000060000000700000008000000090000000a0000000b0000000c0000000d0000000e0000000f0000"
+          + "00100000001100000012000000130000001400000015000000160000001700000018000000190000001a0000001b0000"
+          + "00c800ff21500005000000000000b0060000000700000008000000090000000a0000000b0000000c0000000d0000000e"
+          + "0000000f000000100000001100000012000000130000001400000015000000160000001700000018000000190000001a"
+          + "0000001b0000001c0000001d0000001e0000001f00000020000000210000002200000023000000240000002500000026"
+          + "0000002700000028000000290000002a0000002b0000002c0000002d0000002e0000002f0000003000000031000000";
+  private static final String BLOSC_HEX =
+      "02013104b0040000b00400005c0000001400000044000000ff23000102030405060708090a0b0c0d0e0f101112131415"
+          + "161718191a1b1c1d1e1f202122232425262728292a2b2c2d2e2f30313200e80f0100ffffff6e500000000000";
+  private static final String BZIP2_HEX =
+      "425a6839314159265359aa1d7fbe000001f8007fffffffffffe0002000903190c868341a3401a001a1814aa4990d0019"
+          + "0d000007a8d35e06130c8b6164995665b2b696daceb716eade5beb8170ae25c6b9172ad0b4ae65ceba16a5d2ba975aec"
+          + "5dabb977af05e2bc979af45eabd97baf85f2be97dafc58afd5fcb5ac4a23198288ff177245385090aa1d7fbe";
+
+  private static byte[] expected() {
+    ByteBuffer bb = ByteBuffer.allocate(1200).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < 300; i++) {
+      bb.putInt(i % 50);
+    }
+    return bb.array();
+  }
+
+  private static byte[] hex(String s) {
+    byte[] result = new byte[s.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+    }
+    return result;
+  }
+
+  private static byte[] decode(int id, byte[] data, int... clientValues) throws IOException {
+    FilterDecoder decoder = FilterDecoders.find(id);
+    assertThat(decoder).isNotNull();
+    assertThat(decoder.getId()).isEqualTo(id);
+    return decoder.decode(data, clientValues, 1200);
+  }
+
+  @Test
+  public void testZstd() throws IOException {
+    assertThat(decode(FilterDecoders.ZSTD, hex(ZSTD_HEX))).isEqualTo(expected());
+  }
+
+  /** A smooth 256 x 256 int field with a little noise, as written to the hdf5/zstd files. */
+  private static byte[] field() {
+    ByteBuffer bb = ByteBuffer.allocate(4 * 65536).order(ByteOrder.LITTLE_ENDIAN);
+    int seed = 1;
+    for (int n = 0; n < 65536; n++) {
+      int x = n % 256;
+      int y = n / 256;
+      seed = (seed * 1103515245 + 12345) & 0x7fffffff;
+      bb.putInt(28000 + (x * y) / 37 + ((seed >> 16) & 15));
+    }
+    return bb.array();
+  }
+
+  @Test
+  public void testZstdReference() throws IOException {
+    FilterDecoder decoder = FilterDecoders.find(FilterDecoders.ZSTD);
+    byte[] expected = field();
+    for (int level : new int[] {3, 19}) {
+      byte[] compressed =
+          Files.readAllBytes(Paths.get(TestDir.cdmLocalTestDataDir + "hdf5/zstd/zstd_level" + level + ".zst"));
+      assertThat(decoder.decode(compressed, new int[] {level}, expected.length)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testLz4() throws IOException {
+    assertThat(decode(FilterDecoders.LZ4, hex(LZ4_HEX))).isEqualTo(expected());
+  }
+
+  @Test
+  public void testBlosc() throws IOException {
+    assertThat(decode(FilterDecoders.BLOSC, hex(BLOSC_HEX), 2, 2, 4, 1200, 5, 1, 1)).isEqualTo(expected());
+  }
+
+  @Test
+  public void testBzip2() throws IOException {
+    assertThat(decode(FilterDecoders.BZIP2, hex(BZIP2_HEX), 9)).isEqualTo(expected());
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buffer = new byte[2 * data.length + 64];
+    int n = deflater.deflate(buffer);
+    deflater.end();
+    byte[] result = new byte[n];
+    System.arraycopy(buffer, 0, result, 0, n);
+    return result;
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    byte[] compressed = deflate(expected());
+    FilterDecoder decoder = FilterDecoders.find(FilterDecoders.DEFLATE);
+    assertThat(decoder.decode(compressed.clone(), new int[] {5}, 1200)).isEqualTo(expected());
+    // too small and unknown expected sizes
+    assertThat(decoder.decode(compressed.clone(), new int[] {5}, 100)).isEqualTo(expected());
+    assertThat(decoder.decode(compressed.clone(), new int[] {5}, -1)).isEqualTo(expected());
+    // the Inflaters are reused
+    for (int i = 0; i < 100; i++) {
+      assertThat(decoder.decode(compressed.clone(), new int[] {5}, 1200)).isEqualTo(expected());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testDeflateTruncated() throws IOException {
+    byte[] compressed = deflate(expected());
+    byte[] truncated = new byte[compressed.length / 2];
+    System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+    FilterDecoders.find(FilterDecoders.DEFLATE).decode(truncated, new int[] {5}, 1200);
+  }
+
+  @Test
+  public void testShuffleLeftover() throws IOException {
+    // bytes past the last whole element are not shuffled
+    byte[] shuffled = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    assertThat(decode(FilterDecoders.SHUFFLE, shuffled, 4)).isEqualTo(new byte[] {1, 3, 5, 7, 2, 4, 6, 8, 9, 10});
+  }
+
+  @Test
+  public void testShuffle() throws IOException {
+    byte[] shuffled = {1, 2, 3, 4, 5, 6, 7, 8};
+    assertThat(decode(FilterDecoders.SHUFFLE, shuffled, 4)).isEqualTo(new byte[] {1, 3, 5, 7, 2, 4, 6, 8});
+  }
+
+  @Test
+  public void testFletcher32() throws IOException {
+    byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+    assertThat(decode(FilterDecoders.FLETCHER32, data)).isEqualTo(new byte[] {1, 2, 3, 4});
+  }
+
+  @Test
+  public void testRegister() {
+    assertThat(FilterDecoders.find(32767)).isNull();
+    FilterDecoder reverse = new FilterDecoder() {
+      public int getId() {
+        return 32767;
+      }
+
+      public String getName() {
+        return "reverse";
+      }
+
+      public byte[] decode(byte[] data, int[] clientValues, int expectedSize) {
+        byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+          result[i] = data[data.length - 1 - i];
+        }
+        return result;
+      }
+    };
+    FilterDecoders.register(reverse);
+    assertThat(FilterDecoders.find(32767)).isSameInstanceAs(reverse);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link H5chunkCache}. */
+public class TestH5chunkCache {
+  private long saveMaxBytes;
+
+  @Before
+  public void setup() {
+    saveMaxBytes = H5chunkCache.getMaxBytes();
+    H5chunkCache.setMaxBytes(1000);
+  }
+
+  @After
+  public void restore() {
+    H5chunkCache.setMaxBytes(saveMaxBytes);
+  }
+
+  private static H5chunkCache.Key key(String location, int... offset) {
+    return new H5chunkCache.Key(location, 1000, 1, "var", offset);
+  }
+
+  @Test
+  public void testHitAndMiss() {
+    byte[] data = new byte[10];
+    H5chunkCache.put(key("file1", 0, 0), data);
+    assertThat(H5chunkCache.get(key("file1", 0, 0))).isSameInstanceAs(data);
+    assertThat(H5chunkCache.get(key("file1", 0, 10))).isNull();
+    assertThat(H5chunkCache.get(key("file2", 0, 0))).isNull();
+    assertThat(H5chunkCache.getHitCount()).isEqualTo(1);
+    assertThat(H5chunkCache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testChangedFile() {
+    H5chunkCache.put(key("file1", 0), new byte[10]);
+    assertThat(H5chunkCache.get(new H5chunkCache.Key("file1", 1000, 2, "var", new int[] {0}))).isNull();
+    assertThat(H5chunkCache.get(new H5chunkCache.Key("file1", 1001, 1, "var", new int[] {0}))).isNull();
+    assertThat(H5chunkCache.get(key("file1", 0))).isNotNull();
+  }
+
+  // the chunks read by one open of a file are used by the next one
+  @Test
+  public void testSharedBetweenOpens() throws IOException {
+    H5chunkCache.setMaxBytes(10 * 1000 * 1000);
+    readAll();
+    long size = H5chunkCache.size();
+    assertThat(size).isGreaterThan(0);
+    long hits = H5chunkCache.getHitCount();
+    readAll();
+    assertThat(H5chunkCache.size()).isEqualTo(size);
+    assertThat(H5chunkCache.getHitCount()).isAtLeast(hits + size);
+  }
+
+  private static void readAll() throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "testCFGridWriter.nc4")) {
+      for (Variable v : ncfile.getVariables()) {
+        v.read();
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidate() {
+    H5chunkCache.put(key("file1", 0), new byte[10]);
+    H5chunkCache.put(key("file1", 10), new byte[10]);
+    H5chunkCache.put(key("file2", 0), new byte[10]);
+    H5chunkCache.invalidate("file1");
+    assertThat(H5chunkCache.size()).isEqualTo(1);
+    assertThat(H5chunkCache.get(key("file2", 0))).isNotNull();
+  }
+
+  @Test
+  public void testEviction() {
+    for (int i = 0; i < 100; i++) {
+      H5chunkCache.put(key("file1", i), new byte[100]);
+    }
+    assertThat(H5chunkCache.size()).isAtMost(10);
+    assertThat(H5chunkCache.getEvictionCount()).isAtLeast(90);
+  }
+
+  @Test
+  public void testDisable() {
+    H5chunkCache.setMaxBytes(0);
+    assertThat(H5chunkCache.isEnabled()).isFalse();
+    H5chunkCache.put(key("file1", 0), new byte[10]);
+    assertThat(H5chunkCache.get(key("file1", 0))).isNull();
+  }
+}
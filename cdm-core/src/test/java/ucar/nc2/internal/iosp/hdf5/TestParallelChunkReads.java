@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.MAMath;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CancelTask;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link H5iosp.ParallelChunkReads}: decoding chunks in parallel must give the same data. */
+public class TestParallelChunkReads {
+  private static final String testFile = TestDir.cdmLocalTestDataDir + "testCFGridWriter.nc4";
+
+  @Test
+  public void testSameData() throws Exception {
+    H5chunkCache.clear();
+    try (NetcdfFile ncfile = NetcdfFiles.open(testFile);
+        NetcdfFile ncfileParallel = NetcdfFiles.open(testFile, -1, null, new H5iosp.ParallelChunkReads(4))) {
+      for (Variable v : ncfile.getVariables()) {
+        Array data = v.read();
+        H5chunkCache.clear();
+        Array dataParallel = ncfileParallel.findVariable(v.getFullName()).read();
+        assertThat(MAMath.equals(data, dataParallel)).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void testCancelOneRead() throws Exception {
+    int filtered = 0;
+    try (NetcdfFile ncfile = NetcdfFiles.open(testFile, -1, null, new H5iosp.ParallelChunkReads(4))) {
+      for (Variable v : ncfile.getVariables()) {
+        if (((H5header.Vinfo) v.getSPobject()).mfp == null) {
+          continue;
+        }
+        filtered++;
+        v.setCaching(false);
+        CancelTask cancelled = CancelTask.create();
+        cancelled.cancel();
+        try {
+          v.readArray(null, cancelled);
+          fail("read of " + v.getFullName() + " should have been cancelled");
+        } catch (IOException e) {
+          assertThat(e.getMessage()).contains("cancelled");
+        }
+        // the other reads of the file are not cancelled
+        assertThat(v.readArray(null, CancelTask.create())).isEqualTo(v.readArray());
+      }
+    }
+    assertThat(filtered).isGreaterThan(0);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.unidata.util.test.category.Slow;
+
+/**
+ * Time undoing the deflate, shuffle and fletcher32 filters of a chunk with {@link FilterDecoders}, against the
+ * stream based decoding that was used before.
+ */
+@Category(Slow.class)
+public class TimeFilterDecoders {
+  private static final int NVALUES = 256 * 1024; // a 1 MB chunk of floats
+  private static final int NTRIALS = 200;
+
+  @Test
+  public void timeDeflateShuffle() throws IOException {
+    byte[] org = makeChunk();
+    byte[] filtered = fletcher(deflate(shuffle(org, 4)));
+
+    // warm up, and check they agree
+    for (int i = 0; i < 20; i++) {
+      assertThat(decodeStream(filtered)).isEqualTo(org);
+      assertThat(decodeFilters(filtered)).isEqualTo(org);
+    }
+
+    Stopwatch stream = Stopwatch.createUnstarted();
+    Stopwatch filters = Stopwatch.createUnstarted();
+    for (int i = 0; i < NTRIALS; i++) {
+      stream.start();
+      decodeStream(filtered);
+      stream.stop();
+      filters.start();
+      decodeFilters(filtered);
+      filters.stop();
+    }
+    long total = (long) NTRIALS * org.length;
+    System.out.printf("stream  : %s = %10.4f MB/sec%n", stream, rate(total, stream));
+    System.out.printf("filters : %s = %10.4f MB/sec%n", filters, rate(total, filters));
+  }
+
+  private static double rate(long nbytes, Stopwatch stopwatch) {
+    return ((double) nbytes) / stopwatch.elapsed(TimeUnit.MICROSECONDS);
+  }
+
+  private static byte[] decodeFilters(byte[] filtered) throws IOException {
+    // H5tiledLayoutBB leaves off the checksum when reading, and applies the rest of the filters in reverse
+    byte[] data = new byte[filtered.length - 4];
+    System.arraycopy(filtered, 0, data, 0, data.length);
+    data = FilterDecoders.find(FilterDecoders.DEFLATE).decode(data, new int[] {5}, 4 * NVALUES);
+    return FilterDecoders.find(FilterDecoders.SHUFFLE).decode(data, new int[] {4}, 4 * NVALUES);
+  }
+
+  // the way it used to be done
+  private static byte[] decodeStream(byte[] filtered) throws IOException {
+    byte[] data = new byte[filtered.length - 4];
+    System.arraycopy(filtered, 0, data, 0, data.length);
+
+    Inflater inflater = new Inflater(false);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8 * data.length);
+    try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data), inflater, 512)) {
+      byte[] buffer = new byte[512];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+    } finally {
+      inflater.end();
+    }
+    data = out.toByteArray();
+
+    int n = 4;
+    int m = data.length / n;
+    byte[] result = new byte[data.length];
+    for (int j = 0; j < n; j++) {
+      for (int i = 0; i < m; i++) {
+        result[i * n + j] = data[j * m + i];
+      }
+    }
+    return result;
+  }
+
+  private static byte[] makeChunk() {
+    ByteBuffer bb = ByteBuffer.allocate(4 * NVALUES).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < NVALUES; i++) {
+      bb.putFloat((float) (280.0 + 20.0 * Math.sin(i / 1000.0)));
+    }
+    return bb.array();
+  }
+
+  private static byte[] shuffle(byte[] data, int n) {
+    int m = data.length / n;
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j < n; j++) {
+        result[j * m + i] = data[i * n + j];
+      }
+    }
+    return result;
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(5);
+    deflater.setInput(data);
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buffer);
+      out.write(buffer, 0, n);
+    }
+    deflater.end();
+    return out.toByteArray();
+  }
+
+  // the checksum is not checked, so any 4 bytes will do
+  private static byte[] fletcher(byte[] data) {
+    byte[] result = new byte[data.length + 4];
+    System.arraycopy(data, 0, result, 0, data.length);
+    return result;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import ucar.nc2.internal.iosp.hdf5.H5iosp;
+import ucar.nc2.internal.iosp.netcdf3.N3iosp;
+
+/** Test {@link FileSignature} */
+public class TestFileSignature {
+
+  private static byte[] header(int size, int pos, String magic) {
+    byte[] result = new byte[size];
+    byte[] b = magic.getBytes(StandardCharsets.US_ASCII);
+    System.arraycopy(b, 0, result, pos, b.length);
+    return result;
+  }
+
+  @Test
+  public void testAt() {
+    FileSignature sig = FileSignature.at(4, "ABCD");
+    assertThat(sig.matches(header(100, 4, "ABCD"), 100)).isTrue();
+    assertThat(sig.matches(header(100, 5, "ABCD"), 100)).isFalse();
+    assertThat(sig.matches(header(100, 0, "ABCD"), 100)).isFalse();
+    // the file is shorter than the header
+    assertThat(sig.matches(header(100, 4, "ABCD"), 7)).isFalse();
+    assertThat(sig.matches(header(100, 4, "ABCD"), 8)).isTrue();
+  }
+
+  @Test
+  public void testWithin() {
+    FileSignature sig = FileSignature.within(50, "BUFR".getBytes(StandardCharsets.US_ASCII));
+    assertThat(sig.matches(header(100, 0, "BUFR"), 100)).isTrue();
+    assertThat(sig.matches(header(100, 49, "BUFR"), 100)).isTrue();
+    assertThat(sig.matches(header(100, 50, "BUFR"), 100)).isFalse();
+    assertThat(sig.matches(header(100, 10, "BUF"), 100)).isFalse();
+    assertThat(sig.matches(new byte[0], 0)).isFalse();
+  }
+
+  @Test
+  public void testIospSignatures() {
+    byte[] cdf = {'C', 'D', 'F', 1, 0, 0, 0, 0};
+    assertThat(new N3iosp().getFileSignatures().stream().anyMatch(s -> s.matches(cdf, cdf.length))).isTrue();
+    assertThat(new H5iosp().getFileSignatures().stream().anyMatch(s -> s.matches(cdf, cdf.length))).isFalse();
+
+    byte[] hdf5 = new byte[FileSignature.HEADER_SIZE];
+    System.arraycopy(new byte[] {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'}, 0, hdf5, 512, 8);
+    assertThat(new H5iosp().getFileSignatures().stream().anyMatch(s -> s.matches(hdf5, hdf5.length))).isTrue();
+    assertThat(new N3iosp().getFileSignatures().stream().anyMatch(s -> s.matches(hdf5, hdf5.length))).isFalse();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.array.Array;
+import ucar.array.ArrayType;
+import ucar.array.InvalidRangeException;
+import ucar.array.Section;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test {@link IospArrayHelper#mapArrayData} */
+public class TestIospArrayHelper {
+  private static final int[] varShape = {4, 10, 20};
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void restore() {
+    IospArrayHelper.setMapThreshold(-1);
+  }
+
+  // the first nrows rows of the variable, each value its index, after a header of 16 bytes
+  private File makeFile(int nrows) throws IOException {
+    File file = tempFolder.newFile();
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.write(new byte[16]);
+      for (int i = 0; i < nrows * varShape[1] * varShape[2]; i++) {
+        out.writeInt(i);
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testDefaultDoesNotMap() throws IOException, InvalidRangeException {
+    assertThat(IospArrayHelper.getMapThreshold()).isEqualTo(-1);
+    File file = makeFile(varShape[0]);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      Section all = Section.fill(null, varShape);
+      assertThat(IospArrayHelper.mapArrayData(raf, 16, ArrayType.INT, ByteOrder.BIG_ENDIAN, varShape, all)).isNull();
+    }
+  }
+
+  @Test
+  public void testMapSpanOfSection() throws IOException, InvalidRangeException {
+    IospArrayHelper.setMapThreshold(0);
+    // the file only has the first two rows, so mapping the whole variable would fail
+    File file = makeFile(2);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      for (String spec : new String[] {"1,2:7,3:17:2", "0:1,4,:", "1,9,19", "0:1,:,:"}) {
+        Section section = Section.fill(new Section(spec), varShape);
+        Array<?> mapped =
+            IospArrayHelper.mapArrayData(raf, 16, ArrayType.INT, ByteOrder.BIG_ENDIAN, varShape, section);
+        assertThat(mapped).isNotNull();
+        assertThat(mapped.getShape()).isEqualTo(section.getShape());
+
+        Section.Iterator iter = section.getIterator(varShape);
+        int[] index = new int[varShape.length];
+        for (Object value : mapped) {
+          assertThat(iter.hasNext()).isTrue();
+          assertThat(value).isEqualTo(iter.next(index));
+        }
+        assertThat(iter.hasNext()).isFalse();
+      }
+
+      // past the end of the file
+      Section section = new Section("2,0,0");
+      assertThat(IospArrayHelper.mapArrayData(raf, 16, ArrayType.INT, ByteOrder.BIG_ENDIAN, varShape, section))
+          .isNull();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.time;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Test {@link ucar.nc2.time.CalendarDateArray} */
+public class TestCalendarDateArray {
+
+  private static final double[] offsets = {0, 1.5, 7, 13, 30, 59, 365, 366, 1000};
+
+  // the same dates as CalendarDateUnit.makeCalendarDate
+  private void testConversion(String calendarName, String udunit) {
+    CalendarDateUnit cdu = CalendarDateUnit.of(calendarName, udunit);
+    CalendarDateArray dates = CalendarDateArray.of(cdu, offsets);
+    assertThat(dates.size()).isEqualTo(offsets.length);
+    assertThat(dates.getCalendar()).isEqualTo(cdu.getCalendar());
+    for (int i = 0; i < offsets.length; i++) {
+      CalendarDate expected = cdu.makeCalendarDate(offsets[i]);
+      assertThat(dates.get(i)).isEqualTo(expected);
+      assertThat(dates.getMillis(i)).isEqualTo(expected.getMillis());
+    }
+  }
+
+  @Test
+  public void testConversion() {
+    for (String calendarName : new String[] {null, "noleap", "360_day", "julian", "all_leap"}) {
+      testConversion(calendarName, "hours since 2000-01-01T00:00:00");
+      testConversion(calendarName, "days since 1850-02-28");
+      testConversion(calendarName, "months since 2000-01-30");
+      testConversion(calendarName, "calendar days since 2000-02-28");
+      testConversion(calendarName, "calendar months since 2000-01-30");
+      testConversion(calendarName, "calendar years since 2000-02-28");
+    }
+  }
+
+  @Test
+  public void testRegular() {
+    double[] hours = new double[100 * 1000];
+    for (int i = 0; i < hours.length; i++) {
+      hours[i] = i;
+    }
+    CalendarDateUnit cdu = CalendarDateUnit.of(null, "hours since 1979-01-01T00:00:00");
+    CalendarDateArray dates = CalendarDateArray.of(cdu, hours);
+    assertThat(dates.isRegular()).isTrue();
+    assertThat(dates.getSpacing()).isEqualTo(3600 * 1000);
+
+    assertThat(dates.findIndex(cdu.makeCalendarDate(-5))).isEqualTo(0);
+    assertThat(dates.findIndex(cdu.makeCalendarDate(777))).isEqualTo(777);
+    assertThat(dates.findIndex(cdu.makeCalendarDate(777.5))).isEqualTo(777);
+    assertThat(dates.findIndex(cdu.makeCalendarDate(1.0e6))).isEqualTo(hours.length - 1);
+    assertThat(dates.indexOf(cdu.makeCalendarDate(99999))).isEqualTo(99999);
+    assertThat(dates.contains(cdu.makeCalendarDate(777.5))).isFalse();
+
+    List<CalendarDate> list = dates.asList();
+    assertThat(list).hasSize(hours.length);
+    assertThat(list.get(1234)).isEqualTo(cdu.makeCalendarDate(1234));
+    assertThat(list.indexOf(cdu.makeCalendarDate(1234))).isEqualTo(1234);
+  }
+
+  @Test
+  public void testIrregular() {
+    CalendarDateUnit cdu = CalendarDateUnit.of(null, "days since 2000-01-01");
+    CalendarDateArray dates = CalendarDateArray.of(cdu, offsets);
+    assertThat(dates.isSorted()).isTrue();
+    assertThat(dates.isRegular()).isFalse();
+
+    for (int i = 0; i < offsets.length; i++) {
+      assertThat(dates.findIndex(cdu.makeCalendarDate(offsets[i]))).isEqualTo(i);
+      assertThat(dates.findIndex(cdu.makeCalendarDate(offsets[i] + 0.1))).isEqualTo(i);
+      assertThat(dates.indexOf(cdu.makeCalendarDate(offsets[i]))).isEqualTo(i);
+    }
+    assertThat(dates.findIndex(cdu.makeCalendarDate(-1))).isEqualTo(0);
+    assertThat(dates.indexOf(cdu.makeCalendarDate(2))).isEqualTo(-1);
+
+    List<Integer> indices = new ArrayList<>();
+    indices.add(2);
+    indices.add(4);
+    CalendarDateArray subset = dates.subset(indices);
+    assertThat(subset.asList()).containsExactly(dates.get(2), dates.get(4)).inOrder();
+  }
+
+  @Test
+  public void testUnsorted() {
+    CalendarDateUnit cdu = CalendarDateUnit.of(null, "days since 2000-01-01");
+    CalendarDateArray dates = CalendarDateArray.of(cdu, new double[] {10, 20, 5, 30});
+    assertThat(dates.isSorted()).isFalse();
+    assertThat(dates.findIndex(cdu.makeCalendarDate(15))).isEqualTo(0);
+    assertThat(dates.findIndex(cdu.makeCalendarDate(25))).isEqualTo(2);
+    assertThat(dates.findIndex(cdu.makeCalendarDate(1))).isEqualTo(0);
+    assertThat(dates.indexOf(cdu.makeCalendarDate(5))).isEqualTo(2);
+  }
+
+  @Test
+  public void testFromList() {
+    CalendarDateUnit cdu = CalendarDateUnit.of("noleap", "days since 2000-01-01");
+    List<CalendarDate> list = new ArrayList<>();
+    for (double offset : offsets) {
+      list.add(cdu.makeCalendarDate(offset));
+    }
+    CalendarDateArray dates = CalendarDateArray.of(list);
+    assertThat(dates.asList()).isEqualTo(list);
+    assertThat(dates).isEqualTo(CalendarDateArray.of(cdu, offsets));
+    assertThat(CalendarDateArray.of(new ArrayList<>()).size()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link Instruments} and that the I/O paths report to the installed {@link Instrumentation}. */
+public class TestInstruments {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void restore() {
+    Instruments.set(null);
+  }
+
+  private static class Recorder implements Instrumentation {
+    final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    long nbytes;
+
+    @Override
+    public synchronized void fileRead(String location, long pos, int n, long nanos) {
+      events.add("read " + pos);
+      nbytes += n;
+    }
+
+    @Override
+    public void iospRead(String iospId, String location, String varName, long nanos) {
+      events.add("iosp " + iospId + " " + varName);
+    }
+
+    @Override
+    public Span startSpan(String name, String detail) {
+      events.add("start " + name);
+      return () -> events.add("end " + name);
+    }
+  }
+
+  @Test
+  public void testDefault() {
+    assertThat(Instruments.get()).isSameInstanceAs(Instruments.NOOP);
+    assertThat(Instruments.isEnabled()).isFalse();
+    Recorder recorder = new Recorder();
+    Instruments.set(recorder);
+    assertThat(Instruments.isEnabled()).isTrue();
+    assertThat(Instruments.get()).isSameInstanceAs(recorder);
+    Instruments.set(null);
+    assertThat(Instruments.isEnabled()).isFalse();
+  }
+
+  @Test
+  public void testFileRead() throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[100]);
+
+    Recorder recorder = new Recorder();
+    Instruments.set(recorder);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 10)) {
+      byte[] b = new byte[25];
+      raf.readFully(b); // fills the buffer, then reads the rest directly
+      raf.seek(50);
+      raf.readByte();
+    }
+    assertThat(recorder.events).containsExactly("read 0", "read 10", "read 50").inOrder();
+    assertThat(recorder.nbytes).isEqualTo(10 + 15 + 10);
+  }
+
+  @Test
+  public void testMappedAndChannelReads() throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[100]);
+
+    Recorder recorder = new Recorder();
+    Instruments.set(recorder);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 10)) {
+      assertThat(raf.map(20, 30)).isNotNull();
+      raf.readToByteChannel(Channels.newChannel(new ByteArrayOutputStream()), 60, 40);
+    }
+    assertThat(recorder.events).containsExactly("read 20", "read 60").inOrder();
+    assertThat(recorder.nbytes).isEqualTo(30 + 40);
+  }
+
+  @Test
+  public void testIospRead() throws IOException {
+    Recorder recorder = new Recorder();
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "testWriteRecord.nc")) {
+      Variable v = ncfile.findVariable("T");
+      assertThat(v).isNotNull();
+      Instruments.set(recorder);
+      v.read();
+    }
+    int start = recorder.events.indexOf("start NetcdfFile.read");
+    int iosp = recorder.events.indexOf("iosp NetCDF-3 T");
+    int end = recorder.events.indexOf("end NetcdfFile.read");
+    assertThat(start).isAtLeast(0);
+    assertThat(end).isGreaterThan(start);
+    assertThat(iosp).isGreaterThan(end);
+  }
+}
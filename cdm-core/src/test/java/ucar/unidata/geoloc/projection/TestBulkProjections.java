@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.geoloc.projection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Random;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.Projection;
+import ucar.unidata.geoloc.ProjectionPoint;
+
+/** Test that the bulk projection methods give the same values as converting one point at a time. */
+public class TestBulkProjections {
+  private static final int NPTS = 5000;
+
+  private final Random random = new Random(17);
+
+  @Test
+  public void testLambertConformal() {
+    check(new LambertConformal(40, -105, 20, 60, 10, -20), false);
+    check(new LambertConformal(-40, 150, -30, -50), false);
+  }
+
+  @Test
+  public void testMercator() {
+    check(new Mercator(-105, 20, 5, 7), false);
+  }
+
+  @Test
+  public void testStereographic() {
+    check(new Stereographic(90, -105, 0.933), false);
+    check(new Stereographic(-90, 0, 1), false);
+    check(new Stereographic(40, 10, 1, 3, 4), false);
+  }
+
+  @Test
+  public void testRotatedPole() {
+    check(new RotatedPole(37.5, 177.5), true);
+  }
+
+  @Test
+  public void testAlbersEqualArea() {
+    check(new AlbersEqualArea(23, -96, 29.5, 45.5), false);
+    check(new AlbersEqualArea(-23, 96, -29.5, -45.5), false);
+  }
+
+  @Test
+  public void testTransverseMercator() {
+    check(new TransverseMercator(0, -9, 0.9996, 500, 0), false);
+  }
+
+  @Test
+  public void testDefaultMethods() {
+    check(new Sinusoidal(0, 0, 0, 6371.229), false);
+  }
+
+  private void check(Projection proj, boolean isRotated) {
+    // lat/lon outside of the normal range, and the poles
+    double[] lat = new double[NPTS];
+    double[] lon = new double[NPTS];
+    for (int i = 0; i < NPTS; i++) {
+      lat[i] = 200 * (random.nextDouble() - .5);
+      lon[i] = 800 * (random.nextDouble() - .5);
+    }
+    lat[0] = 90;
+    lat[1] = -90;
+
+    double[] x = new double[NPTS];
+    double[] y = new double[NPTS];
+    proj.latLonToProj(lat, lon, x, y);
+    for (int i = 0; i < NPTS; i++) {
+      ProjectionPoint ppt = proj.latLonToProj(lat[i], lon[i]);
+      assertThat(x[i]).isEqualTo(ppt.getX());
+      assertThat(y[i]).isEqualTo(ppt.getY());
+    }
+
+    // rotated pole x, y are lon, lat
+    double width = isRotated ? 400 : 10000;
+    double height = isRotated ? 180 : 10000;
+    for (int i = 0; i < NPTS; i++) {
+      x[i] = width * (random.nextDouble() - .5);
+      y[i] = height * (random.nextDouble() - .5);
+    }
+    x[2] = 0;
+    y[2] = 0;
+    proj.projToLatLon(x, y, lat, lon);
+    for (int i = 0; i < NPTS; i++) {
+      LatLonPoint latlon = proj.projToLatLon(x[i], y[i]);
+      assertThat(lat[i]).isEqualTo(latlon.getLatitude());
+      assertThat(lon[i]).isEqualTo(latlon.getLongitude());
+    }
+
+    // a grid, one row at a time
+    int nx = 60;
+    int ny = 40;
+    double[] xcoords = new double[nx];
+    double[] ycoords = new double[ny];
+    for (int i = 0; i < nx; i++) {
+      xcoords[i] = isRotated ? -30 + i : -3000 + 97 * i;
+    }
+    for (int j = 0; j < ny; j++) {
+      ycoords[j] = isRotated ? -20 + j : -2000 + 103 * j;
+    }
+    double[] gridLat = new double[nx * ny];
+    double[] gridLon = new double[nx * ny];
+    for (int j = 0; j < ny; j++) {
+      proj.projToLatLon(xcoords, 0, 1, ycoords, j, 0, gridLat, gridLon, j * nx, nx);
+    }
+    for (int j = 0; j < ny; j++) {
+      for (int i = 0; i < nx; i++) {
+        LatLonPoint latlon = proj.projToLatLon(xcoords[i], ycoords[j]);
+        assertThat(gridLat[j * nx + i]).isEqualTo(latlon.getLatitude());
+        assertThat(gridLon[j * nx + i]).isEqualTo(latlon.getLongitude());
+      }
+    }
+
+    // interleaved lat, lon
+    double[] latlon = new double[2 * nx];
+    for (int i = 0; i < nx; i++) {
+      latlon[2 * i] = -60 + 2 * i;
+      latlon[2 * i + 1] = 170 + i;
+    }
+    double[] px = new double[nx];
+    double[] py = new double[nx];
+    proj.latLonToProj(latlon, 0, 2, latlon, 1, 2, px, py, 0, nx);
+    for (int i = 0; i < nx; i++) {
+      ProjectionPoint ppt = proj.latLonToProj(latlon[2 * i], latlon[2 * i + 1]);
+      assertThat(px[i]).isEqualTo(ppt.getX());
+      assertThat(py[i]).isEqualTo(ppt.getY());
+    }
+  }
+}
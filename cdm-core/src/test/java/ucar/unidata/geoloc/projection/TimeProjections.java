@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.geoloc.projection;
+
+import com.google.common.base.Stopwatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.Projection;
+import ucar.unidata.util.test.category.Slow;
+
+/**
+ * Time computing the 2D lat/lon of a grid with the bulk projection methods, against converting one point at a time.
+ */
+@Category(Slow.class)
+public class TimeProjections {
+  private static final int NX = 1000;
+  private static final int NY = 1000;
+  private static final int NTRIALS = 10;
+
+  @Test
+  public void timeLambertConformal() {
+    time(new LambertConformal(25, -95, 25, 25), -3000, 3000, -2000, 2000);
+  }
+
+  @Test
+  public void timeMercator() {
+    time(new Mercator(-105, 20), -3000, 3000, -2000, 2000);
+  }
+
+  @Test
+  public void timeStereographic() {
+    time(new Stereographic(90, -105, 0.933), -3000, 3000, -3000, 3000);
+  }
+
+  @Test
+  public void timeRotatedPole() {
+    time(new RotatedPole(37.5, 177.5), -30, 30, -25, 25);
+  }
+
+  @Test
+  public void timeAlbersEqualArea() {
+    time(new AlbersEqualArea(23, -96, 29.5, 45.5), -2500, 2500, -2000, 2000);
+  }
+
+  @Test
+  public void timeTransverseMercator() {
+    time(new TransverseMercator(0, -9, 0.9996, 500, 0), -500, 500, 0, 2000);
+  }
+
+  private void time(Projection proj, double minx, double maxx, double miny, double maxy) {
+    double[] xcoords = new double[NX];
+    double[] ycoords = new double[NY];
+    for (int i = 0; i < NX; i++) {
+      xcoords[i] = minx + i * (maxx - minx) / NX;
+    }
+    for (int j = 0; j < NY; j++) {
+      ycoords[j] = miny + j * (maxy - miny) / NY;
+    }
+    double[] lat = new double[NX * NY];
+    double[] lon = new double[NX * NY];
+
+    // warm up
+    for (int i = 0; i < 3; i++) {
+      pointAtATime(proj, xcoords, ycoords, lat, lon);
+      bulk(proj, xcoords, ycoords, lat, lon);
+    }
+
+    Stopwatch point = Stopwatch.createUnstarted();
+    Stopwatch bulk = Stopwatch.createUnstarted();
+    for (int i = 0; i < NTRIALS; i++) {
+      point.start();
+      pointAtATime(proj, xcoords, ycoords, lat, lon);
+      point.stop();
+      bulk.start();
+      bulk(proj, xcoords, ycoords, lat, lon);
+      bulk.stop();
+    }
+    long total = (long) NTRIALS * NX * NY;
+    System.out.printf("%s%n", proj.getClassName());
+    System.out.printf("  point : %s = %10.4f Mpoints/sec%n", point, rate(total, point));
+    System.out.printf("  bulk  : %s = %10.4f Mpoints/sec%n", bulk, rate(total, bulk));
+  }
+
+  private static double rate(long npoints, Stopwatch stopwatch) {
+    return ((double) npoints) / stopwatch.elapsed(TimeUnit.MICROSECONDS);
+  }
+
+  private static void pointAtATime(Projection proj, double[] xcoords, double[] ycoords, double[] lat, double[] lon) {
+    for (int j = 0; j < NY; j++) {
+      for (int i = 0; i < NX; i++) {
+        LatLonPoint latlon = proj.projToLatLon(xcoords[i], ycoords[j]);
+        lat[j * NX + i] = latlon.getLatitude();
+        lon[j * NX + i] = latlon.getLongitude();
+      }
+    }
+  }
+
+  private static void bulk(Projection proj, double[] xcoords, double[] ycoords, double[] lat, double[] lon) {
+    for (int j = 0; j < NY; j++) {
+      proj.projToLatLon(xcoords, 0, 1, ycoords, j, 0, lat, lon, j * NX, NX);
+    }
+  }
+}
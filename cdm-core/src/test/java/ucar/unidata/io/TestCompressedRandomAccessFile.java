@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.util.IO;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link CompressedRandomAccessFile} */
+public class TestCompressedRandomAccessFile {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  // half random, half repeating, so that there are both literals and matches
+  private static byte[] makeData(int n) {
+    Random random = new Random(17);
+    byte[] data = new byte[n];
+    for (int i = 0; i < n; i++) {
+      data[i] = (byte) (((i / 1000) % 2 == 0) ? random.nextInt(256) : i % 17);
+    }
+    return data;
+  }
+
+  private static void checkReads(CompressedRandomAccessFile raf, byte[] data) throws IOException {
+    assertThat(raf.length()).isEqualTo(data.length);
+
+    Random random = new Random(42);
+    for (int k = 0; k < 50; k++) {
+      int pos = random.nextInt(data.length);
+      byte[] b = new byte[Math.min(random.nextInt(100 * 1000), data.length - pos)];
+      raf.seek(pos);
+      raf.readFully(b);
+      assertThat(b).isEqualTo(Arrays.copyOfRange(data, pos, pos + b.length));
+    }
+
+    byte[] all = new byte[data.length];
+    raf.seek(0);
+    raf.readFully(all);
+    assertThat(all).isEqualTo(data);
+    assertThat(raf.read()).isEqualTo(-1);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    assertThat(raf.readToByteChannel(Channels.newChannel(bos), 100, 1000)).isEqualTo(1000);
+    assertThat(bos.toByteArray()).isEqualTo(Arrays.copyOfRange(data, 100, 1100));
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    byte[] data = makeData(3 * 1024 * 1024 + 7);
+    File file = tempFolder.newFile("test.gz");
+    // two gzip members, as from concatenating files
+    try (OutputStream out = new FileOutputStream(file)) {
+      for (int part = 0; part < 2; part++) {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        int half = data.length / 2;
+        gzip.write(data, part * half, (part == 0) ? half : data.length - half);
+        gzip.finish();
+      }
+    }
+
+    int checkpoints;
+    try (CompressedRandomAccessFile raf = CompressedRandomAccessFile.open(file.getPath(), -1)) {
+      checkpoints = raf.getNumberOfCheckpoints();
+      assertThat(checkpoints).isGreaterThan(2);
+      checkReads(raf, data);
+    }
+    File index = new File(file.getPath() + ".cidx");
+    assertThat(index.exists()).isTrue();
+    // the windows are kept compressed in the index, not in memory
+    assertThat(index.length()).isLessThan((long) checkpoints * 32 * 1024);
+
+    // the second open uses the index
+    long indexModified = index.lastModified();
+    try (CompressedRandomAccessFile raf = CompressedRandomAccessFile.open(file.getPath(), 1000)) {
+      checkReads(raf, data);
+    }
+    assertThat(index.lastModified()).isEqualTo(indexModified);
+  }
+
+  @Test
+  public void testBzip2() throws IOException {
+    File original = new File(TestDir.cdmLocalTestDataDir + "compress/testBzip.nc.bz2");
+    File file = tempFolder.newFile("testBzip.nc.bz2");
+    Files.copy(original.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (InputStream in = new CBZip2InputStream(new FileInputStream(file), true)) {
+      IO.copy(in, expected);
+    }
+
+    try (CompressedRandomAccessFile raf = CompressedRandomAccessFile.open(file.getPath(), -1)) {
+      assertThat(raf.getNumberOfCheckpoints()).isAtLeast(1);
+      checkReads(raf, expected.toByteArray());
+    }
+  }
+
+  // three blocks, each with byte values that make the block magic number appear in its header, after the real one
+  @Test
+  public void testBzip2Blocks() throws IOException {
+    File original = new File(TestDir.cdmLocalTestDataDir + "compress/testBzipBlocks.bz2");
+    File file = tempFolder.newFile("testBzipBlocks.bz2");
+    Files.copy(original.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (InputStream in = new CBZip2InputStream(new FileInputStream(file), true)) {
+      IO.copy(in, expected);
+    }
+
+    try (java.io.RandomAccessFile raw = new java.io.RandomAccessFile(file, "r")) {
+      long[] magic = BZip2Blocks.findMagic(raw);
+      // block, false, block, false, block, false, end of stream
+      assertThat(magic).isEqualTo(new long[] {32, 153, 22771, 22892, 45416, 45537, -(58278 + 1)});
+    }
+
+    try (CompressedRandomAccessFile raf = CompressedRandomAccessFile.open(file.getPath(), -1)) {
+      assertThat(raf.getNumberOfCheckpoints()).isEqualTo(3);
+      checkReads(raf, expected.toByteArray());
+    }
+  }
+
+  @Test
+  public void testCanOpen() {
+    assertThat(CompressedRandomAccessFile.canOpen("data.nc.gz")).isTrue();
+    assertThat(CompressedRandomAccessFile.canOpen("data.nc.GZIP")).isTrue();
+    assertThat(CompressedRandomAccessFile.canOpen("data.nc.bz2")).isTrue();
+    assertThat(CompressedRandomAccessFile.canOpen("data.nc.Z")).isFalse();
+    assertThat(CompressedRandomAccessFile.canOpen("data.nc")).isFalse();
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/** Test {@link FileRange} */
+public class TestFileRange {
+
+  @Test
+  public void testCoalesce() {
+    assertThat(FileRange.coalesce(Collections.emptyList(), 10, 100)).isEmpty();
+
+    // sorted, merged within the gap
+    assertThat(FileRange.coalesce(Arrays.asList(new FileRange(50, 10), new FileRange(0, 10), new FileRange(15, 10)),
+        5, 100)).containsExactly(new FileRange(0, 25), new FileRange(50, 10)).inOrder();
+
+    // not merged past maxLength
+    assertThat(FileRange.coalesce(Arrays.asList(new FileRange(0, 10), new FileRange(10, 10), new FileRange(20, 10)),
+        0, 20)).containsExactly(new FileRange(0, 20), new FileRange(20, 10)).inOrder();
+
+    // overlapping ranges are always merged
+    assertThat(FileRange.coalesce(Arrays.asList(new FileRange(0, 30), new FileRange(10, 30)), 0, 20))
+        .containsExactly(new FileRange(0, 40));
+
+    // contained
+    assertThat(FileRange.coalesce(Arrays.asList(new FileRange(0, 30), new FileRange(10, 5)), 0, 100))
+        .containsExactly(new FileRange(0, 30));
+  }
+
+  @Test
+  public void testEquals() {
+    assertThat(new FileRange(7, 3)).isEqualTo(new FileRange(7, 3));
+    assertThat(new FileRange(7, 3).hashCode()).isEqualTo(new FileRange(7, 3).hashCode());
+    assertThat(new FileRange(7, 3)).isNotEqualTo(new FileRange(7, 4));
+    assertThat(new FileRange(7, 3).getEnd()).isEqualTo(10);
+  }
+}
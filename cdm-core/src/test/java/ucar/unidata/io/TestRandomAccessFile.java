@@ -11,6 +11,9 @@ import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -233,6 +236,24 @@ public class TestRandomAccessFile {
     assertThat(arraysMatch(buff, UTF8_BYTES, offset, 0, len)).isTrue();
   }
 
+  @Test
+  public void testReadRanges() throws IOException {
+    testFile.seek(3);
+    List<byte[]> result = testFile.readRanges(
+        Arrays.asList(new FileRange(20, 7), new FileRange(0, 5), new FileRange(2, 30), new FileRange(9, 0)));
+    assertThat(result).hasSize(4);
+    assertThat(result.get(0)).isEqualTo(Arrays.copyOfRange(UTF8_BYTES, 20, 27));
+    assertThat(result.get(1)).isEqualTo(Arrays.copyOfRange(UTF8_BYTES, 0, 5));
+    assertThat(result.get(2)).isEqualTo(Arrays.copyOfRange(UTF8_BYTES, 2, 32));
+    assertThat(result.get(3)).isEmpty();
+    // file pointer is unchanged
+    assertThat(testFile.getFilePointer()).isEqualTo(3);
+
+    Assert.assertThrows(EOFException.class,
+        () -> testFile.readRanges(Collections.singletonList(new FileRange(TEST_FILE_LENGTH - 2, 3))));
+    assertThat(testFile.getFilePointer()).isEqualTo(3);
+  }
+
   @Test
   public void testSkipBytes() throws IOException {
     testFile.seek(0);
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.internal.util.DiskCache2;
+import ucar.nc2.util.Instrumentation;
+import ucar.nc2.util.Instruments;
+
+/** Test {@link RemoteBlockCache} with an in-memory {@link RemoteRandomAccessFile}. */
+public class TestRemoteBlockCache {
+  private static final int BLOCK_SIZE = 100;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private long saveMaxBytes;
+  private int saveReadAhead;
+
+  /** Serves a byte array, counting the remote reads. */
+  private static class MemoryRemoteFile extends RemoteRandomAccessFile {
+    private final byte[] data;
+    private final String version;
+    private final AtomicInteger nreads = new AtomicInteger();
+    private final AtomicInteger readsAfterClose = new AtomicInteger();
+    private volatile boolean remoteClosed;
+    private volatile int delayMillis;
+
+    MemoryRemoteFile(String url, byte[] data, String version) {
+      super(url, BLOCK_SIZE, 10 * BLOCK_SIZE);
+      this.data = data;
+      this.version = version;
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
+      nreads.incrementAndGet();
+      if (delayMillis > 0) {
+        try {
+          Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (remoteClosed) {
+        readsAfterClose.incrementAndGet();
+      }
+      int n = (int) Math.min(len, data.length - pos);
+      System.arraycopy(data, (int) pos, buff, offset, n);
+      return n;
+    }
+
+    @Override
+    public void closeRemote() {
+      remoteClosed = true;
+    }
+
+    @Override
+    public long length() {
+      return data.length;
+    }
+
+    @Override
+    protected String getRemoteVersion() {
+      return version;
+    }
+  }
+
+  private static byte[] makeData() {
+    byte[] data = new byte[10 * BLOCK_SIZE + 17];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 7);
+    }
+    return data;
+  }
+
+  private static byte[] readAll(RandomAccessFile raf) throws IOException {
+    byte[] result = new byte[(int) raf.length()];
+    raf.seek(0);
+    raf.readFully(result);
+    return result;
+  }
+
+  @Before
+  public void setup() {
+    saveMaxBytes = RemoteBlockCache.getMaxBytes();
+    saveReadAhead = RemoteBlockCache.getReadAheadBlocks();
+    RemoteBlockCache.setMaxBytes(1000 * 1000);
+    RemoteBlockCache.setReadAheadBlocks(0);
+  }
+
+  @After
+  public void cleanup() {
+    RemoteBlockCache.setDiskCache(null);
+    RemoteBlockCache.setReadAheadBlocks(saveReadAhead);
+    RemoteBlockCache.setMaxBytes(saveMaxBytes);
+  }
+
+  @Test
+  public void testSharedBetweenFiles() throws IOException {
+    byte[] data = makeData();
+    try (MemoryRemoteFile raf1 = new MemoryRemoteFile("mem:shared", data, "v1");
+        MemoryRemoteFile raf2 = new MemoryRemoteFile("mem:shared", data, "v1")) {
+      assertThat(readAll(raf1)).isEqualTo(data);
+      assertThat(raf1.nreads.get()).isGreaterThan(0);
+
+      assertThat(readAll(raf2)).isEqualTo(data);
+      assertThat(raf2.nreads.get()).isEqualTo(0);
+    }
+
+    // still there after closing
+    try (MemoryRemoteFile raf3 = new MemoryRemoteFile("mem:shared", data, "v1")) {
+      assertThat(readAll(raf3)).isEqualTo(data);
+      assertThat(raf3.nreads.get()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testChangedVersion() throws IOException {
+    byte[] data = makeData();
+    try (MemoryRemoteFile raf1 = new MemoryRemoteFile("mem:changed", data, "v1")) {
+      readAll(raf1);
+    }
+    byte[] changed = makeData();
+    changed[5] = 99;
+    try (MemoryRemoteFile raf2 = new MemoryRemoteFile("mem:changed", changed, "v2")) {
+      assertThat(readAll(raf2)).isEqualTo(changed);
+      assertThat(raf2.nreads.get()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void testUnknownVersion() throws IOException {
+    byte[] data = makeData();
+    long before = RemoteBlockCache.size();
+    try (MemoryRemoteFile raf1 = new MemoryRemoteFile("mem:unknown", data, null);
+        MemoryRemoteFile raf2 = new MemoryRemoteFile("mem:unknown", data, null)) {
+      assertThat(readAll(raf1)).isEqualTo(data);
+      assertThat(readAll(raf2)).isEqualTo(data);
+      assertThat(raf2.nreads.get()).isGreaterThan(0);
+    }
+    // the blocks are removed when the file is closed
+    assertThat(RemoteBlockCache.size()).isEqualTo(before);
+  }
+
+  @Test
+  public void testReadAhead() throws IOException, InterruptedException {
+    RemoteBlockCache.setReadAheadBlocks(3);
+    byte[] data = makeData();
+    try (MemoryRemoteFile raf = new MemoryRemoteFile("mem:readahead", data, "v1")) {
+      byte[] buff = new byte[BLOCK_SIZE];
+      for (int i = 0; i < 3; i++) {
+        raf.readFully(buff);
+      }
+      // wait for the background reads
+      for (int i = 0; i < 100 && raf.nreads.get() < 6; i++) {
+        Thread.sleep(10);
+      }
+      assertThat(raf.nreads.get()).isAtLeast(6);
+      int nreads = raf.nreads.get();
+      raf.readFully(buff);
+      raf.readFully(buff);
+      assertThat(raf.nreads.get()).isAtMost(nreads + 3);
+    }
+  }
+
+  @Test
+  public void testCloseWaitsForReadAhead() throws IOException, InterruptedException {
+    RemoteBlockCache.setReadAheadBlocks(3);
+    byte[] data = makeData();
+    MemoryRemoteFile raf = new MemoryRemoteFile("mem:readaheadclose", data, "v1");
+    byte[] buff = new byte[BLOCK_SIZE];
+    for (int i = 0; i < 3; i++) {
+      raf.readFully(buff);
+    }
+    raf.delayMillis = 50;
+    raf.readFully(buff);
+    raf.close();
+    int nreads = raf.nreads.get();
+
+    // nothing is read once the file is closed
+    Thread.sleep(200);
+    assertThat(raf.nreads.get()).isEqualTo(nreads);
+    assertThat(raf.readsAfterClose.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSpillToDisk() throws IOException, InterruptedException {
+    RemoteBlockCache.setMaxBytes(4 * BLOCK_SIZE);
+    RemoteBlockCache.setDiskCache(new DiskCache2(tempFolder.getRoot().getPath(), false, 0, 0));
+    byte[] data = makeData();
+    try (MemoryRemoteFile raf1 = new MemoryRemoteFile("mem:spill", data, "v1")) {
+      assertThat(readAll(raf1)).isEqualTo(data);
+    }
+
+    // the evicted blocks are written in the background
+    long diskHits = RemoteBlockCache.getDiskHitCount();
+    Thread.sleep(500);
+    RemoteBlockCache.clear();
+    try (MemoryRemoteFile raf2 = new MemoryRemoteFile("mem:spill", data, "v1")) {
+      assertThat(readAll(raf2)).isEqualTo(data);
+      assertThat(raf2.nreads.get()).isLessThan(11);
+    }
+    assertThat(RemoteBlockCache.getDiskHitCount()).isGreaterThan(diskHits);
+  }
+
+  @Test
+  public void testReadRanges() throws IOException {
+    byte[] data = makeData();
+    List<FileRange> ranges =
+        Arrays.asList(new FileRange(950, 67), new FileRange(10, 20), new FileRange(120, 300), new FileRange(25, 10));
+    try (MemoryRemoteFile raf1 = new MemoryRemoteFile("mem:ranges", data, "v1");
+        MemoryRemoteFile raf2 = new MemoryRemoteFile("mem:ranges", data, "v1")) {
+      List<byte[]> result = raf1.readRanges(ranges);
+      for (int i = 0; i < ranges.size(); i++) {
+        FileRange range = ranges.get(i);
+        assertThat(result.get(i)).isEqualTo(Arrays.copyOfRange(data, (int) range.getPos(), (int) range.getEnd()));
+      }
+      // blocks 0..4 in one read, blocks 9 and 10 in another
+      assertThat(raf1.nreads.get()).isEqualTo(2);
+
+      // the blocks were cached
+      assertThat(raf2.readRanges(ranges).get(2)).isEqualTo(result.get(2));
+      byte[] buff = new byte[10];
+      raf2.seek(130);
+      raf2.readFully(buff);
+      assertThat(buff).isEqualTo(Arrays.copyOfRange(data, 130, 140));
+      assertThat(raf2.nreads.get()).isEqualTo(0);
+
+      Assert.assertThrows(EOFException.class,
+          () -> raf1.readRanges(Collections.singletonList(new FileRange(data.length - 1, 2))));
+    }
+  }
+
+  @Test
+  public void testReadRangesWithoutCache() throws IOException {
+    RemoteBlockCache.setMaxBytes(0);
+    byte[] data = makeData();
+    List<FileRange> ranges = Arrays.asList(new FileRange(950, 67), new FileRange(10, 20), new FileRange(120, 300));
+    try (MemoryRemoteFile raf = new MemoryRemoteFile("mem:nocache", data, "v1")) {
+      List<byte[]> result = raf.readRanges(ranges);
+      for (int i = 0; i < ranges.size(); i++) {
+        FileRange range = ranges.get(i);
+        assertThat(result.get(i)).isEqualTo(Arrays.copyOfRange(data, (int) range.getPos(), (int) range.getEnd()));
+      }
+      // the ranges are close enough to be read together
+      assertThat(raf.nreads.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testReadRangesInstrumented() throws IOException {
+    RemoteBlockCache.setMaxBytes(0);
+    List<String> reads = Collections.synchronizedList(new ArrayList<>());
+    Instruments.set(new Instrumentation() {
+      @Override
+      public void fileRead(String location, long pos, int nbytes, long nanos) {
+        reads.add(pos + "+" + nbytes);
+      }
+    });
+    try (MemoryRemoteFile raf = new MemoryRemoteFile("mem:instrumented", makeData(), "v1")) {
+      raf.readRanges(Arrays.asList(new FileRange(950, 67), new FileRange(10, 20)));
+    } finally {
+      Instruments.set(null);
+    }
+    assertThat(reads).containsExactly("10+1007");
+  }
+}
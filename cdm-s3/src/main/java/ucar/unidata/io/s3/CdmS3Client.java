@@ -10,11 +10,14 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,6 +82,15 @@ public class CdmS3Client {
   private static final int socketTimeout =
       Integer.parseInt(System.getProperty("ucar.unidata.io.s3.socketTimeout", "100000"));
 
+  /**
+   * The maximum number of range requests made at the same time by {@link S3RandomAccessFile#readRanges}, shared by
+   * all files.
+   */
+  private static final int maxConcurrentRequests =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.maxConcurrentRequests", "16"));
+
+  private static ExecutorService executor; // lazy
+
   private static final LoadingCache<CdmS3Uri, S3Client> s3ClientCache;
   private static boolean useCache = true;
 
@@ -125,6 +137,15 @@ public class CdmS3Client {
     return s3Client;
   }
 
+  /** The threads that make concurrent requests. S3Clients are thread safe. */
+  static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Math.max(maxConcurrentRequests, 1),
+          new ThreadFactoryBuilder().setNameFormat("CdmS3Client-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
+
   /** enable/disable cache for testing */
   static void enableCache(boolean enableCache) {
     useCache = enableCache;
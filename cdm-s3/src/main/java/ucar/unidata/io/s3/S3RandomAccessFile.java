@@ -7,16 +7,24 @@ package ucar.unidata.io.s3;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.base.Throwables;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.ReadableRemoteFile;
 import ucar.unidata.io.RemoteRandomAccessFile;
@@ -95,7 +103,8 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
   @Override
   public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
 
-    String range = String.format("bytes=%d-%d", pos, pos + len);
+    // the end of the range is inclusive
+    String range = String.format("bytes=%d-%d", pos, pos + len - 1);
     GetObjectRequest rangeObjectRequest =
         GetObjectRequest.builder().bucket(uri.getBucket()).key(uri.getKey().get()).range(range).build();
 
@@ -114,6 +123,36 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
     return totalBytes;
   }
 
+  /** Make the range requests at the same time, using the threads of {@link CdmS3Client}. */
+  @Override
+  protected List<byte[]> readRemoteRanges(List<FileRange> ranges) throws IOException {
+    if (ranges.size() <= 1) {
+      return super.readRemoteRanges(ranges);
+    }
+    ExecutorService executor = CdmS3Client.getExecutor();
+    List<Future<byte[]>> futures = new ArrayList<>(ranges.size());
+    for (FileRange range : ranges) {
+      futures.add(executor.submit(() -> readRemoteFully(range)));
+    }
+
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    try {
+      for (Future<byte[]> future : futures) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading " + getLocation());
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+    return result;
+  }
+
   static int getDefaultRemoteFileTimeout() {
     return defaultRemoteFileTimeout;
   }
@@ -128,6 +167,13 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
     return objectHeadResponse.lastModified().toEpochMilli();
   }
 
+  /** The ETag of the object, so that cached blocks are shared between files. */
+  @Override
+  protected String getRemoteVersion() {
+    String etag = objectHeadResponse.eTag();
+    return (etag != null) ? "ETag=" + etag : super.getRemoteVersion();
+  }
+
   @Override
   public String getLocation() {
     return uri.toString();
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.unidata.io.FileRange;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.RemoteBlockCache;
+
+/**
+ * Test {@link S3RandomAccessFile#readRanges} against a local server that answers HEAD and ranged GET requests like an
+ * S3 compatible object store.
+ */
+public class TestS3ReadRanges {
+  // a port that cdms3 uris map to http
+  private static final int PORT = 9080;
+  // not a valid DNS name, so the client uses path style requests
+  private static final String LOCATION = "cdms3://localhost:" + PORT + "/cdm_test?data.bin";
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+  private final byte[] data = new byte[4 * 1024 * 1024];
+  private final AtomicInteger ngets = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final List<String> requestedRanges = new ArrayList<>();
+
+  private HttpServer server;
+  private ExecutorService serverThreads;
+  private long saveMaxBytes;
+
+  @Before
+  public void startServer() throws IOException {
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + i / 256);
+    }
+    try {
+      server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+    } catch (BindException e) {
+      Assume.assumeNoException("port " + PORT + " is in use", e);
+    }
+    serverThreads = Executors.newFixedThreadPool(8);
+    server.setExecutor(serverThreads);
+    server.createContext("/cdm_test/data.bin", this::handle);
+    server.start();
+
+    // the cache would hide the remote requests
+    saveMaxBytes = RemoteBlockCache.getMaxBytes();
+    RemoteBlockCache.setMaxBytes(0);
+  }
+
+  @After
+  public void stopServer() {
+    RemoteBlockCache.setMaxBytes(saveMaxBytes);
+    if (server != null) {
+      server.stop(0);
+      serverThreads.shutdownNow();
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().set("ETag", "\"cdm-test-etag\"");
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      exchange.getResponseHeaders().set("Content-Length", Integer.toString(data.length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    synchronized (requestedRanges) {
+      requestedRanges.add(range);
+    }
+    Matcher m = RANGE.matcher(range);
+    if (!m.matches()) {
+      exchange.sendResponseHeaders(400, -1);
+      exchange.close();
+      return;
+    }
+    int start = Integer.parseInt(m.group(1));
+    int end = Math.min(Integer.parseInt(m.group(2)), data.length - 1);
+
+    ngets.incrementAndGet();
+    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      Thread.sleep(50); // long enough for the requests to overlap
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    inFlight.decrementAndGet();
+
+    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+    exchange.sendResponseHeaders(206, end - start + 1);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(data, start, end - start + 1);
+    }
+  }
+
+  private void checkResult(List<FileRange> ranges, List<byte[]> result) {
+    assertThat(result).hasSize(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      FileRange range = ranges.get(i);
+      assertThat(result.get(i)).isEqualTo(Arrays.copyOfRange(data, (int) range.getPos(), (int) range.getEnd()));
+    }
+  }
+
+  @Test
+  public void testConcurrentRanges() throws IOException {
+    // far enough apart that they are not merged
+    List<FileRange> ranges = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ranges.add(new FileRange(i * 300 * 1024 + 17, 1000 + i));
+    }
+    try (RandomAccessFile raf = new S3RandomAccessFile.Provider().open(LOCATION)) {
+      assertThat(raf.length()).isEqualTo(data.length);
+      checkResult(ranges, raf.readRanges(ranges));
+    }
+    assertThat(ngets.get()).isEqualTo(ranges.size());
+    assertThat(maxInFlight.get()).isGreaterThan(1);
+  }
+
+  @Test
+  public void testMergedRanges() throws IOException {
+    List<FileRange> ranges = Arrays.asList(new FileRange(5000, 100), new FileRange(100, 10), new FileRange(2000, 3000));
+    try (RandomAccessFile raf = new S3RandomAccessFile.Provider().open(LOCATION)) {
+      checkResult(ranges, raf.readRanges(ranges));
+    }
+    assertThat(ngets.get()).isEqualTo(1);
+    assertThat(requestedRanges).containsExactly("bytes=100-5099");
+  }
+
+  @Test
+  public void testRangeEndIsInclusive() throws IOException {
+    try (RandomAccessFile raf = new S3RandomAccessFile.Provider().open(LOCATION)) {
+      byte[] buff = new byte[10];
+      ((S3RandomAccessFile) raf).readRemote(1000, buff, 0, buff.length);
+      assertThat(buff).isEqualTo(Arrays.copyOfRange(data, 1000, 1010));
+    }
+    assertThat(requestedRanges).containsExactly("bytes=1000-1009");
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft.coverage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft2.coverage.CoverageCollection;
+import ucar.nc2.ft2.coverage.CoverageDatasetFactory;
+import ucar.nc2.ft2.coverage.FeatureDatasetCoverage;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.write.NetcdfFormatWriter;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+/** Test that streaming CFGridCoverageWriter one slab at a time writes the same file as reading each coverage whole. */
+@RunWith(Parameterized.class)
+@Category(NeedsCdmUnitTest.class)
+public class TestCoverageStreamingWrite {
+
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    // time, vert
+    result.add(new Object[] {TestDir.cdmUnitTestDir + "ft/coverage/03061219_ruc.nc",
+        Lists.newArrayList("P_sfc", "P_trop", "T"), null});
+    // single time, vert
+    result.add(new Object[] {TestDir.cdmUnitTestDir + "ncss/GFS/CONUS_80km/GFS_CONUS_80km_20120227_0000.grib1",
+        Lists.newArrayList("Temperature_isobaric"), new SubsetParams().set(SubsetParams.timePresent, true)});
+    // scalar runtime, ens coord
+    result.add(new Object[] {TestDir.cdmUnitTestDir + "ft/coverage/ECME_RIZ_201201101200_00600_GB",
+        Lists.newArrayList("Surface_pressure_surface"), null});
+    // time axis of mixed intervals, which is read whole
+    result.add(new Object[] {TestDir.cdmUnitTestDir + "gribCollections/gfs_2p5deg/gfs_2p5deg.ncx4",
+        Lists.newArrayList("Momentum_flux_u-component_surface_Mixed_intervals_Average"), null});
+    return result;
+  }
+
+  private final String endpoint;
+  private final List<String> covList;
+  private final SubsetParams params;
+
+  public TestCoverageStreamingWrite(String endpoint, List<String> covList, SubsetParams params) {
+    this.endpoint = endpoint;
+    this.covList = covList;
+    this.params = (params != null) ? params : new SubsetParams();
+  }
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testSameAsWhole() throws IOException, InvalidRangeException {
+    File whole = write(false);
+    File streamed = write(true);
+
+    try (NetcdfFile ncWhole = NetcdfFiles.open(whole.getPath());
+        NetcdfFile ncStreamed = NetcdfFiles.open(streamed.getPath())) {
+      for (String covName : covList) {
+        Variable vWhole = ncWhole.findVariable(covName);
+        Variable vStreamed = ncStreamed.findVariable(covName);
+        assertThat(vWhole).isNotNull();
+        assertThat(vStreamed).isNotNull();
+        assertThat(vStreamed.getShape()).isEqualTo(vWhole.getShape());
+        assertThat(vStreamed.read().get1DJavaArray(vStreamed.getDataType()))
+            .isEqualTo(vWhole.read().get1DJavaArray(vWhole.getDataType()));
+      }
+    }
+  }
+
+  private File write(boolean streaming) throws IOException, InvalidRangeException {
+    File tempFile = tempFolder.newFile();
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      assertThat(cc).isNotNull();
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+      NetcdfFormatWriter.Builder writer =
+          NetcdfFormatWriter.builder().setLocation(tempFile.getPath()).setFormat(NetcdfFileFormat.NETCDF3);
+      CFGridCoverageWriter.Result result =
+          CFGridCoverageWriter.write(gcs, covList, params, false, writer, 0, streaming);
+      assertThat(result.wasWritten()).isTrue();
+    }
+    return tempFile;
+  }
+}
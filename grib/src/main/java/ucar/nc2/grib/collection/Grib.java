@@ -4,6 +4,9 @@
  */
 package ucar.nc2.grib.collection;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * GRIB constants.
  *
@@ -11,6 +14,7 @@ package ucar.nc2.grib.collection;
  * @since 2/23/2016.
  */
 public class Grib {
+  private static final Logger logger = LoggerFactory.getLogger(Grib.class);
 
   public static final String VARIABLE_ID_ATTNAME = "Grib_Variable_Id";
   public static final String GRIB_VALID_TIME = "GRIB forecast or observation time";
@@ -31,6 +35,73 @@ public class Grib {
     debugGbxIndexOnly = debugFlag.isSet("Grib/debugGbxIndexOnly");
   }
 
+  // the value of the System property name, if it is set to an integer >= 1, else defaultValue
+  private static int getIntProperty(String name, int defaultValue) {
+    String prop = System.getProperty(name);
+    if (prop != null) {
+      try {
+        int n = Integer.parseInt(prop);
+        if (n >= 1) {
+          return n;
+        }
+        logger.warn(String.format("-D%s must be >= 1", name));
+      } catch (NumberFormatException nfe) {
+        logger.warn(String.format("-D%s is not an integer", name));
+      }
+    }
+    return defaultValue;
+  }
+
+  public static final String MAX_DECODE_THREADS_PROPERTY = "ucar.nc2.grib.maxDecodeThreads";
+  private static volatile int maxDecodeThreads = getIntProperty(MAX_DECODE_THREADS_PROPERTY, 1);
+
+  /**
+   * Set the maximum number of threads that decode the records of one read. With more than one, the messages are still
+   * read in order by the calling thread, and decoded from memory on a shared pool. The default is 1, no parallel
+   * decoding.
+   */
+  public static void setMaxDecodeThreads(int max) {
+    maxDecodeThreads = Math.max(1, max);
+  }
+
+  public static int getMaxDecodeThreads() {
+    return maxDecodeThreads;
+  }
+
+  public static final String MAX_INDEX_THREADS_PROPERTY = "ucar.nc2.grib.maxIndexThreads";
+  private static volatile int maxIndexThreads = getIntProperty(MAX_INDEX_THREADS_PROPERTY, 1);
+
+  /**
+   * Set the maximum number of threads that read or create the gbx9 indexes of the files of a collection, when its
+   * ncx4 index is built. The records are still added to the collection in file order by the calling thread, and all
+   * of them are held in memory until the index is written, as before. A rebuild still reads the gbx9 of every file.
+   * The default is 1, one file at a time.
+   */
+  public static void setMaxIndexThreads(int max) {
+    maxIndexThreads = Math.max(1, max);
+  }
+
+  public static int getMaxIndexThreads() {
+    return maxIndexThreads;
+  }
+
+  public static final String RECORD_TABLE_PROPERTY = "ucar.nc2.grib.recordTable";
+  private static volatile boolean useRecordTable = Boolean.getBoolean(RECORD_TABLE_PROPERTY);
+
+  /**
+   * Set whether to read the record arrays of GRIB collection indexes (ncx4) from a columnar table that is memory
+   * mapped, instead of parsing them onto the heap. The table is written in the background next to the index (or in
+   * the index cache) the first time a collection is read, and rewritten when the index changes. Until it is ready, the
+   * records are parsed from the index. The default is false.
+   */
+  public static void setUseRecordTable(boolean use) {
+    useRecordTable = use;
+  }
+
+  public static boolean isUseRecordTable() {
+    return useRecordTable;
+  }
+
   // Class, not interface, per Bloch edition 2 item 19
   private Grib() {} // disable instantiation
 }
@@ -6,6 +6,7 @@
 package ucar.nc2.grib.collection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.featurecollection.FeatureCollectionConfig.GribConfig;
 import thredds.inventory.CollectionUpdateType;
@@ -68,20 +69,16 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator(); // not sorted
+        ParallelIndexReader reader = new ParallelIndexReader(iter, this::readIndex, Grib.getMaxIndexThreads())) {
+      while (reader.hasNext()) {
+        ParallelIndexReader.IndexRead read = reader.next();
+        MFile mfile = read.mfile;
         Grib1Index index;
         try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null)
-              continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index =
-                (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
+          index = (Grib1Index) read.getIndex();
+          if (index == null)
+            continue;
           allFiles.add(mfile); // add on success
 
         } catch (IOException ioe) {
@@ -146,6 +143,15 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // read or create the gbx9 index of one file, may be called on a ParallelIndexReader thread
+  @Nullable
+  private GribIndex readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly)
+      return GribIndex.open(true, mfile);
+    // this is where gbx9 files get recreated
+    return GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means remove
   private boolean filterIntervals(Grib1Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     Grib1SectionProductDefinition pdss = gr.getPDSsection();
@@ -5,16 +5,19 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.collect.ImmutableList;
 import ucar.nc2.constants.DataFormatType;
 import thredds.featurecollection.FeatureCollectionConfig;
 import ucar.nc2.grib.grib1.*;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib1.tables.Grib1ParamTables;
 import ucar.nc2.grib.*;
+import ucar.nc2.iosp.FileSignature;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.http.HTTPRandomAccessFile;
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.List;
 
 /**
  * Grib-1 Collection IOSP.
@@ -168,6 +171,11 @@ public class Grib1Iosp extends GribIosp {
 
   private Grib1Customizer cust;
 
+  // the GRIB data files may have a bulletin header before the first record
+  private static final List<FileSignature> signatures = ImmutableList.of(
+      FileSignature.at(0, Grib1CollectionWriter.MAGIC_START), FileSignature.at(0, Grib1PartitionBuilder.MAGIC_START),
+      FileSignature.within(FileSignature.HEADER_SIZE, new byte[] {'G', 'R', 'I', 'B'}));
+
   @Override
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
     if (raf instanceof HTTPRandomAccessFile) { // only do remote if memory resident
@@ -186,6 +194,11 @@ public class Grib1Iosp extends GribIosp {
     return Grib1RecordScanner.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     return DataFormatType.GRIB1.getDescription();
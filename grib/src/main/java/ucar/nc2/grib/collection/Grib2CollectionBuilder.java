@@ -6,6 +6,7 @@
 package ucar.nc2.grib.collection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
@@ -67,19 +68,15 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
     // place each record into its group
     int totalRecords = 0;
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator(); // not sorted
+        ParallelIndexReader reader = new ParallelIndexReader(iter, this::readIndex, Grib.getMaxIndexThreads())) {
+      while (reader.hasNext()) {
+        ParallelIndexReader.IndexRead read = reader.next();
+        MFile mfile = read.mfile;
         Grib2Index index;
 
         try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib2Index) GribIndex.open(false, mfile);
-          } else {
-            // this is where gbx9 files get recreated
-            index =
-                (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
-          }
+          index = (Grib2Index) read.getIndex();
           allFiles.add(mfile); // add on success
 
         } catch (IOException ioe) {
@@ -155,6 +152,15 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // read or create the gbx9 index of one file, may be called on a ParallelIndexReader thread
+  @Nullable
+  private GribIndex readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly)
+      return GribIndex.open(false, mfile);
+    // this is where gbx9 files get recreated
+    return GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means discard
   private boolean filterIntervals(Grib2Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     // hack a whack - filter out records with unknown time units
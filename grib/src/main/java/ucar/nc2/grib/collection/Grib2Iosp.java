@@ -5,14 +5,17 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.collect.ImmutableList;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.grib.grib2.*;
 import ucar.nc2.grib.*;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.nc2.iosp.FileSignature;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.http.HTTPRandomAccessFile;
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.List;
 
 /**
  * Grib-2 Collection IOSP.
@@ -185,6 +188,11 @@ public class Grib2Iosp extends GribIosp {
 
   private Grib2Tables cust;
 
+  // the GRIB data files may have a bulletin header before the first record
+  private static final List<FileSignature> signatures = ImmutableList.of(
+      FileSignature.at(0, Grib2CollectionWriter.MAGIC_START), FileSignature.at(0, Grib2PartitionBuilder.MAGIC_START),
+      FileSignature.within(FileSignature.HEADER_SIZE, new byte[] {'G', 'R', 'I', 'B'}));
+
   // accept grib2 or ncx files
   @Override
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
@@ -204,6 +212,11 @@ public class Grib2Iosp extends GribIosp {
     return Grib2RecordScanner.isValidFile(raf);
   }
 
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     return DataFormatType.GRIB2.getDescription();
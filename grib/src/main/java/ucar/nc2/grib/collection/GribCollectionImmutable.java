@@ -105,6 +105,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
   protected final String indexFilename; // full path of index Filename
 
   private FileCacheIF objCache; // optional object cache - used in the TDS
+  private GribRecordTable recordTable; // lazily opened when Grib.isUseRecordTable(), once it has been written
 
   GribCollectionImmutable(GribCollectionMutable gc) {
     countGC++;
@@ -460,8 +461,9 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     // stats
     final int ndups, nrecords, nmissing;
 
-    // read in on demand
-    private SparseArray<Record> sa; // for GC only; lazily read; same array shape as variable, minus x and y
+    // read in on demand, either sa or records, then never changed, so readers dont need to lock
+    private volatile SparseArray<Record> sa; // for GC only; lazily read; same array shape as variable, minus x and y
+    private volatile GribRecordTable.Records records; // same as sa, mapped from the record table
 
     protected VariableIndex(GroupGC g, GribCollectionMutable.VariableIndex gcVar) {
       this.group = g;
@@ -477,66 +479,88 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       this.nmissing = gcVar.nmissing;
     }
 
-    public synchronized void readRecords() throws IOException {
-      if (this.sa != null)
+    public void readRecords() throws IOException {
+      if (this.sa != null || this.records != null)
         return;
 
-      if (recordsLen == 0)
-        return;
-      byte[] b = new byte[recordsLen];
+      synchronized (this) {
+        if (this.sa != null || this.records != null)
+          return;
+        if (recordsLen == 0)
+          return;
+
+        if (Grib.isUseRecordTable()) {
+          GribRecordTable table = getRecordTable();
+          if (table != null) {
+            this.records = table.readRecords(recordsPos);
+            if (this.records != null)
+              return;
+          }
+        }
 
-      try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
-
-        indexRaf.seek(recordsPos);
-        indexRaf.readFully(b);
-
-        /*
-         * message SparseArray {
-         * repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
-         * repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
-         * repeated Record records = 4; // List<Record>
-         * uint32 ndups = 5; // duplicates found when creating
-         * }
-         */
-        GribCollectionProto.SparseArray proto = GribCollectionProto.SparseArray.parseFrom(b);
-
-        int nsizes = proto.getSizeCount();
-        int[] size = new int[nsizes];
-        for (int i = 0; i < nsizes; i++)
-          size[i] = proto.getSize(i);
-
-        int ntrack = proto.getTrackCount();
-        int[] track = new int[ntrack];
-        for (int i = 0; i < ntrack; i++)
-          track[i] = proto.getTrack(i);
-
-        int n = proto.getRecordsCount();
-        List<Record> records = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-          GribCollectionProto.Record pr = proto.getRecords(i);
-          records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
+        try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
+          GribCollectionProto.SparseArray proto = readSparseArray(indexRaf);
+
+          int nsizes = proto.getSizeCount();
+          int[] size = new int[nsizes];
+          for (int i = 0; i < nsizes; i++)
+            size[i] = proto.getSize(i);
+
+          int ntrack = proto.getTrackCount();
+          int[] track = new int[ntrack];
+          for (int i = 0; i < ntrack; i++)
+            track[i] = proto.getTrack(i);
+
+          int n = proto.getRecordsCount();
+          List<Record> records = new ArrayList<>(n);
+          for (int i = 0; i < n; i++) {
+            GribCollectionProto.Record pr = proto.getRecords(i);
+            records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
+          }
+          int ndups = proto.getNdups();
+          this.sa = new SparseArray<>(size, track, records, ndups);
         }
-        int ndups = proto.getNdups();
-        this.sa = new SparseArray<>(size, track, records, ndups);
+      }
+    }
 
+    // read the protobuf record array of this variable from the open index file
+    GribCollectionProto.SparseArray readSparseArray(RandomAccessFile indexRaf) throws IOException {
+      byte[] b = new byte[recordsLen];
+      indexRaf.seek(recordsPos);
+      indexRaf.readFully(b);
+
+      /*
+       * message SparseArray {
+       * repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
+       * repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
+       * repeated Record records = 4; // List<Record>
+       * uint32 ndups = 5; // duplicates found when creating
+       * }
+       */
+      try {
+        return GribCollectionProto.SparseArray.parseFrom(b);
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
         logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
         throw e;
       }
     }
 
-    synchronized Record getRecordAt(int sourceIndex) {
-      return sa.getContent(sourceIndex);
+    @Nullable
+    Record getRecordAt(int sourceIndex) {
+      GribRecordTable.Records recs = records;
+      return (recs != null) ? recs.getRecord(sourceIndex) : sa.getContent(sourceIndex);
     }
 
-    synchronized Record getRecordAt(int[] sourceIndex) {
-      return sa.getContent(sourceIndex);
+    @Nullable
+    Record getRecordAt(int[] sourceIndex) {
+      GribRecordTable.Records recs = records;
+      return (recs != null) ? recs.getRecord(sourceIndex) : sa.getContent(sourceIndex);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // coord based record finding. note only one record at a time
     @Nullable
-    synchronized Record getRecordAt(SubsetParams coords) {
+    Record getRecordAt(SubsetParams coords) {
       int[] want = new int[getRank()];
       int count = 0;
       int runIdx = -1;
@@ -613,7 +637,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
         want[count++] = idx;
       }
-      return sa.getContent(want);
+      return getRecordAt(want);
     }
 
     public List<Coordinate> getCoordinates() {
@@ -650,10 +674,14 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
 
     public SparseArray<Record> getSparseArray() {
-      return sa;
+      GribRecordTable.Records recs = records;
+      return (recs != null) ? recs.toSparseArray() : sa;
     }
 
     public int countNRecords() {
+      GribRecordTable.Records recs = records;
+      if (recs != null)
+        return recs.countNotMissing();
       return sa == null ? -1 : sa.countNotMissing();
     }
 
@@ -876,6 +904,15 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
   }
 
+  // null if the record table is not written yet, or cant be used
+  @Nullable
+  private synchronized GribRecordTable getRecordTable() {
+    if (recordTable == null) {
+      recordTable = GribRecordTable.open(this);
+    }
+    return recordTable;
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////////////
   // stuff for FileCacheable
 
@@ -22,7 +22,9 @@ import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.util.*;
@@ -51,6 +53,17 @@ public abstract class GribDataReader {
 
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
+  /**
+   * Read only the given points of the record, if its data representation allows it.
+   *
+   * @param points index y * nx + x of each wanted point
+   * @return the values of the points, or null if the whole record must be read with readData()
+   */
+  @Nullable
+  protected float[] readDataSubset(RandomAccessFile rafData, GribReaderRecord dr, int[] points) throws IOException {
+    return null;
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   public static GribCollectionImmutable.Record currentDataRecord;
   public static GribDataValidator validator;
@@ -237,8 +250,11 @@ public abstract class GribDataReader {
 
     int currFile = -1;
     RandomAccessFile rafData = null;
+    int prefetched = 0;
+    ParallelRecordDecoder decoder = makeDecoder();
     try {
-      for (GribReaderRecord dr : records) {
+      for (int i = 0; i < records.size(); i++) {
+        GribReaderRecord dr = records.get(i);
         if (Grib.debugIndexOnly || Grib.debugGbxIndexOnly) {
           GribIosp.debugIndexOnlyCount++;
           currentDataRecord = dr.record;
@@ -254,6 +270,11 @@ public abstract class GribDataReader {
             rafData.close();
           rafData = gribCollection.getDataRaf(dr.record.fileno);
           currFile = dr.record.fileno;
+          prefetched = i;
+        }
+
+        if (i >= prefetched) {
+          prefetched = GribReaderRecord.prefetchNext(rafData, records, i, r -> r.record.fileno == dr.record.fileno);
         }
 
         if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
@@ -268,17 +289,56 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decode(decoder, dataReceiver, rafData, dr, hcs);
       }
+      if (decoder != null)
+        decoder.finish();
 
     } finally {
+      if (decoder != null)
+        decoder.cancel();
       if (rafData != null)
         rafData.close(); // make sure its closed even on exception
     }
   }
 
+  // Decode in parallel when allowed, but not while validating or debugging, which must see each record in turn.
+  @Nullable
+  private ParallelRecordDecoder makeDecoder() {
+    int maxThreads = Grib.getMaxDecodeThreads();
+    if (maxThreads <= 1 || records.size() <= 1 || GribDataReader.validator != null || show || Grib.debugIndexOnly
+        || Grib.debugGbxIndexOnly)
+      return null;
+    return new ParallelRecordDecoder(maxThreads);
+  }
+
+  // Decode a record on the decoder's threads, from a copy of its message, else right here.
+  private void decode(@Nullable ParallelRecordDecoder decoder, DataReceiverIF dataReceiver, RandomAccessFile rafData,
+      GribReaderRecord dr, GdsHorizCoordSys hcs) throws IOException {
+    byte[] message = (decoder == null) ? null : GribReaderRecord.readMessage(rafData, dr.record.pos);
+    if (message == null) {
+      addData(dataReceiver, rafData, dr, hcs);
+      return;
+    }
+    RandomAccessFile messageRaf = new InMemoryRandomAccessFile(rafData.getLocation(), message);
+    GribReaderRecord inMessage = dr.inMessage();
+    decoder.submit(() -> addData(dataReceiver, messageRaf, inMessage, hcs));
+  }
+
+  // Read just the wanted points of a record when possible, else all of it.
+  private void addData(DataReceiverIF dataReceiver, RandomAccessFile rafData, GribReaderRecord dr,
+      GdsHorizCoordSys hcs) throws IOException {
+    int[] points = dataReceiver.getWantedPoints(hcs.nx, hcs.ny);
+    float[] subset = (points == null) ? null : readDataSubset(rafData, dr, points);
+    if (subset != null) {
+      dataReceiver.addSubsetData(subset, points, dr.resultIndex, hcs.nx, hcs.ny);
+    } else {
+      float[] data = readData(rafData, dr);
+      dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+    }
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null)
       return;
@@ -290,9 +350,12 @@ public abstract class GribDataReader {
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
+    int prefetched = 0;
+    ParallelRecordDecoder decoder = makeDecoder();
     try {
 
-      for (GribReaderRecord dr : records) {
+      for (int i = 0; i < records.size(); i++) {
+        GribReaderRecord dr = records.get(i);
         PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) dr;
         if (Grib.debugIndexOnly || Grib.debugGbxIndexOnly) {
           GribIosp.debugIndexOnlyCount++;
@@ -306,9 +369,15 @@ public abstract class GribDataReader {
           if (rafData != null)
             rafData.close();
           rafData = drp.usePartition.getRaf(drp.partno, dr.record.fileno);
+          prefetched = i;
         }
         lastRecord = drp;
 
+        if (i >= prefetched) {
+          prefetched = GribReaderRecord.prefetchNext(rafData, records, i,
+              r -> drp.usesSameFile((PartitionCollectionImmutable.DataRecord) r));
+        }
+
         if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
           continue;
 
@@ -320,20 +389,51 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decode(decoder, dataReceiver, rafData, dr, dr.hcs);
       }
+      if (decoder != null)
+        decoder.finish();
 
     } finally {
+      if (decoder != null)
+        decoder.cancel();
       if (rafData != null)
         rafData.close(); // make sure its closed even on exception
     }
   }
 
+  /**
+   * Receives the decoded records. With parallel decoding, addData() and addSubsetData() may be called from several
+   * threads at once, for different resultIndex.
+   */
   public interface DataReceiverIF {
     void addData(float[] data, int resultIndex, int nx);
 
+    /**
+     * The points wanted from each record, as indexes y * nx + x, in the order that addSubsetData() takes them.
+     * Null if the whole record should be read and given to addData().
+     */
+    @Nullable
+    default int[] getWantedPoints(int nx, int ny) {
+      return null;
+    }
+
+    /**
+     * Add the values of the getWantedPoints() of a record. By default they are put back in place in a record of
+     * missing values, which is passed to addData().
+     *
+     * @param data the values, in the order of points.
+     * @param points what getWantedPoints(nx, ny) returned.
+     */
+    default void addSubsetData(float[] data, int[] points, int resultIndex, int nx, int ny) {
+      float[] record = new float[nx * ny];
+      Arrays.fill(record, Float.NaN);
+      for (int i = 0; i < points.length; i++) {
+        record[points[i]] = data[i];
+      }
+      addData(record, resultIndex, nx);
+    }
+
     void setDataToZero(); // only used when debugging with gbx/ncx only, to fake the data
 
     Array getArray();
@@ -344,6 +444,8 @@ public abstract class GribDataReader {
     private final RangeIterator yRange;
     private final RangeIterator xRange;
     private final int horizSize;
+    private int wantedNx = -1;
+    private int[] wantedPoints;
 
     DataReceiver(int[] shape, RangeIterator yRange, RangeIterator xRange) {
       this.yRange = yRange;
@@ -374,6 +476,35 @@ public abstract class GribDataReader {
       }
     }
 
+    @Override
+    @Nullable
+    public synchronized int[] getWantedPoints(int nx, int ny) {
+      // reading the whole record is as fast when most of it is wanted
+      if (2L * horizSize > (long) nx * ny) {
+        return null;
+      }
+      if (nx != wantedNx) {
+        int[] points = new int[horizSize];
+        int count = 0;
+        for (int y : yRange) {
+          for (int x : xRange) {
+            points[count++] = y * nx + x;
+          }
+        }
+        wantedPoints = points;
+        wantedNx = nx;
+      }
+      return wantedPoints;
+    }
+
+    @Override
+    public void addSubsetData(float[] data, int[] points, int resultIndex, int nx, int ny) {
+      int start = resultIndex * horizSize;
+      for (int i = 0; i < horizSize; i++) {
+        dataArray.setFloat(start + i, data[i]);
+      }
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
@@ -406,6 +537,16 @@ public abstract class GribDataReader {
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    @Nullable
+    protected float[] readDataSubset(RandomAccessFile rafData, GribReaderRecord dr, int[] points) throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      return Grib2Record.readDataSubset(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
+          hcs.nptsInLine, points);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -4,13 +4,22 @@
  */
 package ucar.nc2.grib.collection;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.grib.GdsHorizCoordSys;
+import ucar.unidata.io.FileRange;
+import ucar.unidata.io.RandomAccessFile;
 
 /** @deprecated FeatureDatasets will move to legacy in ver7, this class will not be public. */
 @Deprecated
 class GribReaderRecord implements Comparable<GribReaderRecord> {
+  static final int PREFETCH_RECORDS = 64; // number of messages to prefetch at once from a remote file
+
   int resultIndex; // index into the result array
   final GribCollectionImmutable.Record record;
   final GdsHorizCoordSys hcs;
@@ -30,6 +39,109 @@ class GribReaderRecord implements Comparable<GribReaderRecord> {
     return Long.compare(record.pos, o.record.pos);
   }
 
+  /**
+   * Prefetch the records from start on that are in the same file, up to PREFETCH_RECORDS of them.
+   * Does nothing if the file does not prefer vectored reads.
+   *
+   * @param rafData the file of records.get(start).
+   * @param records the records, sorted by file.
+   * @param start the first record to prefetch.
+   * @param sameFile true for the records in the same file as records.get(start).
+   * @return the index of the first record that was not prefetched.
+   */
+  static int prefetchNext(@Nullable RandomAccessFile rafData, List<? extends GribReaderRecord> records, int start,
+      Predicate<GribReaderRecord> sameFile) throws IOException {
+    if (rafData == null || !rafData.prefersVectoredReads())
+      return start;
+    List<GribReaderRecord> batch = new ArrayList<>();
+    for (int j = start; j < records.size() && batch.size() < PREFETCH_RECORDS; j++) {
+      if (!sameFile.test(records.get(j)))
+        break;
+      batch.add(records.get(j));
+    }
+    prefetch(rafData, batch);
+    return start + batch.size();
+  }
+
+  /**
+   * Tell a remote file which messages are about to be read, so they can be fetched together.
+   * The message lengths are not in the index, so first read the indicator sections, all at once.
+   */
+  static void prefetch(RandomAccessFile rafData, List<GribReaderRecord> batch) throws IOException {
+    long fileLength = rafData.length();
+    List<FileRange> indicators = new ArrayList<>();
+    for (GribReaderRecord dr : batch) {
+      long pos = dr.record.pos;
+      if (pos != GribCollectionMutable.MISSING_RECORD && pos >= 0 && pos + 16 <= fileLength) {
+        indicators.add(new FileRange(pos, 16));
+      }
+    }
+    if (indicators.isEmpty())
+      return;
+
+    List<byte[]> heads = rafData.readRanges(indicators);
+    List<FileRange> messages = new ArrayList<>();
+    for (int i = 0; i < heads.size(); i++) {
+      long length = messageLength(heads.get(i));
+      long pos = indicators.get(i).getPos();
+      length = Math.min(length, fileLength - pos);
+      if (length > 16 && length <= Integer.MAX_VALUE) {
+        messages.add(new FileRange(pos, (int) length));
+      }
+    }
+    rafData.prefetch(messages);
+  }
+
+  /**
+   * The length of a GRIB message, from the first 16 bytes of it.
+   *
+   * @return the length, or -1 if it is not known from these bytes, as for large ECMWF GRIB1 messages.
+   */
+  static long messageLength(byte[] b) {
+    if (b[0] != 'G' || b[1] != 'R' || b[2] != 'I' || b[3] != 'B')
+      return -1;
+    if (b[7] == 2) { // edition 2: 8 byte length
+      long length = 0;
+      for (int k = 8; k < 16; k++) {
+        length = (length << 8) | (b[k] & 0xff);
+      }
+      return length;
+    }
+    // edition 1: 3 byte length
+    int length = ((b[4] & 0xff) << 16) | ((b[5] & 0xff) << 8) | (b[6] & 0xff);
+    return (length & 0x800000) != 0 ? -1 : length;
+  }
+
+  /**
+   * Read the whole message of a record into memory.
+   *
+   * @return the message, or null if its length is not known, or it is not all in the file.
+   */
+  @Nullable
+  static byte[] readMessage(RandomAccessFile rafData, long pos) throws IOException {
+    long fileLength = rafData.length();
+    if (pos < 0 || pos + 16 > fileLength)
+      return null;
+    byte[] indicator = new byte[16];
+    rafData.seek(pos);
+    rafData.readFully(indicator);
+    long length = messageLength(indicator);
+    if (length < 16 || length > Integer.MAX_VALUE || pos + length > fileLength)
+      return null;
+
+    byte[] message = new byte[(int) length];
+    System.arraycopy(indicator, 0, message, 0, 16);
+    rafData.readFully(message, 16, message.length - 16);
+    return message;
+  }
+
+  /** This record, in a copy of its message that starts at 0. */
+  GribReaderRecord inMessage() {
+    GribCollectionImmutable.Record inMessage =
+        new GribCollectionImmutable.Record(record.fileno, 0, record.bmsOffset, record.drsOffset);
+    return new GribReaderRecord(resultIndex, inMessage, hcs);
+  }
+
   // debugging
   public void show(GribCollectionImmutable gribCollection) {
     String dataFilename = gribCollection.getFilename(record.fileno);
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.grib.GribIndexCache;
+import ucar.nc2.grib.coord.SparseArray;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A columnar copy of the record arrays of a GRIB collection index (ncx4), kept in a file next to the index.
+ * The protobuf SparseArray of each variable is stored as fixed width columns, which are memory mapped when the
+ * variable is first read. Finding a record is then offset arithmetic, with no object per record and no lock.
+ * The ncx4 file is still the master copy; the table is rebuilt from it when the ncx4 file changes. The table is
+ * written in the background, and the records are read from the ncx4 file until it is ready.
+ * <p>
+ * File layout, big endian:
+ *
+ * <pre>
+ * header:   magic "GRIBRTAB", int version, long ncx4 length, long ncx4 lastModified
+ * variable: int rank, int ndups, int nrecords, int[rank] shape, int[totalSize] track,
+ *           int[nrecords] fileno, long[nrecords] pos, int[nrecords] bmsOffset, int[nrecords] drsOffset
+ * ...
+ * trailer:  int nvars, nvars * (long recordsPos, long offset, long length), long trailer offset
+ * </pre>
+ *
+ * The variables are found by their recordsPos in the ncx4 file.
+ */
+class GribRecordTable {
+  private static final Logger logger = LoggerFactory.getLogger(GribRecordTable.class);
+
+  static final String SUFFIX = ".records";
+  private static final byte[] MAGIC = "GRIBRTAB".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = MAGIC.length + 4 + 8 + 8;
+
+  /** Where the table for this index file is, or would be written. */
+  static File getTableFile(String indexFilename) {
+    return GribIndexCache.getFileOrCache(indexFilename + SUFFIX);
+  }
+
+  private static ExecutorService executor; // writes the tables, created when first needed
+  // the tables being written, or that failed, by table file and index version
+  private static final Map<String, Future<?>> writes = new ConcurrentHashMap<>();
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setNameFormat("GribRecordTable-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
+
+  /**
+   * Open the table of a collection. If it does not exist or is older than the index, start writing it in the
+   * background.
+   *
+   * @return the table, or null if it is not ready, or cant be read or written.
+   */
+  @Nullable
+  static GribRecordTable open(GribCollectionImmutable gc) {
+    File indexFile = new File(gc.indexFilename);
+    File tableFile = getTableFile(gc.indexFilename);
+    try {
+      GribRecordTable result = readTable(tableFile, indexFile);
+      if (result == null) {
+        String version = tableFile.getPath() + ":" + indexFile.length() + ":" + indexFile.lastModified();
+        writes.computeIfAbsent(version, k -> getExecutor().submit(() -> {
+          try {
+            writeTable(gc, indexFile, tableFile);
+            writes.remove(k); // a failed write stays, so it is not tried again for this version of the index
+          } catch (IOException | RuntimeException e) {
+            logger.warn("Cant write record table {}, reading records from {}: {}", tableFile, gc.indexFilename,
+                e.getMessage());
+          }
+        }));
+      }
+      return result;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Cant use record table {}, reading records from {}: {}", tableFile, gc.indexFilename,
+          e.getMessage());
+      return null;
+    }
+  }
+
+  /** Wait for the tables being written in the background. */
+  static void awaitWrites() throws IOException {
+    for (Future<?> write : new ArrayList<>(writes.values())) {
+      try {
+        write.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for record tables");
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+    }
+  }
+
+  // return null if missing or out of date
+  @Nullable
+  private static GribRecordTable readTable(File tableFile, File indexFile) throws IOException {
+    if (!tableFile.exists()) {
+      return null;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(tableFile.getPath(), "r")) {
+      if (raf.length() < HEADER_SIZE + 8) {
+        return null;
+      }
+      byte[] magic = new byte[MAGIC.length];
+      raf.readFully(magic);
+      if (!java.util.Arrays.equals(magic, MAGIC) || raf.readInt() != VERSION) {
+        return null;
+      }
+      if (raf.readLong() != indexFile.length() || raf.readLong() != indexFile.lastModified()) {
+        return null; // index has changed
+      }
+
+      raf.seek(raf.length() - 8);
+      raf.seek(raf.readLong());
+      int nvars = raf.readInt();
+      Map<Long, long[]> extents = new HashMap<>(2 * nvars);
+      for (int i = 0; i < nvars; i++) {
+        long recordsPos = raf.readLong();
+        extents.put(recordsPos, new long[] {raf.readLong(), raf.readLong()});
+      }
+      return new GribRecordTable(tableFile, extents);
+    }
+  }
+
+  private static void writeTable(GribCollectionImmutable gc, File indexFile, File tableFile) throws IOException {
+    // the same records may be used by more than one variable
+    TreeMap<Long, GribCollectionImmutable.VariableIndex> vars = new TreeMap<>();
+    for (GribCollectionImmutable.Dataset ds : gc.datasets) {
+      for (GribCollectionImmutable.GroupGC group : ds.groups) {
+        for (GribCollectionImmutable.VariableIndex vi : group.variList) {
+          if (vi.recordsLen > 0) {
+            vars.put(vi.recordsPos, vi);
+          }
+        }
+      }
+    }
+
+    // write to a temporary file in the same directory then rename, so that others never see half a table
+    File tempFile = Files.createTempFile(tableFile.getAbsoluteFile().getParentFile().toPath(), tableFile.getName(),
+        ".tmp").toFile();
+    List<long[]> extents = new ArrayList<>(vars.size());
+    try (RandomAccessFile indexRaf = RandomAccessFile.acquire(gc.indexFilename);
+        CountingOutputStream counter =
+            new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        DataOutputStream out = new DataOutputStream(counter)) { // DataOutputStream.size() is an int
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(indexFile.length());
+      out.writeLong(indexFile.lastModified());
+
+      for (GribCollectionImmutable.VariableIndex vi : vars.values()) {
+        long start = counter.getCount();
+        writeVariable(out, vi.readSparseArray(indexRaf));
+        extents.add(new long[] {vi.recordsPos, start, counter.getCount() - start});
+      }
+
+      long trailer = counter.getCount();
+      out.writeInt(extents.size());
+      for (long[] extent : extents) {
+        for (long val : extent) {
+          out.writeLong(val);
+        }
+      }
+      out.writeLong(trailer);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile.toPath());
+      throw e;
+    }
+    try {
+      Files.move(tempFile.toPath(), tableFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+    logger.debug("Wrote record table {} for {} variables", tableFile, extents.size());
+  }
+
+  private static void writeVariable(DataOutputStream out, GribCollectionProto.SparseArray proto) throws IOException {
+    int nrecords = proto.getRecordsCount();
+    out.writeInt(proto.getSizeCount());
+    out.writeInt(proto.getNdups());
+    out.writeInt(nrecords);
+    for (int size : proto.getSizeList()) {
+      out.writeInt(size);
+    }
+    for (int track : proto.getTrackList()) {
+      out.writeInt(track);
+    }
+    for (GribCollectionProto.Record record : proto.getRecordsList()) {
+      out.writeInt(record.getFileno());
+    }
+    for (GribCollectionProto.Record record : proto.getRecordsList()) {
+      out.writeLong(record.getStartPos());
+    }
+    for (GribCollectionProto.Record record : proto.getRecordsList()) {
+      out.writeInt(record.getBmsOffset());
+    }
+    for (GribCollectionProto.Record record : proto.getRecordsList()) {
+      out.writeInt(record.getDrsOffset());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  private final File tableFile;
+  private final Map<Long, long[]> extents; // recordsPos -> {offset, length} in the table file
+
+  private GribRecordTable(File tableFile, Map<Long, long[]> extents) {
+    this.tableFile = tableFile;
+    this.extents = extents;
+  }
+
+  /**
+   * Map the records of one variable.
+   *
+   * @param recordsPos where the records of the variable are in the ncx4 file.
+   * @return the records, or null if the variable is not in the table, or is too big to map.
+   */
+  @Nullable
+  Records readRecords(long recordsPos) throws IOException {
+    long[] extent = extents.get(recordsPos);
+    if (extent == null || extent[1] > Integer.MAX_VALUE) {
+      return null;
+    }
+    // the mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(tableFile.toPath(), StandardOpenOption.READ)) {
+      return new Records(channel.map(FileChannel.MapMode.READ_ONLY, extent[0], extent[1]));
+    }
+  }
+
+  /** The records of one variable, read directly from the mapped table. Safe for concurrent readers. */
+  @Immutable
+  static class Records {
+    private final ByteBuffer buffer; // only absolute gets are used
+    private final int[] shape;
+    private final int[] stride;
+    private final int totalSize;
+    private final int ndups;
+    private final int nrecords;
+    private final int trackStart, filenoStart, posStart, bmsStart, drsStart;
+
+    private Records(ByteBuffer buffer) {
+      this.buffer = buffer;
+      int rank = buffer.getInt(0);
+      this.ndups = buffer.getInt(4);
+      this.nrecords = buffer.getInt(8);
+      this.shape = new int[rank];
+      this.stride = new int[rank];
+      int product = 1;
+      for (int i = rank - 1; i >= 0; i--) {
+        shape[i] = buffer.getInt(12 + 4 * i);
+        stride[i] = product;
+        product *= shape[i];
+      }
+      this.totalSize = product;
+
+      this.trackStart = 12 + 4 * rank;
+      this.filenoStart = trackStart + 4 * totalSize;
+      this.posStart = filenoStart + 4 * nrecords;
+      this.bmsStart = posStart + 8 * nrecords;
+      this.drsStart = bmsStart + 4 * nrecords;
+      if (drsStart + 4 * nrecords != buffer.capacity()) {
+        throw new IllegalStateException("record table variable has wrong length " + buffer.capacity());
+      }
+    }
+
+    /** Same as SparseArray.getContent(idx): the record at a 1D index into the variable, or null if missing. */
+    @Nullable
+    GribCollectionImmutable.Record getRecord(int idx) {
+      if (idx < 0 || idx >= totalSize) {
+        logger.error("BAD index get=" + idx + " max= " + totalSize, new Throwable());
+      }
+      int recno = buffer.getInt(trackStart + 4 * idx) - 1;
+      if (recno < 0) {
+        return null; // missing
+      }
+      return makeRecord(recno);
+    }
+
+    private GribCollectionImmutable.Record makeRecord(int recno) {
+      return new GribCollectionImmutable.Record(buffer.getInt(filenoStart + 4 * recno),
+          buffer.getLong(posStart + 8 * recno), buffer.getInt(bmsStart + 4 * recno),
+          buffer.getInt(drsStart + 4 * recno));
+    }
+
+    @Nullable
+    GribCollectionImmutable.Record getRecord(int[] index) {
+      int idx = 0;
+      for (int i = 0; i < index.length; i++) {
+        idx += index[i] * stride[i];
+      }
+      return getRecord(idx);
+    }
+
+    int countNotMissing() {
+      int result = 0;
+      for (int i = 0; i < totalSize; i++) {
+        if (buffer.getInt(trackStart + 4 * i) > 0) {
+          result++;
+        }
+      }
+      return result;
+    }
+
+    /** Copy to a SparseArray on the heap, for code that wants the whole array. */
+    SparseArray<GribCollectionImmutable.Record> toSparseArray() {
+      int[] track = new int[totalSize];
+      for (int i = 0; i < totalSize; i++) {
+        track[i] = buffer.getInt(trackStart + 4 * i);
+      }
+      List<GribCollectionImmutable.Record> records = new ArrayList<>(nrecords);
+      for (int i = 0; i < nrecords; i++) {
+        records.add(makeRecord(i));
+      }
+      return new SparseArray<>(shape.clone(), track, records, ndups);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import thredds.inventory.MFile;
+import ucar.nc2.grib.GribIndex;
+
+/**
+ * Reads or creates the gbx9 indexes of the files of a collection on a pool of maxThreads threads shared by all
+ * collections. The indexes are returned in the order of the files, so the file numbers of the records dont change. At
+ * most twice maxThreads indexes are queued ahead of the caller. With maxThreads = 1, each index is read by the calling
+ * thread when asked for.
+ */
+class ParallelIndexReader implements Iterator<ParallelIndexReader.IndexRead>, Closeable {
+  // shared by all collections, follows Grib.getMaxIndexThreads()
+  private static final ResizableThreadPool pool = new ResizableThreadPool("GribIndexer-%d");
+
+  interface IndexTask {
+    /** Read the gbx9 index of a file, creating it if needed. */
+    @Nullable
+    GribIndex read(MFile mfile) throws IOException;
+  }
+
+  /** The index of one file. */
+  static class IndexRead {
+    final MFile mfile;
+    private final Future<GribIndex> future;
+
+    private IndexRead(MFile mfile, Future<GribIndex> future) {
+      this.mfile = mfile;
+      this.future = future;
+    }
+
+    /** Wait for the index, and throw the IOException if it failed. */
+    @Nullable
+    GribIndex getIndex() throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted reading gbx9 index of " + mfile.getPath());
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IOException(e.getCause());
+      }
+    }
+  }
+
+  private final Iterator<MFile> files;
+  private final IndexTask task;
+  private final int maxThreads;
+  private final ArrayDeque<IndexRead> pending = new ArrayDeque<>();
+
+  ParallelIndexReader(Iterator<MFile> files, IndexTask task, int maxThreads) {
+    this.files = files;
+    this.task = task;
+    this.maxThreads = maxThreads;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !pending.isEmpty() || files.hasNext();
+  }
+
+  @Override
+  public IndexRead next() {
+    if (maxThreads <= 1) {
+      MFile mfile = files.next();
+      return new IndexRead(mfile, readNow(mfile));
+    }
+    while (pending.size() < 2 * maxThreads && files.hasNext()) {
+      MFile mfile = files.next();
+      pending.addLast(new IndexRead(mfile, pool.get(maxThreads).submit(() -> task.read(mfile))));
+    }
+    if (pending.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return pending.removeFirst();
+  }
+
+  private Future<GribIndex> readNow(MFile mfile) {
+    try {
+      return Futures.immediateFuture(task.read(mfile));
+    } catch (IOException | RuntimeException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
+  /** Cancel the reads not yet started. Those already started are left to finish, so no gbx9 is left half written. */
+  @Override
+  public void close() {
+    pending.forEach(read -> read.future.cancel(false));
+    pending.clear();
+  }
+}
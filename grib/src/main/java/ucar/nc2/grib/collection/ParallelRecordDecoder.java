@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the records of one read on a pool of maxThreads threads shared by all reads. The caller reads each message
+ * from the file, in order, and submits the decoding of the copy in memory. At most twice maxThreads messages are held
+ * in memory at once.
+ */
+class ParallelRecordDecoder {
+  // shared by all reads, follows Grib.getMaxDecodeThreads()
+  private static final ResizableThreadPool pool = new ResizableThreadPool("GribDecoder-%d");
+
+  interface DecodeTask {
+    void decode() throws IOException;
+  }
+
+  private final int maxThreads;
+  private final ArrayDeque<Future<?>> pending = new ArrayDeque<>();
+
+  ParallelRecordDecoder(int maxThreads) {
+    this.maxThreads = maxThreads;
+  }
+
+  /** Decode on the pool, first waiting for the oldest decodes if too many are pending. */
+  void submit(DecodeTask task) throws IOException {
+    while (pending.size() >= 2 * maxThreads) {
+      waitFor(pending.removeFirst());
+    }
+    pending.addLast(pool.get(maxThreads).submit(() -> {
+      task.decode();
+      return null;
+    }));
+  }
+
+  /** Wait for all the decodes to finish. */
+  void finish() throws IOException {
+    while (!pending.isEmpty()) {
+      waitFor(pending.removeFirst());
+    }
+  }
+
+  /** Cancel the decodes not yet finished, after a failure. */
+  void cancel() {
+    pending.forEach(f -> f.cancel(true));
+    pending.clear();
+  }
+
+  private void waitFor(Future<?> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted decoding GRIB records");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+}
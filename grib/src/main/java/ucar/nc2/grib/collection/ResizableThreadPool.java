@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size pool of daemon threads, created when first needed, whose size follows a setting that may be changed
+ * after it is made, eg Grib.getMaxDecodeThreads().
+ */
+class ResizableThreadPool {
+  private final String nameFormat;
+  private ThreadPoolExecutor executor;
+
+  /** @param nameFormat the thread names, as for ThreadFactoryBuilder.setNameFormat */
+  ResizableThreadPool(String nameFormat) {
+    this.nameFormat = nameFormat;
+  }
+
+  /** The pool, first resized to nthreads if needed. */
+  synchronized ExecutorService get(int nthreads) {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(nthreads, nthreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    } else if (nthreads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(nthreads);
+      executor.setCorePoolSize(nthreads);
+    } else if (nthreads < executor.getMaximumPoolSize()) {
+      executor.setCorePoolSize(nthreads);
+      executor.setMaximumPoolSize(nthreads);
+    }
+    return executor;
+  }
+}
@@ -125,6 +125,218 @@ public class Grib2DataReader {
     return data;
   }
 
+  /**
+   * Read only some of the points. Simple packing, and complex packing without spatial differencing, keep each packed
+   * value at an offset that can be computed, so only the wanted values are read. Other data representations, like
+   * JPEG2000 and PNG, must be decoded in full.
+   *
+   * @param points index of each wanted point in the array that getData() returns, ie after the scan mode is applied.
+   * @return the values of the points, or null if this data representation cannot be read in part.
+   */
+  @Nullable
+  public float[] getDataSubset(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs, int[] points)
+      throws IOException {
+    if (dataTemplate != 0 && dataTemplate != 2) {
+      return null;
+    }
+    if (dataTemplate == 2 && ((Grib2Drs.Type2) gdrs).numberOfGroups == 0) {
+      return null;
+    }
+
+    this.bitmap = bitmapSection.getBitmap(raf);
+    this.bitmapIndicator = bitmapSection.getBitMapIndicator();
+
+    if (bitmap != null) { // is bitmap ok ?
+      if (bitmap.length * 8 < totalNPoints) { // gdsNumberPoints == nx * ny ??
+        logger.warn("Bitmap section length = {} != grid length {} ({},{})", bitmap.length, totalNPoints, nx,
+            totalNPoints / nx);
+        throw new IllegalStateException("Bitmap section length!= grid length");
+      }
+    }
+
+    int[] dataIndex = getDataIndex(points);
+    if (dataTemplate == 0) {
+      return getDataSubset0(raf, (Grib2Drs.Type0) gdrs, dataIndex);
+    } else {
+      return getDataSubset2(raf, (Grib2Drs.Type2) gdrs, dataIndex);
+    }
+  }
+
+  // The index of each point among the packed values, or -1 if the bitmap says it is missing.
+  private int[] getDataIndex(int[] points) {
+    // number of packed values before each byte of the bitmap
+    int[] before = null;
+    if (bitmap != null) {
+      before = new int[bitmap.length];
+      int count = 0;
+      for (int i = 0; i < bitmap.length; i++) {
+        before[i] = count;
+        count += Integer.bitCount(bitmap[i] & 0xff);
+      }
+    }
+
+    int[] result = new int[points.length];
+    for (int i = 0; i < points.length; i++) {
+      int point = points[i];
+      if (point < 0 || point >= totalNPoints) {
+        throw new IllegalArgumentException("point " + point + " not in grid of " + totalNPoints + " points");
+      }
+      // undo scanningModeCheck()
+      if ((scanMode != 0) && (scanMode != 64)) {
+        int col = point % nx;
+        if (!GribUtils.scanModeXisPositive(scanMode)
+            || (!GribUtils.scanModeSameDirection(scanMode) && (point / nx) % 2 != 0)) {
+          point = point - col + nx - col - 1;
+        }
+      }
+      if (bitmap == null) {
+        result[i] = point;
+      } else if (GribNumbers.testBitIsSet(bitmap[point / 8], point % 8)) {
+        // the bits set in this byte, ahead of this one
+        result[i] = before[point / 8] + Integer.bitCount(bitmap[point / 8] & 0xff & (0xff00 >> (point % 8)));
+      } else {
+        result[i] = -1;
+      }
+    }
+    return result;
+  }
+
+  // Grid point data - simple packing, see getData0()
+  @Nullable
+  private float[] getDataSubset0(RandomAccessFile raf, Grib2Drs.Type0 gdrs, int[] dataIndex) throws IOException {
+    int nb = gdrs.numberOfBits;
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+    if ((long) totalNPoints * nb > Integer.MAX_VALUE) {
+      return null;
+    }
+
+    float[] data = new float[dataIndex.length];
+    BitReader reader = new BitReader(raf, startPos + 5);
+    long nextBit = 0; // where the reader is, so that runs of points are read without seeking
+    for (int i = 0; i < dataIndex.length; i++) {
+      if (dataIndex[i] < 0) {
+        data[i] = staticMissingValue;
+        continue;
+      }
+      long bit = (long) dataIndex[i] * nb;
+      if (bit != nextBit) {
+        reader.setBitOffset((int) bit);
+      }
+      data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+      nextBit = bit + nb;
+    }
+    return data;
+  }
+
+  // Grid point data - complex packing, see getData2(). Only the group descriptors and the wanted values are read.
+  @Nullable
+  private float[] getDataSubset2(RandomAccessFile raf, Grib2Drs.Type2 gdrs, int[] dataIndex) throws IOException {
+    int mvm = gdrs.missingValueManagement;
+    float mv = getMissingValue(gdrs);
+
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+
+    int NG = gdrs.numberOfGroups;
+    BitReader reader = new BitReader(raf, startPos + 5);
+
+    // 6-xx Get reference values for groups (X1's)
+    int[] X1 = new int[NG];
+    int nb = gdrs.numberOfBits;
+    if (nb != 0) {
+      for (int i = 0; i < NG; i++) {
+        X1[i] = (int) reader.bits2UInt(nb);
+      }
+    }
+
+    // [xx +1 ]-yy Get number of bits used to encode each group
+    int[] NB = new int[NG];
+    nb = gdrs.bitsGroupWidths;
+    if (nb != 0) {
+      reader.incrByte();
+      for (int i = 0; i < NG; i++) {
+        NB[i] = (int) reader.bits2UInt(nb);
+      }
+    }
+
+    // [yy +1 ]-zz Get the scaled group lengths
+    int[] L = new int[NG];
+    int ref = gdrs.referenceGroupLength;
+    int len_inc = gdrs.lengthIncrement;
+    nb = gdrs.bitsScaledGroupLength;
+    reader.incrByte();
+    for (int i = 0; i < NG; i++) {
+      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+    }
+    L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
+
+    // [zz +1 ]-nn the X2 values start at the next byte. Find where each group starts.
+    reader.incrByte();
+    long valuesBit = (raf.getFilePointer() - (startPos + 5)) * 8;
+    int[] groupStart = new int[NG + 1]; // index of the first value
+    long[] groupBit = new long[NG + 1]; // bit offset of the first value
+    groupBit[0] = valuesBit;
+    for (int i = 0; i < NG; i++) {
+      groupStart[i + 1] = groupStart[i] + L[i];
+      groupBit[i + 1] = groupBit[i] + (long) NB[i] * L[i];
+    }
+    if (groupBit[NG] > Integer.MAX_VALUE) {
+      return null;
+    }
+
+    float[] data = new float[dataIndex.length];
+    long nextBit = -1; // where the reader is, so that runs of points are read without seeking
+    for (int p = 0; p < dataIndex.length; p++) {
+      int idx = dataIndex[p];
+      if (idx < 0) {
+        data[p] = mv;
+        continue;
+      }
+      if (idx >= groupStart[NG]) { // not in any group, getData2() leaves these as 0
+        continue;
+      }
+
+      // the group holding this value
+      int i = Arrays.binarySearch(groupStart, 0, NG, idx);
+      if (i < 0) {
+        i = -i - 2;
+      } else {
+        while (i + 1 < NG && groupStart[i + 1] == idx) { // skip empty groups
+          i++;
+        }
+      }
+
+      if (NB[i] == 0) {
+        if (mvm == 0) { // X2 = 0
+          data[p] = (R + X1[i] * EE) / DD;
+        } else { // if (mvm == 1) || (mvm == 2 )
+          data[p] = mv;
+        }
+      } else {
+        long bit = groupBit[i] + (long) (idx - groupStart[i]) * NB[i];
+        if (bit != nextBit) {
+          reader.setBitOffset((int) bit);
+        }
+        int X2 = (int) reader.bits2UInt(NB[i]);
+        nextBit = bit + NB[i];
+        if (mvm == 0) {
+          data[p] = (R + (X1[i] + X2) * EE) / DD;
+        } else { // if (mvm == 1) || (mvm == 2 )
+          // X2 is also set to missing value if all bits set to 1's
+          if (X2 == bitsmv1[NB[i]]) {
+            data[p] = mv;
+          } else {
+            data[p] = (R + (X1[i] + X2) * EE) / DD;
+          }
+        }
+      }
+    }
+    return data;
+  }
+
   @Nullable
   int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
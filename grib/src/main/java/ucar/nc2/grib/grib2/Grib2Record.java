@@ -328,6 +328,46 @@ public class Grib2Record {
     return data;
   }
 
+  /**
+   * Read some of the points of the data array, without decoding the others when the data representation allows it.
+   *
+   * @param raf from this RandomAccessFile
+   * @param drsPos Grib2SectionDataRepresentation starts here
+   * @param bmsPos if non-zero, use the bms that starts here
+   * @param gdsNumberPoints gdss.getNumberPoints()
+   * @param scanMode gds.scanMode
+   * @param nx gds.nx
+   * @param nptsInLine thin grids are not read in part, so must be null
+   * @param points index into the array returned by readData() of each wanted point
+   * @return the values of the points, or null if the whole array must be read with readData()
+   * @throws IOException on read error
+   */
+  @Nullable
+  public static float[] readDataSubset(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints,
+      int scanMode, int nx, int[] nptsInLine, int[] points) throws IOException {
+    if (nptsInLine != null)
+      return null;
+
+    raf.seek(drsPos);
+    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+    Grib2SectionData dataSection = new Grib2SectionData(raf);
+
+    if (bmsPos > 0)
+      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+
+    Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(), scanMode,
+        nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+    Grib2Drs gdrs = drs.getDrs(raf);
+
+    float[] data = reader.getDataSubset(raf, bms, gdrs, points);
+
+    if (data != null && getlastRecordRead)
+      lastRecordRead = Grib2RecordScanner.findRecordByDrspos(raf, drsPos);
+    return data;
+  }
+
   public void check(RandomAccessFile raf, Formatter f) throws IOException {
     long messLen = is.getMessageLength();
     long startPos = is.getStartPos();
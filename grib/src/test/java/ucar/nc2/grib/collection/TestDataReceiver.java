@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import javax.annotation.Nullable;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+
+/** Test that {@link GribDataReader.DataReceiverIF} gives the same data for whole records and wanted points. */
+public class TestDataReceiver {
+  private static final int nx = 10;
+  private static final int ny = 8;
+
+  // only implements what a DataReceiverIF must, so uses the default addSubsetData()
+  private static class DefaultSubsetReceiver implements GribDataReader.DataReceiverIF {
+    private final GribDataReader.DataReceiver delegate;
+
+    DefaultSubsetReceiver(GribDataReader.DataReceiver delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void addData(float[] data, int resultIndex, int nx) {
+      delegate.addData(data, resultIndex, nx);
+    }
+
+    @Override
+    @Nullable
+    public int[] getWantedPoints(int nx, int ny) {
+      return delegate.getWantedPoints(nx, ny);
+    }
+
+    @Override
+    public void setDataToZero() {
+      delegate.setDataToZero();
+    }
+
+    @Override
+    public Array getArray() {
+      return delegate.getArray();
+    }
+  }
+
+  private static float[] makeRecord(int resultIndex) {
+    float[] record = new float[nx * ny];
+    for (int i = 0; i < record.length; i++) {
+      record[i] = resultIndex * 1000 + i;
+    }
+    return record;
+  }
+
+  private static float[] read(GribDataReader.DataReceiverIF receiver, boolean subset) {
+    for (int resultIndex = 0; resultIndex < 2; resultIndex++) {
+      float[] record = makeRecord(resultIndex);
+      int[] points = receiver.getWantedPoints(nx, ny);
+      if (subset) {
+        assertThat(points).isNotNull();
+        float[] data = new float[points.length];
+        for (int i = 0; i < points.length; i++) {
+          data[i] = record[points[i]];
+        }
+        receiver.addSubsetData(data, points, resultIndex, nx, ny);
+      } else {
+        receiver.addData(record, resultIndex, nx);
+      }
+    }
+    return (float[]) receiver.getArray().get1DJavaArray(DataType.FLOAT);
+  }
+
+  private static GribDataReader.DataReceiver makeReceiver() throws InvalidRangeException {
+    return new GribDataReader.DataReceiver(new int[] {2, 3, 4}, new Range(2, 4), new Range(3, 6));
+  }
+
+  @Test
+  public void testSubsetData() throws InvalidRangeException {
+    float[] whole = read(makeReceiver(), false);
+    assertThat(whole[0]).isEqualTo(2 * nx + 3);
+    assertThat(whole[12 + 11]).isEqualTo(1000 + 4 * nx + 6);
+
+    assertThat(read(makeReceiver(), true)).isEqualTo(whole);
+    assertThat(read(new DefaultSubsetReceiver(makeReceiver()), true)).isEqualTo(whole);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.filesystem.MFileOS;
+import thredds.inventory.CollectionUpdateType;
+import ucar.nc2.grib.coord.SparseArray;
+
+/** Test that records read from the {@link GribRecordTable} are the same as from the protobuf record arrays. */
+public class TestGribRecordTable {
+  private static final Logger logger = LoggerFactory.getLogger(TestGribRecordTable.class);
+
+  private static final String[] FILES = {"../grib/src/test/data/ds.snow.grib2", "../grib/src/test/data/ds.sky.grib2",
+      "../grib/src/test/data/D2.2006091400.F012.002M.CLWMR.grib1"};
+
+  @After
+  public void restore() {
+    Grib.setUseRecordTable(false);
+  }
+
+  @Test
+  public void testSameRecords() throws IOException {
+    for (String filename : FILES) {
+      Grib.setUseRecordTable(false);
+      List<Object> fromProto = readRecords(filename);
+
+      Grib.setUseRecordTable(true);
+      try (GribCollectionImmutable gc = open(filename)) {
+        Files.deleteIfExists(GribRecordTable.getTableFile(gc.getLocation()).toPath());
+      }
+      List<Object> fromNewTable = readRecords(filename);
+      GribRecordTable.awaitWrites();
+      List<Object> fromExistingTable = readRecords(filename);
+
+      assertThat(fromProto).isNotEmpty();
+      assertThat(fromNewTable).isEqualTo(fromProto);
+      assertThat(fromExistingTable).isEqualTo(fromProto);
+    }
+  }
+
+  @Test
+  public void testTableIsWritten() throws IOException {
+    Grib.setUseRecordTable(true);
+    try (GribCollectionImmutable gc = open(FILES[0])) {
+      File tableFile = GribRecordTable.getTableFile(gc.getLocation());
+      Files.deleteIfExists(tableFile.toPath());
+      GribCollectionImmutable.VariableIndex vi = gc.datasets.get(0).groups.get(0).variList.get(0);
+      vi.readRecords();
+      // the records were read from the index while the table is written in the background
+      assertThat(vi.getSparseArray()).isNotNull();
+      GribRecordTable.awaitWrites();
+      assertThat(tableFile.exists()).isTrue();
+      File dir = tableFile.getAbsoluteFile().getParentFile();
+      assertThat(dir.list((d, name) -> name.endsWith(".tmp"))).isEmpty();
+
+      GribRecordTable table = GribRecordTable.open(gc);
+      assertThat(table).isNotNull();
+      assertThat(table.readRecords(vi.recordsPos)).isNotNull();
+      assertThat(table.readRecords(-1)).isNull();
+    }
+  }
+
+  private static GribCollectionImmutable open(String filename) throws IOException {
+    boolean isGrib1 = filename.endsWith(".grib1");
+    GribCollectionImmutable gc = GribCdmIndex.openGribCollectionFromDataFile(isGrib1, new MFileOS(filename),
+        CollectionUpdateType.nocheck, new FeatureCollectionConfig(), new Formatter(), logger);
+    assertThat(gc).isNotNull();
+    return gc;
+  }
+
+  // every record of every variable, and the shape and track of its SparseArray
+  private static List<Object> readRecords(String filename) throws IOException {
+    List<Object> result = new ArrayList<>();
+    try (GribCollectionImmutable gc = open(filename)) {
+      for (GribCollectionImmutable.Dataset ds : gc.datasets) {
+        for (GribCollectionImmutable.GroupGC group : ds.groups) {
+          for (GribCollectionImmutable.VariableIndex vi : group.variList) {
+            vi.readRecords();
+            SparseArray<GribCollectionImmutable.Record> sa = vi.getSparseArray();
+            if (sa == null) {
+              continue;
+            }
+            result.add(java.util.Arrays.toString(sa.getShape()));
+            result.add(java.util.Arrays.toString(sa.getTrack()));
+            result.add(vi.countNRecords());
+            for (int i = 0; i < sa.getTotalSize(); i++) {
+              result.add(String.valueOf(vi.getRecordAt(i)));
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+}
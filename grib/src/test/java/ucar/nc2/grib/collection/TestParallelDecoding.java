@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import ucar.array.Arrays;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test that decoding the records of a read in parallel gives the same data as decoding them one at a time. */
+public class TestParallelDecoding {
+  private static final String[] FILES = {"../grib/src/test/data/ds.snow.grib2", "../grib/src/test/data/ds.sky.grib2",
+      "../grib/src/test/data/D2.2006091400.F012.002M.CLWMR.grib1", "../grib/src/test/data/thinGrid.grib2"};
+
+  @After
+  public void restore() {
+    Grib.setMaxDecodeThreads(1);
+  }
+
+  @Test
+  public void testSameData() throws IOException, InvalidRangeException {
+    for (String filename : FILES) {
+      Grib.setMaxDecodeThreads(1);
+      List<Object> serial = readAll(filename);
+      Grib.setMaxDecodeThreads(4);
+      List<Object> parallel = readAll(filename);
+      assertThat(parallel).hasSize(serial.size());
+      for (int i = 0; i < serial.size(); i++) {
+        assertThat(parallel.get(i)).isEqualTo(serial.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testReadMessage() throws IOException {
+    String filename = "../grib/src/test/data/ds.snow.grib2";
+    byte[] bytes = Files.readAllBytes(Paths.get(filename));
+    try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+      byte[] message = GribReaderRecord.readMessage(raf, 0);
+      assertThat(message).isNotNull();
+      assertThat(message).isEqualTo(java.util.Arrays.copyOf(bytes, message.length));
+      assertThat(new String(message, message.length - 4, 4, "US-ASCII")).isEqualTo("7777");
+
+      assertThat(GribReaderRecord.readMessage(raf, 1)).isNull();
+      assertThat(GribReaderRecord.readMessage(raf, bytes.length - 8)).isNull();
+    }
+  }
+
+  @Test
+  public void testPoolSize() throws Exception {
+    // more threads than processors, then fewer
+    int nprocs = Runtime.getRuntime().availableProcessors();
+    for (int maxThreads : new int[] {nprocs + 2, 2}) {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      ParallelRecordDecoder.DecodeTask task = () -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } finally {
+          running.decrementAndGet();
+        }
+      };
+
+      // two reads at once still share maxThreads threads
+      Callable<Void> read = () -> {
+        ParallelRecordDecoder decoder = new ParallelRecordDecoder(maxThreads);
+        for (int i = 0; i < 4 * maxThreads; i++) {
+          decoder.submit(task);
+        }
+        decoder.finish();
+        return null;
+      };
+      ExecutorService readers = Executors.newFixedThreadPool(2);
+      try {
+        for (Future<Void> f : readers.invokeAll(ImmutableList.of(read, read))) {
+          f.get();
+        }
+      } finally {
+        readers.shutdown();
+      }
+      assertThat(maxRunning.get()).isAtMost(maxThreads);
+    }
+  }
+
+  @Test
+  public void testMaxDecodeThreads() {
+    Grib.setMaxDecodeThreads(0);
+    assertThat(Grib.getMaxDecodeThreads()).isEqualTo(1);
+    Grib.setMaxDecodeThreads(8);
+    assertThat(Grib.getMaxDecodeThreads()).isEqualTo(8);
+  }
+
+  // Read each variable whole and a corner of it, with both the ma2 and array API.
+  private List<Object> readAll(String filename) throws IOException, InvalidRangeException {
+    List<Object> result = new ArrayList<>();
+    try (NetcdfFile nc = NetcdfFiles.open(filename)) {
+      for (Variable var : nc.getVariables()) {
+        if (var.getRank() < 3 || var.getDataType() != DataType.FLOAT)
+          continue;
+        result.add(var.read().get1DJavaArray(DataType.FLOAT));
+        result.add(Arrays.copyPrimitiveArray(var.readArray()));
+
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < var.getRank() - 2; i++) {
+          spec.append(":,");
+        }
+        spec.append("0:4,1:7:2");
+        result.add(var.read(spec.toString()).get1DJavaArray(DataType.FLOAT));
+      }
+    }
+    assertThat(result).isNotEmpty();
+    return result;
+  }
+}
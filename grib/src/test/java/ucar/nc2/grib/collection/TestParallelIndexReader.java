@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import thredds.filesystem.MFileOS;
+import thredds.inventory.MFile;
+
+/**
+ * Test that {@link ParallelIndexReader} returns the indexes in file order, passes on failures, and uses maxThreads
+ * threads.
+ */
+public class TestParallelIndexReader {
+
+  @After
+  public void restore() {
+    Grib.setMaxIndexThreads(1);
+  }
+
+  @Test
+  public void testOrder() throws IOException {
+    List<MFile> files = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      files.add(new MFileOS(new File("file" + i + ".grib2")));
+    }
+
+    for (int maxThreads : new int[] {1, 4}) {
+      Set<String> threads = ConcurrentHashMap.newKeySet();
+      Random random = new Random(maxThreads);
+      ParallelIndexReader.IndexTask task = mfile -> {
+        threads.add(Thread.currentThread().getName());
+        try {
+          Thread.sleep(random.nextInt(5));
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        if (mfile.getName().equals("file13.grib2")) {
+          throw new IOException("bad file");
+        }
+        return null;
+      };
+
+      List<MFile> result = new ArrayList<>();
+      try (ParallelIndexReader reader = new ParallelIndexReader(files.iterator(), task, maxThreads)) {
+        while (reader.hasNext()) {
+          ParallelIndexReader.IndexRead read = reader.next();
+          result.add(read.mfile);
+          try {
+            assertThat(read.getIndex()).isNull();
+            assertThat(read.mfile.getName()).isNotEqualTo("file13.grib2");
+          } catch (IOException e) {
+            assertThat(read.mfile.getName()).isEqualTo("file13.grib2");
+            assertThat(e.getMessage()).isEqualTo("bad file");
+          }
+        }
+      }
+      assertThat(result).isEqualTo(files);
+      if (maxThreads == 1) {
+        assertThat(threads).containsExactly(Thread.currentThread().getName());
+      } else {
+        assertThat(threads).doesNotContain(Thread.currentThread().getName());
+      }
+    }
+  }
+
+  @Test
+  public void testPoolSize() throws IOException {
+    List<MFile> files = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      files.add(new MFileOS(new File("file" + i + ".grib2")));
+    }
+
+    // more threads than processors, then fewer
+    int nprocs = Runtime.getRuntime().availableProcessors();
+    for (int maxThreads : new int[] {nprocs + 2, 2}) {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      ParallelIndexReader.IndexTask task = mfile -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } finally {
+          running.decrementAndGet();
+        }
+        return null;
+      };
+
+      try (ParallelIndexReader reader = new ParallelIndexReader(files.iterator(), task, maxThreads)) {
+        while (reader.hasNext()) {
+          assertThat(reader.next().getIndex()).isNull();
+        }
+      }
+      assertThat(maxRunning.get()).isAtMost(maxThreads);
+    }
+  }
+
+  @Test
+  public void testMaxIndexThreads() {
+    Grib.setMaxIndexThreads(0);
+    assertThat(Grib.getMaxIndexThreads()).isEqualTo(1);
+    Grib.setMaxIndexThreads(8);
+    assertThat(Grib.getMaxIndexThreads()).isEqualTo(8);
+    try (ParallelIndexReader reader = new ParallelIndexReader(new ArrayList<MFile>().iterator(), m -> null, 8)) {
+      assertThat(reader.hasNext()).isFalse();
+      reader.next();
+      fail();
+    } catch (java.util.NoSuchElementException e) {
+      // expected
+    }
+  }
+}
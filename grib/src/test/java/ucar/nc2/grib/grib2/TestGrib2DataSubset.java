@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test reading some of the points of a GRIB2 record with {@link Grib2Record#readDataSubset} */
+public class TestGrib2DataSubset {
+  private static final int NX = 40;
+  private static final int NY = 30;
+  private static final int[] SCAN_MODES = {0, 64, 128, 16, 64 + 16};
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Random random = new Random(7);
+
+  @Test
+  public void testSimplePacking() throws IOException {
+    checkRecords("../grib/src/test/data/Eumetsat.VerticalPerspective.grib2", true);
+  }
+
+  @Test
+  public void testComplexPacking() throws IOException {
+    checkRecords("../grib/src/test/data/ds.snow.grib2", true);
+  }
+
+  @Test
+  public void testSpatialDifferencingNotSupported() throws IOException {
+    checkRecords("../grib/src/test/data/ds.sky.grib2", false);
+  }
+
+  @Test
+  public void testSimplePackingWithBitmap() throws IOException {
+    byte[] bitmap = makeBitmap();
+    int ndata = countBits(bitmap);
+    BitWriter data = new BitWriter();
+    for (int i = 0; i < ndata; i++) {
+      data.put(random.nextInt(4096), 12);
+    }
+
+    ByteArrayOutputStream drs = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(drs);
+    out.writeFloat(100.0f); // reference value
+    out.writeShort(1); // binary scale factor
+    out.writeShort(1); // decimal scale factor
+    out.write(12); // number of bits
+    out.write(0); // original type
+
+    checkSynthetic(0, ndata, drs.toByteArray(), bitmap, data.toByteArray());
+  }
+
+  @Test
+  public void testComplexPackingWithBitmap() throws IOException {
+    for (int mvm = 0; mvm <= 1; mvm++) {
+      byte[] bitmap = makeBitmap();
+      int ndata = countBits(bitmap);
+
+      // random groups, some of them constant
+      int ngroups = 0;
+      int[] length = new int[ndata];
+      int[] width = new int[ndata];
+      int[] ref = new int[ndata];
+      for (int done = 0; done < ndata; ngroups++) {
+        length[ngroups] = Math.min(1 + random.nextInt(20), ndata - done);
+        width[ngroups] = random.nextInt(7);
+        ref[ngroups] = random.nextInt(128);
+        done += length[ngroups];
+      }
+
+      BitWriter data = new BitWriter();
+      for (int i = 0; i < ngroups; i++) {
+        data.put(ref[i], 7);
+      }
+      data.pad();
+      for (int i = 0; i < ngroups; i++) {
+        data.put(width[i], 3);
+      }
+      data.pad();
+      for (int i = 0; i < ngroups; i++) {
+        data.put(i < ngroups - 1 ? length[i] - 1 : 0, 5); // the last group has its own length
+      }
+      data.pad();
+      for (int i = 0; i < ngroups; i++) {
+        for (int j = 0; j < length[i]; j++) {
+          data.put(random.nextInt(1 << width[i]), width[i]); // all ones is missing, with mvm = 1
+        }
+      }
+
+      ByteArrayOutputStream drs = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(drs);
+      out.writeFloat(-20.0f); // reference value
+      out.writeShort(0); // binary scale factor
+      out.writeShort(1); // decimal scale factor
+      out.write(7); // number of bits for group references
+      out.write(0); // original type
+      out.write(1); // splitting method
+      out.write(mvm); // missing value management
+      out.writeFloat(9999.0f); // primary missing value
+      out.writeFloat(9998.0f); // secondary missing value
+      out.writeInt(ngroups);
+      out.write(0); // reference for group widths
+      out.write(3); // number of bits for group widths
+      out.writeInt(1); // reference for group lengths
+      out.write(1); // length increment
+      out.writeInt(length[ngroups - 1]); // length of last group
+      out.write(5); // number of bits for scaled group lengths
+
+      checkSynthetic(2, ndata, drs.toByteArray(), bitmap, data.toByteArray());
+    }
+  }
+
+  @Test
+  public void testReadSection() throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = NetcdfFiles.open("../grib/src/test/data/ds.snow.grib2")) {
+      Variable var = nc.findVariable("Total_snowfall_surface_6_Hour_Accumulation");
+      assertThat(var).isNotNull();
+      int[] shape = var.getShape();
+      int rank = shape.length;
+      Array full = var.read();
+
+      StringBuilder spec = new StringBuilder();
+      for (int i = 0; i < rank - 2; i++) {
+        spec.append(":,");
+      }
+      spec.append("100:120,50:60:3");
+      Array subset = var.read(spec.toString());
+
+      float[] fullData = (float[]) full.get1DJavaArray(DataType.FLOAT);
+      float[] subsetData = (float[]) subset.get1DJavaArray(DataType.FLOAT);
+      int nx = shape[rank - 1];
+      int ny = shape[rank - 2];
+      int count = 0;
+      for (int record = 0; record < fullData.length / (nx * ny); record++) {
+        for (int y = 100; y <= 120; y++) {
+          for (int x = 50; x <= 60; x += 3) {
+            float expected = fullData[record * nx * ny + y * nx + x];
+            assertThat(Float.floatToIntBits(subsetData[count++])).isEqualTo(Float.floatToIntBits(expected));
+          }
+        }
+      }
+      assertThat(count).isEqualTo(subsetData.length);
+    }
+  }
+
+  // Compare reading some points with reading all of them, for each record in the file.
+  private void checkRecords(String filename, boolean supported) throws IOException {
+    int nrecords = 0;
+    try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      while (scanner.hasNext()) {
+        Grib2Record gr = scanner.next();
+        Grib2Gds gds = gr.getGDS();
+        int npoints = gr.getGDSsection().getNumberPoints();
+        int[] points = makePoints(npoints);
+
+        float[] data = gr.readData(raf);
+        float[] subset = Grib2Record.readDataSubset(raf, gr.getDataRepresentationSection().getStartingPosition(), 0,
+            npoints, gr.getScanMode(), gds.getNxRaw(), gds.isThin() ? gds.getNptsInLine() : null, points);
+        if (!supported) {
+          assertThat(subset).isNull();
+          continue;
+        }
+        assertThat(subset).isNotNull();
+        checkSubset(data, points, subset);
+        nrecords++;
+      }
+    }
+    assertThat(nrecords > 0).isEqualTo(supported);
+  }
+
+  // Write the DRS, bitmap and data sections, then compare reading some points with reading all of them.
+  private void checkSynthetic(int template, int ndata, byte[] drsTemplate, byte[] bitmap, byte[] data)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(11 + drsTemplate.length);
+    out.write(5);
+    out.writeInt(ndata);
+    out.writeShort(template);
+    out.write(drsTemplate);
+    out.writeInt(6 + bitmap.length);
+    out.write(6);
+    out.write(0); // bitmap applies
+    out.write(bitmap);
+    out.writeInt(5 + data.length);
+    out.write(7);
+    out.write(data);
+
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), bytes.toByteArray());
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      for (int scanMode : SCAN_MODES) {
+        float[] all = Grib2Record.readData(raf, 0, 0, NX * NY, scanMode, NX, NY, null);
+        int[] points = makePoints(NX * NY);
+        float[] subset = Grib2Record.readDataSubset(raf, 0, 0, NX * NY, scanMode, NX, null, points);
+        assertThat(subset).isNotNull();
+        checkSubset(all, points, subset);
+      }
+    }
+  }
+
+  private static void checkSubset(float[] data, int[] points, float[] subset) {
+    assertThat(subset).hasLength(points.length);
+    for (int i = 0; i < points.length; i++) {
+      assertThat(Float.floatToIntBits(subset[i])).isEqualTo(Float.floatToIntBits(data[points[i]]));
+    }
+  }
+
+  // a run of points, and some random ones
+  private int[] makePoints(int npoints) {
+    int[] points = new int[Math.min(npoints, 500)];
+    int start = random.nextInt(npoints);
+    for (int i = 0; i < points.length; i++) {
+      points[i] = (i < points.length / 2) ? (start + i) % npoints : random.nextInt(npoints);
+    }
+    return points;
+  }
+
+  private byte[] makeBitmap() {
+    byte[] bitmap = new byte[(NX * NY + 7) / 8];
+    random.nextBytes(bitmap);
+    for (int i = 0; i < bitmap.length; i += 3) {
+      bitmap[i] = (byte) 0xff; // mostly present
+    }
+    return bitmap;
+  }
+
+  private static int countBits(byte[] bitmap) {
+    int count = 0;
+    for (byte b : bitmap) {
+      count += Integer.bitCount(b & 0xff);
+    }
+    return count;
+  }
+
+  private static class BitWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int buffer;
+    private int nbits;
+
+    void put(int value, int nb) {
+      for (int i = nb - 1; i >= 0; i--) {
+        buffer = (buffer << 1) | ((value >> i) & 1);
+        if (++nbits == 8) {
+          out.write(buffer);
+          buffer = 0;
+          nbits = 0;
+        }
+      }
+    }
+
+    void pad() {
+      if (nbits > 0) {
+        put(0, 8 - nbits);
+      }
+    }
+
+    byte[] toByteArray() {
+      pad();
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/////////////////////////////////////////////////////////////////////////////
+// This file is part of the "Java-DAP" project, a Java implementation
+// of the OPeNDAP Data Access Protocol.
+//
+// Copyright (c) 2010, OPeNDAP, Inc.
+// Copyright (c) 2002,2003 OPeNDAP, Inc.
+//
+// Author: James Gallagher <jgallagher@opendap.org>
+//
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms,
+// with or without modification, are permitted provided
+// that the following conditions are met:
+//
+// - Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// - Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+//
+// - Neither the name of the OPeNDAP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+// IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+// TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+// PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+// TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+// PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+// LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+// SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+/////////////////////////////////////////////////////////////////////////////
+
+package opendap.dap;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the XDR encoded values of a primitive vector in blocks, instead of one <code>readXXX()</code> call per
+ * value. A block of at most {@link #CHUNK_SIZE} bytes is read from the stream and converted with a
+ * <code>ByteBuffer</code> view, so the buffering is bounded however large the vector is. The values are the same as
+ * the one at a time reads; XDR is big endian, which is the <code>ByteBuffer</code> default.
+ *
+ * @see PrimitiveVector#deserialize
+ */
+class XdrVectors {
+
+  /** Size in bytes of the block read from the stream. A multiple of 8. */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private XdrVectors() {}
+
+  /** Read vals.length 4 byte floats. */
+  static void readFloats(DataInputStream source, float[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[chunkSize(vals.length, 4)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int n = Math.min(chunk.length / 4, vals.length - start);
+      readChunk(source, chunk, 4 * n, statusUI);
+      bb.clear();
+      bb.asFloatBuffer().get(vals, start, n);
+      start += n;
+    }
+  }
+
+  /** Read vals.length 8 byte doubles. */
+  static void readDoubles(DataInputStream source, double[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[chunkSize(vals.length, 8)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int n = Math.min(chunk.length / 8, vals.length - start);
+      readChunk(source, chunk, 8 * n, statusUI);
+      bb.clear();
+      bb.asDoubleBuffer().get(vals, start, n);
+      start += n;
+    }
+  }
+
+  /** Read vals.length 4 byte ints. */
+  static void readInts(DataInputStream source, int[] vals, StatusUI statusUI) throws IOException, DataReadException {
+    byte[] chunk = new byte[chunkSize(vals.length, 4)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int n = Math.min(chunk.length / 4, vals.length - start);
+      readChunk(source, chunk, 4 * n, statusUI);
+      bb.clear();
+      bb.asIntBuffer().get(vals, start, n);
+      start += n;
+    }
+  }
+
+  /** Read vals.length shorts, each sent as a 4 byte int of which the low 16 bits are kept. */
+  static void readShorts(DataInputStream source, short[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[chunkSize(vals.length, 4)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int n = Math.min(chunk.length / 4, vals.length - start);
+      readChunk(source, chunk, 4 * n, statusUI);
+      for (int i = 0; i < n; i++) {
+        vals[start + i] = bb.getShort(4 * i + 2);
+      }
+      start += n;
+    }
+  }
+
+  /** Read vals.length bytes, then the padding out to a multiple of four bytes. */
+  static void readBytes(DataInputStream source, byte[] vals, StatusUI statusUI) throws IOException, DataReadException {
+    for (int start = 0; start < vals.length;) {
+      int n = Math.min(CHUNK_SIZE, vals.length - start);
+      source.readFully(vals, start, n);
+      start += n;
+      checkStatus(statusUI, n);
+    }
+    int modFour = vals.length % 4;
+    int pad = (modFour != 0) ? (4 - modFour) : 0;
+    source.readFully(new byte[pad]);
+    if (statusUI != null)
+      statusUI.incrementByteCount(pad);
+  }
+
+  // dont allocate a full chunk for a short vector
+  private static int chunkSize(int nvals, int elemSize) {
+    return (int) Math.min(CHUNK_SIZE, (long) nvals * elemSize);
+  }
+
+  private static void readChunk(DataInputStream source, byte[] chunk, int nbytes, StatusUI statusUI)
+      throws IOException, DataReadException {
+    source.readFully(chunk, 0, nbytes);
+    checkStatus(statusUI, nbytes);
+  }
+
+  private static void checkStatus(StatusUI statusUI, int nbytes) throws DataReadException {
+    if (statusUI != null) {
+      statusUI.incrementByteCount(nbytes);
+      if (statusUI.userCancelled())
+        throw new DataReadException("User cancelled");
+    }
+  }
+}
@@ -75,8 +75,7 @@ class ConvertD2N {
         nested = nested.getParentStructure();
       }
 
-      StructureMembers.Member m = findNested(as, names, v.getShortName());
-      Array mdata = m.getDataArray();
+      Array mdata = findNested(as, names, v.getShortName());
       if (mdata instanceof ArraySequenceNested) {
         // gotta unroll
         ArraySequenceNested arraySeq = (ArraySequenceNested) mdata;
@@ -87,17 +86,18 @@ class ConvertD2N {
     return data;
   }
 
-  private StructureMembers.Member findNested(ArrayStructure as, List<String> names, String want) {
+  private Array findNested(ArrayStructure as, List<String> names, String want) throws IOException {
     String name = names.get(0);
     StructureMembers sm = as.getStructureMembers();
     StructureMembers.Member m = sm.findMember(name);
+    // the member data array, or if decoded by XdrStructures, a copy from the ByteBuffer
+    Array mdata = as.extractMemberArray(m);
     if (name.equals(want))
-      return m;
+      return mdata;
 
     // keep going
-    ArrayStructure nested = (ArrayStructure) m.getDataArray();
     names.remove(0);
-    return findNested(nested, names, want);
+    return findNested((ArrayStructure) mdata, names, want);
   }
 
   /**
@@ -146,6 +146,11 @@ class ConvertD2N {
    * @throws DAP2Exception on bad
    */
   public Array convert(DodsV dataV) throws DAP2Exception {
+    // top level arrays of structures and sequences may have been decoded without BaseTypes
+    ArrayStructure decoded = XdrStructures.getDecoded(dataV.darray != null ? dataV.darray : dataV.bt);
+    if (decoded != null) {
+      return decoded;
+    }
 
     // scalars
     if (dataV.darray == null) {
@@ -128,7 +128,7 @@ public class DodsNetcdfFile extends ucar.nc2.NetcdfFile {
       CE = "?" + CE;
     DataDDS data;
     synchronized (this) {
-      data = dodsConnection.getData(CE, null);
+      data = dodsConnection.getData(CE, null, new XdrStructures.Factory());
     }
     if (DodsNetcdfFiles.debugTime)
       System.out
@@ -282,7 +282,7 @@ public class DodsNetcdfFile extends ucar.nc2.NetcdfFile {
           }
 
           if (var.isCaching()) {
-            this.setCachedData(var, ucar.array.ArraysConvert.convertToArray(data));
+            this.setCachedData(var, XdrStructures.convertToArray(data));
             if (DodsNetcdfFiles.debugCached) {
               System.out.println(" cache for <" + var.getFullName() + "> length =" + data.getSize());
             }
@@ -202,7 +202,7 @@ class DodsV implements Comparable {
 
     BaseType elemType;
     PrimitiveVector pv = da.getPrimitiveVector();
-    if (pv instanceof BaseTypePrimitiveVector) {
+    if ((pv instanceof BaseTypePrimitiveVector) && !dodsV.isDecoded()) {
       BaseTypePrimitiveVector bpv = (BaseTypePrimitiveVector) pv;
       elemType = bpv.getValue(0);
     } else {
@@ -220,6 +220,15 @@ class DodsV implements Comparable {
 
   }
 
+  // data decoded by XdrStructures has no BaseType values, only the DDS templates
+  private boolean isDecoded() {
+    DodsV top = this;
+    while (top.parent != null && top.parent.bt != null) {
+      top = top.parent;
+    }
+    return XdrStructures.getDecoded(top.darray != null ? top.darray : top.bt) != null;
+  }
+
   //////////////////////////////////////////////////////////////////
 
   DodsV parent;
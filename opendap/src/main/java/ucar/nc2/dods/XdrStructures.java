@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import opendap.dap.*;
+import ucar.array.ArraysConvert;
+import ucar.array.StructureDataArray;
+import ucar.array.StructureDataStorageBB;
+import ucar.ma2.ArrayStructure;
+import ucar.ma2.ArrayStructureBB;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureMembers;
+
+/**
+ * Decodes the XDR data of a top level array of Structures, or of a top level Sequence, straight into the ByteBuffer
+ * of an ArrayStructureBB, instead of into one BaseType per member per row.
+ * The DataDDS is parsed with {@link Factory}, whose DArray and DSequence do this in deserialize(), and ConvertD2N
+ * uses the decoded data instead of walking the BaseType tree.
+ * Numbers are copied from the stream into the ByteBuffer, which is big endian like XDR. Strings go on the heap.
+ * Nothing else is buffered, so the data is held once, and the ucar.array view of it shares the same ByteBuffer.
+ * <p/>
+ * Only Structures whose members are primitives, Strings, arrays of these, and nested Structures of these are
+ * decoded this way. Others, eg with a Grid or a nested Sequence, are deserialized into BaseTypes as before.
+ */
+class XdrStructures {
+
+  private XdrStructures() {}
+
+  /**
+   * The decoded data of a top level variable.
+   *
+   * @param bt the DArray or DSequence from a DataDDS parsed with {@link Factory}.
+   * @return the decoded data, or null if the data was deserialized into BaseTypes.
+   */
+  @Nullable
+  static ArrayStructure getDecoded(BaseType bt) {
+    if (bt instanceof XdrDArray) {
+      return ((XdrDArray) bt).data;
+    } else if (bt instanceof XdrDSequence) {
+      return ((XdrDSequence) bt).data;
+    }
+    return null;
+  }
+
+  /** Convert to a ucar.array.Array, sharing the ByteBuffer if the data was decoded here. */
+  static ucar.array.Array<?> convertToArray(ucar.ma2.Array data) {
+    if (data instanceof DecodedArray) {
+      return ((DecodedArray) data).toArray();
+    }
+    return ArraysConvert.convertToArray(data);
+  }
+
+  /** Makes the DArray and DSequence that decode directly, otherwise the same as the DefaultFactory. */
+  static class Factory extends DefaultFactory {
+    @Override
+    public DArray newDArray() {
+      return new XdrDArray();
+    }
+
+    @Override
+    public DArray newDArray(String n) {
+      return new XdrDArray(n);
+    }
+
+    @Override
+    public DSequence newDSequence() {
+      return new XdrDSequence();
+    }
+
+    @Override
+    public DSequence newDSequence(String n) {
+      return new XdrDSequence(n);
+    }
+  }
+
+  private static class XdrDArray extends DArray {
+    private DecodedArray data;
+
+    XdrDArray() {}
+
+    XdrDArray(String n) {
+      super(n);
+    }
+
+    @Override
+    public synchronized void deserialize(DataInputStream source, ServerVersion sv, StatusUI statusUI)
+        throws IOException, DataReadException {
+      BaseType template = getPrimitiveVector().getTemplate();
+      Layout layout = null;
+      if ((getParent() instanceof DDS) && (template instanceof DStructure)) {
+        layout = Layout.make(template.getClearName(), ((DStructure) template).getVariables());
+      }
+      if (layout == null) {
+        super.deserialize(source, sv, statusUI);
+        return;
+      }
+
+      int[] shape = makeShape(this);
+      int nelems = (int) ucar.ma2.Index.computeSize(shape);
+
+      // an array of BaseTypes has its length sent only once
+      int length = source.readInt();
+      if (length != nelems) {
+        throw new DataReadException("Inconsistent array length read: " + length + " != " + nelems);
+      }
+      if (statusUI != null)
+        statusUI.incrementByteCount(4);
+
+      ByteBuffer bb = ByteBuffer.allocate(nelems * layout.size);
+      List<Object> heap = new ArrayList<>();
+      for (int row = 0; row < nelems; row++) {
+        int nbytes = layout.read(source, bb, row * layout.size, heap);
+        checkStatus(statusUI, nbytes);
+      }
+      data = new DecodedArray(layout, shape, bb, heap);
+    }
+  }
+
+  private static class XdrDSequence extends DSequence {
+    private DecodedArray data;
+
+    XdrDSequence() {}
+
+    XdrDSequence(String n) {
+      super(n);
+    }
+
+    @Override
+    public int getRowCount() {
+      return (data != null) ? (int) data.getSize() : super.getRowCount();
+    }
+
+    @Override
+    public synchronized void deserialize(DataInputStream source, ServerVersion sv, StatusUI statusUI)
+        throws IOException, DataReadException {
+      // old servers dont send the end of sequence marker
+      boolean oldServer = sv != null && (sv.getMajor() < 2 || (sv.getMajor() == 2 && sv.getMinor() < 15));
+      Layout layout = null;
+      if ((getParent() instanceof DDS) && !oldServer) {
+        layout = Layout.make(getClearName(), getVariables());
+      }
+      if (layout == null) {
+        super.deserialize(source, sv, statusUI);
+        return;
+      }
+
+      // the number of rows is only known at the end, so grow the buffer as needed
+      ByteBuffer bb = ByteBuffer.allocate(Math.max(layout.size, 1) * 16);
+      List<Object> heap = new ArrayList<>();
+      int nrows = 0;
+      for (;;) {
+        byte marker = source.readByte();
+        source.readFully(new byte[3]); // pad out to a multiple of four bytes
+        checkStatus(statusUI, 4);
+
+        if (marker == START_OF_INSTANCE) {
+          if (bb.capacity() < (nrows + 1) * layout.size) {
+            ByteBuffer bigger = ByteBuffer.allocate(2 * bb.capacity());
+            System.arraycopy(bb.array(), 0, bigger.array(), 0, nrows * layout.size);
+            bb = bigger;
+          }
+          int nbytes = layout.read(source, bb, nrows * layout.size, heap);
+          checkStatus(statusUI, nbytes);
+          nrows++;
+        } else if (marker == END_OF_SEQUENCE) {
+          break;
+        } else {
+          throw new DataReadException("Sequence start marker not found");
+        }
+      }
+      data = new DecodedArray(layout, new int[] {nrows}, bb, heap);
+    }
+  }
+
+  private static int[] makeShape(DArray darray) {
+    return darray.getDimensions().stream().mapToInt(DArrayDimension::getSize).toArray();
+  }
+
+  private static void checkStatus(StatusUI statusUI, int nbytes) throws DataReadException {
+    if (statusUI != null) {
+      statusUI.incrementByteCount(nbytes);
+      if (statusUI.userCancelled())
+        throw new DataReadException("User cancelled");
+    }
+  }
+
+  /** The decoded data, which is also seen as a ucar.array.StructureDataArray without copying. */
+  private static class DecodedArray extends ArrayStructureBB {
+    private final Layout layout;
+
+    DecodedArray(Layout layout, int[] shape, ByteBuffer bb, List<Object> heap) {
+      super(layout.makeMembers(), shape, bb, 0);
+      this.layout = layout;
+      for (Object s : heap) {
+        addObjectToHeap(s);
+      }
+    }
+
+    StructureDataArray toArray() {
+      ucar.array.StructureMembers members = layout.makeArrayMembers().build();
+      StructureDataStorageBB storage = new StructureDataStorageBB(members, getByteBuffer(), (int) getSize());
+      if (getHeap() != null) {
+        for (Object s : getHeap()) {
+          storage.putOnHeap(s);
+        }
+      }
+      return new StructureDataArray(members, getShape(), storage);
+    }
+  }
+
+  /**
+   * The storage layout of a Structure. Members are in DDS order, each at a fixed offset, as in ArrayStructureBB.
+   * Strings use 4 bytes for the index of their String[] on the heap, and nested Structures are stored in place.
+   */
+  private static class Layout {
+    private final String name;
+    private final List<Field> fields = new ArrayList<>();
+    private int size;
+
+    private Layout(String name) {
+      this.name = name;
+    }
+
+    /** Return null if the members cant all be decoded directly. */
+    @Nullable
+    static Layout make(String name, List<BaseType> members) {
+      Layout layout = new Layout(DodsNetcdfFiles.makeShortName(name));
+      for (BaseType member : members) {
+        Field field = Field.make(member);
+        if (field == null) {
+          return null;
+        }
+        field.offset = layout.size;
+        layout.size += field.sizeBytes;
+        layout.fields.add(field);
+      }
+      return layout;
+    }
+
+    StructureMembers makeMembers() {
+      StructureMembers.Builder builder = StructureMembers.builder().setName(name).setStructureSize(size);
+      for (Field field : fields) {
+        StructureMembers.MemberBuilder mb =
+            builder.addMember(field.name, null, null, field.dataType, field.shape).setDataParam(field.offset);
+        if (field.nested != null) {
+          mb.setStructureMembers(field.nested.makeMembers());
+        }
+      }
+      return builder.build();
+    }
+
+    ucar.array.StructureMembers.Builder makeArrayMembers() {
+      ucar.array.StructureMembers.Builder builder =
+          ucar.array.StructureMembers.builder().setName(name).setStructureSize(size);
+      for (Field field : fields) {
+        ucar.array.StructureMembers.MemberBuilder mb = ucar.array.StructureMembers.memberBuilder().setName(field.name)
+            .setArrayType(field.dataType.getArrayType()).setShape(field.shape).setOffset(field.offset);
+        if (field.nested != null) {
+          mb.setStructureMembers(field.nested.makeArrayMembers());
+        }
+        builder.addMember(mb);
+      }
+      return builder;
+    }
+
+    /**
+     * Decode one Structure from the stream into bb, starting at pos.
+     *
+     * @return the number of bytes read from the stream.
+     */
+    int read(DataInputStream source, ByteBuffer bb, int pos, List<Object> heap) throws IOException, DataReadException {
+      byte[] bytes = bb.array();
+      int nbytes = 0;
+      for (Field field : fields) {
+        int start = pos + field.offset;
+        int n = field.nelems;
+
+        if (field.isArray) {
+          int length = source.readInt();
+          nbytes += 4;
+          // because both XDR and OPeNDAP write the length of a primitive array, we must read it twice
+          if (field.nested == null && field.dataType != DataType.STRING) {
+            int length2 = source.readInt();
+            nbytes += 4;
+            if (length != length2) {
+              throw new DataReadException("Inconsistent array length read: " + length + " != " + length2);
+            }
+          }
+          if (length != n) {
+            throw new DataReadException(
+                "Inconsistent array length read for " + field.name + ": " + length + " != " + n);
+          }
+        }
+
+        switch (field.dataType) {
+          case BYTE:
+          case UBYTE: {
+            if (field.isArray) {
+              // packed, then padded out to a multiple of four bytes
+              source.readFully(bytes, start, n);
+              int pad = (4 - n % 4) % 4;
+              source.readFully(new byte[pad]);
+              nbytes += n + pad;
+            } else {
+              // a scalar is sent as an int
+              bytes[start] = (byte) source.readInt();
+              nbytes += 4;
+            }
+            break;
+          }
+          case SHORT:
+          case USHORT: {
+            // each is sent as an int
+            for (int i = 0; i < n; i++) {
+              bb.putShort(start + 2 * i, (short) source.readInt());
+            }
+            nbytes += 4 * n;
+            break;
+          }
+          case INT:
+          case UINT:
+          case FLOAT:
+          case DOUBLE: {
+            // already big endian
+            int len = n * field.dataType.getSize();
+            source.readFully(bytes, start, len);
+            nbytes += len;
+            break;
+          }
+          case STRING: {
+            String[] svals = new String[n];
+            for (int i = 0; i < n; i++) {
+              int len = source.readInt();
+              if (len < 0)
+                throw new DataReadException("Negative string length (dap_length: " + len + ") read.");
+              if (len > Short.MAX_VALUE)
+                throw new DataReadException("DString deserialize string length (dap_length: " + len + ") too large.");
+              byte[] sbytes = new byte[len + (4 - len % 4) % 4];
+              source.readFully(sbytes);
+              // ISO8859_1 converts each byte to its Unicode value, as DString does
+              svals[i] = new String(sbytes, 0, len, StandardCharsets.ISO_8859_1);
+              nbytes += 4 + sbytes.length;
+            }
+            heap.add(svals);
+            bb.putInt(start, heap.size() - 1);
+            break;
+          }
+          case STRUCTURE: {
+            for (int i = 0; i < n; i++) {
+              nbytes += field.nested.read(source, bb, start + i * field.nested.size, heap);
+            }
+            break;
+          }
+          default:
+            throw new IllegalStateException("Unexpected data type " + field.dataType);
+        }
+      }
+      return nbytes;
+    }
+  }
+
+  private static class Field {
+    private final String name;
+    private final DataType dataType;
+    private final int[] shape;
+    private final int nelems;
+    private final boolean isArray; // sent as a DArray, so preceded by its length
+    private final Layout nested; // only for Structures
+    private final int sizeBytes;
+    private int offset;
+
+    private Field(BaseType bt, DataType dataType, int[] shape, boolean isArray, Layout nested) {
+      this.name = DodsNetcdfFiles.makeShortName(bt.getClearName());
+      this.dataType = dataType;
+      this.shape = shape;
+      this.nelems = (int) ucar.ma2.Index.computeSize(shape);
+      this.isArray = isArray;
+      this.nested = nested;
+      if (nested != null) {
+        this.sizeBytes = nelems * nested.size;
+      } else if (dataType == DataType.STRING) {
+        this.sizeBytes = 4;
+      } else {
+        this.sizeBytes = nelems * dataType.getSize();
+      }
+    }
+
+    /** Return null if the member cant be decoded directly. */
+    @Nullable
+    static Field make(BaseType bt) {
+      int[] shape = new int[0];
+      boolean isArray = false;
+      if (bt instanceof DArray) {
+        DArray da = (DArray) bt;
+        shape = makeShape(da);
+        bt = da.getPrimitiveVector().getTemplate();
+        isArray = true;
+      }
+
+      if (bt instanceof DStructure) {
+        Layout nested = Layout.make(bt.getClearName(), ((DStructure) bt).getVariables());
+        return (nested == null) ? null : new Field(bt, DataType.STRUCTURE, shape, isArray, nested);
+      }
+      boolean isPrimitive = (bt instanceof DByte) || (bt instanceof DInt16) || (bt instanceof DInt32)
+          || (bt instanceof DFloat32) || (bt instanceof DFloat64) || (bt instanceof DString);
+      if (!isPrimitive) {
+        return null;
+      }
+      // the DataDDS has no attributes, so ConvertD2N makes bytes unsigned also
+      return new Field(bt, DodsNetcdfFiles.convertToNCType(bt, true), shape, isArray, null);
+    }
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package opendap.dap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+/** Test that the primitive vectors decode the same values in blocks as were written one at a time. */
+public class TestXdrVectors {
+  // empty, less than a word, and more than one chunk for each element size
+  private static final int[] LENGTHS = {0, 3, 1001, XdrVectors.CHUNK_SIZE / 4 + 5, XdrVectors.CHUNK_SIZE + 2};
+  private static final int SENTINEL = 0xCAFEBABE;
+
+  @Test
+  public void testFloat32() throws Exception {
+    Random random = new Random(1);
+    for (int len : LENGTHS) {
+      Float32PrimitiveVector want = new Float32PrimitiveVector(new DFloat32());
+      want.setLength(len);
+      for (int i = 0; i < len; i++) {
+        want.setValue(i, random.nextFloat() * 1000 - 500);
+      }
+      Float32PrimitiveVector got = new Float32PrimitiveVector(new DFloat32());
+      got.setLength(len);
+      roundTrip(want, got, 4L * len);
+      assertThat(got.getInternalStorage()).isEqualTo(want.getInternalStorage());
+    }
+  }
+
+  @Test
+  public void testFloat64() throws Exception {
+    Random random = new Random(2);
+    for (int len : LENGTHS) {
+      Float64PrimitiveVector want = new Float64PrimitiveVector(new DFloat64());
+      want.setLength(len);
+      for (int i = 0; i < len; i++) {
+        want.setValue(i, random.nextGaussian());
+      }
+      Float64PrimitiveVector got = new Float64PrimitiveVector(new DFloat64());
+      got.setLength(len);
+      roundTrip(want, got, 8L * len);
+      assertThat(got.getInternalStorage()).isEqualTo(want.getInternalStorage());
+    }
+  }
+
+  @Test
+  public void testInt32() throws Exception {
+    Random random = new Random(3);
+    for (int len : LENGTHS) {
+      Int32PrimitiveVector want = new UInt32PrimitiveVector(new DUInt32());
+      want.setLength(len);
+      for (int i = 0; i < len; i++) {
+        want.setValue(i, random.nextInt());
+      }
+      Int32PrimitiveVector got = new UInt32PrimitiveVector(new DUInt32());
+      got.setLength(len);
+      roundTrip(want, got, 4L * len);
+      assertThat(got.getInternalStorage()).isEqualTo(want.getInternalStorage());
+    }
+  }
+
+  @Test
+  public void testInt16() throws Exception {
+    Random random = new Random(4);
+    for (int len : LENGTHS) {
+      Int16PrimitiveVector want = new Int16PrimitiveVector(new DInt16());
+      want.setLength(len);
+      for (int i = 0; i < len; i++) {
+        want.setValue(i, (short) random.nextInt());
+      }
+      Int16PrimitiveVector got = new Int16PrimitiveVector(new DInt16());
+      got.setLength(len);
+      roundTrip(want, got, 4L * len);
+      assertThat(got.getInternalStorage()).isEqualTo(want.getInternalStorage());
+    }
+  }
+
+  @Test
+  public void testByte() throws Exception {
+    Random random = new Random(5);
+    for (int len : LENGTHS) {
+      BytePrimitiveVector want = new BytePrimitiveVector(new DByte());
+      want.setLength(len);
+      byte[] vals = new byte[len];
+      random.nextBytes(vals);
+      for (int i = 0; i < len; i++) {
+        want.setValue(i, vals[i]);
+      }
+      BytePrimitiveVector got = new BytePrimitiveVector(new DByte());
+      got.setLength(len);
+      roundTrip(want, got, len + (4 - len % 4) % 4);
+      assertThat(got.getInternalStorage()).isEqualTo(want.getInternalStorage());
+    }
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    Float64PrimitiveVector want = new Float64PrimitiveVector(new DFloat64());
+    want.setLength(XdrVectors.CHUNK_SIZE);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream sink = new DataOutputStream(bos)) {
+      want.externalize(sink);
+    }
+    Float64PrimitiveVector got = new Float64PrimitiveVector(new DFloat64());
+    got.setLength(XdrVectors.CHUNK_SIZE);
+    CountingStatus status = new CountingStatus(true);
+    try {
+      got.deserialize(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())), null, status);
+      org.junit.Assert.fail();
+    } catch (DataReadException e) {
+      assertThat(e.getMessage()).isEqualTo("User cancelled");
+    }
+    assertThat(status.nbytes).isEqualTo(XdrVectors.CHUNK_SIZE);
+  }
+
+  // write want, then read it into got, checking that exactly the XDR encoded length is read
+  private static void roundTrip(PrimitiveVector want, PrimitiveVector got, long expectedBytes)
+      throws IOException, DAP2Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream sink = new DataOutputStream(bos)) {
+      want.externalize(sink);
+      sink.writeInt(SENTINEL);
+    }
+    CountingStatus status = new CountingStatus(false);
+    try (DataInputStream source = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      got.deserialize(source, null, status);
+      assertThat(source.readInt()).isEqualTo(SENTINEL);
+    }
+    assertThat(status.nbytes).isEqualTo(expectedBytes);
+  }
+
+  private static class CountingStatus implements StatusUI {
+    private final boolean cancel;
+    long nbytes;
+
+    CountingStatus(boolean cancel) {
+      this.cancel = cancel;
+    }
+
+    @Override
+    public void incrementByteCount(int bytes) {
+      nbytes += bytes;
+    }
+
+    @Override
+    public boolean userCancelled() {
+      return cancel;
+    }
+
+    @Override
+    public void finished() {}
+  }
+}
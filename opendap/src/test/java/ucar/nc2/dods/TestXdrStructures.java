@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import opendap.dap.BaseTypeFactory;
+import opendap.dap.BaseTypePrimitiveVector;
+import opendap.dap.DAP2Exception;
+import opendap.dap.DArray;
+import opendap.dap.DataDDS;
+import opendap.dap.DefaultFactory;
+import opendap.dap.DInt32;
+import opendap.dap.DStructure;
+import org.junit.Test;
+import ucar.array.ArraysConvert;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayStructure;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.write.Ncdump;
+import ucar.nc2.write.NcdumpArray;
+
+/** Test that {@link XdrStructures} decodes the same data as the BaseType tree. */
+public class TestXdrStructures {
+  private static final int NTYPES = 4;
+  private static final int NOBS = 37; // more than the initial buffer holds
+
+  private static final String DDS = "Dataset {\n" //
+      + "  Structure {\n" //
+      + "    Byte b;\n" //
+      + "    Int16 i16;\n" //
+      + "    UInt16 ui16;\n" //
+      + "    Int32 i32;\n" //
+      + "    UInt32 ui32;\n" //
+      + "    Float32 f32;\n" //
+      + "    Float64 f64;\n" //
+      + "    String s;\n" //
+      + "    Int16 shorts[3];\n" //
+      + "    Byte bytes[5];\n" //
+      + "    Float64 doubles[2];\n" //
+      + "    String names[2];\n" //
+      + "    Structure {\n" //
+      + "      Int32 j;\n" //
+      + "      Float32 f[2];\n" //
+      + "    } inner;\n" //
+      + "  } types[" + NTYPES + "];\n" //
+      + "  Sequence {\n" //
+      + "    Int32 id;\n" //
+      + "    String name;\n" //
+      + "    Float32 vals[2];\n" //
+      + "  } obs;\n" //
+      + "  Structure {\n" //
+      + "    Int32 k;\n" //
+      + "    Sequence {\n" //
+      + "      Int32 m;\n" //
+      + "    } nested;\n" //
+      + "  } withSeq[2];\n" //
+      + "  Float32 scalar;\n" //
+      + "} test;\n";
+
+  private static byte[] makeData() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+
+    out.writeInt(NTYPES); // array of structures: length sent once
+    for (int row = 0; row < NTYPES; row++) {
+      out.writeInt(200 + row); // Byte, in the last of 4 bytes
+      out.writeInt(-1000 - row); // Int16
+      out.writeInt(60000 + row); // UInt16
+      out.writeInt(100000 * row - 7);
+      out.writeInt(0xF0000000 + row); // UInt32
+      out.writeFloat(1.5f * row);
+      out.writeDouble(Math.PI * row);
+      writeString(out, "row" + row);
+      writePrimitiveLength(out, 3);
+      for (int i = 0; i < 3; i++) {
+        out.writeInt(row * 10 + i - 15);
+      }
+      writePrimitiveLength(out, 5);
+      for (int i = 0; i < 5; i++) {
+        out.writeByte(row * 5 + i);
+      }
+      out.write(new byte[3]); // pad
+      writePrimitiveLength(out, 2);
+      out.writeDouble(-row);
+      out.writeDouble(row / 3.0);
+      out.writeInt(2); // array of Strings: length sent once
+      writeString(out, "");
+      writeString(out, "name" + row + "abc");
+      out.writeInt(row * row); // inner.j
+      writePrimitiveLength(out, 2);
+      out.writeFloat(row + .25f);
+      out.writeFloat(row - .25f);
+    }
+
+    for (int row = 0; row < NOBS; row++) {
+      out.writeInt(0x5A000000); // start of instance
+      out.writeInt(row);
+      writeString(out, "ob" + row);
+      writePrimitiveLength(out, 2);
+      out.writeFloat(row * 2);
+      out.writeFloat(row * 3);
+    }
+    out.writeInt(0xA5000000); // end of sequence
+
+    out.writeInt(2);
+    for (int row = 0; row < 2; row++) {
+      out.writeInt(row + 42);
+      for (int i = 0; i <= row; i++) {
+        out.writeInt(0x5A000000);
+        out.writeInt(i);
+      }
+      out.writeInt(0xA5000000);
+    }
+
+    out.writeFloat(99.f);
+    out.close();
+    return bos.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    out.write(new byte[(4 - bytes.length % 4) % 4]);
+  }
+
+  private static void writePrimitiveLength(DataOutputStream out, int length) throws IOException {
+    out.writeInt(length);
+    out.writeInt(length);
+  }
+
+  private static DodsV read(BaseTypeFactory factory) throws IOException, DAP2Exception {
+    DataDDS dds = new DataDDS(null, factory);
+    assertThat(dds.parse(DDS)).isTrue();
+    dds.readData(new ByteArrayInputStream(makeData()), null);
+    return DodsV.parseDataDDS(dds);
+  }
+
+  @Test
+  public void testSameAsBaseTypes() throws IOException, DAP2Exception {
+    DodsV want = read(new DefaultFactory());
+    DodsV got = read(new XdrStructures.Factory());
+    assertThat(got.children.size()).isEqualTo(4);
+
+    ConvertD2N convert = new ConvertD2N();
+    for (int i = 0; i < 2; i++) {
+      DodsV wantV = want.children.get(i);
+      DodsV gotV = got.children.get(i);
+      assertThat(XdrStructures.getDecoded(wantV.darray != null ? wantV.darray : wantV.bt)).isNull();
+      ArrayStructure decoded = XdrStructures.getDecoded(gotV.darray != null ? gotV.darray : gotV.bt);
+      assertThat(decoded).isNotNull();
+      assertThat(gotV.getShapeAll()).isEqualTo(wantV.getShapeAll());
+
+      ArrayStructure wantData = (ArrayStructure) convert.convert(wantV);
+      ArrayStructure gotData = (ArrayStructure) convert.convert(gotV);
+      assertThat(gotData).isSameInstanceAs(decoded);
+      assertThat(gotData.getShape()).isEqualTo(wantData.getShape());
+      assertThat(Ncdump.printArray(gotData, "data", null)).isEqualTo(Ncdump.printArray(wantData, "data", null));
+
+      // the members, as read from a Structure member variable
+      for (StructureMembers.Member m : wantData.getStructureMembers().getMembers()) {
+        Array wantMember = wantData.extractMemberArray(m);
+        Array gotMember = gotData.extractMemberArray(gotData.findMember(m.getName()));
+        assertThat(gotMember.getDataType()).isEqualTo(wantMember.getDataType());
+        assertThat(Ncdump.printArray(gotMember, m.getName(), null))
+            .isEqualTo(Ncdump.printArray(wantMember, m.getName(), null));
+      }
+
+      // the ucar.array view shares the ByteBuffer, instead of copying it like ArraysConvert
+      assertThat(NcdumpArray.printArray(XdrStructures.convertToArray(gotData), "data", null))
+          .isEqualTo(NcdumpArray.printArray(ArraysConvert.convertToArray(gotData), "data", null));
+    }
+  }
+
+  @Test
+  public void testValues() throws IOException, DAP2Exception {
+    DodsV root = read(new XdrStructures.Factory());
+    ArrayStructure types = XdrStructures.getDecoded(root.children.get(0).darray);
+    StructureData sdata = types.getStructureData(3);
+    assertThat(sdata.getScalarByte("b")).isEqualTo((byte) 203);
+    assertThat(sdata.getScalarShort("i16")).isEqualTo((short) -1003);
+    assertThat(sdata.getScalarShort("ui16")).isEqualTo((short) 60003);
+    assertThat(sdata.getScalarInt("ui32")).isEqualTo(0xF0000003);
+    assertThat(sdata.getScalarDouble("f64")).isEqualTo(Math.PI * 3);
+    assertThat(sdata.getScalarString("s")).isEqualTo("row3");
+    assertThat(sdata.getJavaArrayString(sdata.findMember("names"))).isEqualTo(new String[] {"", "name3abc"});
+    assertThat(sdata.getJavaArrayByte("bytes")).isEqualTo(new byte[] {15, 16, 17, 18, 19});
+    StructureData inner = sdata.getScalarStructure("inner");
+    assertThat(inner.getScalarInt("j")).isEqualTo(9);
+    assertThat(inner.getJavaArrayFloat("f")).isEqualTo(new float[] {3.25f, 2.75f});
+
+    DodsV obsV = root.children.get(1);
+    assertThat(obsV.getShapeAll()).isEqualTo(new int[] {NOBS});
+    ArrayStructure obs = XdrStructures.getDecoded(obsV.bt);
+    assertThat(obs.getSize()).isEqualTo(NOBS);
+    StructureData last = obs.getStructureData(NOBS - 1);
+    assertThat(last.getScalarInt("id")).isEqualTo(NOBS - 1);
+    assertThat(last.getScalarString("name")).isEqualTo("ob" + (NOBS - 1));
+    assertThat(last.getJavaArrayFloat("vals")).isEqualTo(new float[] {2 * (NOBS - 1), 3 * (NOBS - 1)});
+  }
+
+  @Test
+  public void testNestedSequenceUsesBaseTypes() throws IOException, DAP2Exception {
+    DodsV root = read(new XdrStructures.Factory());
+    DodsV withSeq = root.children.get(2);
+    assertThat(XdrStructures.getDecoded(withSeq.darray)).isNull();
+
+    BaseTypePrimitiveVector pv = (BaseTypePrimitiveVector) withSeq.darray.getPrimitiveVector();
+    DStructure second = (DStructure) pv.getValue(1);
+    assertThat(((DInt32) second.getVariable("k")).getValue()).isEqualTo(43);
+
+    // the rest of the stream is read in step
+    List<DodsV> children = root.children;
+    Array scalar = new ConvertD2N().convert(children.get(3));
+    assertThat(scalar.getFloat(0)).isEqualTo(99.f);
+    assertThat(withSeq.darray).isInstanceOf(DArray.class);
+  }
+}
@@ -19,7 +19,8 @@ import java.util.TimeZone;
 /**
  * Standard formatter/parser for unit specifications.
  * <p/>
- * Instances of this class are thread-compatible but not thread-safe.
+ * Instances of this class are thread-safe: the parser keeps its state in the instance, so each thread parses with
+ * its own, and each thread formats dates with its own SimpleDateFormat.
  *
  * @author Steven R. Emmerson
  */
@@ -31,14 +32,23 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
    *
    * @serial
    */
-  private static StandardUnitFormat _instance;
+  private static volatile StandardUnitFormat _instance;
 
   /**
-   * The date formatter.
-   *
-   * @serial
+   * The parser of each thread.
+   */
+  private static final ThreadLocal<StandardUnitFormat> parsers = ThreadLocal.withInitial(StandardUnitFormat::new);
+
+  /**
+   * True while this parser is in use, in case parsing is reentered, eg by a unit database that parses its definitions.
    */
-  private static final SimpleDateFormat dateFormat;
+  private transient boolean parsing;
+
+  /**
+   * The date formatter of each thread, since SimpleDateFormat is not thread-safe.
+   */
+  private static final ThreadLocal<SimpleDateFormat> dateFormats =
+      ThreadLocal.withInitial(StandardUnitFormat::makeDateFormat);
 
   /**
    * The Comparator for ordering base units for printing. Orders
@@ -55,10 +65,11 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
     }
   };
 
-  static {
-    dateFormat = (SimpleDateFormat) DateFormat.getDateInstance(DateFormat.SHORT, Locale.US);
+  private static SimpleDateFormat makeDateFormat() {
+    SimpleDateFormat dateFormat = (SimpleDateFormat) DateFormat.getDateInstance(DateFormat.SHORT, Locale.US);
     dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     dateFormat.applyPattern(" '@' yyyy-MM-dd HH:mm:ss.SSS 'UTC'");
+    return dateFormat;
   }
 
   /**
@@ -74,10 +85,16 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
    *
    * @return An instance of this class.
    */
-  public static synchronized StandardUnitFormat instance() {
-    if (_instance == null)
-      _instance = new StandardUnitFormat();
-    return _instance;
+  public static StandardUnitFormat instance() {
+    StandardUnitFormat result = _instance;
+    if (result == null) {
+      synchronized (StandardUnitFormat.class) {
+        if (_instance == null)
+          _instance = new StandardUnitFormat();
+        result = _instance;
+      }
+    }
+    return result;
   }
 
 
@@ -116,6 +133,19 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
     if (spec == null)
       throw new UnitParseException(spec);
 
+    StandardUnitFormat parser = parsers.get();
+    if (parser.parsing)
+      parser = new StandardUnitFormat();
+    parser.parsing = true;
+    try {
+      return parser.parseSpec(spec, unitDB);
+    } finally {
+      parser.parsing = false;
+    }
+  }
+
+  private Unit parseSpec(String spec, UnitDB unitDB)
+      throws UnitParseException, SpecificationException, UnitDBException, PrefixDBException, UnitSystemException {
     ReInit(new StringReader(spec.trim()));
 
     try {
@@ -261,7 +291,7 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
 
 
   private StringBuffer format(TimeScaleUnit unit, StringBuffer buf, boolean normalize) throws UnitClassException {
-    return format(unit.getUnit(), buf, normalize).append(dateFormat.format(unit.getOrigin()));
+    return format(unit.getUnit(), buf, normalize).append(dateFormats.get().format(unit.getOrigin()));
   }
 
 
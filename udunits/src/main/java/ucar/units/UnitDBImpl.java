@@ -5,11 +5,11 @@
 package ucar.units;
 
 import java.io.Serializable;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides most of a concrete implementation of a database of units.
@@ -40,6 +40,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private final Map<String, Unit> symbolMap;
 
+  /**
+   * Incremented whenever an entry is added, so that parsed units can be cached until then.
+   */
+  private transient volatile int version;
+
   /**
    * Constructs from the expected number of names and symbols. The sizes will
    * be used to construct the initial database but will not limit its growth.
@@ -51,8 +56,8 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   protected UnitDBImpl(final int nameCount, final int symbolCount) {
     unitSet = new TreeSet<>((obj1, obj2) -> (obj1).getName().compareTo((obj2).getName()));
-    nameMap = new Hashtable<>(nameCount + 1);
-    symbolMap = new Hashtable<>(symbolCount + 1);
+    nameMap = new ConcurrentHashMap<>(nameCount + 1);
+    symbolMap = new ConcurrentHashMap<>(symbolCount + 1);
   }
 
   /**
@@ -67,6 +72,18 @@ public class UnitDBImpl implements UnitDB, Serializable {
     unitSet.addAll(that.unitSet);
     nameMap.putAll(that.nameMap);
     symbolMap.putAll(that.symbolMap);
+    changed();
+  }
+
+  /**
+   * Changes whenever an entry is added.
+   */
+  int getVersion() {
+    return version;
+  }
+
+  private synchronized void changed() {
+    version++;
   }
 
   /**
@@ -295,7 +312,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addByName(final String name, final Unit newUnit) throws UnitExistsException {
     if (name != null) {
-      addUnique(nameMap, canonicalize(name), newUnit);
+      try {
+        addUnique(nameMap, canonicalize(name), newUnit);
+      } finally {
+        changed(); // after the put, which happens even if it throws
+      }
     }
   }
 
@@ -312,7 +333,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addBySymbol(final String symbol, final Unit newUnit) throws UnitExistsException {
     if (symbol != null) {
-      addUnique(symbolMap, symbol, newUnit);
+      try {
+        addUnique(symbolMap, symbol, newUnit);
+      } finally {
+        changed(); // after the put, which happens even if it throws
+      }
     }
   }
 
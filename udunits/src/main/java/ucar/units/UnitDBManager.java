@@ -18,7 +18,7 @@ public final class UnitDBManager implements Serializable {
    * 
    * @serial
    */
-  private static UnitDB instance;
+  private static volatile UnitDB instance;
 
   /**
    * Gets the default unit database.
@@ -27,11 +27,17 @@ public final class UnitDBManager implements Serializable {
    * @throws UnitDBException
    *         The default unit database couldn't be created.
    */
-  public static synchronized UnitDB instance() throws UnitDBException {
-    if (instance == null) {
-      instance = StandardUnitDB.instance();
+  public static UnitDB instance() throws UnitDBException {
+    UnitDB result = instance; // lock free once made
+    if (result == null) {
+      synchronized (UnitDBManager.class) {
+        if (instance == null) {
+          instance = StandardUnitDB.instance();
+        }
+        result = instance;
+      }
     }
-    return instance;
+    return result;
   }
 
   /**
@@ -4,6 +4,7 @@
  */
 package ucar.units;
 
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides support for classes that parse and format unit specifications.
@@ -15,10 +16,31 @@ package ucar.units;
 public abstract class UnitFormatImpl implements UnitFormat {
 
   private static final long serialVersionUID = 1L;
-  private static final Object MUTEX = new Object();
 
   /**
-   * Parses a unit specification. This method is thread-safe.
+   * The most units that are cached before the cache is cleared.
+   */
+  private static final int MAX_CACHED = 1000;
+
+  /**
+   * The units parsed with a unit database, until an entry is added to it.
+   */
+  private static final class ParseCache {
+    final UnitDB unitDB;
+    final int version;
+    final ConcurrentHashMap<String, Unit> units = new ConcurrentHashMap<>();
+
+    ParseCache(UnitDB unitDB, int version) {
+      this.unitDB = unitDB;
+      this.version = version;
+    }
+  }
+
+  private transient volatile ParseCache cache;
+
+  /**
+   * Parses a unit specification with the default unit database. This method is thread-safe. Units are immutable, so
+   * the unit of a specification that was parsed before is returned again, as long as the database hasn't changed.
    * 
    * @param spec
    *        The unit specification (e.g. "m/s");
@@ -39,9 +61,24 @@ public abstract class UnitFormatImpl implements UnitFormat {
    */
   public final Unit parse(final String spec) throws NoSuchUnitException, UnitParseException, SpecificationException,
       UnitDBException, PrefixDBException, UnitSystemException {
-    synchronized (MUTEX) {
-      return parse(spec, UnitDBManager.instance());
+    final UnitDB unitDB = UnitDBManager.instance();
+    if (spec == null || !(unitDB instanceof UnitDBImpl))
+      return parse(spec, unitDB);
+
+    final int version = ((UnitDBImpl) unitDB).getVersion();
+    ParseCache current = cache;
+    if (current == null || current.unitDB != unitDB || current.version != version) {
+      current = new ParseCache(unitDB, version);
+      cache = current;
+    }
+    Unit unit = current.units.get(spec);
+    if (unit == null) {
+      unit = parse(spec, unitDB);
+      if (current.units.size() >= MAX_CACHED)
+        current.units.clear();
+      current.units.put(spec, unit);
     }
+    return unit;
   }
 
   /**
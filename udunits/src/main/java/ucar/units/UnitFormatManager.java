@@ -18,18 +18,24 @@ public final class UnitFormatManager implements Serializable {
    * 
    * @serial
    */
-  private static UnitFormat instance;
+  private static volatile UnitFormat instance;
 
   /**
    * Returns an instance of the default unit format.
    * 
    * @return An instance of the default unit format.
    */
-  public static synchronized UnitFormat instance() {
-    if (instance == null) {
-      instance = StandardUnitFormat.instance();
+  public static UnitFormat instance() {
+    UnitFormat result = instance; // lock free once made
+    if (result == null) {
+      synchronized (UnitFormatManager.class) {
+        if (instance == null) {
+          instance = StandardUnitFormat.instance();
+        }
+        result = instance;
+      }
     }
-    return instance;
+    return result;
   }
 
   /**
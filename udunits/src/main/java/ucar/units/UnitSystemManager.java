@@ -19,18 +19,24 @@ public final class UnitSystemManager implements Serializable {
    * 
    * @serial
    */
-  private static UnitSystem instance;
+  private static volatile UnitSystem instance;
 
   /**
    * Returns an instance of the system of units.
    * 
    * @return An instance of the system of units.
    */
-  public static synchronized UnitSystem instance() throws UnitSystemException {
-    if (instance == null) {
-      instance = SI.instance();
+  public static UnitSystem instance() throws UnitSystemException {
+    UnitSystem result = instance; // lock free once made
+    if (result == null) {
+      synchronized (UnitSystemManager.class) {
+        if (instance == null) {
+          instance = SI.instance();
+        }
+        result = instance;
+      }
     }
-    return instance;
+    return result;
   }
 
   /**
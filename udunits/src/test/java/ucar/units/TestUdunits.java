@@ -7,7 +7,12 @@ package ucar.units;
 
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -356,4 +361,66 @@ public class TestUdunits {
     System.out.println("lengthDimension.divideBy(timeDimension).raiseTo(2) = \""
         + lengthDimension.divideBy(timeDimension).raiseTo(2) + '"');
   }
+
+  @Test
+  public void testConcurrentParse() throws Exception {
+    final UnitFormat format = UnitFormatManager.instance();
+    final String[] specs = {"m/s", "kg m-2 s-1", "degC", "hours since 1970-01-01", "0.5 hPa", "m2 s-1 @ 5", "K"};
+    final Unit[] expected = new Unit[specs.length];
+    for (int i = 0; i < specs.length; i++) {
+      expected[i] = StandardUnitFormat.instance().parse(specs[i], UnitDBManager.instance());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Unit>> results = new ArrayList<>();
+      for (int k = 0; k < 1000; k++) {
+        final String spec = specs[k % specs.length];
+        results.add(executor.submit(() -> format.parse(spec)));
+      }
+      for (int k = 0; k < results.size(); k++) {
+        assert results.get(k).get().equals(expected[k % specs.length]) : specs[k % specs.length];
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // the parsed unit is cached
+    assert format.parse("kg m-2 s-1") == format.parse("kg m-2 s-1");
+
+    try {
+      format.parse("m//s");
+      assert false;
+    } catch (UnitException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testConcurrentFormat() throws Exception {
+    final UnitFormat format = UnitFormatManager.instance();
+    final String[] specs = {"hours since 1970-01-01", "days since 1582-10-15 12:00",
+        "seconds since 2021-03-04 05:06:07.8", "minutes since 1900-12-31 23:59:59"};
+    final Unit[] units = new Unit[specs.length];
+    final String[] expected = new String[specs.length];
+    for (int i = 0; i < specs.length; i++) {
+      units[i] = format.parse(specs[i]);
+      expected[i] = format.format(units[i]);
+    }
+    assert expected[0].equals("3600.0 s @ 1970-01-01 00:00:00.000 UTC") : expected[0];
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int k = 0; k < 1000; k++) {
+        final Unit unit = units[k % specs.length];
+        results.add(executor.submit(() -> format.format(unit)));
+      }
+      for (int k = 0; k < results.size(); k++) {
+        assert results.get(k).get().equals(expected[k % specs.length]) : results.get(k).get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }